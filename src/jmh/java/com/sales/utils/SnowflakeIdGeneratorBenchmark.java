@@ -0,0 +1,113 @@
+package com.sales.utils;
+
+import com.sales.service.IdGeneratorService;
+import com.sales.service.RedisService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ID生成吞吐：Snowflake（long和Base32字符串）与原有的时间戳+UUID订单号对比，单线程和8线程共享同一生成器。
+ * 吞吐超过每毫秒4096个时序号进位借用后续毫秒，测得的是CAS路径本身的开销。
+ * serviceOrderId走IdGeneratorService.nextOrderId的完整路径（租约检查 + ORD日期前缀格式化），
+ * 租约脚本由桩RedisService直接返回成功，不依赖Redis。
+ * <p>
+ * 运行：mvn -Pjmh test-compile exec:exec，JMH参数可通过 -Djmh.args="..." 传入（如 "-t 4 -f 1"）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private static final DateTimeFormatter ORDER_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private SnowflakeIdGenerator generator;
+
+    private IdGeneratorService idGeneratorService;
+
+    @Setup
+    public void setUp() {
+        generator = new SnowflakeIdGenerator(1);
+
+        idGeneratorService = new IdGeneratorService();
+        ReflectionTestUtils.setField(idGeneratorService, "redisService", new LeaseGrantingRedisService());
+        // 租约覆盖整个测量过程，不需要续约
+        ReflectionTestUtils.setField(idGeneratorService, "leaseMillis", TimeUnit.HOURS.toMillis(1));
+        idGeneratorService.init();
+    }
+
+    @Benchmark
+    public long snowflakeLong() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String snowflakeBase32() {
+        return generator.nextBase32();
+    }
+
+    @Benchmark
+    public String legacyOrderId() {
+        return "ORD" + LocalDateTime.now().format(ORDER_TIME_FORMATTER)
+                + UUID.randomUUID().toString().substring(0, 4).toUpperCase();
+    }
+
+    @Benchmark
+    public String serviceOrderId() {
+        return idGeneratorService.nextOrderId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyOrderIdContended() {
+        return legacyOrderId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String serviceOrderIdContended() {
+        return idGeneratorService.nextOrderId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long snowflakeLongContended() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String snowflakeBase32Contended() {
+        return generator.nextBase32();
+    }
+
+    /**
+     * 租约获取/续约脚本总是返回成功
+     */
+    private static class LeaseGrantingRedisService extends RedisService {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T eval(RedisScript<T> script, List<String> keys, Object... args) {
+            return (T) Long.valueOf(1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.sales.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流声明，可在同一方法上叠加多条策略（如按用户 + 按接口）。
+ * 令牌桶状态保存在Redis（limit:前缀），由RateLimitInterceptor在进入控制器前校验。
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 策略名称，作为Redis键的一部分
+     */
+    String name();
+
+    /**
+     * 限流维度
+     */
+    Dimension dimension() default Dimension.ENDPOINT;
+
+    /**
+     * 每秒补充的令牌数
+     */
+    double permitsPerSecond();
+
+    /**
+     * 桶容量（允许的突发请求数）
+     */
+    int burst();
+
+    enum Dimension {
+        USER,       // 按会话用户（X-Session-Id请求头或sessionId参数对应的会话，无有效会话时退化为IP）
+        IP,         // 按客户端IP
+        ENDPOINT    // 按接口全局
+    }
+}
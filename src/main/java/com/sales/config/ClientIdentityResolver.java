@@ -0,0 +1,77 @@
+package com.sales.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.service.SessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求方身份解析，限流、访客统计、转化漏斗共用。
+ * 用户只认服务端会话：请求携带的会话令牌（X-Session-Id请求头或sessionId参数）在Redis中有效时取会话中的用户，
+ * 客户端自报的用户ID不采信。
+ * X-Forwarded-For只在直连地址属于sales.rate-limit.trusted-proxies时采用，从右向左跳过可信代理后的第一个地址为客户端IP。
+ */
+@Slf4j
+@Component
+public class ClientIdentityResolver {
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Value("${sales.rate-limit.trusted-proxies:}")
+    private Set<String> trustedProxies;
+
+    /**
+     * 会话令牌 -> 用户ID，短时缓存避免每个请求都查询Redis；会话不存在时缓存空值
+     */
+    private final Cache<String, Optional<String>> sessionUsers = CacheBuilder.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(10, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * 由会话令牌查出的用户ID，没有令牌或会话无效时返回null
+     */
+    public String resolveUserId(HttpServletRequest request) {
+        String sessionId = request.getHeader("X-Session-Id");
+        if (sessionId == null || sessionId.isEmpty()) {
+            sessionId = request.getParameter("sessionId");
+        }
+        if (sessionId == null || sessionId.isEmpty()) {
+            return null;
+        }
+        try {
+            String token = sessionId;
+            return sessionUsers.get(token, () -> Optional.ofNullable(sessionService.getSessionUserId(token))).orElse(null);
+        } catch (ExecutionException e) {
+            log.warn("Failed to resolve session user", e);
+            return null;
+        }
+    }
+
+    public String resolveClientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded == null || forwarded.isEmpty() || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        // 最右侧的地址由离本机最近的代理追加，左侧的地址可能由客户端伪造
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return remoteAddr;
+    }
+}
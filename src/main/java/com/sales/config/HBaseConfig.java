@@ -113,6 +113,7 @@ public class HBaseConfig {
         public static final TableName ORDER_HISTORY = TableName.valueOf("order_history");
         public static final TableName USER_PROFILE = TableName.valueOf("user_profile");
         public static final TableName SALES_DATA = TableName.valueOf("sales_data");
+        public static final TableName SALES_SERIES = TableName.valueOf("sales_series");
     }
 
     // 列族常量
@@ -129,6 +130,7 @@ public class HBaseConfig {
         public static final String CF_DAILY = "cf_daily";
         public static final String CF_HOURLY = "cf_hourly";
         public static final String CF_REGION = "cf_region";
+        public static final String CF_SERIES = "cf_series";
     }
 
     // 列名常量
@@ -171,6 +173,7 @@ public class HBaseConfig {
         public static final String ORDER_PAY_TIME = "pay_time";
         public static final String ORDER_DELIVER_TIME = "deliver_time";
         public static final String ORDER_COMPLETE_TIME = "complete_time";
+        public static final String ORDER_REFUND_TIME = "refund_time";
         
         // 收货信息
         public static final String ORDER_RECEIVER = "receiver";
@@ -213,5 +216,10 @@ public class HBaseConfig {
         public static final String SALES_SALE_AMOUNT = "sale_amount";
         public static final String SALES_REFUND_COUNT = "refund_count";
         public static final String SALES_REFUND_AMOUNT = "refund_amount";
+        public static final String SALES_AMOUNT_VERSION = "amount_version"; // 金额列乐观并发版本号
+        public static final String SALES_AMOUNT_DIGEST = "amount_digest";   // 订单金额分布草图（总计行）
+
+        // 分钟级销售序列
+        public static final String SERIES_VALUE = "v";
     }
 }
@@ -0,0 +1,52 @@
+package com.sales.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "sales.queue")
+public class QueueProperties {
+
+    private boolean enabled = true;
+
+    private String group = "sales-workers";
+
+    private int defaultConcurrency = 2;
+
+    /**
+     * 每个队列的消费线程数，键为队列名（如 queue:order:process）
+     */
+    private Map<String, Integer> concurrency = new HashMap<>();
+
+    private int batchSize = 50;
+
+    private long blockMillis = 2000;
+
+    /**
+     * 超过该投递次数仍失败的消息转入死信队列
+     */
+    private int maxDeliveries = 5;
+
+    /**
+     * 待确认消息空闲超过该时间后由其它消费者接管重试
+     */
+    private long reclaimIdleMillis = 60000;
+
+    /**
+     * 幂等标记（runOnce）保留秒数，需覆盖消息从首次投递到转入死信的全部重试时间
+     */
+    private long processedTtlSeconds = 86400;
+
+    /**
+     * 执行中标记（runOnce）的过期毫秒数：需长于单个任务的最长执行时间，并短于reclaimIdleMillis，
+     * 消费者在执行中退出后，消息被重新投递时标记已过期，任务可以重新执行
+     */
+    private long runningTtlMillis = 30000;
+
+    public int getConcurrency(String queue) {
+        return concurrency.getOrDefault(queue, defaultConcurrency);
+    }
+}
@@ -0,0 +1,59 @@
+package com.sales.config;
+
+import com.sales.annotation.RateLimit;
+import com.sales.exception.RateLimitExceededException;
+import com.sales.service.RateLimitService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 限流拦截器。
+ * USER维度按会话中的用户限流，没有有效会话时退化为按IP；用户和客户端IP的解析见{@link ClientIdentityResolver}。
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private ClientIdentityResolver clientIdentityResolver;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+
+        RateLimit[] policies = handlerMethod.getMethod().getAnnotationsByType(RateLimit.class);
+        for (RateLimit policy : policies) {
+            String policyKey = buildPolicyKey(policy, request);
+            long retryAfter = rateLimitService.tryAcquire(policyKey, policy.permitsPerSecond(), policy.burst());
+            if (retryAfter > 0) {
+                throw new RateLimitExceededException(policy.name(), retryAfter);
+            }
+        }
+        return true;
+    }
+
+    private String buildPolicyKey(RateLimit policy, HttpServletRequest request) {
+        switch (policy.dimension()) {
+            case USER:
+                String userId = clientIdentityResolver.resolveUserId(request);
+                return userId != null
+                        ? policy.name() + ":user:" + userId
+                        : policy.name() + ":ip:" + clientIdentityResolver.resolveClientIp(request);
+            case IP:
+                return policy.name() + ":ip:" + clientIdentityResolver.resolveClientIp(request);
+            case ENDPOINT:
+            default:
+                return policy.name() + ":all";
+        }
+    }
+}
@@ -6,13 +6,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.cache.CacheManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -23,6 +27,7 @@ import java.util.Map;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(QueueProperties.class)
 public class RedisConfig {
 
     @Bean
@@ -51,6 +56,31 @@ public class RedisConfig {
         return template;
     }
 
+    @Bean
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        // 与redisTemplate保持一致的序列化规则，保证阻塞/响应式两条读写路径可以互通
+        StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
+        Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer = jackson2JsonRedisSerializer();
+
+        RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
+                .<String, Object>newSerializationContext(stringRedisSerializer)
+                .key(stringRedisSerializer)
+                .value(jackson2JsonRedisSerializer)
+                .hashKey(stringRedisSerializer)
+                .hashValue(jackson2JsonRedisSerializer)
+                .build();
+
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        // 跨节点广播（如秒杀售罄标记）的订阅容器，监听器由各业务服务自行注册
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
@@ -98,14 +128,17 @@ public class RedisConfig {
         // 商品库存
         public static final String STOCK_PREFIX = "stock:";
         public static final String SECKILL_STOCK_PREFIX = "seckill_stock:";
+        public static final String SECKILL_BUYERS_PREFIX = "seckill_buyers:";
+        public static final String SECKILL_INFO_PREFIX = "seckill_info:";
+        public static final String SECKILL_RESULT_PREFIX = "seckill_result:";
+        public static final String SECKILL_SOLD_OUT_CHANNEL = "channel:seckill:sold_out";
         
         // 购物车
         public static final String CART_PREFIX = "cart:";
         
-        // 销售排行榜
-        public static final String RANK_DAILY_SALE = "rank:daily:sale";
-        public static final String RANK_WEEKLY_SALE = "rank:weekly:sale";
-        public static final String RANK_MONTHLY_SALE = "rank:monthly:sale";
+        // 销售排行榜：按商品哈希分片、按天分桶，周/月/N天窗口由同一分片的日榜ZUNIONSTORE合并后短期缓存
+        // 分片键形如 rank:sale:{s3}:day:20240101，同一分片的键使用相同的hash tag，不同分片分散到不同槽位
+        public static final String RANK_SALE_PREFIX = "rank:sale:";
         
         // 用户会话
         public static final String SESSION_PREFIX = "session:";
@@ -114,17 +147,38 @@ public class RedisConfig {
         
         // 实时销售看板
         public static final String DASHBOARD_PREFIX = "dashboard:";
-        public static final String STAT_ORDERS_TODAY = "stat:orders:today";
-        public static final String STAT_SALES_TODAY = "stat:sales:today";
-        public static final String HOT_PRODUCTS = "hot:products";
+        // 按天的订单数、销售额：stat:orders:20240101
+        public static final String STAT_ORDERS_PREFIX = "stat:orders:";
+        public static final String STAT_SALES_PREFIX = "stat:sales:";
+        public static final String HOT_PRODUCTS = "hot:products"; // 按商品哈希分片：hot:products:{h3}
+
+        // 分钟级时间序列：ts:orders:20240101 为一天1440个分钟槽的Hash，字段为当天的分钟序号0..1439
+        public static final String SERIES_PREFIX = "ts:";
+
+        // 去重计数（HyperLogLog）：按天分桶 uv:{active}:day:20240101，周/月窗口由同一指标的日键PFMERGE得到
+        public static final String UV_PREFIX = "uv:";
+
+        // 订单金额分布草图：digest:amount:20240101 为Hash，字段为节点ID，值为该节点当天的t-digest（Base64）
+        public static final String AMOUNT_DIGEST_PREFIX = "digest:amount:";
+
+        // 转化漏斗位图：funnel:{f}:view:20240101:P1001（商品）、funnel:{f}:view:20240101（全部商品），位偏移为用户序号
+        // 全部漏斗位图使用同一个hash tag，任意日期范围和商品集合可在一次脚本内BITOP
+        public static final String FUNNEL_PREFIX = "funnel:{f}:";
+        // 用户ID -> 连续序号
+        public static final String FUNNEL_USER_ORDINAL = "funnel:{uo}:map";
+        public static final String FUNNEL_USER_SEQ = "funnel:{uo}:seq";
 
         // 订单状态实时缓存
         public static final String ORDER_STATUS_PREFIX = "order:status:";
+        // 已结束日期订单的变更版本：snapshot:orders:version:20240101，该日订单状态每变化一次加一
+        public static final String SNAPSHOT_ORDER_VERSION_PREFIX = "snapshot:orders:version:";
         
         // 限流与计数器
         public static final String LIMIT_PREFIX = "limit:";
         public static final String VIEW_COUNT_PREFIX = "view_count:product:";
         public static final String LOCK_PREFIX = "lock:";
+        // ID生成器节点号租约：idgen:{w}:worker:17，值为持有节点ID
+        public static final String ID_WORKER_PREFIX = "idgen:{w}:worker:";
         
         // 商品信息缓存
         public static final String PRODUCT_CACHE_PREFIX = "product:cache:";
@@ -134,5 +188,10 @@ public class RedisConfig {
         public static final String QUEUE_ORDER_PROCESS = "queue:order:process";
         public static final String QUEUE_STOCK_DEDUCT = "queue:stock:deduct";
         public static final String QUEUE_STOCK_SYNC = "queue:stock:sync";
+        public static final String QUEUE_SECKILL_ORDER = "queue:seckill:order";
+        public static final String QUEUE_DEAD_LETTER_SUFFIX = ":dlq";
+        // 消息幂等标记：queue:order:process:done:{业务键}（已完成）、queue:order:process:running:{业务键}（执行中）
+        public static final String QUEUE_DONE_SUFFIX = ":done:";
+        public static final String QUEUE_RUNNING_SUFFIX = ":running:";
     }
 }
@@ -1,14 +1,19 @@
 package com.sales.controller;
 
 import com.sales.service.DemoDataService;
+import com.sales.service.OrderAmountDigestService;
+import com.sales.service.SalesRebuildService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Map;
 
 @Slf4j
@@ -19,6 +24,12 @@ public class AdminDemoController {
     @Autowired
     private DemoDataService demoDataService;
 
+    @Autowired
+    private SalesRebuildService salesRebuildService;
+
+    @Autowired
+    private OrderAmountDigestService orderAmountDigestService;
+
     @PostMapping("/init-demo")
     public ResponseEntity<?> initDemo() {
         try {
@@ -38,4 +49,44 @@ public class AdminDemoController {
             ));
         }
     }
+
+    /**
+     * 从订单历史重建销售数据（MapReduce本地模式，endDate不含，与rebuild-amount-digest、/api/export/sales一致；不传日期表示全部）
+     */
+    @PostMapping("/rebuild-sales-data")
+    public ResponseEntity<?> rebuildSalesData(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        try {
+            SalesRebuildService.RebuildResult result = salesRebuildService.rebuild(startDate, endDate);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Sales data rebuild failed", e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "error", "rebuild-sales-data failed",
+                    "message", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    /**
+     * 从订单历史重建已结束日期的订单金额分布草图（endDate不含）
+     */
+    @PostMapping("/rebuild-amount-digest")
+    public ResponseEntity<?> rebuildAmountDigest(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        try {
+            int days = orderAmountDigestService.rebuild(startDate, endDate);
+            return ResponseEntity.ok(Map.of("days", days));
+        } catch (Exception e) {
+            log.error("Amount digest rebuild failed: {} to {}", startDate, endDate, e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "error", "rebuild-amount-digest failed",
+                    "message", String.valueOf(e.getMessage())
+            ));
+        }
+    }
 }
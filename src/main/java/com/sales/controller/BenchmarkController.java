@@ -0,0 +1,105 @@
+package com.sales.controller;
+
+import com.sales.service.RankingShardBenchmarkService;
+import com.sales.service.SeckillLoadTestService;
+import com.sales.service.SketchBenchmarkService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测接口，只在启用bench配置（--spring.profiles.active=bench）时注册，
+ * 生产环境不加载这些接口及其依赖的压测服务。
+ */
+@Slf4j
+@RestController
+@Profile("bench")
+@RequestMapping("/api/admin")
+public class BenchmarkController {
+
+    @Autowired
+    private SeckillLoadTestService seckillLoadTestService;
+
+    @Autowired
+    private SketchBenchmarkService sketchBenchmarkService;
+
+    @Autowired
+    private RankingShardBenchmarkService rankingShardBenchmarkService;
+
+    /**
+     * 单SKU秒杀压测（会为抢购成功的请求创建真实订单，stock不宜过大）
+     */
+    @PostMapping("/seckill-load-test")
+    public ResponseEntity<?> seckillLoadTest(
+            @RequestParam(defaultValue = "P1001") String productId,
+            @RequestParam(defaultValue = "100") int stock,
+            @RequestParam(defaultValue = "50000") int requests,
+            @RequestParam(defaultValue = "20000") int users,
+            @RequestParam(defaultValue = "1000") int concurrency) {
+        try {
+            SeckillLoadTestService.LoadTestResult result =
+                    seckillLoadTestService.run(productId, stock, requests, users, concurrency);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Seckill load test failed: productId={}", productId, e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "error", "seckill-load-test failed",
+                    "message", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    /**
+     * 热门商品本地统计压测（纯内存，不访问Redis）
+     */
+    @PostMapping("/hot-sketch-benchmark")
+    public ResponseEntity<?> hotSketchBenchmark(
+            @RequestParam(defaultValue = "2000000") int updates,
+            @RequestParam(defaultValue = "10000") int products,
+            @RequestParam(defaultValue = "1.1") double skew,
+            @RequestParam(defaultValue = "8") int threads,
+            @RequestParam(defaultValue = "20") int windows,
+            @RequestParam(defaultValue = "100") int topK) {
+        try {
+            SketchBenchmarkService.BenchmarkResult result =
+                    sketchBenchmarkService.run(updates, products, skew, threads, windows, topK);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Hot sketch benchmark failed", e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "error", "hot-sketch-benchmark failed",
+                    "message", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    /**
+     * 排行榜分片写入压测（写入临时键，结束后删除）
+     */
+    @PostMapping("/ranking-shard-benchmark")
+    public ResponseEntity<?> rankingShardBenchmark(
+            @RequestParam(defaultValue = "1,2,4,8") List<Integer> shards,
+            @RequestParam(defaultValue = "200000") int writes,
+            @RequestParam(defaultValue = "10000") int products,
+            @RequestParam(defaultValue = "8") int threads) {
+        try {
+            List<RankingShardBenchmarkService.BenchmarkResult> results =
+                    rankingShardBenchmarkService.run(shards, writes, products, threads);
+            return ResponseEntity.ok(results);
+        } catch (Exception e) {
+            log.error("Ranking shard benchmark failed", e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "error", "ranking-shard-benchmark failed",
+                    "message", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+}
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -35,14 +36,14 @@ public class CartController {
      * 获取用户购物车
      */
     @GetMapping("/{userId}")
-    public ResponseEntity<List<CartItem>> getCart(@PathVariable String userId) {
-        try {
-            List<CartItem> cartItems = cartService.getCart(userId);
-            return ResponseEntity.ok(cartItems);
-        } catch (Exception e) {
-            log.error("Failed to get cart: userId={}", userId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<List<CartItem>>> getCart(@PathVariable String userId) {
+        return cartService.getCartReactive(userId)
+                .collectList()
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Failed to get cart: userId={}", userId, e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
     }
 
     /**
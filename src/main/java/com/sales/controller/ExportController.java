@@ -0,0 +1,119 @@
+package com.sales.controller;
+
+import com.sales.service.ExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    /**
+     * 单次导出的最大天数
+     */
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private ExportService exportService;
+
+    /**
+     * 流式导出销售数据（endDate不含），format=csv|ndjson；客户端支持gzip时压缩传输
+     */
+    @GetMapping("/sales")
+    public ResponseEntity<?> exportSalesData(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "true") boolean gzip,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ExportService.Format exportFormat = ExportService.Format.fromCode(format);
+        String error = validate(startDate, endDate.minusDays(1), exportFormat);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("message", error));
+        }
+
+        String filename = "sales_" + startDate + "_" + endDate + "." + exportFormat.getExtension();
+        return stream(filename, exportFormat, gzip && acceptsGzip(acceptEncoding),
+                out -> exportService.exportSalesData(startDate, endDate, exportFormat, out));
+    }
+
+    /**
+     * 流式导出订单（含endDate），可按用户和状态过滤，format=csv|ndjson；客户端支持gzip时压缩传输
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) Integer status,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "true") boolean gzip,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ExportService.Format exportFormat = ExportService.Format.fromCode(format);
+        String error = validate(startDate, endDate, exportFormat);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("message", error));
+        }
+
+        String filename = "orders_" + startDate + "_" + endDate + "." + exportFormat.getExtension();
+        return stream(filename, exportFormat, gzip && acceptsGzip(acceptEncoding),
+                out -> exportService.exportOrders(startDate, endDate, userId, status, exportFormat, out));
+    }
+
+    private String validate(LocalDate startDate, LocalDate lastDate, ExportService.Format format) {
+        if (format == null) {
+            return "Unsupported format, expected csv or ndjson";
+        }
+        long days = ChronoUnit.DAYS.between(startDate, lastDate) + 1;
+        if (days <= 0 || days > MAX_RANGE_DAYS) {
+            return "Date range must be between 1 and " + MAX_RANGE_DAYS + " days";
+        }
+        return null;
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String filename, ExportService.Format format, boolean gzip,
+                                                         StreamingResponseBody body) {
+        StreamingResponseBody responseBody = out -> {
+            try {
+                if (gzip) {
+                    GZIPOutputStream gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                    body.writeTo(gzipOut);
+                    gzipOut.finish();
+                } else {
+                    body.writeTo(out);
+                }
+            } catch (Exception e) {
+                // 响应头已发送，只能中断输出
+                log.error("Failed to export: {}", filename, e);
+                throw e;
+            }
+        };
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return builder.body(responseBody);
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+}
@@ -1,5 +1,6 @@
 package com.sales.controller;
 
+import com.sales.annotation.RateLimit;
 import com.sales.entity.Order;
 import com.sales.service.OrderService;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +22,8 @@ public class OrderController {
     /**
      * 创建订单
      */
+    @RateLimit(name = "order_create", dimension = RateLimit.Dimension.USER, permitsPerSecond = 1, burst = 5)
+    @RateLimit(name = "order_create", dimension = RateLimit.Dimension.ENDPOINT, permitsPerSecond = 500, burst = 1000)
     @PostMapping
     public ResponseEntity<Order> createOrder(@RequestBody Order order) {
         try {
@@ -177,6 +180,24 @@ public class OrderController {
         }
     }
 
+    /**
+     * 退款（已支付订单）
+     */
+    @PostMapping("/{orderId}/refund")
+    public ResponseEntity<Boolean> refundOrder(@PathVariable String orderId) {
+        try {
+            boolean success = orderService.refundOrder(orderId);
+            if (success) {
+                return ResponseEntity.ok(true);
+            } else {
+                return ResponseEntity.badRequest().body(false);
+            }
+        } catch (IOException e) {
+            log.error("Failed to refund order: {}", orderId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * 更新订单状态
      */
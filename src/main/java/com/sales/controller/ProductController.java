@@ -1,7 +1,11 @@
 package com.sales.controller;
 
+import com.sales.config.ClientIdentityResolver;
 import com.sales.entity.Product;
+import com.sales.service.FunnelService;
 import com.sales.service.ProductService;
+import com.sales.service.UniqueCountService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +22,15 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private UniqueCountService uniqueCountService;
+
+    @Autowired
+    private FunnelService funnelService;
+
+    @Autowired
+    private ClientIdentityResolver clientIdentityResolver;
+
     /**
      * 创建商品
      */
@@ -36,12 +49,19 @@ public class ProductController {
      * 获取商品详情
      */
     @GetMapping("/{productId}")
-    public ResponseEntity<Product> getProduct(@PathVariable String productId) {
+    public ResponseEntity<Product> getProduct(@PathVariable String productId, HttpServletRequest request) {
         try {
             Product product = productService.getProductById(productId);
             if (product != null) {
                 // 增加浏览量
                 productService.incrementViewCount(productId);
+                String userId = clientIdentityResolver.resolveUserId(request);
+                uniqueCountService.recordVisitor(userId != null
+                        ? "u:" + userId : "ip:" + clientIdentityResolver.resolveClientIp(request));
+                // 漏斗按用户统计，没有有效会话的匿名浏览不计入
+                if (userId != null) {
+                    funnelService.record(FunnelService.Stage.VIEW, userId, productId);
+                }
                 return ResponseEntity.ok(product);
             } else {
                 return ResponseEntity.notFound().build();
@@ -1,13 +1,18 @@
 package com.sales.controller;
 
 import com.sales.service.RankingService;
+import com.sales.service.RankingSnapshotService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
@@ -17,6 +22,9 @@ public class RankingController {
     @Autowired
     private RankingService rankingService;
 
+    @Autowired
+    private RankingSnapshotService rankingSnapshotService;
+
     /**
      * 增加商品销售分数
      */
@@ -69,156 +77,128 @@ public class RankingController {
      * 获取日销售排行榜
      */
     @GetMapping("/daily")
-    public ResponseEntity<Set<Object>> getDailySalesRanking(
+    public Mono<ResponseEntity<Set<Object>>> getDailySalesRanking(
             @RequestParam(defaultValue = "10") int limit) {
-        try {
-            Set<Object> ranking = rankingService.getDailySalesRanking(limit);
-            return ResponseEntity.ok(ranking);
-        } catch (Exception e) {
-            log.error("Failed to get daily sales ranking", e);
-            return ResponseEntity.internalServerError().build();
-        }
+        return rankingResponse("daily", limit);
     }
 
     /**
      * 获取周销售排行榜
      */
     @GetMapping("/weekly")
-    public ResponseEntity<Set<Object>> getWeeklySalesRanking(
+    public Mono<ResponseEntity<Set<Object>>> getWeeklySalesRanking(
             @RequestParam(defaultValue = "10") int limit) {
-        try {
-            Set<Object> ranking = rankingService.getWeeklySalesRanking(limit);
-            return ResponseEntity.ok(ranking);
-        } catch (Exception e) {
-            log.error("Failed to get weekly sales ranking", e);
-            return ResponseEntity.internalServerError().build();
-        }
+        return rankingResponse("weekly", limit);
     }
 
     /**
      * 获取月销售排行榜
      */
     @GetMapping("/monthly")
-    public ResponseEntity<Set<Object>> getMonthlySalesRanking(
+    public Mono<ResponseEntity<Set<Object>>> getMonthlySalesRanking(
             @RequestParam(defaultValue = "10") int limit) {
-        try {
-            Set<Object> ranking = rankingService.getMonthlySalesRanking(limit);
-            return ResponseEntity.ok(ranking);
-        } catch (Exception e) {
-            log.error("Failed to get monthly sales ranking", e);
-            return ResponseEntity.internalServerError().build();
-        }
+        return rankingResponse("monthly", limit);
+    }
+
+    /**
+     * 获取最近N天销售排行榜（含今天）
+     */
+    @GetMapping("/window/{days}")
+    public Mono<ResponseEntity<Set<Object>>> getWindowSalesRanking(
+            @PathVariable int days,
+            @RequestParam(defaultValue = "10") int limit) {
+        return rankingResponse(days + "d", limit);
     }
 
     /**
      * 获取商品在日排行榜中的排名
      */
     @GetMapping("/daily/{productId}/rank")
-    public ResponseEntity<Long> getDailyRank(@PathVariable String productId) {
-        try {
-            Long rank = rankingService.getDailyRank(productId);
-            return ResponseEntity.ok(rank);
-        } catch (Exception e) {
-            log.error("Failed to get daily rank: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Long>> getDailyRank(@PathVariable String productId) {
+        return rankResponse("daily", productId);
     }
 
     /**
      * 获取商品在周排行榜中的排名
      */
     @GetMapping("/weekly/{productId}/rank")
-    public ResponseEntity<Long> getWeeklyRank(@PathVariable String productId) {
-        try {
-            Long rank = rankingService.getWeeklyRank(productId);
-            return ResponseEntity.ok(rank);
-        } catch (Exception e) {
-            log.error("Failed to get weekly rank: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Long>> getWeeklyRank(@PathVariable String productId) {
+        return rankResponse("weekly", productId);
     }
 
     /**
      * 获取商品在月排行榜中的排名
      */
     @GetMapping("/monthly/{productId}/rank")
-    public ResponseEntity<Long> getMonthlyRank(@PathVariable String productId) {
-        try {
-            Long rank = rankingService.getMonthlyRank(productId);
-            return ResponseEntity.ok(rank);
-        } catch (Exception e) {
-            log.error("Failed to get monthly rank: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Long>> getMonthlyRank(@PathVariable String productId) {
+        return rankResponse("monthly", productId);
     }
 
     /**
      * 获取商品日销售分数
      */
     @GetMapping("/daily/{productId}/score")
-    public ResponseEntity<Double> getDailyScore(@PathVariable String productId) {
-        try {
-            Double score = rankingService.getDailyScore(productId);
-            return ResponseEntity.ok(score);
-        } catch (Exception e) {
-            log.error("Failed to get daily score: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Double>> getDailyScore(@PathVariable String productId) {
+        return scoreResponse("daily", productId);
     }
 
     /**
      * 获取商品周销售分数
      */
     @GetMapping("/weekly/{productId}/score")
-    public ResponseEntity<Double> getWeeklyScore(@PathVariable String productId) {
-        try {
-            Double score = rankingService.getWeeklyScore(productId);
-            return ResponseEntity.ok(score);
-        } catch (Exception e) {
-            log.error("Failed to get weekly score: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Double>> getWeeklyScore(@PathVariable String productId) {
+        return scoreResponse("weekly", productId);
     }
 
     /**
      * 获取商品月销售分数
      */
     @GetMapping("/monthly/{productId}/score")
-    public ResponseEntity<Double> getMonthlyScore(@PathVariable String productId) {
-        try {
-            Double score = rankingService.getMonthlyScore(productId);
-            return ResponseEntity.ok(score);
-        } catch (Exception e) {
-            log.error("Failed to get monthly score: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Double>> getMonthlyScore(@PathVariable String productId) {
+        return scoreResponse("monthly", productId);
     }
 
     /**
      * 获取热门商品排行榜
      */
     @GetMapping("/hot")
-    public ResponseEntity<Set<Object>> getHotProducts(
+    public Mono<ResponseEntity<Set<Object>>> getHotProducts(
+            @RequestParam(defaultValue = "10") int limit) {
+        return rankingResponse("hot", limit);
+    }
+
+    /**
+     * 获取热门商品排名
+     */
+    @GetMapping("/hot/{productId}/rank")
+    public Mono<ResponseEntity<Long>> getHotProductRank(@PathVariable String productId) {
+        return rankResponse("hot", productId);
+    }
+
+    /**
+     * 获取排行榜快照（含商品名称、价格、实时库存）
+     */
+    @GetMapping("/snapshot/{rankingType}")
+    public ResponseEntity<RankingSnapshotService.RankingSnapshot> getRankingSnapshot(
+            @PathVariable String rankingType,
             @RequestParam(defaultValue = "10") int limit) {
         try {
-            Set<Object> hotProducts = rankingService.getHotProducts(limit);
-            return ResponseEntity.ok(hotProducts);
+            return ResponseEntity.ok(rankingSnapshotService.getSnapshot(rankingType, limit));
         } catch (Exception e) {
-            log.error("Failed to get hot products", e);
+            log.error("Failed to get ranking snapshot: type={}", rankingType, e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
     /**
-     * 获取热门商品排名
+     * 获取热门商品本地统计信息
      */
-    @GetMapping("/hot/{productId}/rank")
-    public ResponseEntity<Long> getHotProductRank(@PathVariable String productId) {
+    @GetMapping("/hot/sketch/stats")
+    public ResponseEntity<Map<String, Object>> getHotProductSketchStats() {
         try {
-            Long rank = rankingService.getHotProductRank(productId);
-            return ResponseEntity.ok(rank);
+            return ResponseEntity.ok(rankingService.getHotProductSketchStats());
         } catch (Exception e) {
-            log.error("Failed to get hot product rank: productId={}", productId, e);
+            log.error("Failed to get hot product sketch stats", e);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -343,13 +323,42 @@ public class RankingController {
      * 获取排行榜统计信息
      */
     @GetMapping("/stats/{rankingType}")
-    public ResponseEntity<Long> getRankingSize(@PathVariable String rankingType) {
-        try {
-            long size = rankingService.getRankingSize(rankingType);
-            return ResponseEntity.ok(size);
-        } catch (Exception e) {
-            log.error("Failed to get ranking size: type={}", rankingType, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Long>> getRankingSize(@PathVariable String rankingType) {
+        return rankingService.getRankingSizeReactive(rankingType)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Failed to get ranking size: type={}", rankingType, e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
+    }
+
+    private Mono<ResponseEntity<Set<Object>>> rankingResponse(String rankingType, int limit) {
+        return rankingService.getRankingReactive(rankingType, limit)
+                .collect(Collectors.toCollection(LinkedHashSet::new))
+                .map(ranking -> ResponseEntity.<Set<Object>>ok(ranking))
+                .onErrorResume(e -> {
+                    log.error("Failed to get {} ranking", rankingType, e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
+    }
+
+    private Mono<ResponseEntity<Double>> scoreResponse(String rankingType, String productId) {
+        return rankingService.getScoreReactive(rankingType, productId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.ok().build())
+                .onErrorResume(e -> {
+                    log.error("Failed to get {} score: productId={}", rankingType, productId, e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
+    }
+
+    private Mono<ResponseEntity<Long>> rankResponse(String rankingType, String productId) {
+        return rankingService.getRankReactive(rankingType, productId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.ok().build())
+                .onErrorResume(e -> {
+                    log.error("Failed to get {} rank: productId={}", rankingType, productId, e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
     }
 }
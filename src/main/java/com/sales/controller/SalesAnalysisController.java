@@ -1,15 +1,22 @@
 package com.sales.controller;
 
+import com.sales.service.DashboardPublisherService;
+import com.sales.service.FunnelService;
+import com.sales.service.RealtimeSeriesService;
 import com.sales.service.SalesAnalysisService;
+import com.sales.service.SalesSeriesService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +28,15 @@ public class SalesAnalysisController {
     @Autowired
     private SalesAnalysisService salesAnalysisService;
 
+    @Autowired
+    private DashboardPublisherService dashboardPublisherService;
+
+    @Autowired
+    private RealtimeSeriesService realtimeSeriesService;
+
+    @Autowired
+    private SalesSeriesService salesSeriesService;
+
     /**
      * 获取实时销售看板数据
      */
@@ -35,6 +51,74 @@ public class SalesAnalysisController {
         }
     }
 
+    /**
+     * 订阅实时看板推送（SSE），事件名：summary、hotProducts、recentOrders、lowStockCount
+     */
+    @GetMapping(value = "/dashboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboardData() {
+        return dashboardPublisherService.subscribe();
+    }
+
+    /**
+     * 获取日活、支付用户、访客去重数（今日、近7天、近30天）
+     */
+    @GetMapping("/unique-counts")
+    public ResponseEntity<Map<String, Map<String, Long>>> getUniqueCounts() {
+        return ResponseEntity.ok(salesAnalysisService.getUniqueCounts());
+    }
+
+    /**
+     * 最近minutes分钟的分钟级序列（metric: orders/sales/items，sales单位为分）
+     */
+    @GetMapping("/realtime/series")
+    public ResponseEntity<?> getRealtimeSeries(
+            @RequestParam(defaultValue = "orders") String metric,
+            @RequestParam(defaultValue = "60") int minutes) {
+        try {
+            RealtimeSeriesService.Metric parsed = RealtimeSeriesService.Metric.fromCode(metric);
+            return ResponseEntity.ok(realtimeSeriesService.getLastMinutes(parsed, minutes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * [start, end)内的历史分钟级序列，按step分钟求和降采样（不传productId表示全部商品）
+     */
+    @GetMapping("/series")
+    public ResponseEntity<?> getSeries(
+            @RequestParam(defaultValue = "items") String metric,
+            @RequestParam(required = false) String productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "1") int step) {
+        try {
+            RealtimeSeriesService.Metric parsed = RealtimeSeriesService.Metric.fromCode(metric);
+            return ResponseEntity.ok(salesSeriesService.getSeries(parsed, productId, start, end, step));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取转化漏斗（含endDate，不传productIds表示全部商品）
+     */
+    @GetMapping("/funnel")
+    public ResponseEntity<?> getFunnel(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) List<String> productIds) {
+        try {
+            FunnelService.FunnelResult funnel = salesAnalysisService.getFunnel(startDate, endDate, productIds);
+            if (funnel == null) {
+                return ResponseEntity.internalServerError().build();
+            }
+            return ResponseEntity.ok(funnel);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * 获取日销售数据
      */
@@ -188,14 +272,22 @@ public class SalesAnalysisController {
     }
 
     /**
-     * 生成销售报表
+     * 生成销售报表（mode: exact 精确，approximate 抽样近似并返回置信区间，适合长区间）
      */
     @GetMapping("/report")
-    public ResponseEntity<SalesAnalysisService.SalesReport> generateSalesReport(
+    public ResponseEntity<?> generateSalesReport(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(defaultValue = SalesAnalysisService.REPORT_MODE_EXACT) String mode) {
         try {
-            SalesAnalysisService.SalesReport report = salesAnalysisService.generateSalesReport(startDate, endDate);
+            SalesAnalysisService.SalesReport report;
+            if (SalesAnalysisService.REPORT_MODE_EXACT.equalsIgnoreCase(mode)) {
+                report = salesAnalysisService.generateSalesReport(startDate, endDate);
+            } else if (SalesAnalysisService.REPORT_MODE_APPROXIMATE.equalsIgnoreCase(mode)) {
+                report = salesAnalysisService.generateApproximateSalesReport(startDate, endDate);
+            } else {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unknown mode: " + mode));
+            }
             return ResponseEntity.ok(report);
         } catch (IOException e) {
             log.error("Failed to generate sales report: {} to {}", startDate, endDate, e);
@@ -203,6 +295,50 @@ public class SalesAnalysisController {
         }
     }
 
+    /**
+     * 订单实付金额分位数（endDate不含，quantiles如0.5,0.9,0.99，不传时返回p50/p90/p99）
+     */
+    @GetMapping("/order-amount/distribution")
+    public ResponseEntity<?> getOrderAmountDistribution(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) List<Double> quantiles) {
+        try {
+            return ResponseEntity.ok(salesAnalysisService.getOrderAmountDistribution(startDate, endDate, quantiles));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Failed to get order amount distribution: {} to {}", startDate, endDate, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 按创建日期统计订单（endDate不含）
+     */
+    @GetMapping("/orders/stats")
+    public ResponseEntity<?> getOrderStats(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        if (!startDate.isBefore(endDate) || startDate.plusDays(366).isBefore(endDate)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "startDate must be before endDate, at most 366 days"));
+        }
+        try {
+            return ResponseEntity.ok(salesAnalysisService.getOrderStats(startDate, endDate));
+        } catch (IOException e) {
+            log.error("Failed to get order stats: {} to {}", startDate, endDate, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 获取列式缓存状态
+     */
+    @GetMapping("/olap/stats")
+    public ResponseEntity<Map<String, Object>> getOlapCacheStats() {
+        return ResponseEntity.ok(salesAnalysisService.getOlapCacheStats());
+    }
+
     /**
      * 记录销售数据（内部接口）
      */
@@ -0,0 +1,76 @@
+package com.sales.controller;
+
+import com.sales.annotation.RateLimit;
+import com.sales.service.SeckillService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/seckill")
+public class SeckillController {
+
+    @Autowired
+    private SeckillService seckillService;
+
+    /**
+     * 预热秒杀活动
+     */
+    @PostMapping("/warmup")
+    public ResponseEntity<Void> warmUp(
+            @RequestParam String seckillId,
+            @RequestParam String productId,
+            @RequestParam int stock,
+            @RequestParam(required = false) BigDecimal price,
+            @RequestParam(defaultValue = "3600") long expireSeconds) {
+        try {
+            seckillService.warmUp(seckillId, productId, stock, price, expireSeconds);
+            return ResponseEntity.ok().build();
+        } catch (Exception e) {
+            log.error("Failed to warm up seckill: seckillId={}, productId={}, stock={}", seckillId, productId, stock, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 抢购
+     */
+    @RateLimit(name = "seckill_purchase", dimension = RateLimit.Dimension.USER, permitsPerSecond = 2, burst = 5)
+    @PostMapping("/{seckillId}/{productId}/purchase")
+    public ResponseEntity<SeckillService.PurchaseResult> purchase(
+            @PathVariable String seckillId,
+            @PathVariable String productId,
+            @RequestParam String userId,
+            @RequestParam(defaultValue = "1") int quantity) {
+        if (quantity < 1 || quantity > seckillService.getMaxQuantityPerUser()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            SeckillService.PurchaseResult result = seckillService.purchase(seckillId, productId, userId, quantity);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Failed to purchase seckill: seckillId={}, productId={}, userId={}", seckillId, productId, userId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 查询抢购结果
+     */
+    @GetMapping("/{seckillId}/{productId}/result")
+    public ResponseEntity<SeckillService.PurchaseResult> getResult(
+            @PathVariable String seckillId,
+            @PathVariable String productId,
+            @RequestParam String userId) {
+        try {
+            return ResponseEntity.ok(seckillService.getResult(seckillId, productId, userId));
+        } catch (Exception e) {
+            log.error("Failed to get seckill result: seckillId={}, productId={}, userId={}", seckillId, productId, userId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.sales.controller;
 
+import com.sales.annotation.RateLimit;
 import com.sales.service.StockService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -36,14 +38,13 @@ public class StockController {
      * 获取商品库存
      */
     @GetMapping("/{productId}")
-    public ResponseEntity<Integer> getStock(@PathVariable String productId) {
-        try {
-            int stock = stockService.getStock(productId);
-            return ResponseEntity.ok(stock);
-        } catch (Exception e) {
-            log.error("Failed to get stock: productId={}", productId, e);
-            return ResponseEntity.internalServerError().build();
-        }
+    public Mono<ResponseEntity<Integer>> getStock(@PathVariable String productId) {
+        return stockService.getStockReactive(productId)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.error("Failed to get stock: productId={}", productId, e);
+                    return Mono.just(ResponseEntity.internalServerError().build());
+                });
     }
 
     /**
@@ -135,6 +136,8 @@ public class StockController {
     /**
      * 扣减秒杀库存
      */
+    @RateLimit(name = "seckill_deduct", dimension = RateLimit.Dimension.USER, permitsPerSecond = 2, burst = 5)
+    @RateLimit(name = "seckill_deduct", dimension = RateLimit.Dimension.ENDPOINT, permitsPerSecond = 2000, burst = 4000)
     @PostMapping("/seckill/{seckillId}/{productId}/deduct")
     public ResponseEntity<Boolean> deductSeckillStock(
             @PathVariable String seckillId,
@@ -1,5 +1,6 @@
 package com.sales.controller;
 
+import com.sales.annotation.RateLimit;
 import com.sales.entity.User;
 import com.sales.service.SessionService;
 import com.sales.service.UserService;
@@ -7,6 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.List;
@@ -88,6 +90,7 @@ public class UserController {
     /**
      * 用户登录
      */
+    @RateLimit(name = "user_login", dimension = RateLimit.Dimension.IP, permitsPerSecond = 0.2, burst = 10)
     @PostMapping("/login")
     public ResponseEntity<String> login(
             @RequestParam String username,
@@ -117,9 +120,9 @@ public class UserController {
      * 验证会话是否有效（Redis）
      */
     @GetMapping("/session/validate")
-    public ResponseEntity<Boolean> validateSession(@RequestParam String sessionId) {
-        boolean valid = sessionService.validateSession(sessionId);
-        return ResponseEntity.ok(valid);
+    public Mono<ResponseEntity<Boolean>> validateSession(@RequestParam String sessionId) {
+        return sessionService.validateSessionReactive(sessionId)
+                .map(ResponseEntity::ok);
     }
 
     /**
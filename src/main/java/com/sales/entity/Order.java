@@ -31,6 +31,7 @@ public class Order implements Serializable {
     private LocalDateTime payTime;    // 支付时间
     private LocalDateTime deliverTime;// 发货时间
     private LocalDateTime completeTime;// 完成时间
+    private LocalDateTime refundTime; // 退款时间
     
     // 收货信息
     private String receiver;          // 收货人
@@ -52,7 +53,8 @@ public class Order implements Serializable {
         PENDING_DELIVERY(2, "待发货"),
         SHIPPED(3, "已发货"),
         COMPLETED(4, "已完成"),
-        CANCELLED(5, "已取消");
+        CANCELLED(5, "已取消"),
+        REFUNDED(6, "已退款");
         
         private final Integer code;
         private final String desc;
@@ -128,6 +130,13 @@ public class Order implements Serializable {
         return Status.PENDING_PAYMENT.getCode().equals(status);
     }
     
+    // 检查是否可以退款（已支付）
+    public boolean canRefund() {
+        return Status.PENDING_DELIVERY.getCode().equals(status)
+                || Status.SHIPPED.getCode().equals(status)
+                || Status.COMPLETED.getCode().equals(status);
+    }
+    
     // 检查是否可以支付
     public boolean canPay() {
         return Status.PENDING_PAYMENT.getCode().equals(status);
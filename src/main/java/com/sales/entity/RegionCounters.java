@@ -0,0 +1,191 @@
+package com.sales.entity;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一行销售数据的区域销量和销售额，以区域编码和基本类型数组存放（金额以分为单位）。
+ * 区域名称全局驻留为int编码，同一区域在所有行中只有一个String实例。
+ */
+public class RegionCounters implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int nameCount;
+
+    private int size;
+    private transient int[] codes;     // 编码只在本进程内有效，序列化时写区域名称
+    private long[] counts;
+    private long[] amountCents;
+
+    public RegionCounters() {
+        this(4);
+    }
+
+    public RegionCounters(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.codes = new int[capacity];
+        this.counts = new long[capacity];
+        this.amountCents = new long[capacity];
+    }
+
+    /**
+     * 区域名称的全局编码
+     */
+    public static int intern(String region) {
+        Integer code = CODES.get(region);
+        if (code != null) {
+            return code;
+        }
+        synchronized (RegionCounters.class) {
+            code = CODES.get(region);
+            if (code != null) {
+                return code;
+            }
+            String[] current = names;
+            if (nameCount == current.length) {
+                current = Arrays.copyOf(current, nameCount * 2);
+            }
+            current[nameCount] = region;
+            names = current;
+            CODES.put(region, nameCount);
+            return nameCount++;
+        }
+    }
+
+    public static String nameOf(int code) {
+        return names[code];
+    }
+
+    /**
+     * 累加区域的销量和销售额，区域不存在时追加
+     */
+    public void add(String region, long count, long cents) {
+        addCode(intern(region), count, cents);
+    }
+
+    public void addCode(int code, long count, long cents) {
+        for (int i = 0; i < size; i++) {
+            if (codes[i] == code) {
+                counts[i] += count;
+                amountCents[i] += cents;
+                return;
+            }
+        }
+        if (size == codes.length) {
+            int capacity = size * 2;
+            codes = Arrays.copyOf(codes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            amountCents = Arrays.copyOf(amountCents, capacity);
+        }
+        codes[size] = code;
+        counts[size] = count;
+        amountCents[size] = cents;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int code(int i) {
+        return codes[i];
+    }
+
+    public String name(int i) {
+        return names[codes[i]];
+    }
+
+    public long count(int i) {
+        return counts[i];
+    }
+
+    public long amountCents(int i) {
+        return amountCents[i];
+    }
+
+    public Map<String, Long> toCountMap() {
+        Map<String, Long> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(name(i), counts[i]);
+        }
+        return map;
+    }
+
+    public Map<String, BigDecimal> toAmountMap() {
+        Map<String, BigDecimal> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(name(i), BigDecimal.valueOf(amountCents[i], 2));
+        }
+        return map;
+    }
+
+    /**
+     * 由区域Map构建，两个Map的区域取并集
+     */
+    public static RegionCounters fromMaps(Map<String, Long> regionSales, Map<String, BigDecimal> regionAmounts) {
+        int capacity = (regionSales != null ? regionSales.size() : 0) + (regionAmounts != null ? regionAmounts.size() : 0);
+        RegionCounters regions = new RegionCounters(capacity);
+        if (regionSales != null) {
+            regionSales.forEach((region, count) -> regions.add(region, count != null ? count : 0, 0));
+        }
+        if (regionAmounts != null) {
+            regionAmounts.forEach((region, amount) -> regions.add(region, 0, amount != null
+                    ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0));
+        }
+        return regions;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(name(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        codes = new int[counts.length];
+        for (int i = 0; i < size; i++) {
+            codes[i] = intern(in.readUTF());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RegionCounters other)) {
+            return false;
+        }
+        return toCountMap().equals(other.toCountMap()) && toAmountMap().equals(other.toAmountMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return toCountMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(name(i)).append('=').append(counts[i]).append('/').append(BigDecimal.valueOf(amountCents[i], 2));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.sales.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.Map;
 
 @Data
@@ -30,11 +32,15 @@ public class SalesData implements Serializable {
     private BigDecimal refundAmount;   // 退货金额
     
     // 小时级数据 (hour_00 到 hour_23)
-    private Map<Integer, Long> hourlySales; // 小时销量
+    private Map<Integer, Long> hourlySales; // 小时销量（未设置时由hourly生成）
+    @JsonIgnore
+    private long[] hourly;                  // 小时销量，下标为小时，长度24
     
     // 区域销售数据
-    private Map<String, Long> regionSales;  // 区域销量 {region: count}
-    private Map<String, BigDecimal> regionAmounts; // 区域销售额 {region: amount}
+    private Map<String, Long> regionSales;  // 区域销量 {region: count}（未设置时由regions生成）
+    private Map<String, BigDecimal> regionAmounts; // 区域销售额 {region: amount}（未设置时由regions生成）
+    @JsonIgnore
+    private RegionCounters regions;         // 区域销量和销售额（区域编码 + 基本类型数组）
     
     // 统计字段
     private Long totalViewCount;       // 总浏览数
@@ -82,39 +88,100 @@ public class SalesData implements Serializable {
                 .multiply(new BigDecimal("100"));
     }
     
+    // 获取小时销量数组，只有Map时由Map生成
+    public long[] getHourly() {
+        if (hourly == null && hourlySales != null) {
+            long[] hours = new long[24];
+            hourlySales.forEach((hour, count) -> {
+                if (hour != null && hour >= 0 && hour < 24 && count != null) {
+                    hours[hour] = count;
+                }
+            });
+            hourly = hours;
+        }
+        return hourly;
+    }
+    
+    // 获取小时销量Map，只有数组时按非零小时生成
+    public Map<Integer, Long> getHourlySales() {
+        if (hourlySales == null && hourly != null) {
+            Map<Integer, Long> hours = new HashMap<>();
+            for (int h = 0; h < hourly.length; h++) {
+                if (hourly[h] > 0) {
+                    hours.put(h, hourly[h]);
+                }
+            }
+            hourlySales = hours;
+        }
+        return hourlySales;
+    }
+    
+    // 获取区域数据，只有Map时由Map生成
+    public RegionCounters getRegions() {
+        if (regions == null && (regionSales != null || regionAmounts != null)) {
+            regions = RegionCounters.fromMaps(regionSales, regionAmounts);
+        }
+        return regions;
+    }
+    
+    public Map<String, Long> getRegionSales() {
+        if (regionSales == null && regions != null) {
+            regionSales = regions.toCountMap();
+        }
+        return regionSales;
+    }
+    
+    public Map<String, BigDecimal> getRegionAmounts() {
+        if (regionAmounts == null && regions != null) {
+            regionAmounts = regions.toAmountMap();
+        }
+        return regionAmounts;
+    }
+    
     // 获取最畅销的小时
     public Integer getBestHour() {
-        if (hourlySales == null || hourlySales.isEmpty()) {
+        long[] hours = getHourly();
+        if (hours == null) {
             return null;
         }
         
-        return hourlySales.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
+        Integer best = null;
+        for (int h = 0; h < hours.length; h++) {
+            if (hours[h] > 0 && (best == null || hours[h] > hours[best])) {
+                best = h;
+            }
+        }
+        return best;
     }
     
     // 获取最畅销的区域
     public String getBestRegion() {
-        if (regionSales == null || regionSales.isEmpty()) {
+        RegionCounters counters = getRegions();
+        if (counters == null || counters.size() == 0) {
             return null;
         }
         
-        return regionSales.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
+        int best = 0;
+        for (int i = 1; i < counters.size(); i++) {
+            if (counters.count(i) > counters.count(best)) {
+                best = i;
+            }
+        }
+        return counters.name(best);
     }
     
     // 获取总销量
     public Long getTotalSales() {
-        if (hourlySales == null) {
+        long[] hours = getHourly();
+        if (hours == null) {
             return getNetCount();
         }
         
-        return hourlySales.values().stream()
-                .mapToLong(Long::longValue)
-                .sum();
+        long total = 0;
+        for (long count : hours) {
+            total += count;
+        }
+        return total;
     }
     
     // 销售数据类型枚举
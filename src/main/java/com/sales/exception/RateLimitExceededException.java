@@ -0,0 +1,15 @@
+package com.sales.exception;
+
+public class RateLimitExceededException extends SalesSystemException {
+    
+    private final long retryAfterMillis;
+    
+    public RateLimitExceededException(String policy, long retryAfterMillis) {
+        super("RATE_LIMITED", "Too many requests: " + policy);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
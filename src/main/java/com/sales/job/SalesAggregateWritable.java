@@ -0,0 +1,154 @@
+package com.sales.job;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * sales_data一行的部分聚合：销量、销售额（分）、退货数、退货金额（分）、24小时销量、各区域销量和销售额（分）。
+ * 已有行以零值聚合的形式参与归并，保证重建后没有订单的行和区域被写为0。
+ */
+public class SalesAggregateWritable implements Writable {
+
+    public static final int HOURS = 24;
+
+    private String productId = "";
+    private String categoryId = "";
+    private long saleCount;
+    private long saleAmountCents;
+    private long refundCount;
+    private long refundAmountCents;
+    private final long[] hourlySales = new long[HOURS];
+    /**
+     * 区域 -> {销量, 销售额（分）}
+     */
+    private final Map<String, long[]> regions = new TreeMap<>();
+
+    public void reset(String productId, String categoryId) {
+        this.productId = productId != null ? productId : "";
+        this.categoryId = categoryId != null ? categoryId : "";
+        saleCount = 0;
+        saleAmountCents = 0;
+        refundCount = 0;
+        refundAmountCents = 0;
+        for (int i = 0; i < HOURS; i++) {
+            hourlySales[i] = 0;
+        }
+        regions.clear();
+    }
+
+    public void addSale(int hour, String region, long quantity, long amountCents) {
+        saleCount += quantity;
+        saleAmountCents += amountCents;
+        hourlySales[hour] += quantity;
+        long[] regionTotals = regions.computeIfAbsent(region, r -> new long[2]);
+        regionTotals[0] += quantity;
+        regionTotals[1] += amountCents;
+    }
+
+    public void addRefund(long quantity, long amountCents) {
+        refundCount += quantity;
+        refundAmountCents += amountCents;
+    }
+
+    /**
+     * 登记区域（已有行中的区域列），没有销量时重建写为0
+     */
+    public void addRegion(String region) {
+        regions.computeIfAbsent(region, r -> new long[2]);
+    }
+
+    public void merge(SalesAggregateWritable other) {
+        if (productId.isEmpty()) {
+            productId = other.productId;
+        }
+        if (categoryId.isEmpty()) {
+            categoryId = other.categoryId;
+        }
+        saleCount += other.saleCount;
+        saleAmountCents += other.saleAmountCents;
+        refundCount += other.refundCount;
+        refundAmountCents += other.refundAmountCents;
+        for (int i = 0; i < HOURS; i++) {
+            hourlySales[i] += other.hourlySales[i];
+        }
+        for (Map.Entry<String, long[]> entry : other.regions.entrySet()) {
+            long[] regionTotals = regions.computeIfAbsent(entry.getKey(), r -> new long[2]);
+            regionTotals[0] += entry.getValue()[0];
+            regionTotals[1] += entry.getValue()[1];
+        }
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public long getSaleCount() {
+        return saleCount;
+    }
+
+    public long getSaleAmountCents() {
+        return saleAmountCents;
+    }
+
+    public long getRefundCount() {
+        return refundCount;
+    }
+
+    public long getRefundAmountCents() {
+        return refundAmountCents;
+    }
+
+    public long[] getHourlySales() {
+        return hourlySales;
+    }
+
+    public Map<String, long[]> getRegions() {
+        return regions;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeString(out, productId);
+        WritableUtils.writeString(out, categoryId);
+        WritableUtils.writeVLong(out, saleCount);
+        WritableUtils.writeVLong(out, saleAmountCents);
+        WritableUtils.writeVLong(out, refundCount);
+        WritableUtils.writeVLong(out, refundAmountCents);
+        for (long value : hourlySales) {
+            WritableUtils.writeVLong(out, value);
+        }
+        WritableUtils.writeVInt(out, regions.size());
+        for (Map.Entry<String, long[]> entry : regions.entrySet()) {
+            WritableUtils.writeString(out, entry.getKey());
+            WritableUtils.writeVLong(out, entry.getValue()[0]);
+            WritableUtils.writeVLong(out, entry.getValue()[1]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        reset(WritableUtils.readString(in), WritableUtils.readString(in));
+        saleCount = WritableUtils.readVLong(in);
+        saleAmountCents = WritableUtils.readVLong(in);
+        refundCount = WritableUtils.readVLong(in);
+        refundAmountCents = WritableUtils.readVLong(in);
+        for (int i = 0; i < HOURS; i++) {
+            hourlySales[i] = WritableUtils.readVLong(in);
+        }
+        int regionCount = WritableUtils.readVInt(in);
+        for (int i = 0; i < regionCount; i++) {
+            String region = WritableUtils.readString(in);
+            regions.put(region, new long[]{WritableUtils.readVLong(in), WritableUtils.readVLong(in)});
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.sales.job;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * map端合并同一行键的部分聚合，减少shuffle数据量
+ */
+public class SalesRebuildCombiner extends Reducer<Text, SalesAggregateWritable, Text, SalesAggregateWritable> {
+
+    private final SalesAggregateWritable merged = new SalesAggregateWritable();
+
+    @Override
+    protected void reduce(Text key, Iterable<SalesAggregateWritable> values, Context context)
+            throws IOException, InterruptedException {
+        merged.reset(null, null);
+        for (SalesAggregateWritable value : values) {
+            merged.merge(value);
+        }
+        context.write(key, merged);
+    }
+}
@@ -0,0 +1,278 @@
+package com.sales.job;
+
+import com.sales.config.HBaseConfig;
+import com.sales.entity.Order;
+import com.sales.entity.SalesData;
+import com.sales.utils.JsonUtils;
+import com.sales.utils.RegionUtils;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.apache.hadoop.hbase.mapreduce.TableSplit;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * 输入为order_history和sales_data两张表的region切分。
+ * 订单行：已支付订单的每个商品明细按支付日期输出商品行、品类行、汇总行三个部分聚合；
+ * 已退款订单（含旧数据中有支付时间的已取消订单）同样按支付日期计入销量，并按退款日期计入退货数和退货金额；
+ * sales_data已有行：输出零值聚合（带上已有区域），保证没有订单的行也被重写。
+ */
+public class SalesRebuildMapper extends TableMapper<Text, SalesAggregateWritable> {
+
+    /**
+     * 重建的日期范围（含，ISO日期），未设置表示全部
+     */
+    public static final String CONF_START_DATE = "sales.rebuild.start-date";
+    public static final String CONF_END_DATE = "sales.rebuild.end-date";
+
+    public enum Counter {
+        ORDERS, PAID_ORDERS, REFUNDED_ORDERS, ITEMS, EXISTING_ROWS, UNKNOWN_CATEGORY
+    }
+
+    private static final Set<Integer> PAID_STATUSES = Set.of(
+            Order.Status.PENDING_DELIVERY.getCode(),
+            Order.Status.SHIPPED.getCode(),
+            Order.Status.COMPLETED.getCode());
+
+    private static final DateTimeFormatter LEGACY_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final byte[] CF_BASE = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_BASE);
+    private static final byte[] CF_ADDRESS = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_ADDRESS);
+    private static final byte[] CF_ITEMS = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_ITEMS);
+    private static final byte[] CF_DAILY = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_DAILY);
+    private static final byte[] CF_REGION = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_REGION);
+
+    private final Text outKey = new Text();
+    private final SalesAggregateWritable outValue = new SalesAggregateWritable();
+
+    private boolean salesDataInput;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Connection connection;
+    private Table productTable;
+
+    /**
+     * 商品ID -> 品类，每个map任务内缓存
+     */
+    private final Map<String, String> categories = new HashMap<>();
+
+    @Override
+    protected void setup(Context context) throws IOException {
+        TableSplit split = (TableSplit) context.getInputSplit();
+        salesDataInput = HBaseConfig.TableNames.SALES_DATA.equals(split.getTable());
+
+        String start = context.getConfiguration().get(CONF_START_DATE);
+        String end = context.getConfiguration().get(CONF_END_DATE);
+        startDate = start != null ? LocalDate.parse(start) : null;
+        endDate = end != null ? LocalDate.parse(end) : null;
+
+        if (!salesDataInput) {
+            connection = ConnectionFactory.createConnection(context.getConfiguration());
+            productTable = connection.getTable(HBaseConfig.TableNames.PRODUCT_INFO);
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException {
+        if (productTable != null) {
+            productTable.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    protected void map(ImmutableBytesWritable row, Result result, Context context) throws IOException, InterruptedException {
+        if (salesDataInput) {
+            mapExistingRow(result, context);
+        } else {
+            mapOrder(result, context);
+        }
+    }
+
+    private void mapExistingRow(Result result, Context context) throws IOException, InterruptedException {
+        context.getCounter(Counter.EXISTING_ROWS).increment(1);
+        outKey.set(result.getRow());
+        outValue.reset(getString(result, CF_DAILY, HBaseConfig.Columns.SALES_PRODUCT_ID),
+                getString(result, CF_DAILY, HBaseConfig.Columns.SALES_CATEGORY_ID));
+
+        NavigableMap<byte[], byte[]> regionColumns = result.getFamilyMap(CF_REGION);
+        if (regionColumns != null) {
+            for (byte[] qualifier : regionColumns.keySet()) {
+                String name = Bytes.toString(qualifier);
+                if (name.startsWith("region_amount_")) {
+                    outValue.addRegion(name.substring(14));
+                } else if (name.startsWith("region_")) {
+                    outValue.addRegion(name.substring(7));
+                }
+            }
+        }
+        context.write(outKey, outValue);
+    }
+
+    private void mapOrder(Result result, Context context) throws IOException, InterruptedException {
+        context.getCounter(Counter.ORDERS).increment(1);
+
+        Cell statusCell = result.getColumnLatestCell(CF_BASE, Bytes.toBytes(HBaseConfig.Columns.ORDER_STATUS));
+        if (statusCell == null) {
+            return;
+        }
+        int status = Bytes.toInt(statusCell.getValueArray(), statusCell.getValueOffset());
+        LocalDateTime paidAt = parseDateTime(getString(result, CF_BASE, HBaseConfig.Columns.ORDER_PAY_TIME));
+        // 旧版本退款把订单置为已取消，有支付时间的已取消订单按先售后退处理
+        boolean refunded = Order.Status.REFUNDED.getCode().equals(status)
+                || (Order.Status.CANCELLED.getCode().equals(status) && paidAt != null);
+        if (!refunded && !PAID_STATUSES.contains(status)) {
+            return;
+        }
+        if (paidAt == null) {
+            paidAt = parseDateTime(getString(result, CF_BASE, HBaseConfig.Columns.ORDER_CREATE_TIME));
+        }
+        if (paidAt == null) {
+            return;
+        }
+        LocalDateTime refundedAt = null;
+        if (refunded) {
+            refundedAt = parseDateTime(getString(result, CF_BASE, HBaseConfig.Columns.ORDER_REFUND_TIME));
+            if (refundedAt == null) {
+                // 没有退款时间列的旧数据：取状态最后一次写入的时间
+                refundedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(statusCell.getTimestamp()), ZoneId.systemDefault());
+            }
+        }
+        LocalDate date = paidAt.toLocalDate();
+        boolean sold = inRange(date);
+        LocalDate refundDate = refundedAt != null ? refundedAt.toLocalDate() : null;
+        boolean returned = refundDate != null && inRange(refundDate);
+        if (!sold && !returned) {
+            return;
+        }
+        if (sold) {
+            context.getCounter(Counter.PAID_ORDERS).increment(1);
+        }
+        if (returned) {
+            context.getCounter(Counter.REFUNDED_ORDERS).increment(1);
+        }
+
+        int hour = paidAt.getHour();
+        String region = RegionUtils.fromAddress(getString(result, CF_ADDRESS, HBaseConfig.Columns.ORDER_ADDRESS));
+
+        for (Cell cell : result.rawCells()) {
+            if (!CellUtil.matchingFamily(cell, CF_ITEMS)) {
+                continue;
+            }
+            Order.OrderItem item = JsonUtils.fromJson(Bytes.toString(CellUtil.cloneValue(cell)), Order.OrderItem.class);
+            if (item == null || item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                continue;
+            }
+            context.getCounter(Counter.ITEMS).increment(1);
+
+            long quantity = item.getQuantity();
+            BigDecimal amount = item.getAmount();
+            if (amount == null && item.getPrice() != null) {
+                amount = item.getPrice().multiply(BigDecimal.valueOf(quantity));
+            }
+            long amountCents = amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0;
+            String categoryId = getCategory(item.getProductId());
+            if (categoryId == null) {
+                context.getCounter(Counter.UNKNOWN_CATEGORY).increment(1);
+            }
+
+            if (sold) {
+                emit(context, SalesData.generateRowKey(date, item.getProductId(), categoryId),
+                        item.getProductId(), categoryId, hour, region, quantity, amountCents);
+                if (categoryId != null) {
+                    emit(context, SalesData.generateRowKey(date, null, categoryId),
+                            null, categoryId, hour, region, quantity, amountCents);
+                }
+                emit(context, SalesData.generateRowKey(date, null, null),
+                        null, null, hour, region, quantity, amountCents);
+            }
+            if (returned) {
+                emitRefund(context, SalesData.generateRowKey(refundDate, item.getProductId(), categoryId),
+                        item.getProductId(), categoryId, quantity, amountCents);
+                if (categoryId != null) {
+                    emitRefund(context, SalesData.generateRowKey(refundDate, null, categoryId),
+                            null, categoryId, quantity, amountCents);
+                }
+                emitRefund(context, SalesData.generateRowKey(refundDate, null, null),
+                        null, null, quantity, amountCents);
+            }
+        }
+    }
+
+    private boolean inRange(LocalDate date) {
+        return (startDate == null || !date.isBefore(startDate)) && (endDate == null || !date.isAfter(endDate));
+    }
+
+    private void emit(Context context, String rowKey, String productId, String categoryId,
+                      int hour, String region, long quantity, long amountCents) throws IOException, InterruptedException {
+        outKey.set(rowKey);
+        outValue.reset(productId, categoryId);
+        outValue.addSale(hour, region, quantity, amountCents);
+        context.write(outKey, outValue);
+    }
+
+    private void emitRefund(Context context, String rowKey, String productId, String categoryId,
+                            long quantity, long amountCents) throws IOException, InterruptedException {
+        outKey.set(rowKey);
+        outValue.reset(productId, categoryId);
+        outValue.addRefund(quantity, amountCents);
+        context.write(outKey, outValue);
+    }
+
+    private String getCategory(String productId) throws IOException {
+        if (categories.containsKey(productId)) {
+            return categories.get(productId);
+        }
+        Result product = productTable.get(new Get(Bytes.toBytes(productId))
+                .addColumn(CF_BASE, Bytes.toBytes(HBaseConfig.Columns.PRODUCT_CATEGORY)));
+        String category = getString(product, CF_BASE, HBaseConfig.Columns.PRODUCT_CATEGORY);
+        if (category != null && category.isEmpty()) {
+            category = null;
+        }
+        categories.put(productId, category);
+        return category;
+    }
+
+    private static String getString(Result result, byte[] family, String qualifier) {
+        byte[] bytes = result.getValue(family, Bytes.toBytes(qualifier));
+        return bytes != null ? Bytes.toString(bytes) : null;
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        } catch (DateTimeParseException ignored) {
+            try {
+                return LocalDateTime.parse(value, LEGACY_DATE_TIME);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
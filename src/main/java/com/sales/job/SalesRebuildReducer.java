@@ -0,0 +1,69 @@
+package com.sales.job;
+
+import com.sales.config.HBaseConfig;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableReducer;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 合并同一行键的聚合并整行写回sales_data：销量、销售额、退货数、退货金额、全部24个小时列、全部区域列。
+ */
+public class SalesRebuildReducer extends TableReducer<Text, SalesAggregateWritable, ImmutableBytesWritable> {
+
+    public enum Counter {
+        ROWS_WRITTEN
+    }
+
+    private static final byte[] CF_DAILY = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_DAILY);
+    private static final byte[] CF_HOURLY = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_HOURLY);
+    private static final byte[] CF_REGION = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_REGION);
+
+    private final SalesAggregateWritable merged = new SalesAggregateWritable();
+
+    @Override
+    protected void reduce(Text key, Iterable<SalesAggregateWritable> values, Context context)
+            throws IOException, InterruptedException {
+        merged.reset(null, null);
+        for (SalesAggregateWritable value : values) {
+            merged.merge(value);
+        }
+
+        String rowKey = key.toString();
+        byte[] row = Bytes.toBytes(rowKey);
+        Put put = new Put(row);
+
+        // 行键以yyyy-MM-dd开头
+        put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_DATE), Bytes.toBytes(rowKey.substring(0, 10)));
+        if (!merged.getProductId().isEmpty()) {
+            put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_PRODUCT_ID), Bytes.toBytes(merged.getProductId()));
+        }
+        if (!merged.getCategoryId().isEmpty()) {
+            put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_CATEGORY_ID), Bytes.toBytes(merged.getCategoryId()));
+        }
+        put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_SALE_COUNT), Bytes.toBytes(merged.getSaleCount()));
+        put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_SALE_AMOUNT),
+                Bytes.toBytes(merged.getSaleAmountCents() / 100.0));
+        put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_REFUND_COUNT), Bytes.toBytes(merged.getRefundCount()));
+        put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_REFUND_AMOUNT),
+                Bytes.toBytes(merged.getRefundAmountCents() / 100.0));
+
+        long[] hourlySales = merged.getHourlySales();
+        for (int hour = 0; hour < SalesAggregateWritable.HOURS; hour++) {
+            put.addColumn(CF_HOURLY, Bytes.toBytes("hour_" + String.format("%02d", hour)), Bytes.toBytes(hourlySales[hour]));
+        }
+
+        for (Map.Entry<String, long[]> region : merged.getRegions().entrySet()) {
+            put.addColumn(CF_REGION, Bytes.toBytes("region_" + region.getKey()), Bytes.toBytes(region.getValue()[0]));
+            put.addColumn(CF_REGION, Bytes.toBytes("region_amount_" + region.getKey()),
+                    Bytes.toBytes(region.getValue()[1] / 100.0));
+        }
+
+        context.write(new ImmutableBytesWritable(row), put);
+        context.getCounter(Counter.ROWS_WRITTEN).increment(1);
+    }
+}
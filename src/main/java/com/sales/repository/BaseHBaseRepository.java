@@ -129,6 +129,16 @@ public abstract class BaseHBaseRepository {
         }
     }
 
+    protected Result[] batchGet(TableName tableName, List<Get> gets) throws IOException {
+        if (gets == null || gets.isEmpty()) {
+            return new Result[0];
+        }
+        
+        try (Table table = getTable(tableName)) {
+            return table.get(gets);
+        }
+    }
+
     protected List<Result> scanData(TableName tableName, Scan scan) throws IOException {
         try (Table table = getTable(tableName);
              ResultScanner scanner = table.getScanner(scan)) {
@@ -140,6 +150,25 @@ public abstract class BaseHBaseRepository {
         }
     }
 
+    /**
+     * 逐行扫描，不在内存中累积结果。每次RPC最多取回caching行，
+     * 回调阻塞（如响应写出变慢）时扫描器不会继续拉取，内存占用与扫描范围无关。
+     *
+     * @return 处理的行数
+     */
+    protected long scanEach(TableName tableName, Scan scan, int caching, RowHandler<Result> handler) throws IOException {
+        scan.setCaching(caching);
+        long count = 0;
+        try (Table table = getTable(tableName);
+             ResultScanner scanner = table.getScanner(scan)) {
+            for (Result result : scanner) {
+                handler.handle(result);
+                count++;
+            }
+        }
+        return count;
+    }
+
     protected void deleteData(TableName tableName, Delete delete) throws IOException {
         try (Table table = getTable(tableName)) {
             table.delete(delete);
@@ -174,4 +203,12 @@ public abstract class BaseHBaseRepository {
             table.increment(increment);
         }
     }
+
+    /**
+     * 扫描结果逐行回调
+     */
+    @FunctionalInterface
+    public interface RowHandler<T> {
+        void handle(T row) throws IOException;
+    }
 }
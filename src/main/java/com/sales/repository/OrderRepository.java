@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.PageFilter;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -25,7 +27,33 @@ public class OrderRepository extends BaseHBaseRepository {
 
     private static final TableName TABLE_NAME = HBaseConfig.TableNames.ORDER_HISTORY;
 
+    private static final String ORDER_ID_PREFIX = "ORD";
+
+    /**
+     * 逐行扫描时每次RPC取回的行数（订单行含明细，比销售数据行大）
+     */
+    private static final int SCAN_CACHING = 200;
+
     public void save(Order order) throws IOException {
+        putData(TABLE_NAME, buildPut(order));
+        log.info("Order saved: {}", order.getOrderId());
+    }
+
+    public void batchSave(List<Order> orders) throws IOException {
+        if (orders == null || orders.isEmpty()) {
+            return;
+        }
+        
+        List<Put> puts = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            puts.add(buildPut(order));
+        }
+        
+        batchPut(TABLE_NAME, puts);
+        log.info("Orders batch saved: count={}", orders.size());
+    }
+
+    private Put buildPut(Order order) {
         Put put = createPut(order.getOrderId());
         
         // 基本信息
@@ -46,6 +74,8 @@ public class OrderRepository extends BaseHBaseRepository {
                  formatDateTime(order.getDeliverTime()));
         addColumn(put, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_COMPLETE_TIME, 
                  formatDateTime(order.getCompleteTime()));
+        addColumn(put, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_REFUND_TIME, 
+                 formatDateTime(order.getRefundTime()));
         
         // 收货信息
         addColumn(put, HBaseConfig.ColumnFamilies.CF_ADDRESS, HBaseConfig.Columns.ORDER_RECEIVER, order.getReceiver());
@@ -67,8 +97,7 @@ public class OrderRepository extends BaseHBaseRepository {
         addColumn(put, HBaseConfig.ColumnFamilies.CF_LOGISTICS, HBaseConfig.Columns.ORDER_EXPRESS_NO, order.getExpressNo());
         addJsonColumn(put, HBaseConfig.ColumnFamilies.CF_LOGISTICS, HBaseConfig.Columns.ORDER_LOGISTICS_INFO, order.getLogisticsInfo());
         
-        putData(TABLE_NAME, put);
-        log.info("Order saved: {}", order.getOrderId());
+        return put;
     }
 
     public Order findById(String orderId) throws IOException {
@@ -147,6 +176,44 @@ public class OrderRepository extends BaseHBaseRepository {
         return orders;
     }
 
+    /**
+     * 逐行扫描日期范围内（含endDate）的订单，userId、status为空时不过滤。
+     * 订单ID以ORD+创建时间开头，日期范围直接转换为行键范围。
+     */
+    public long scanOrders(LocalDate startDate, LocalDate endDate, String userId, Integer status,
+                           RowHandler<Order> handler) throws IOException {
+        Scan scan = createScan();
+        scan.withStartRow(Bytes.toBytes(ORDER_ID_PREFIX + startDate.format(DateTimeFormatter.BASIC_ISO_DATE)));
+        scan.withStopRow(Bytes.toBytes(ORDER_ID_PREFIX + endDate.plusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE)));
+
+        FilterList filters = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        if (userId != null && !userId.isEmpty()) {
+            SingleColumnValueFilter userFilter = new SingleColumnValueFilter(
+                    Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_BASE),
+                    Bytes.toBytes(HBaseConfig.Columns.ORDER_USER_ID),
+                    CompareFilter.CompareOp.EQUAL,
+                    Bytes.toBytes(userId)
+            );
+            userFilter.setFilterIfMissing(true);
+            filters.addFilter(userFilter);
+        }
+        if (status != null) {
+            SingleColumnValueFilter statusFilter = new SingleColumnValueFilter(
+                    Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_BASE),
+                    Bytes.toBytes(HBaseConfig.Columns.ORDER_STATUS),
+                    CompareFilter.CompareOp.EQUAL,
+                    Bytes.toBytes(status)
+            );
+            statusFilter.setFilterIfMissing(true);
+            filters.addFilter(statusFilter);
+        }
+        if (!filters.getFilters().isEmpty()) {
+            scan.setFilter(filters);
+        }
+
+        return scanEach(TABLE_NAME, scan, SCAN_CACHING, result -> handler.handle(mapToOrder(result)));
+    }
+
     public void updateStatus(String orderId, Integer status) throws IOException {
         Put put = createPut(orderId);
         addColumn(put, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_STATUS, status);
@@ -159,6 +226,8 @@ public class OrderRepository extends BaseHBaseRepository {
             addColumn(put, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_DELIVER_TIME, formatDateTime(now));
         } else if (Order.Status.COMPLETED.getCode().equals(status)) {
             addColumn(put, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_COMPLETE_TIME, formatDateTime(now));
+        } else if (Order.Status.REFUNDED.getCode().equals(status)) {
+            addColumn(put, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_REFUND_TIME, formatDateTime(now));
         }
         
         putData(TABLE_NAME, put);
@@ -226,6 +295,7 @@ public class OrderRepository extends BaseHBaseRepository {
         builder.payTime(parseDateTime(getString(result, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_PAY_TIME)));
         builder.deliverTime(parseDateTime(getString(result, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_DELIVER_TIME)));
         builder.completeTime(parseDateTime(getString(result, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_COMPLETE_TIME)));
+        builder.refundTime(parseDateTime(getString(result, HBaseConfig.ColumnFamilies.CF_BASE, HBaseConfig.Columns.ORDER_REFUND_TIME)));
         
         // 收货信息
         builder.receiver(getString(result, HBaseConfig.ColumnFamilies.CF_ADDRESS, HBaseConfig.Columns.ORDER_RECEIVER));
@@ -17,6 +17,8 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -75,6 +77,29 @@ public class ProductRepository extends BaseHBaseRepository {
         return mapToProduct(result);
     }
 
+    /**
+     * 批量查询商品，一次multi-get；不存在的ID不出现在结果中，结果保持入参顺序
+     */
+    public Map<String, Product> findByIds(Collection<String> productIds) throws IOException {
+        Map<String, Product> products = new LinkedHashMap<>();
+        if (productIds == null || productIds.isEmpty()) {
+            return products;
+        }
+        
+        List<Get> gets = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            gets.add(createGet(productId));
+        }
+        
+        for (Result result : batchGet(TABLE_NAME, gets)) {
+            if (result != null && !result.isEmpty()) {
+                Product product = mapToProduct(result);
+                products.put(product.getProductId(), product);
+            }
+        }
+        return products;
+    }
+
     public List<Product> findAll(int limit) throws IOException {
         Scan scan = createScan();
         scan.setLimit(limit);
@@ -168,6 +193,24 @@ public class ProductRepository extends BaseHBaseRepository {
         putData(TABLE_NAME, put);
     }
 
+    public void batchUpdateStock(Map<String, Integer> stocks) throws IOException {
+        if (stocks == null || stocks.isEmpty()) {
+            return;
+        }
+        
+        String updateTime = formatDateTime(LocalDateTime.now());
+        List<Put> puts = new ArrayList<>(stocks.size());
+        for (Map.Entry<String, Integer> entry : stocks.entrySet()) {
+            Put put = createPut(entry.getKey());
+            addColumn(put, HBaseConfig.ColumnFamilies.CF_STOCK, HBaseConfig.Columns.PRODUCT_TOTAL_STOCK, entry.getValue());
+            addColumn(put, HBaseConfig.ColumnFamilies.CF_STAT, HBaseConfig.Columns.PRODUCT_UPDATE_TIME, updateTime);
+            puts.add(put);
+        }
+        
+        batchPut(TABLE_NAME, puts);
+        log.info("Batch stock updated: count={}", stocks.size());
+    }
+
     public void incrementViewCount(String productId) throws IOException {
         incrementColumnValue(TABLE_NAME, productId, 
                             HBaseConfig.ColumnFamilies.CF_STAT, 
@@ -1,8 +1,10 @@
 package com.sales.repository;
 
 import com.sales.config.HBaseConfig;
+import com.sales.entity.RegionCounters;
 import com.sales.entity.SalesData;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
@@ -14,9 +16,12 @@ import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,6 +31,36 @@ public class SalesDataRepository extends BaseHBaseRepository {
 
     private static final TableName TABLE_NAME = HBaseConfig.TableNames.SALES_DATA;
 
+    /**
+     * 逐行扫描时每次RPC取回的行数
+     */
+    private static final int SCAN_CACHING = 500;
+
+    private static final byte[] CF_DAILY = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_DAILY);
+    private static final byte[] CF_HOURLY = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_HOURLY);
+    private static final byte[] CF_REGION = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_REGION);
+    private static final byte[] HOUR_PREFIX = Bytes.toBytes("hour_");
+    private static final byte[] REGION_PREFIX = Bytes.toBytes("region_");
+    private static final byte[] REGION_AMOUNT_PREFIX = Bytes.toBytes("region_amount_");
+
+    private static final byte[] AMOUNT_VERSION = Bytes.toBytes(HBaseConfig.Columns.SALES_AMOUNT_VERSION);
+    private static final byte[] AMOUNT_DIGEST = Bytes.toBytes(HBaseConfig.Columns.SALES_AMOUNT_DIGEST);
+
+    /**
+     * 金额乐观并发更新的最大尝试次数
+     */
+    private static final int AMOUNT_CAS_ATTEMPTS = 5;
+
+    private static final int HOURS = 24;
+
+    private static final String[] HOUR_QUALIFIERS = new String[HOURS];
+
+    static {
+        for (int hour = 0; hour < HOUR_QUALIFIERS.length; hour++) {
+            HOUR_QUALIFIERS[hour] = "hour_" + String.format("%02d", hour);
+        }
+    }
+
     public void save(SalesData salesData) throws IOException {
         String rowKey = SalesData.generateRowKey(salesData.getDate(), salesData.getProductId(), salesData.getCategoryId());
         Put put = createPut(rowKey);
@@ -42,26 +77,22 @@ public class SalesDataRepository extends BaseHBaseRepository {
                  salesData.getRefundAmount() != null ? salesData.getRefundAmount().doubleValue() : null);
         
         // 小时级数据
-        if (salesData.getHourlySales() != null) {
-            for (Map.Entry<Integer, Long> entry : salesData.getHourlySales().entrySet()) {
-                String qualifier = "hour_" + String.format("%02d", entry.getKey());
-                addColumn(put, HBaseConfig.ColumnFamilies.CF_HOURLY, qualifier, entry.getValue());
+        long[] hourly = salesData.getHourly();
+        if (hourly != null) {
+            for (int hour = 0; hour < hourly.length; hour++) {
+                if (hourly[hour] != 0) {
+                    addColumn(put, HBaseConfig.ColumnFamilies.CF_HOURLY, HOUR_QUALIFIERS[hour], hourly[hour]);
+                }
             }
         }
         
         // 区域销售数据
-        if (salesData.getRegionSales() != null) {
-            for (Map.Entry<String, Long> entry : salesData.getRegionSales().entrySet()) {
-                String qualifier = "region_" + entry.getKey();
-                addColumn(put, HBaseConfig.ColumnFamilies.CF_REGION, qualifier, entry.getValue());
-            }
-        }
-        
-        if (salesData.getRegionAmounts() != null) {
-            for (Map.Entry<String, BigDecimal> entry : salesData.getRegionAmounts().entrySet()) {
-                String qualifier = "region_amount_" + entry.getKey();
-                addColumn(put, HBaseConfig.ColumnFamilies.CF_REGION, qualifier, 
-                         entry.getValue() != null ? entry.getValue().doubleValue() : null);
+        RegionCounters regions = salesData.getRegions();
+        if (regions != null) {
+            for (int i = 0; i < regions.size(); i++) {
+                addColumn(put, HBaseConfig.ColumnFamilies.CF_REGION, "region_" + regions.name(i), regions.count(i));
+                addColumn(put, HBaseConfig.ColumnFamilies.CF_REGION, "region_amount_" + regions.name(i),
+                         regions.amountCents(i) / 100.0);
             }
         }
         
@@ -100,9 +131,23 @@ public class SalesDataRepository extends BaseHBaseRepository {
         return salesDataList;
     }
 
+    /**
+     * 逐行扫描日期范围内的销售数据（endDate不含，与findByDateRange一致）
+     */
+    public long scanByDateRange(LocalDate startDate, LocalDate endDate, RowHandler<SalesData> handler) throws IOException {
+        Scan scan = createScan();
+        scan.withStartRow(Bytes.toBytes(startDate.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        scan.withStopRow(Bytes.toBytes(endDate.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        
+        return scanEach(TABLE_NAME, scan, SCAN_CACHING, result -> handler.handle(mapToSalesData(result)));
+    }
+
     public List<SalesData> findByDate(LocalDate date) throws IOException {
         String prefix = date.format(DateTimeFormatter.ISO_LOCAL_DATE);
         Scan scan = createScan();
+        // 限定行键范围，避免前缀过滤器扫描全表
+        scan.withStartRow(Bytes.toBytes(prefix));
+        scan.withStopRow(Bytes.toBytes(date.plusDays(1).format(DateTimeFormatter.ISO_LOCAL_DATE)));
         scan.setFilter(new PrefixFilter(Bytes.toBytes(prefix)));
         
         List<Result> results = scanData(TABLE_NAME, scan);
@@ -185,43 +230,163 @@ public class SalesDataRepository extends BaseHBaseRepository {
 
     public void incrementSales(String productId, String categoryId, LocalDate date, 
                               Long quantity, BigDecimal amount) throws IOException {
-        String rowKey = SalesData.generateRowKey(date, productId, categoryId);
+        Delta delta = new Delta(date, productId, categoryId);
+        delta.setSaleCount(quantity != null ? quantity : 0L);
+        delta.setSaleAmountCents(toCents(amount));
+        applyDeltas(List.of(delta));
         
-        // 增加销售数量和金额
-        incrementColumnValue(TABLE_NAME, rowKey, 
-                            HBaseConfig.ColumnFamilies.CF_DAILY, 
-                            HBaseConfig.Columns.SALES_SALE_COUNT, 
-                            quantity != null ? quantity : 0L);
-        
-        incrementColumnValue(TABLE_NAME, rowKey, 
-                            HBaseConfig.ColumnFamilies.CF_DAILY, 
-                            HBaseConfig.Columns.SALES_SALE_AMOUNT, 
-                            amount != null ? amount.longValue() : 0L);
-        
-        log.info("Sales incremented: {} -> {} units, {} amount", rowKey, quantity, amount);
+        log.info("Sales incremented: {} -> {} units, {} amount", delta.getRowKey(), quantity, amount);
     }
 
     public void incrementRefund(String productId, String categoryId, LocalDate date, 
                                Long quantity, BigDecimal amount) throws IOException {
-        String rowKey = SalesData.generateRowKey(date, productId, categoryId);
-        
-        // 增加退货数量和金额
-        incrementColumnValue(TABLE_NAME, rowKey, 
-                            HBaseConfig.ColumnFamilies.CF_DAILY, 
-                            HBaseConfig.Columns.SALES_REFUND_COUNT, 
-                            quantity != null ? quantity : 0L);
-        
-        incrementColumnValue(TABLE_NAME, rowKey, 
-                            HBaseConfig.ColumnFamilies.CF_DAILY, 
-                            HBaseConfig.Columns.SALES_REFUND_AMOUNT, 
-                            amount != null ? amount.longValue() : 0L);
+        Delta delta = new Delta(date, productId, categoryId);
+        delta.setRefundCount(quantity != null ? quantity : 0L);
+        delta.setRefundAmountCents(toCents(amount));
+        applyDeltas(List.of(delta));
         
-        log.info("Refund incremented: {} -> {} units, {} amount", rowKey, quantity, amount);
+        log.info("Refund incremented: {} -> {} units, {} amount", delta.getRowKey(), quantity, amount);
+    }
+
+    /**
+     * 批量累加销售增量。
+     * 计数列（销量、退货数、小时、区域销量）合并为每行一个多列Increment，与标识列的Put一起批量提交；
+     * 金额列为double无法原子递增，按行读取后以daily:amount_version做乐观并发的checkAndMutate写回
+     */
+    public void applyDeltas(Collection<Delta> deltas) throws IOException {
+        if (deltas == null || deltas.isEmpty()) {
+            return;
+        }
+
+        List<Row> mutations = new ArrayList<>(deltas.size() * 2);
+        List<Delta> amountDeltas = new ArrayList<>();
+        for (Delta delta : deltas) {
+            byte[] row = Bytes.toBytes(delta.getRowKey());
+            Put identity = new Put(row);
+            identity.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_DATE), Bytes.toBytes(formatDate(delta.getDate())));
+            if (delta.getProductId() != null) {
+                identity.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_PRODUCT_ID), Bytes.toBytes(delta.getProductId()));
+            }
+            if (delta.getCategoryId() != null) {
+                identity.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_CATEGORY_ID), Bytes.toBytes(delta.getCategoryId()));
+            }
+            mutations.add(identity);
+
+            Increment increment = new Increment(row);
+            if (delta.getSaleCount() != 0) {
+                increment.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_SALE_COUNT), delta.getSaleCount());
+            }
+            if (delta.getRefundCount() != 0) {
+                increment.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_REFUND_COUNT), delta.getRefundCount());
+            }
+            for (int hour = 0; hour < HOURS; hour++) {
+                if (delta.getHourly()[hour] != 0) {
+                    increment.addColumn(CF_HOURLY, Bytes.toBytes(HOUR_QUALIFIERS[hour]), delta.getHourly()[hour]);
+                }
+            }
+            RegionCounters regions = delta.getRegions();
+            for (int i = 0; i < regions.size(); i++) {
+                if (regions.count(i) != 0) {
+                    increment.addColumn(CF_REGION, Bytes.toBytes("region_" + regions.name(i)), regions.count(i));
+                }
+            }
+            if (!increment.isEmpty()) {
+                // 失败后由调用方决定是否重试，客户端不自动重放非幂等的Increment
+                increment.setReturnResults(false);
+                mutations.add(increment);
+            }
+
+            if (delta.hasAmounts()) {
+                amountDeltas.add(delta);
+            }
+        }
+
+        try (Table table = getTable(TABLE_NAME)) {
+            table.batch(mutations, new Object[mutations.size()]);
+            applyAmounts(table, amountDeltas);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch increment interrupted", e);
+        }
+    }
+
+    private void applyAmounts(Table table, List<Delta> deltas) throws IOException {
+        List<Delta> pending = deltas;
+        for (int attempt = 0; attempt < AMOUNT_CAS_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Get> gets = new ArrayList<>(pending.size());
+            for (Delta delta : pending) {
+                gets.add(new Get(Bytes.toBytes(delta.getRowKey()))
+                        .addFamily(CF_REGION)
+                        .addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_SALE_AMOUNT))
+                        .addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_REFUND_AMOUNT))
+                        .addColumn(CF_DAILY, AMOUNT_VERSION));
+            }
+            Result[] current = table.get(gets);
+
+            List<CheckAndMutate> updates = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                updates.add(amountUpdate(pending.get(i), current[i]));
+            }
+            List<CheckAndMutateResult> results = table.checkAndMutate(updates);
+
+            List<Delta> conflicts = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).isSuccess()) {
+                    conflicts.add(pending.get(i));
+                }
+            }
+            pending = conflicts;
+        }
+        if (!pending.isEmpty()) {
+            throw new IOException("Sales amount update kept conflicting: rows=" + pending.size());
+        }
+    }
+
+    private CheckAndMutate amountUpdate(Delta delta, Result current) {
+        byte[] row = Bytes.toBytes(delta.getRowKey());
+        byte[] version = current.getValue(CF_DAILY, AMOUNT_VERSION);
+        Put put = new Put(row);
+        put.addColumn(CF_DAILY, AMOUNT_VERSION, Bytes.toBytes(version != null ? Bytes.toLong(version) + 1 : 1L));
+        if (delta.getSaleAmountCents() != 0) {
+            put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_SALE_AMOUNT),
+                    Bytes.toBytes(addCents(current.getValue(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_SALE_AMOUNT)),
+                            delta.getSaleAmountCents())));
+        }
+        if (delta.getRefundAmountCents() != 0) {
+            put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_REFUND_AMOUNT),
+                    Bytes.toBytes(addCents(current.getValue(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_REFUND_AMOUNT)),
+                            delta.getRefundAmountCents())));
+        }
+        RegionCounters regions = delta.getRegions();
+        for (int i = 0; i < regions.size(); i++) {
+            if (regions.amountCents(i) != 0) {
+                byte[] qualifier = Bytes.toBytes("region_amount_" + regions.name(i));
+                put.addColumn(CF_REGION, qualifier,
+                        Bytes.toBytes(addCents(current.getValue(CF_REGION, qualifier), regions.amountCents(i))));
+            }
+        }
+
+        CheckAndMutate.Builder check = CheckAndMutate.newBuilder(row);
+        return version != null
+                ? check.ifEquals(CF_DAILY, AMOUNT_VERSION, version).build(put)
+                : check.ifNotExists(CF_DAILY, AMOUNT_VERSION).build(put);
+    }
+
+    /**
+     * double金额加上分，按分取整避免浮点误差累积
+     */
+    private static double addCents(byte[] current, long cents) {
+        long base = current != null ? Math.round(Bytes.toDouble(current) * 100) : 0;
+        return (base + cents) / 100.0;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0;
     }
 
     public void incrementHourlySales(String productId, LocalDate date, Integer hour, Long quantity) throws IOException {
         String rowKey = SalesData.generateRowKey(date, productId, null);
-        String qualifier = "hour_" + String.format("%02d", hour);
+        String qualifier = HOUR_QUALIFIERS[hour];
         
         incrementColumnValue(TABLE_NAME, rowKey, 
                             HBaseConfig.ColumnFamilies.CF_HOURLY, 
@@ -231,6 +396,37 @@ public class SalesDataRepository extends BaseHBaseRepository {
         log.info("Hourly sales incremented: {} -> hour {}: {} units", rowKey, hour, quantity);
     }
 
+    /**
+     * 覆盖写入某天的订单金额分布草图（总计行）
+     */
+    public void putAmountDigest(LocalDate date, byte[] digest) throws IOException {
+        Put put = createPut(SalesData.generateRowKey(date, null, null));
+        put.addColumn(CF_DAILY, Bytes.toBytes(HBaseConfig.Columns.SALES_DATE), Bytes.toBytes(formatDate(date)));
+        put.addColumn(CF_DAILY, AMOUNT_DIGEST, digest);
+        putData(TABLE_NAME, put);
+    }
+
+    /**
+     * 批量读取各天的订单金额分布草图，没有草图的日期不在结果中
+     */
+    public Map<LocalDate, byte[]> findAmountDigests(Collection<LocalDate> dates) throws IOException {
+        List<LocalDate> ordered = new ArrayList<>(dates);
+        List<Get> gets = new ArrayList<>(ordered.size());
+        for (LocalDate date : ordered) {
+            gets.add(createGet(SalesData.generateRowKey(date, null, null)).addColumn(CF_DAILY, AMOUNT_DIGEST));
+        }
+
+        Result[] results = batchGet(TABLE_NAME, gets);
+        Map<LocalDate, byte[]> digests = new HashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            byte[] value = results[i] != null ? results[i].getValue(CF_DAILY, AMOUNT_DIGEST) : null;
+            if (value != null) {
+                digests.put(ordered.get(i), value);
+            }
+        }
+        return digests;
+    }
+
     public void incrementRegionSales(String productId, LocalDate date, String region, Long quantity) throws IOException {
         String rowKey = SalesData.generateRowKey(date, productId, null);
         String qualifier = "region_" + region;
@@ -265,37 +461,21 @@ public class SalesDataRepository extends BaseHBaseRepository {
             builder.refundAmount(BigDecimal.valueOf(refundAmount));
         }
         
-        // 小时级数据
-        Map<Integer, Long> hourlySales = new java.util.HashMap<>();
-        for (int i = 0; i < 24; i++) {
-            String qualifier = "hour_" + String.format("%02d", i);
-            Long value = getLong(result, HBaseConfig.ColumnFamilies.CF_HOURLY, qualifier);
-            if (value != null && value > 0) {
-                hourlySales.put(i, value);
-            }
-        }
-        builder.hourlySales(hourlySales);
-        
-        // 区域销售数据
-        Map<String, Long> regionSales = new java.util.HashMap<>();
-        Map<String, BigDecimal> regionAmounts = new java.util.HashMap<>();
-        
-        // 扫描所有区域相关的列
-        for (org.apache.hadoop.hbase.Cell cell : result.rawCells()) {
-            String qualifier = Bytes.toString(CellUtil.cloneQualifier(cell));
-            if (qualifier.startsWith("region_") && !qualifier.startsWith("region_amount_")) {
-                String region = qualifier.substring(7); // 去掉"region_"前缀
-                Long value = Bytes.toLong(CellUtil.cloneValue(cell));
-                regionSales.put(region, value);
-            } else if (qualifier.startsWith("region_amount_")) {
-                String region = qualifier.substring(14); // 去掉"region_amount_"前缀
-                Double value = Bytes.toDouble(CellUtil.cloneValue(cell));
-                regionAmounts.put(region, BigDecimal.valueOf(value));
+        // 小时和区域：一次遍历全部单元格，按字节比较列族和列名，不创建列名字符串
+        long[] hourly = new long[HOURS];
+        RegionCounters regions = new RegionCounters();
+        for (Cell cell : result.rawCells()) {
+            if (CellUtil.matchingFamily(cell, CF_HOURLY)) {
+                int hour = parseHour(cell);
+                if (hour >= 0) {
+                    hourly[hour] = Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+                }
+            } else if (CellUtil.matchingFamily(cell, CF_REGION)) {
+                addRegion(regions, cell);
             }
         }
-        
-        builder.regionSales(regionSales);
-        builder.regionAmounts(regionAmounts);
+        builder.hourly(hourly);
+        builder.regions(regions);
         
         // 构建对象并解析行键
         SalesData salesData = builder.build();
@@ -304,10 +484,81 @@ public class SalesDataRepository extends BaseHBaseRepository {
         return salesData;
     }
 
+    /**
+     * hour_XX列名的小时，不是小时列时返回-1
+     */
+    private static int parseHour(Cell cell) {
+        byte[] array = cell.getQualifierArray();
+        int offset = cell.getQualifierOffset();
+        if (cell.getQualifierLength() != HOUR_PREFIX.length + 2
+                || !Bytes.equals(array, offset, HOUR_PREFIX.length, HOUR_PREFIX, 0, HOUR_PREFIX.length)) {
+            return -1;
+        }
+        int tens = array[offset + HOUR_PREFIX.length] - '0';
+        int ones = array[offset + HOUR_PREFIX.length + 1] - '0';
+        int hour = tens * 10 + ones;
+        return tens >= 0 && tens <= 9 && ones >= 0 && ones <= 9 && hour < HOURS ? hour : -1;
+    }
+
+    /**
+     * region_X（销量，long）或region_amount_X（销售额，double）累加到区域
+     */
+    private static void addRegion(RegionCounters regions, Cell cell) {
+        byte[] array = cell.getQualifierArray();
+        int offset = cell.getQualifierOffset();
+        int length = cell.getQualifierLength();
+        if (length > REGION_AMOUNT_PREFIX.length
+                && Bytes.equals(array, offset, REGION_AMOUNT_PREFIX.length, REGION_AMOUNT_PREFIX, 0, REGION_AMOUNT_PREFIX.length)) {
+            double amount = Bytes.toDouble(cell.getValueArray(), cell.getValueOffset());
+            regions.add(Bytes.toString(array, offset + REGION_AMOUNT_PREFIX.length, length - REGION_AMOUNT_PREFIX.length),
+                    0, Math.round(amount * 100));
+        } else if (length > REGION_PREFIX.length
+                && Bytes.equals(array, offset, REGION_PREFIX.length, REGION_PREFIX, 0, REGION_PREFIX.length)) {
+            long count = Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+            regions.add(Bytes.toString(array, offset + REGION_PREFIX.length, length - REGION_PREFIX.length), count, 0);
+        }
+    }
+
     private String formatDate(LocalDate date) {
         if (date == null) {
             return null;
         }
         return date.format(DateTimeFormatter.ISO_LOCAL_DATE);
     }
+
+    /**
+     * 一行sales_data的增量，金额以分为单位
+     */
+    @lombok.Data
+    public static class Delta {
+        private final String rowKey;
+        private final LocalDate date;
+        private final String productId;
+        private final String categoryId;
+        private long saleCount;
+        private long saleAmountCents;
+        private long refundCount;
+        private long refundAmountCents;
+        private final long[] hourly = new long[HOURS];
+        private final RegionCounters regions = new RegionCounters();
+
+        public Delta(LocalDate date, String productId, String categoryId) {
+            this.rowKey = SalesData.generateRowKey(date, productId, categoryId);
+            this.date = date;
+            this.productId = productId != null && !productId.isEmpty() ? productId : null;
+            this.categoryId = categoryId != null && !categoryId.isEmpty() ? categoryId : null;
+        }
+
+        public boolean hasAmounts() {
+            if (saleAmountCents != 0 || refundAmountCents != 0) {
+                return true;
+            }
+            for (int i = 0; i < regions.size(); i++) {
+                if (regions.amountCents(i) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package com.sales.repository;
+
+import com.sales.config.HBaseConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分钟级销售序列表 sales_series。
+ * <p>
+ * RowKey: 指标|商品ID（总计为TOTAL）|反转分钟桶（MAX_MINUTE - 纪元分钟，10位补零），
+ * 同一序列的分钟行连续存放且最新的分钟排在最前；每行一个计数列 cf_series:v，只用Increment写入。
+ * 一行只承载一分钟的增量，热点小时的写入分散在60行上，不再集中于sales_data的同一个hour_XX单元格。
+ */
+@Slf4j
+@Repository
+public class SalesSeriesRepository extends BaseHBaseRepository {
+
+    private static final TableName TABLE_NAME = HBaseConfig.TableNames.SALES_SERIES;
+
+    private static final byte[] CF_SERIES = Bytes.toBytes(HBaseConfig.ColumnFamilies.CF_SERIES);
+    private static final byte[] COL_VALUE = Bytes.toBytes(HBaseConfig.Columns.SERIES_VALUE);
+
+    public static final String TOTAL = "TOTAL";
+
+    private static final long MAX_MINUTE = 9_999_999_999L;
+
+    private static final int SCAN_CACHING = 1000;
+
+    /**
+     * 分层压缩的基础时间窗口：6小时内的文件合并为一个窗口，之后每层4个窗口
+     */
+    private static final long COMPACTION_BASE_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(6);
+    private static final int COMPACTION_WINDOWS_PER_TIER = 4;
+
+    /**
+     * 表不存在时创建。
+     * 列族设置TTL、单版本、FAST_DIFF前缀编码（行键前缀高度重复）和行级布隆过滤器；
+     * 使用按时间分层的压缩（DateTieredStoreEngine），写入只落在最新的时间窗口，
+     * 旧窗口的文件不再参与合并，整文件过期后直接删除。按指标预分区。
+     *
+     * @return 是否新建了表
+     */
+    public boolean ensureTable(Admin admin, int ttlDays, Collection<String> metrics) throws IOException {
+        if (admin.tableExists(TABLE_NAME)) {
+            return false;
+        }
+
+        long ttlMillis = TimeUnit.DAYS.toMillis(ttlDays);
+        ColumnFamilyDescriptor family = ColumnFamilyDescriptorBuilder.newBuilder(CF_SERIES)
+                .setTimeToLive((int) TimeUnit.DAYS.toSeconds(ttlDays))
+                .setMaxVersions(1)
+                .setDataBlockEncoding(DataBlockEncoding.FAST_DIFF)
+                .setBloomFilterType(BloomType.ROW)
+                .setConfiguration("hbase.hstore.engine.class",
+                        "org.apache.hadoop.hbase.regionserver.DateTieredStoreEngine")
+                .setConfiguration("hbase.hstore.compaction.date.tiered.max.storefile.age.millis", String.valueOf(ttlMillis))
+                .setConfiguration("hbase.hstore.compaction.date.tiered.base.window.millis",
+                        String.valueOf(COMPACTION_BASE_WINDOW_MILLIS))
+                .setConfiguration("hbase.hstore.compaction.date.tiered.windows.per.tier",
+                        String.valueOf(COMPACTION_WINDOWS_PER_TIER))
+                .build();
+        TableDescriptor descriptor = TableDescriptorBuilder.newBuilder(TABLE_NAME)
+                .setColumnFamily(family)
+                .build();
+
+        byte[][] splits = metrics.stream()
+                .sorted()
+                .skip(1)
+                .map(metric -> Bytes.toBytes(metric + "|"))
+                .toArray(byte[][]::new);
+        if (splits.length > 0) {
+            admin.createTable(descriptor, splits);
+        } else {
+            admin.createTable(descriptor);
+        }
+        log.info("Created HBase table {}: ttlDays={}, regions={}", TABLE_NAME, ttlDays, splits.length + 1);
+        return true;
+    }
+
+    /**
+     * 批量累加分钟值，每个点一个Increment，一次batch发送
+     */
+    public void increment(Collection<Point> points) throws IOException {
+        if (points == null || points.isEmpty()) {
+            return;
+        }
+
+        List<Row> increments = new ArrayList<>(points.size());
+        for (Point point : points) {
+            if (point.getValue() == 0) {
+                continue;
+            }
+            Increment increment = new Increment(Bytes.toBytes(rowKey(point.getMetric(), point.getProductId(), point.getMinute())));
+            increment.addColumn(CF_SERIES, COL_VALUE, point.getValue());
+            increment.setReturnResults(false);
+            increments.add(increment);
+        }
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        try (Table table = getTable(TABLE_NAME)) {
+            table.batch(increments, new Object[increments.size()]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch increment interrupted", e);
+        }
+    }
+
+    /**
+     * 读取[fromMinute, toMinute)的分钟值（纪元分钟），下标0对应fromMinute，没有数据的分钟为0
+     */
+    public long[] getMinutes(String metric, String productId, long fromMinute, long toMinute) throws IOException {
+        int length = (int) Math.max(0, toMinute - fromMinute);
+        long[] values = new long[length];
+        if (length == 0) {
+            return values;
+        }
+
+        // 反转后最新的分钟在前：从toMinute-1开始扫到fromMinute（含）
+        Scan scan = createScan()
+                .withStartRow(Bytes.toBytes(rowKey(metric, productId, toMinute - 1)))
+                .withStopRow(Bytes.toBytes(rowKey(metric, productId, fromMinute)), true)
+                .addColumn(CF_SERIES, COL_VALUE);
+        scanEach(TABLE_NAME, scan, SCAN_CACHING, result -> {
+            Cell cell = result.getColumnLatestCell(CF_SERIES, COL_VALUE);
+            if (cell == null) {
+                return;
+            }
+            long minute = parseMinute(result.getRow());
+            if (minute >= fromMinute && minute < toMinute) {
+                values[(int) (minute - fromMinute)] = Bytes.toLong(CellUtil.cloneValue(cell));
+            }
+        });
+        return values;
+    }
+
+    public static String rowKey(String metric, String productId, long minute) {
+        return metric + "|" + (productId != null ? productId : TOTAL) + "|" + String.format("%010d", MAX_MINUTE - minute);
+    }
+
+    private static long parseMinute(byte[] row) {
+        String key = Bytes.toString(row);
+        return MAX_MINUTE - Long.parseLong(key.substring(key.lastIndexOf('|') + 1));
+    }
+
+    /**
+     * 一个序列在一分钟内的增量
+     */
+    @lombok.Data
+    public static class Point {
+        private final String metric;
+        private final String productId;     // null表示总计
+        private final long minute;          // 纪元分钟
+        private long value;
+    }
+}
@@ -5,6 +5,7 @@ import com.sales.entity.CartItem;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +20,12 @@ public class CartService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private ReactiveRedisService reactiveRedisService;
+
+    @Autowired
+    private FunnelService funnelService;
+
     private static final long CART_EXPIRE_TIME = 7; // 7天
 
     /**
@@ -37,6 +44,9 @@ public class CartService {
         // 设置过期时间
         redisService.expire(cartKey, CART_EXPIRE_TIME, TimeUnit.DAYS);
         
+        // 转化漏斗：加购
+        funnelService.record(FunnelService.Stage.CART, userId, cartItem.getProductId());
+        
         log.info("Added to cart: userId={}, productId={}, quantity={}", 
                 userId, cartItem.getProductId(), cartItem.getQuantity());
     }
@@ -72,6 +82,20 @@ public class CartService {
         return cartItems;
     }
 
+    /**
+     * 获取用户购物车（响应式）
+     */
+    public Flux<CartItem> getCartReactive(String userId) {
+        String cartKey = RedisConfig.RedisKeys.CART_PREFIX + userId;
+        return reactiveRedisService.hgetAll(cartKey)
+                .map(entry -> CartItem.builder()
+                        .userId(userId)
+                        .productId(entry.getKey())
+                        .quantity(1) // 与getCart保持一致
+                        .selected(true)
+                        .build());
+    }
+
     /**
      * 更新购物车商品数量
      */
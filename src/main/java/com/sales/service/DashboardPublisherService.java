@@ -0,0 +1,147 @@
+package com.sales.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 实时看板推送。
+ * 每个周期在服务端计算一次看板各部分（汇总、热销商品、最近订单、低库存数量），
+ * 序列化后与上一次推送的内容比较，只把发生变化的部分以SSE事件推送给所有订阅者。
+ * 后端读取次数与打开的页面数量无关；没有订阅者时不计算。
+ */
+@Slf4j
+@Service
+public class DashboardPublisherService {
+
+    public static final String SECTION_SUMMARY = "summary";
+    public static final String SECTION_HOT_PRODUCTS = "hotProducts";
+    public static final String SECTION_RECENT_ORDERS = "recentOrders";
+    public static final String SECTION_LOW_STOCK_COUNT = "lowStockCount";
+
+    private static final int HOT_PRODUCT_LIMIT = 3;
+    private static final int RECENT_ORDER_LIMIT = 5;
+    private static final int LOW_STOCK_SCAN_LIMIT = 100;
+
+    @Autowired
+    private SalesAnalysisService salesAnalysisService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${sales.dashboard.sse-timeout-millis:1800000}")
+    private long sseTimeoutMillis;
+
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * 各部分最近一次推送的JSON，新订阅者连接时先收到完整快照
+     */
+    private final Map<String, String> lastPublished = new ConcurrentHashMap<>();
+
+    /**
+     * 推送在虚拟线程上进行，慢连接不阻塞定时任务线程
+     */
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 订阅看板推送
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+
+        Map<String, String> snapshot = new LinkedHashMap<>(lastPublished);
+        if (!snapshot.isEmpty()) {
+            sendExecutor.execute(() -> send(emitter, snapshot));
+        }
+        log.debug("Dashboard subscriber added: subscribers={}", subscribers.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 计算一次看板并推送变化的部分；没有变化时发送心跳注释以清理断开的连接
+     */
+    @Scheduled(fixedDelayString = "${sales.dashboard.push-millis:5000}")
+    public void publish() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> changed = new LinkedHashMap<>();
+        compute(SECTION_SUMMARY, () -> salesAnalysisService.getDashboardData(), changed);
+        compute(SECTION_HOT_PRODUCTS, () -> productService.getHotProducts(HOT_PRODUCT_LIMIT), changed);
+        compute(SECTION_RECENT_ORDERS, () -> orderService.getRecentOrders(RECENT_ORDER_LIMIT), changed);
+        compute(SECTION_LOW_STOCK_COUNT, () -> productService.getLowStockProducts(LOW_STOCK_SCAN_LIMIT).size(), changed);
+
+        for (SseEmitter emitter : subscribers) {
+            sendExecutor.execute(() -> send(emitter, changed));
+        }
+        if (!changed.isEmpty()) {
+            log.debug("Dashboard published: sections={}, subscribers={}", changed.keySet(), subscribers.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (SseEmitter emitter : subscribers) {
+            emitter.complete();
+        }
+        subscribers.clear();
+        sendExecutor.shutdown();
+    }
+
+    private void compute(String section, Callable<Object> supplier, Map<String, String> changed) {
+        try {
+            String json = objectMapper.writeValueAsString(supplier.call());
+            if (!json.equals(lastPublished.put(section, json))) {
+                changed.put(section, json);
+            }
+        } catch (Exception e) {
+            // 本部分保持上一次推送的内容
+            log.error("Failed to compute dashboard section: {}", section, e);
+        }
+    }
+
+    private void send(SseEmitter emitter, Map<String, String> sections) {
+        try {
+            if (sections.isEmpty()) {
+                emitter.send(SseEmitter.event().comment("ping"));
+                return;
+            }
+            for (Map.Entry<String, String> section : sections.entrySet()) {
+                emitter.send(SseEmitter.event().name(section.getKey()).data(section.getValue()));
+            }
+        } catch (Exception e) {
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.sales.service;
 
+import com.sales.config.RedisConfig;
 import com.sales.utils.JsonUtils;
 import com.sales.entity.Product;
+import com.sales.exception.InsufficientStockException;
 import com.sales.repository.ProductRepository;
 import com.sales.service.StockService;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
@@ -12,7 +15,12 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +40,70 @@ public class DataSyncService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private QueueService queueService;
+
+    @PostConstruct
+    public void registerQueueHandlers() {
+        queueService.registerHandler(RedisConfig.RedisKeys.QUEUE_STOCK_DEDUCT, this::processStockDeductions);
+        queueService.registerHandler(RedisConfig.RedisKeys.QUEUE_STOCK_SYNC, this::processStockSyncs);
+    }
+
+    /**
+     * 消费库存扣减任务：逐条扣减Redis库存（按订单ID+商品ID幂等，重试和重复投递不会重复扣减），
+     * 批内涉及的商品各投递一次HBase同步。
+     * 扣减失败（库存不足或Redis异常）时处理完其余消息后抛出，失败的消息保持未确认，重试达到上限后进入死信队列
+     */
+    private void processStockDeductions(List<Map<String, String>> messages) throws Exception {
+        Set<String> touchedProducts = new LinkedHashSet<>();
+        Exception failure = null;
+        for (Map<String, String> message : messages) {
+            String productId = message.get("productId");
+            int quantity = Integer.parseInt(message.get("quantity"));
+            String orderId = message.getOrDefault("orderId", message.get(QueueService.MESSAGE_ID_FIELD));
+            touchedProducts.add(productId);
+            try {
+                queueService.runOnce(RedisConfig.RedisKeys.QUEUE_STOCK_DEDUCT, orderId + ":" + productId, () -> {
+                    if (!stockService.deductStock(productId, quantity)) {
+                        throw new InsufficientStockException(productId, quantity, stockService.getStock(productId));
+                    }
+                });
+            } catch (Exception e) {
+                log.warn("Queued stock deduction failed: productId={}, quantity={}, orderId={}",
+                        productId, quantity, orderId, e);
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        for (String productId : touchedProducts) {
+            Map<String, String> sync = new HashMap<>();
+            sync.put("productId", productId);
+            if (!queueService.enqueue(RedisConfig.RedisKeys.QUEUE_STOCK_SYNC, sync)) {
+                syncStockToHBase(productId, 0);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 消费库存同步任务：批内去重后以Redis库存为准一次性批量写入HBase
+     */
+    private void processStockSyncs(List<Map<String, String>> messages) throws IOException {
+        Map<String, Integer> stocks = new LinkedHashMap<>();
+        for (Map<String, String> message : messages) {
+            String productId = message.get("productId");
+            if (productId != null && !stocks.containsKey(productId)) {
+                stocks.put(productId, stockService.getStock(productId));
+            }
+        }
+        productRepository.batchUpdateStock(stocks);
+    }
+
     /**
      * 同步库存数据到HBase
      */
@@ -54,12 +54,22 @@ public class DemoDataService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private SalesOlapCacheService salesOlapCacheService;
+
+    @Autowired
+    private SalesAnalysisCacheService salesAnalysisCacheService;
+
     public InitResult initDemoData() throws IOException {
         InitResult result = new InitResult();
 
         result.productsInserted = initProducts();
         result.usersInserted = initUsers();
         result.salesDataInserted = initSalesData();
+        if (result.salesDataInserted > 0) {
+            salesOlapCacheService.invalidateAll();
+            salesAnalysisCacheService.invalidateAll();
+        }
         result.ordersInserted = initOrders();
 
         initRedisAuxData();
@@ -293,13 +303,15 @@ public class DemoDataService {
                 redisService.expire(dashboardKey, 3600, java.util.concurrent.TimeUnit.SECONDS);
             }
 
-            if (!redisService.exists(RedisConfig.RedisKeys.STAT_ORDERS_TODAY)) {
-                redisService.set(RedisConfig.RedisKeys.STAT_ORDERS_TODAY, 12);
-                redisService.expire(RedisConfig.RedisKeys.STAT_ORDERS_TODAY, 3600, java.util.concurrent.TimeUnit.SECONDS);
+            String ordersKey = RedisConfig.RedisKeys.STAT_ORDERS_PREFIX + dateKey;
+            if (!redisService.exists(ordersKey)) {
+                redisService.set(ordersKey, 12);
+                redisService.expire(ordersKey, 2, java.util.concurrent.TimeUnit.DAYS);
             }
-            if (!redisService.exists(RedisConfig.RedisKeys.STAT_SALES_TODAY)) {
-                redisService.set(RedisConfig.RedisKeys.STAT_SALES_TODAY, "15888.50");
-                redisService.expire(RedisConfig.RedisKeys.STAT_SALES_TODAY, 3600, java.util.concurrent.TimeUnit.SECONDS);
+            String salesKey = RedisConfig.RedisKeys.STAT_SALES_PREFIX + dateKey;
+            if (!redisService.exists(salesKey)) {
+                redisService.set(salesKey, "15888.50");
+                redisService.expire(salesKey, 2, java.util.concurrent.TimeUnit.DAYS);
             }
 
             stockService.setSeckillStock("S20260105", "P1001", 20);
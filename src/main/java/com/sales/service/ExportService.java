@@ -0,0 +1,223 @@
+package com.sales.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sales.entity.Order;
+import com.sales.entity.SalesData;
+import com.sales.repository.OrderRepository;
+import com.sales.repository.SalesDataRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 销售数据和订单的流式导出（CSV / NDJSON）。
+ * HBase扫描器每取回一行即格式化写入固定大小的缓冲区，缓冲区满时写到响应流；
+ * 客户端读取慢时写出阻塞，扫描随之暂停，不会继续拉取。内存占用与导出范围无关。
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 写出缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 每写出多少行主动flush一次，客户端能尽早收到数据
+     */
+    private static final int FLUSH_ROWS = 1000;
+
+    private static final List<String> SALES_COLUMNS = salesColumns();
+
+    private static final List<String> ORDER_COLUMNS = List.of(
+            "orderId", "userId", "status", "totalAmount", "discountAmount", "actualAmount", "payMethod",
+            "createTime", "payTime", "deliverTime", "completeTime", "receiver", "itemCount");
+
+    public enum Format {
+        CSV("csv", "text/csv"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format fromCode(String code) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(code)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 导出日期范围内的销售数据（endDate不含，与销售数据查询一致）
+     *
+     * @return 导出的行数
+     */
+    public long exportSalesData(LocalDate startDate, LocalDate endDate, Format format, OutputStream out) throws IOException {
+        RowWriter writer = new RowWriter(out, format, SALES_COLUMNS);
+        long rows = salesDataRepository.scanByDateRange(startDate, endDate,
+                data -> writer.write(data, salesRow(data)));
+        writer.finish();
+        log.info("Sales data exported: {} to {}, format={}, rows={}", startDate, endDate, format, rows);
+        return rows;
+    }
+
+    /**
+     * 导出日期范围内（含endDate）的订单，userId、status为空时不过滤
+     *
+     * @return 导出的行数
+     */
+    public long exportOrders(LocalDate startDate, LocalDate endDate, String userId, Integer status,
+                             Format format, OutputStream out) throws IOException {
+        RowWriter writer = new RowWriter(out, format, ORDER_COLUMNS);
+        long rows = orderRepository.scanOrders(startDate, endDate, userId, status,
+                order -> writer.write(order, orderRow(order)));
+        writer.finish();
+        log.info("Orders exported: {} to {}, userId={}, status={}, format={}, rows={}",
+                startDate, endDate, userId, status, format, rows);
+        return rows;
+    }
+
+    private List<Object> salesRow(SalesData data) {
+        List<Object> row = new ArrayList<>(SALES_COLUMNS.size());
+        row.add(data.getDate());
+        row.add(data.getRowKey());
+        row.add(data.getProductId());
+        row.add(data.getCategoryId());
+        row.add(data.getSaleCount());
+        row.add(data.getSaleAmount());
+        row.add(data.getRefundCount());
+        row.add(data.getRefundAmount());
+        row.add(data.getNetCount());
+        row.add(data.getNetAmount());
+        long[] hourly = data.getHourly();
+        for (int hour = 0; hour < 24; hour++) {
+            row.add(hourly != null && hourly[hour] != 0 ? hourly[hour] : null);
+        }
+        return row;
+    }
+
+    private List<Object> orderRow(Order order) {
+        return Arrays.asList(
+                order.getOrderId(),
+                order.getUserId(),
+                order.getStatus(),
+                order.getTotalAmount(),
+                order.getDiscountAmount(),
+                order.getActualAmount(),
+                order.getPayMethod(),
+                order.getCreateTime(),
+                order.getPayTime(),
+                order.getDeliverTime(),
+                order.getCompleteTime(),
+                order.getReceiver(),
+                order.getItems() != null ? order.getItems().size() : 0);
+    }
+
+    private static List<String> salesColumns() {
+        List<String> columns = new ArrayList<>(List.of(
+                "date", "rowKey", "productId", "categoryId", "saleCount", "saleAmount",
+                "refundCount", "refundAmount", "netCount", "netAmount"));
+        for (int hour = 0; hour < 24; hour++) {
+            columns.add(String.format("hour_%02d", hour));
+        }
+        return List.copyOf(columns);
+    }
+
+    /**
+     * 按格式逐行写出，只持有固定大小的缓冲区
+     */
+    private class RowWriter {
+        private final Writer writer;
+        private final Format format;
+        private long rows;
+
+        RowWriter(OutputStream out, Format format, List<String> columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.format = format;
+            if (format == Format.CSV) {
+                writeCsvLine(columns);
+            }
+        }
+
+        void write(Object entity, List<Object> csvRow) throws IOException {
+            if (format == Format.CSV) {
+                writeCsvLine(csvRow);
+            } else {
+                writer.write(objectMapper.writeValueAsString(entity));
+                writer.write('\n');
+            }
+            if (++rows % FLUSH_ROWS == 0) {
+                writer.flush();
+            }
+        }
+
+        void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeCsvLine(List<?> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = values.get(i);
+                if (value != null) {
+                    writer.write(escapeCsv(String.valueOf(value)));
+                }
+            }
+            writer.write("\r\n");
+        }
+    }
+
+    private static String escapeCsv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,249 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.config.RedisConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 浏览→加购→购买转化漏斗。
+ * 每个用户分配一个连续序号，每个阶段按天、按商品各一个位图（另有按天的全部商品位图），
+ * 用户在该阶段出现过则对应位置1；每个用户每个阶段每天每商品只占1位。
+ * 查询时在一次脚本内对日期范围×商品集合的位图BITOP OR得到各阶段用户集，再BITOP AND求逐级转化，
+ * 位图不离开Redis。
+ */
+@Slf4j
+@Service
+public class FunnelService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private RealtimeMetricsService realtimeMetricsService;
+
+    /**
+     * 位图保留天数
+     */
+    private static final long BITMAP_EXPIRE_TIME = 91 * 86400L;
+
+    /**
+     * 单次查询的最大天数和商品数（限制脚本读取的位图数量）
+     */
+    public static final int MAX_RANGE_DAYS = 90;
+    public static final int MAX_PRODUCTS = 100;
+
+    private static final long TEMP_EXPIRE_TIME = 60;
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * KEYS[1]=序号Hash  KEYS[2]=序号计数器  ARGV[1]=用户ID
+     */
+    private static final RedisScript<Long> ORDINAL_SCRIPT = new DefaultRedisScript<>("""
+            local ordinal = redis.call('HGET', KEYS[1], ARGV[1])
+            if ordinal then
+                return tonumber(ordinal)
+            end
+            ordinal = redis.call('INCR', KEYS[2]) - 1
+            redis.call('HSET', KEYS[1], ARGV[1], ordinal)
+            return ordinal
+            """, Long.class);
+
+    /**
+     * KEYS[1..4]=临时键（浏览、加购、购买、交集）  KEYS[5..]=依次为浏览、加购、购买阶段的源位图
+     * ARGV[1..3]=各阶段源位图数量  ARGV[4]=临时键过期秒数
+     * 返回 {浏览用户, 加购用户, 购买用户, 浏览且加购, 浏览且加购且购买}
+     */
+    private static final RedisScript<List> FUNNEL_SCRIPT = new DefaultRedisScript<>("""
+            local function union(dest, from, count)
+                redis.call('DEL', dest)
+                local last = from + count - 1
+                local i = from
+                while i <= last do
+                    local j = math.min(i + 199, last)
+                    redis.call('BITOP', 'OR', dest, dest, unpack(KEYS, i, j))
+                    i = j + 1
+                end
+                redis.call('EXPIRE', dest, ARGV[4])
+            end
+            local nView = tonumber(ARGV[1])
+            local nCart = tonumber(ARGV[2])
+            local nPurchase = tonumber(ARGV[3])
+            union(KEYS[1], 5, nView)
+            union(KEYS[2], 5 + nView, nCart)
+            union(KEYS[3], 5 + nView + nCart, nPurchase)
+            local viewers = redis.call('BITCOUNT', KEYS[1])
+            local carted = redis.call('BITCOUNT', KEYS[2])
+            local purchased = redis.call('BITCOUNT', KEYS[3])
+            redis.call('BITOP', 'AND', KEYS[4], KEYS[1], KEYS[2])
+            local viewCart = redis.call('BITCOUNT', KEYS[4])
+            redis.call('BITOP', 'AND', KEYS[4], KEYS[4], KEYS[3])
+            local viewCartPurchase = redis.call('BITCOUNT', KEYS[4])
+            redis.call('DEL', KEYS[1], KEYS[2], KEYS[3], KEYS[4])
+            return {viewers, carted, purchased, viewCart, viewCartPurchase}
+            """, List.class);
+
+    /**
+     * 用户ID -> 序号，序号分配后不变
+     */
+    private final Cache<String, Long> ordinals = CacheBuilder.newBuilder()
+            .maximumSize(1_000_000)
+            .build();
+
+    public enum Stage {
+        VIEW("view"),
+        CART("cart"),
+        PURCHASE("purchase");
+
+        private final String code;
+
+        Stage(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * 记录用户在某个阶段接触了商品
+     */
+    public void record(Stage stage, String userId, String productId) {
+        if (userId == null || userId.isEmpty() || productId == null) {
+            return;
+        }
+        RealtimeMetricsService.Batch batch = realtimeMetricsService.newBatch();
+        record(batch, stage, userId, productId);
+        realtimeMetricsService.apply(batch);
+    }
+
+    /**
+     * 记录用户在某个阶段接触了商品（收集到批量写入中）
+     */
+    public void record(RealtimeMetricsService.Batch batch, Stage stage, String userId, String productId) {
+        if (userId == null || userId.isEmpty() || productId == null) {
+            return;
+        }
+        Long ordinal = getOrdinal(userId);
+        if (ordinal == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        batch.setbit(bitmapKey(stage, today, productId), ordinal, BITMAP_EXPIRE_TIME);
+        batch.setbit(bitmapKey(stage, today, null), ordinal, BITMAP_EXPIRE_TIME);
+    }
+
+    /**
+     * 计算日期范围（含endDate）内、商品集合（为空表示全部商品）的转化漏斗
+     */
+    public FunnelResult getFunnel(LocalDate startDate, LocalDate endDate, Collection<String> productIds) {
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days <= 0 || days > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Date range must be between 1 and " + MAX_RANGE_DAYS + " days");
+        }
+        List<String> products = productIds != null ? new ArrayList<>(productIds) : List.of();
+        if (products.size() > MAX_PRODUCTS) {
+            throw new IllegalArgumentException("At most " + MAX_PRODUCTS + " products per query");
+        }
+
+        String tempPrefix = RedisConfig.RedisKeys.FUNNEL_PREFIX + "tmp:" + UUID.randomUUID() + ":";
+        List<String> keys = new ArrayList<>();
+        keys.add(tempPrefix + Stage.VIEW.getCode());
+        keys.add(tempPrefix + Stage.CART.getCode());
+        keys.add(tempPrefix + Stage.PURCHASE.getCode());
+        keys.add(tempPrefix + "and");
+
+        int perStage = 0;
+        for (Stage stage : Stage.values()) {
+            int before = keys.size();
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                if (products.isEmpty()) {
+                    keys.add(bitmapKey(stage, date, null));
+                } else {
+                    for (String productId : products) {
+                        keys.add(bitmapKey(stage, date, productId));
+                    }
+                }
+            }
+            perStage = keys.size() - before;
+        }
+
+        List<?> counts = redisService.eval(FUNNEL_SCRIPT, keys, perStage, perStage, perStage, TEMP_EXPIRE_TIME);
+        if (counts == null || counts.size() < 5) {
+            log.error("Failed to compute funnel: {} to {}, products={}", startDate, endDate, products);
+            return null;
+        }
+
+        long viewUsers = ((Number) counts.get(0)).longValue();
+        long viewCartUsers = ((Number) counts.get(3)).longValue();
+        long viewCartPurchaseUsers = ((Number) counts.get(4)).longValue();
+        return FunnelResult.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .productIds(products)
+                .viewUsers(viewUsers)
+                .cartUsers(((Number) counts.get(1)).longValue())
+                .purchaseUsers(((Number) counts.get(2)).longValue())
+                .viewCartUsers(viewCartUsers)
+                .viewCartPurchaseUsers(viewCartPurchaseUsers)
+                .viewToCartRate(rate(viewCartUsers, viewUsers))
+                .cartToPurchaseRate(rate(viewCartPurchaseUsers, viewCartUsers))
+                .viewToPurchaseRate(rate(viewCartPurchaseUsers, viewUsers))
+                .build();
+    }
+
+    private Long getOrdinal(String userId) {
+        Long ordinal = ordinals.getIfPresent(userId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        ordinal = redisService.eval(ORDINAL_SCRIPT,
+                List.of(RedisConfig.RedisKeys.FUNNEL_USER_ORDINAL, RedisConfig.RedisKeys.FUNNEL_USER_SEQ), userId);
+        if (ordinal != null) {
+            ordinals.put(userId, ordinal);
+        }
+        return ordinal;
+    }
+
+    private String bitmapKey(Stage stage, LocalDate date, String productId) {
+        String key = RedisConfig.RedisKeys.FUNNEL_PREFIX + stage.getCode() + ":" + date.format(DAY_FORMATTER);
+        return productId != null ? key + ":" + productId : key;
+    }
+
+    private double rate(long numerator, long denominator) {
+        return denominator > 0 ? (double) numerator / denominator : 0;
+    }
+
+    /**
+     * 漏斗结果：各阶段用户数及逐级转化率
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class FunnelResult {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private List<String> productIds;
+        private long viewUsers;
+        private long cartUsers;
+        private long purchaseUsers;
+        private long viewCartUsers;           // 浏览且加购
+        private long viewCartPurchaseUsers;   // 浏览、加购且购买
+        private double viewToCartRate;
+        private double cartToPurchaseRate;
+        private double viewToPurchaseRate;
+    }
+}
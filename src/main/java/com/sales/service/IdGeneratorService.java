@@ -0,0 +1,206 @@
+package com.sales.service;
+
+import com.sales.config.RedisConfig;
+import com.sales.utils.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单、商品、用户ID生成。
+ * <p>
+ * ID主体为Snowflake的13位Base32形式，节点号通过Redis租约分配：启动时从随机位置起依次尝试SET NX
+ * idgen:{w}:worker:N，持有期间每renewMillis续约一次；续约发现键已被其他节点持有（本节点曾长时间无法续约）时立即改用新节点号。
+ * 只在租约有效期内发号：从最近一次成功获取/续约的请求发出时刻起算leaseMillis（减去安全余量），
+ * 超过后Redis中的键可能已过期并被其他节点取得，生成方法抛出IllegalStateException，直到重新获取租约。
+ * 没有租约时不发号，不使用哈希等方式临时选择节点号。
+ * 订单ID保留 ORD+yyyyMMdd 前缀，order_history按日期的行键范围扫描不受影响。
+ */
+@Slf4j
+@Service
+public class IdGeneratorService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Value("${sales.id.lease-millis:30000}")
+    private long leaseMillis;
+
+    private static final String ORDER_PREFIX = "ORD";
+    private static final String PRODUCT_PREFIX = "P";
+    private static final String USER_PREFIX = "U";
+
+    private static final DateTimeFormatter ORDER_DATE_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * KEYS[1]=节点号键  ARGV[1]=节点ID  ARGV[2]=租约毫秒；空闲或已由本节点持有时获取/续约
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+                return 1
+            end
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS[1]=节点号键  ARGV[1]=节点ID；只删除本节点持有的租约
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName()
+            + "-" + ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    /**
+     * 节点号在获取租约时设置，之前不会被用来发号
+     */
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+
+    private volatile boolean leased;
+
+    /**
+     * 租约可用截止时刻（System.nanoTime），不受墙上时钟调整影响
+     */
+    private volatile long leaseDeadlineNanos;
+
+    @PostConstruct
+    public void init() {
+        if (!acquire()) {
+            log.warn("No worker id lease acquired, id generation unavailable until Redis is reachable");
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (leased) {
+            redisService.eval(RELEASE_SCRIPT, List.of(workerKey(generator.getWorkerId())), nodeId);
+            leased = false;
+        }
+    }
+
+    /**
+     * 续约当前节点号，续约失败时重新获取
+     */
+    @Scheduled(fixedDelayString = "${sales.id.lease-renew-millis:10000}")
+    public void renew() {
+        if (leased) {
+            long requestedAt = System.nanoTime();
+            Long renewed = redisService.eval(ACQUIRE_SCRIPT, List.of(workerKey(generator.getWorkerId())), nodeId, leaseMillis);
+            if (renewed == null) {
+                // Redis不可用：截止时刻前继续发号，之后租约视为丢失
+                if (!leaseValid()) {
+                    log.warn("Worker id lease expired without renewal: workerId={}", generator.getWorkerId());
+                    leased = false;
+                }
+                return;
+            }
+            if (renewed == 1) {
+                extendLease(requestedAt);
+                return;
+            }
+            log.warn("Worker id lease lost: workerId={}", generator.getWorkerId());
+            leased = false;
+        }
+        acquire();
+    }
+
+    private boolean acquire() {
+        int slots = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        int start = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            int workerId = (start + i) % slots;
+            long requestedAt = System.nanoTime();
+            Long acquired = redisService.eval(ACQUIRE_SCRIPT, List.of(workerKey(workerId)), nodeId, leaseMillis);
+            if (acquired == null) {
+                return false;
+            }
+            if (acquired == 1) {
+                generator.setWorkerId(workerId);
+                extendLease(requestedAt);
+                leased = true;
+                log.info("Worker id lease acquired: workerId={}, nodeId={}", workerId, nodeId);
+                return true;
+            }
+        }
+        log.error("All {} worker ids are leased", slots);
+        return false;
+    }
+
+    /**
+     * Redis中的过期时间从脚本执行时起算，晚于请求发出时刻，以请求时刻计算截止时间偏保守；
+     * 再留出租约的1/10作为余量，覆盖两边计时的偏差
+     */
+    private void extendLease(long requestedAt) {
+        leaseDeadlineNanos = requestedAt + TimeUnit.MILLISECONDS.toNanos(leaseMillis - leaseMillis / 10);
+    }
+
+    private boolean leaseValid() {
+        return leased && System.nanoTime() - leaseDeadlineNanos < 0;
+    }
+
+    private SnowflakeIdGenerator leasedGenerator() {
+        if (!leaseValid()) {
+            throw new IllegalStateException("No valid worker id lease, refusing to generate ids");
+        }
+        return generator;
+    }
+
+    /**
+     * ORD + 生成日期(yyyyMMdd) + 13位Base32
+     */
+    public String nextOrderId() {
+        long id = leasedGenerator().nextId();
+        LocalDateTime time = LocalDateTime.ofInstant(SnowflakeIdGenerator.timestampOf(id), ZoneId.systemDefault());
+        return ORDER_PREFIX + time.format(ORDER_DATE_FORMATTER) + SnowflakeIdGenerator.toBase32(id);
+    }
+
+    public String nextProductId() {
+        return PRODUCT_PREFIX + leasedGenerator().nextBase32();
+    }
+
+    public String nextUserId() {
+        return USER_PREFIX + leasedGenerator().nextBase32();
+    }
+
+    public long nextId() {
+        return leasedGenerator().nextId();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("workerId", generator.getWorkerId());
+        stats.put("leased", leased);
+        stats.put("leaseRemainingMillis", leased
+                ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(leaseDeadlineNanos - System.nanoTime())) : 0);
+        return stats;
+    }
+
+    private static String workerKey(int workerId) {
+        return RedisConfig.RedisKeys.ID_WORKER_PREFIX + workerId;
+    }
+}
@@ -0,0 +1,307 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.config.RedisConfig;
+import com.sales.entity.Order;
+import com.sales.repository.OrderRepository;
+import com.sales.repository.SalesDataRepository;
+import com.sales.utils.TDigest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按天的订单实付金额分布（t-digest），用于中位数、p90、p99等分位数查询。
+ * <p>
+ * 支付时写入本节点内存中当天的草图；每flushMillis毫秒把有变化的草图整体写入Redis Hash
+ * digest:amount:{yyyyMMdd} 中本节点的字段（覆盖写，幂等；节点ID含进程启动时间，重启后不会覆盖旧进程的数据）。
+ * 每天零点后把前一天各节点的草图合并为一个，写入HBase中该天总计行的 cf_daily:amount_digest，
+ * Redis中的键保留REDIS_EXPIRE_DAYS天。查询时合并区间内每天的草图，耗时只与天数有关，与订单量无关。
+ */
+@Slf4j
+@Service
+public class OrderAmountDigestService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Value("${sales.digest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sales.digest.compression:200}")
+    private int compression;
+
+    private static final long REDIS_EXPIRE_DAYS = 3;
+
+    private static final int MAX_RANGE_DAYS = 3_660;
+
+    private static final double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99};
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName()
+            + "-" + ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    /**
+     * 本节点各天的草图，访问时对草图加锁
+     */
+    private final Map<LocalDate, TDigest> local = new ConcurrentHashMap<>();
+    private final Set<LocalDate> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已归档到HBase的日期草图不再变化，解码后一直缓存（只读，合并时不修改）
+     */
+    private final Cache<LocalDate, TDigest> closedDays = CacheBuilder.newBuilder()
+            .maximumSize(MAX_RANGE_DAYS)
+            .build();
+
+    /**
+     * 订单支付：按支付日期记录实付金额
+     */
+    public void record(Order order) {
+        if (!enabled || order == null || order.getActualAmount() == null || order.getPayTime() == null) {
+            return;
+        }
+        LocalDate date = order.getPayTime().toLocalDate();
+        TDigest digest = local.computeIfAbsent(date, key -> new TDigest(compression));
+        synchronized (digest) {
+            digest.add(order.getActualAmount().doubleValue());
+        }
+        dirty.add(date);
+    }
+
+    /**
+     * 把有变化的草图写入Redis，并丢弃前天及更早的本地草图
+     */
+    @Scheduled(fixedDelayString = "${sales.digest.flush-millis:10000}")
+    public void flush() {
+        for (LocalDate date : new ArrayList<>(dirty)) {
+            dirty.remove(date);
+            TDigest digest = local.get(date);
+            if (digest == null) {
+                continue;
+            }
+            byte[] bytes;
+            synchronized (digest) {
+                bytes = digest.toBytes();
+            }
+            try {
+                String key = redisKey(date);
+                redisService.hset(key, nodeId, Base64.getEncoder().encodeToString(bytes));
+                redisService.expire(key, REDIS_EXPIRE_DAYS, TimeUnit.DAYS);
+            } catch (Exception e) {
+                dirty.add(date);
+                log.error("Failed to flush amount digest: date={}", date, e);
+            }
+        }
+        LocalDate oldest = LocalDate.now().minusDays(1);
+        local.keySet().removeIf(date -> date.isBefore(oldest) && !dirty.contains(date));
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    /**
+     * 零点后归档前一天
+     */
+    @Scheduled(cron = "${sales.digest.archive-cron:0 10 0 * * *}")
+    public void archiveYesterday() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive(LocalDate.now().minusDays(1));
+        } catch (Exception e) {
+            log.error("Failed to archive amount digest", e);
+        }
+    }
+
+    /**
+     * 合并Redis中各节点的草图写入HBase；Redis中没有数据（过期或节点未写入）时从订单表重新计算
+     */
+    public TDigest archive(LocalDate date) throws IOException {
+        TDigest digest = readRedis(date);
+        if (digest == null) {
+            digest = computeFromOrders(date);
+        }
+        salesDataRepository.putAmountDigest(date, digest.toBytes());
+        closedDays.put(date, digest);
+        log.info("Amount digest archived: date={}, count={}, centroids={}", date, digest.count(), digest.centroidCount());
+        return digest;
+    }
+
+    /**
+     * 从订单表重新计算[startDate, endDate)内已结束日期的草图并写入HBase，返回处理的天数
+     */
+    public int rebuild(LocalDate startDate, LocalDate endDate) throws IOException {
+        LocalDate end = endDate.isAfter(LocalDate.now()) ? LocalDate.now() : endDate;
+        int days = 0;
+        for (LocalDate date = startDate; date.isBefore(end); date = date.plusDays(1)) {
+            TDigest digest = computeFromOrders(date);
+            salesDataRepository.putAmountDigest(date, digest.toBytes());
+            closedDays.put(date, digest);
+            days++;
+        }
+        return days;
+    }
+
+    /**
+     * [startDate, endDate)的订单金额分布，quantiles为空时返回p50、p90、p99。
+     * 既没有归档草图也不在Redis保留期内的日期列入missingDays
+     */
+    public AmountDistribution getDistribution(LocalDate startDate, LocalDate endDate, List<Double> quantiles) throws IOException {
+        long days = ChronoUnit.DAYS.between(startDate, endDate);
+        if (days <= 0 || days > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Date range must be 1.." + MAX_RANGE_DAYS + " days");
+        }
+        double[] qs = quantiles == null || quantiles.isEmpty() ? DEFAULT_QUANTILES
+                : quantiles.stream().mapToDouble(Double::doubleValue).toArray();
+        for (double q : qs) {
+            if (q < 0 || q > 1) {
+                throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        TDigest merged = new TDigest(compression);
+        List<LocalDate> uncached = new ArrayList<>();
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            TDigest closed = closedDays.getIfPresent(date);
+            if (closed != null) {
+                merged.merge(closed);
+            } else if (date.isBefore(today)) {
+                uncached.add(date);
+            } else if (!date.isAfter(today)) {
+                merged.merge(readRedis(date));
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            Map<LocalDate, byte[]> stored = salesDataRepository.findAmountDigests(uncached);
+            for (LocalDate date : uncached) {
+                TDigest digest = TDigest.fromBytes(stored.get(date));
+                if (digest != null) {
+                    closedDays.put(date, digest);
+                } else if (!date.isBefore(today.minusDays(REDIS_EXPIRE_DAYS - 1))) {
+                    // 尚未归档
+                    digest = readRedis(date);
+                }
+                if (digest != null) {
+                    merged.merge(digest);
+                } else {
+                    missing.add(date);
+                }
+            }
+        }
+
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (double q : qs) {
+            values.put("p" + BigDecimal.valueOf(q * 100).stripTrailingZeros().toPlainString(),
+                    toAmount(merged.quantile(q)));
+        }
+        return AmountDistribution.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .count(merged.count())
+                .min(toAmount(merged.min()))
+                .max(toAmount(merged.max()))
+                .quantiles(values)
+                .days((int) days)
+                .missingDays(missing)
+                .build();
+    }
+
+    /**
+     * 当天的q分位数，没有订单时返回null
+     */
+    public BigDecimal getTodayQuantile(double q) {
+        TDigest digest = readRedis(LocalDate.now());
+        return digest != null ? toAmount(digest.quantile(q)) : null;
+    }
+
+    /**
+     * 合并Redis中各节点当天的草图，没有数据或Redis不可用时返回null
+     */
+    private TDigest readRedis(LocalDate date) {
+        Map<Object, Object> fields = redisService.hgetAll(redisKey(date));
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        TDigest merged = new TDigest(compression);
+        for (Object value : fields.values()) {
+            try {
+                merged.merge(TDigest.fromBytes(Base64.getDecoder().decode(value.toString())));
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid amount digest in Redis: date={}", date);
+            }
+        }
+        return merged.count() > 0 ? merged : null;
+    }
+
+    /**
+     * 扫描前一天和当天创建的订单，按支付日期筛选（订单创建后一天内未支付的不计入）
+     */
+    private TDigest computeFromOrders(LocalDate date) throws IOException {
+        TDigest digest = new TDigest(compression);
+        orderRepository.scanOrders(date.minusDays(1), date, null, null, order -> {
+            if (order.getPayTime() != null && order.getActualAmount() != null
+                    && order.getPayTime().toLocalDate().equals(date)) {
+                digest.add(order.getActualAmount().doubleValue());
+            }
+        });
+        return digest;
+    }
+
+    private static String redisKey(LocalDate date) {
+        return RedisConfig.RedisKeys.AMOUNT_DIGEST_PREFIX + date.format(DAY_FORMATTER);
+    }
+
+    private static BigDecimal toAmount(double value) {
+        return Double.isNaN(value) ? null : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 订单金额分布（endDate不含），金额单位为元
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class AmountDistribution {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private long count;
+        private BigDecimal min;
+        private BigDecimal max;
+        private Map<String, BigDecimal> quantiles;      // p50 -> 金额
+        private int days;
+        private List<LocalDate> missingDays;            // 没有草图的日期
+    }
+}
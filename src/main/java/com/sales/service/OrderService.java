@@ -7,6 +7,8 @@ import com.sales.repository.OrderRepository;
 import com.sales.repository.ProductRepository;
 import com.sales.service.CartService;
 import com.sales.service.StockService;
+import com.sales.utils.JsonUtils;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -14,12 +16,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -29,6 +34,9 @@ public class OrderService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+
     @Autowired
     private ProductRepository productRepository;
 
@@ -47,8 +55,41 @@ public class OrderService {
     @Autowired
     private RankingService rankingService;
 
+    @Autowired
+    private QueueService queueService;
+
+    @Autowired
+    private RealtimeMetricsService realtimeMetricsService;
+
+    @Autowired
+    private UniqueCountService uniqueCountService;
+
+    @Autowired
+    private FunnelService funnelService;
+
+    @Autowired
+    private SalesAggregationService salesAggregationService;
+
+    @Autowired
+    private OrderAmountDigestService orderAmountDigestService;
+
+    @Autowired
+    private RealtimeSeriesService realtimeSeriesService;
+
+    @Autowired
+    private SalesSnapshotService salesSnapshotService;
+
     private static final long ORDER_STATUS_EXPIRE_DAYS = 7;
 
+    private static final long REALTIME_METRICS_EXPIRE_SECONDS = 3600;
+
+    private static final long DAILY_METRICS_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(2);
+
+    @PostConstruct
+    public void registerQueueHandlers() {
+        queueService.registerHandler(RedisConfig.RedisKeys.QUEUE_ORDER_PROCESS, this::processPaidOrders);
+    }
+
     /**
      * 创建订单
      */
@@ -94,6 +135,38 @@ public class OrderService {
         return order;
     }
 
+    /**
+     * 批量创建秒杀订单（库存已在秒杀扣减时预占，此处不再锁定商品库存）
+     */
+    public void createSeckillOrders(List<Order> orders) throws IOException {
+        if (orders == null || orders.isEmpty()) {
+            return;
+        }
+
+        for (Order order : orders) {
+            if (order.getOrderId() == null || order.getOrderId().isEmpty()) {
+                order.setOrderId(generateOrderId());
+            }
+            if (order.getCreateTime() == null) {
+                order.setCreateTime(LocalDateTime.now());
+            }
+            if (order.getStatus() == null) {
+                order.setStatus(Order.Status.PENDING_PAYMENT.getCode());
+            }
+            if (order.getDiscountAmount() == null) {
+                order.setDiscountAmount(BigDecimal.ZERO);
+            }
+            calculateOrderAmount(order);
+        }
+
+        orderRepository.batchSave(orders);
+
+        for (Order order : orders) {
+            cacheOrderStatus(order.getOrderId(), order.getStatus());
+        }
+        log.info("Seckill orders saved: count={}", orders.size());
+    }
+
     /**
      * 根据ID获取订单
      */
@@ -156,36 +229,115 @@ public class OrderService {
         // 订单状态写入Redis（实时）
         cacheOrderStatus(order.getOrderId(), order.getStatus());
 
-        // 扣减库存
-        deductOrderStock(order);
+        // 销售数据按分钟聚合后写入sales_data
+        salesAggregationService.publishPaid(order);
+        orderAmountDigestService.record(order);
 
-        // 实时销售看板/统计（Redis）
-        updateRealtimeMetricsOnPaid(order);
+        // 扣减库存、实时看板等副作用交由队列异步处理，队列不可用时同步执行
+        if (!enqueuePaidOrder(order)) {
+            deductOrderStock(order);
+            updateRealtimeMetricsOnPaid(order);
+        }
 
         log.info("Order paid: {}", orderId);
         return true;
     }
 
-    private void updateRealtimeMetricsOnPaid(Order order) {
+    private boolean enqueuePaidOrder(Order order) {
+        Map<String, String> message = new HashMap<>();
+        message.put("event", "PAID");
+        message.put("orderId", order.getOrderId());
+        if (order.getUserId() != null) {
+            message.put("userId", order.getUserId());
+        }
+        message.put("actualAmount", order.getActualAmount() != null ? order.getActualAmount().toPlainString() : "0");
+        if (order.getPayTime() != null) {
+            message.put("payTime", order.getPayTime().toString());
+        }
+        message.put("items", JsonUtils.toJson(order.getItems() != null ? order.getItems() : List.of()));
+        return queueService.enqueue(RedisConfig.RedisKeys.QUEUE_ORDER_PROCESS, message);
+    }
+
+    /**
+     * 消费已支付订单：更新实时看板，并按商品拆分库存扣减任务。
+     * 看板更新按订单ID幂等，重试时不会重复计数；扣减任务可能重复投递，由扣减消费方按订单ID+商品ID去重
+     */
+    private void processPaidOrders(List<Map<String, String>> messages) throws Exception {
+        for (Map<String, String> message : messages) {
+            Order.OrderItem[] items = JsonUtils.fromJson(message.get("items"), Order.OrderItem[].class);
+            Order order = Order.builder()
+                    .orderId(message.get("orderId"))
+                    .userId(message.get("userId"))
+                    .actualAmount(new BigDecimal(message.getOrDefault("actualAmount", "0")))
+                    .payTime(message.containsKey("payTime") ? LocalDateTime.parse(message.get("payTime")) : null)
+                    .items(items != null ? Arrays.asList(items) : List.of())
+                    .build();
+
+            queueService.runOnce(RedisConfig.RedisKeys.QUEUE_ORDER_PROCESS, "metrics:" + order.getOrderId(), () -> {
+                if (!updateRealtimeMetricsOnPaid(order)) {
+                    throw new IOException("Failed to apply realtime metrics: orderId=" + order.getOrderId());
+                }
+            });
+
+            // 同一商品的多个明细合并为一条扣减任务
+            Map<String, Integer> quantities = new LinkedHashMap<>();
+            for (Order.OrderItem item : order.getItems()) {
+                if (item == null || item.getProductId() == null || item.getQuantity() == null) {
+                    continue;
+                }
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                Map<String, String> deduct = new HashMap<>();
+                deduct.put("productId", entry.getKey());
+                deduct.put("quantity", String.valueOf(entry.getValue()));
+                deduct.put("orderId", order.getOrderId());
+                if (!queueService.enqueue(RedisConfig.RedisKeys.QUEUE_STOCK_DEDUCT, deduct)) {
+                    throw new IOException("Failed to enqueue stock deduction: orderId=" + order.getOrderId()
+                            + ", productId=" + entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * 已支付订单的实时指标：今日计数器、今日看板、排行榜，合并为一次pipeline写入
+     *
+     * @return 是否写入成功
+     */
+    private boolean updateRealtimeMetricsOnPaid(Order order) {
         if (order == null) {
-            return;
+            return true;
         }
 
         BigDecimal actualAmount = order.getActualAmount() != null ? order.getActualAmount() : BigDecimal.ZERO;
+        LocalDateTime paidAt = order.getPayTime() != null ? order.getPayTime() : LocalDateTime.now();
+        RealtimeMetricsService.Batch batch = realtimeMetricsService.newBatch();
 
-        // 今日计数器
-        redisService.incr(RedisConfig.RedisKeys.STAT_ORDERS_TODAY, 1);
-        redisService.expire(RedisConfig.RedisKeys.STAT_ORDERS_TODAY, 3600, TimeUnit.SECONDS);
+        // 按天计数器：stat:orders:{yyyyMMdd}
+        String dateKey = paidAt.toLocalDate().format(DateTimeFormatter.BASIC_ISO_DATE);
+        batch.incr(RedisConfig.RedisKeys.STAT_ORDERS_PREFIX + dateKey, 1, DAILY_METRICS_EXPIRE_SECONDS);
+        batch.incrByFloat(RedisConfig.RedisKeys.STAT_SALES_PREFIX + dateKey, actualAmount.doubleValue(), DAILY_METRICS_EXPIRE_SECONDS);
 
-        redisService.incrByFloat(RedisConfig.RedisKeys.STAT_SALES_TODAY, actualAmount.doubleValue());
-        redisService.expire(RedisConfig.RedisKeys.STAT_SALES_TODAY, 3600, TimeUnit.SECONDS);
+        // 分钟序列：订单数、金额（分）、件数
+        long items = 0;
+        if (order.getItems() != null) {
+            for (Order.OrderItem item : order.getItems()) {
+                items += item != null && item.getQuantity() != null ? item.getQuantity() : 0;
+            }
+        }
+        realtimeSeriesService.record(batch, RealtimeSeriesService.Metric.ORDERS, paidAt, 1);
+        realtimeSeriesService.record(batch, RealtimeSeriesService.Metric.SALES, paidAt,
+                actualAmount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue());
+        realtimeSeriesService.record(batch, RealtimeSeriesService.Metric.ITEMS, paidAt, items);
 
         // 今日看板 Hash：dashboard:{yyyyMMdd}
-        String dateKey = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
         String dashboardKey = RedisConfig.RedisKeys.DASHBOARD_PREFIX + dateKey;
-        redisService.hincrByFloat(dashboardKey, "total_amount", actualAmount.doubleValue());
-        redisService.hincrBy(dashboardKey, "order_count", 1);
-        redisService.expire(dashboardKey, 3600, TimeUnit.SECONDS);
+        batch.hincrByFloat(dashboardKey, "total_amount", actualAmount.doubleValue(), REALTIME_METRICS_EXPIRE_SECONDS);
+        batch.hincrBy(dashboardKey, "order_count", 1, REALTIME_METRICS_EXPIRE_SECONDS);
+
+        // 今日支付用户去重
+        uniqueCountService.recordBuyer(batch, order.getUserId());
 
         // 热门商品：按订单金额/数量加权
         if (order.getItems() != null) {
@@ -195,12 +347,15 @@ public class OrderService {
                 }
                 int qty = item.getQuantity() != null ? item.getQuantity() : 0;
                 if (qty > 0) {
-                    rankingService.addSalesScore(item.getProductId(), qty);
+                    rankingService.addSalesScore(batch, item.getProductId(), qty);
                 }
                 BigDecimal itemAmount = item.getAmount() != null ? item.getAmount() : BigDecimal.ZERO;
-                rankingService.addPurchaseScore(item.getProductId(), itemAmount.doubleValue());
+                rankingService.addPurchaseScore(batch, item.getProductId(), itemAmount.doubleValue());
+                funnelService.record(batch, FunnelService.Stage.PURCHASE, order.getUserId(), item.getProductId());
             }
         }
+
+        return realtimeMetricsService.apply(batch);
     }
 
     /**
@@ -290,10 +445,45 @@ public class OrderService {
         // 释放库存
         releaseOrderStock(order);
 
+        salesAggregationService.publishCancelled(order);
+
         log.info("Order cancelled: {}", orderId);
         return true;
     }
 
+    /**
+     * 已支付订单退款：订单转为已退款（与未支付取消区分，重建销售数据时仍按支付日计入销量），库存回补，计入退货
+     */
+    @Transactional
+    public boolean refundOrder(String orderId) throws IOException {
+        Order order = orderRepository.findById(orderId);
+        if (order == null) {
+            log.error("Order not found: {}", orderId);
+            return false;
+        }
+
+        if (!order.canRefund()) {
+            log.error("Order cannot be refunded: {}, status={}", orderId, order.getStatus());
+            return false;
+        }
+
+        // 更新订单状态
+        order.setStatus(Order.Status.REFUNDED.getCode());
+        order.setRefundTime(LocalDateTime.now());
+        orderRepository.save(order);
+
+        // 订单状态写入Redis（实时）
+        cacheOrderStatus(order.getOrderId(), order.getStatus());
+
+        // 回补库存
+        releaseOrderStock(order);
+
+        salesAggregationService.publishRefunded(order);
+
+        log.info("Order refunded: {}", orderId);
+        return true;
+    }
+
     /**
      * 更新订单状态
      */
@@ -311,6 +501,9 @@ public class OrderService {
         }
         String key = RedisConfig.RedisKeys.ORDER_STATUS_PREFIX + orderId;
         redisService.set(key, String.valueOf(status), ORDER_STATUS_EXPIRE_DAYS, TimeUnit.DAYS);
+
+        // 已结束日期的订单快照随之失效
+        salesSnapshotService.markOrderChanged(orderId);
     }
 
     private Integer getCachedOrderStatus(String orderId) {
@@ -486,8 +679,7 @@ public class OrderService {
      * 生成订单ID
      */
     private String generateOrderId() {
-        return "ORD" + LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + 
-               UUID.randomUUID().toString().substring(0, 4).toUpperCase();
+        return idGeneratorService.nextOrderId();
     }
 
     /**
@@ -15,7 +15,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -24,12 +24,18 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+
     @Autowired
     private StockService stockService;
 
     @Autowired
     private RankingService rankingService;
 
+    @Autowired
+    private RankingSnapshotService rankingSnapshotService;
+
     /**
      * 创建商品
      */
@@ -265,25 +271,39 @@ public class ProductService {
     }
 
     /**
-     * 获取热销商品
+     * 获取热销商品（优先读取热门榜快照，不访问后端）
      */
     public List<Product> getHotProducts(int limit) throws IOException {
-        // 从Redis获取热销商品ID列表
+        RankingSnapshotService.RankingSnapshot snapshot = rankingSnapshotService.getSnapshot("hot", limit);
+        if (!snapshot.getEntries().isEmpty() && limit <= RankingSnapshotService.SNAPSHOT_SIZE) {
+            return snapshot.getEntries().stream()
+                    .filter(entry -> entry.getName() != null)
+                    .map(entry -> Product.builder()
+                            .productId(entry.getProductId())
+                            .name(entry.getName())
+                            .category(entry.getCategory())
+                            .price(entry.getPrice())
+                            .saleCount(entry.getSaleCount())
+                            .images(entry.getImage() != null ? List.of(entry.getImage()) : null)
+                            .realTimeStock(entry.getStock())
+                            .build())
+                    .toList();
+        }
+
+        // 快照未生成或超出快照范围：批量查询商品和库存
         List<String> hotProductIds = rankingService.getHotProducts(limit)
                 .stream()
                 .map(Object::toString)
                 .toList();
 
-        // 批量获取商品信息
-        List<Product> hotProducts = new java.util.ArrayList<>();
-        for (String productId : hotProductIds) {
-            try {
-                Product product = getProductById(productId);
-                if (product != null) {
-                    hotProducts.add(product);
-                }
-            } catch (IOException e) {
-                log.error("Failed to get hot product: productId={}", productId, e);
+        Map<String, Product> products = productRepository.findByIds(hotProductIds);
+        List<Integer> stocks = stockService.batchGetStock(hotProductIds);
+        List<Product> hotProducts = new java.util.ArrayList<>(products.size());
+        for (int i = 0; i < hotProductIds.size(); i++) {
+            Product product = products.get(hotProductIds.get(i));
+            if (product != null) {
+                product.setRealTimeStock(stocks.get(i));
+                hotProducts.add(product);
             }
         }
 
@@ -330,8 +350,7 @@ public class ProductService {
      * 生成商品ID
      */
     private String generateProductId() {
-        // 简单的ID生成策略，实际项目中可以使用更复杂的算法
-        return "P" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return idGeneratorService.nextProductId();
     }
 
     /**
@@ -0,0 +1,369 @@
+package com.sales.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sales.config.QueueProperties;
+import com.sales.config.RedisConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisCallback;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 基于Redis Streams消费组的异步任务队列。
+ * 生产方XADD后立即返回；每个队列按配置启动若干消费线程批量XREADGROUP并逐批ACK。
+ * 处理失败的消息保持未确认状态，由定时任务在空闲超时后XCLAIM重试，
+ * 投递次数达到上限后转入死信流（队列名 + :dlq）。
+ * <p>
+ * 投递语义为至少一次：整批失败后逐条重试、XCLAIM重新投递都会让已处理过的消息再次进入处理器，
+ * 有副作用的处理器应通过{@link #runOnce}按业务键去重。
+ */
+@Slf4j
+@Service
+public class QueueService {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private QueueProperties queueProperties;
+
+    private final Map<String, BatchHandler> handlers = new ConcurrentHashMap<>();
+
+    private final List<ExecutorService> workerPools = new CopyOnWriteArrayList<>();
+
+    /**
+     * 处理器收到的消息中附带的流消息ID字段，业务键缺失时可用作去重键
+     */
+    public static final String MESSAGE_ID_FIELD = "_id";
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    private volatile boolean running;
+
+    /**
+     * 批量消息处理器，抛出异常表示整批失败（随后会逐条重试以隔离坏消息，批内已成功的消息也会再次收到）
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+        void handle(List<Map<String, String>> messages) throws Exception;
+    }
+
+    /**
+     * 幂等执行的副作用
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * 注册队列处理器，需在应用启动完成前调用
+     */
+    public void registerHandler(String queue, BatchHandler handler) {
+        handlers.put(queue, handler);
+        log.info("Queue handler registered: queue={}", queue);
+    }
+
+    /**
+     * 投递消息
+     *
+     * @return 是否投递成功；队列未启用或Redis异常时返回false，调用方应同步执行
+     */
+    public boolean enqueue(String queue, Map<String, String> message) {
+        if (!queueProperties.isEnabled()) {
+            return false;
+        }
+        try {
+            RecordId recordId = stringRedisTemplate.opsForStream()
+                    .add(StreamRecords.newRecord().in(queue).ofMap(message));
+            log.debug("Message enqueued: queue={}, id={}", queue, recordId);
+            return recordId != null;
+        } catch (Exception e) {
+            log.error("Failed to enqueue message: queue={}, message={}", queue, message, e);
+            return false;
+        }
+    }
+
+    /**
+     * 同一队列中同一业务键的副作用只执行一次。
+     * 已完成标记（队列名 + :done: + key）存在时跳过；否则以短过期的执行中标记（队列名 + :running: + key）SET NX 占用，
+     * task成功后才写入已完成标记。占用失败（其它消费者正在执行，或执行者退出后标记尚未过期）时抛出，
+     * 消息保持未确认，之后重新投递时再判断；task失败时删除执行中标记并抛出。
+     *
+     * @return 是否执行了task
+     */
+    public boolean runOnce(String queue, String key, Task task) throws Exception {
+        String doneMarker = queue + RedisConfig.RedisKeys.QUEUE_DONE_SUFFIX + key;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(doneMarker))) {
+            log.debug("Queue task already processed, skipped: queue={}, key={}", queue, key);
+            return false;
+        }
+
+        String runningMarker = queue + RedisConfig.RedisKeys.QUEUE_RUNNING_SUFFIX + key;
+        Boolean claimed = stringRedisTemplate.opsForValue().setIfAbsent(runningMarker, nodeId,
+                Duration.ofMillis(queueProperties.getRunningTtlMillis()));
+        if (!Boolean.TRUE.equals(claimed)) {
+            throw new IllegalStateException("Queue task in progress elsewhere: queue=" + queue + ", key=" + key);
+        }
+        try {
+            // 占用前另一消费者可能刚完成（先写已完成标记、再删执行中标记）
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(doneMarker))) {
+                return false;
+            }
+            task.run();
+            stringRedisTemplate.opsForValue().set(doneMarker, nodeId,
+                    Duration.ofSeconds(queueProperties.getProcessedTtlSeconds()));
+            return true;
+        } finally {
+            try {
+                stringRedisTemplate.delete(runningMarker);
+            } catch (Exception e) {
+                // 标记到期后自动释放
+                log.warn("Failed to release queue task marker: {}", runningMarker, e);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        if (!queueProperties.isEnabled() || handlers.isEmpty()) {
+            log.info("Queue workers not started: enabled={}, handlers={}", queueProperties.isEnabled(), handlers.size());
+            return;
+        }
+
+        running = true;
+        for (String queue : handlers.keySet()) {
+            ensureGroup(queue);
+
+            int concurrency = Math.max(1, queueProperties.getConcurrency(queue));
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                    .setNameFormat("Sales-Queue-" + queue + "-%d")
+                    .setDaemon(true)
+                    .build());
+            workerPools.add(pool);
+
+            for (int i = 0; i < concurrency; i++) {
+                String consumerName = nodeId + "-" + i;
+                pool.submit(() -> runWorker(queue, consumerName));
+            }
+            log.info("Queue workers started: queue={}, concurrency={}", queue, concurrency);
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        running = false;
+        for (ExecutorService pool : workerPools) {
+            pool.shutdownNow();
+        }
+        workerPools.clear();
+    }
+
+    /**
+     * 接管空闲超时的待确认消息：重试或转入死信队列
+     */
+    @Scheduled(fixedDelayString = "${sales.queue.reclaim-interval-millis:30000}")
+    public void reclaimPendingMessages() {
+        if (!running) {
+            return;
+        }
+
+        for (String queue : handlers.keySet()) {
+            try {
+                reclaim(queue);
+                trimAcknowledged(queue);
+            } catch (Exception e) {
+                log.error("Failed to reclaim pending messages: queue={}", queue, e);
+            }
+        }
+    }
+
+    private void runWorker(String queue, String consumerName) {
+        BatchHandler handler = handlers.get(queue);
+        StreamOperations<String, Object, Object> streamOps = stringRedisTemplate.opsForStream();
+        Consumer consumer = Consumer.from(queueProperties.getGroup(), consumerName);
+        StreamReadOptions readOptions = StreamReadOptions.empty()
+                .count(queueProperties.getBatchSize())
+                .block(Duration.ofMillis(queueProperties.getBlockMillis()));
+        StreamOffset<String> offset = StreamOffset.create(queue, ReadOffset.lastConsumed());
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                List<MapRecord<String, Object, Object>> records = streamOps.read(consumer, readOptions, offset);
+                if (records != null && !records.isEmpty()) {
+                    process(queue, handler, records);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("Queue worker error: queue={}, consumer={}", queue, consumerName, e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        log.info("Queue worker stopped: queue={}, consumer={}", queue, consumerName);
+    }
+
+    private void process(String queue, BatchHandler handler, List<MapRecord<String, Object, Object>> records) {
+        List<Map<String, String>> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<String, String> message = toMessage(record);
+            message.put(MESSAGE_ID_FIELD, record.getId().getValue());
+            messages.add(message);
+        }
+
+        try {
+            handler.handle(messages);
+            acknowledge(queue, records);
+            log.debug("Queue batch processed: queue={}, size={}", queue, records.size());
+            return;
+        } catch (Exception e) {
+            log.warn("Queue batch failed, retrying individually: queue={}, size={}", queue, records.size(), e);
+        }
+
+        for (int i = 0; i < records.size(); i++) {
+            MapRecord<String, Object, Object> record = records.get(i);
+            try {
+                handler.handle(Collections.singletonList(messages.get(i)));
+                acknowledge(queue, Collections.singletonList(record));
+            } catch (Exception e) {
+                // 不确认，等待reclaimPendingMessages重试或转入死信
+                log.error("Queue message failed: queue={}, id={}", queue, record.getId(), e);
+            }
+        }
+    }
+
+    private void reclaim(String queue) {
+        StreamOperations<String, Object, Object> streamOps = stringRedisTemplate.opsForStream();
+        String group = queueProperties.getGroup();
+        String reclaimer = nodeId + "-reclaim";
+        Duration minIdle = Duration.ofMillis(queueProperties.getReclaimIdleMillis());
+
+        PendingMessages pendingMessages = streamOps.pending(queue, group, Range.unbounded(), queueProperties.getBatchSize());
+        for (PendingMessage pending : pendingMessages) {
+            if (pending.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) {
+                continue;
+            }
+
+            // XCLAIM本身带空闲时间条件，多个节点并发接管时只有一个成功
+            List<MapRecord<String, Object, Object>> claimed = streamOps.claim(queue, group, reclaimer, minIdle, pending.getId());
+            if (claimed == null || claimed.isEmpty()) {
+                continue;
+            }
+
+            if (pending.getTotalDeliveryCount() >= queueProperties.getMaxDeliveries()) {
+                deadLetter(queue, claimed.get(0), pending.getTotalDeliveryCount());
+            } else {
+                process(queue, handlers.get(queue), claimed);
+            }
+        }
+    }
+
+    /**
+     * 删除已确认的消息：XTRIM MINID 只删除ID小于最早待确认消息的条目，没有待确认消息时以消费组最后投递的ID为界，
+     * 未确认和尚未投递的消息都保留，仍能被接管重试或转入死信（需要Redis 6.2+）
+     */
+    private void trimAcknowledged(String queue) {
+        StreamOperations<String, Object, Object> streamOps = stringRedisTemplate.opsForStream();
+        String group = queueProperties.getGroup();
+
+        String minId = null;
+        PendingMessagesSummary summary = streamOps.pending(queue, group);
+        if (summary != null && summary.getTotalPendingMessages() > 0) {
+            minId = summary.minMessageId();
+        } else {
+            for (StreamInfo.XInfoGroup info : streamOps.groups(queue)) {
+                if (group.equals(info.groupName())) {
+                    minId = info.lastDeliveredId();
+                }
+            }
+        }
+        if (minId == null || "0-0".equals(minId)) {
+            return;
+        }
+
+        byte[] key = queue.getBytes(StandardCharsets.UTF_8);
+        byte[] threshold = minId.getBytes(StandardCharsets.UTF_8);
+        Object trimmed = stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XTRIM",
+                key, "MINID".getBytes(StandardCharsets.UTF_8), "~".getBytes(StandardCharsets.UTF_8), threshold));
+        log.debug("Queue trimmed: queue={}, minId={}, removed={}", queue, minId, trimmed);
+    }
+
+    private void deadLetter(String queue, MapRecord<String, Object, Object> record, long deliveries) {
+        Map<String, String> message = new LinkedHashMap<>(toMessage(record));
+        message.put("_source_id", record.getId().getValue());
+        message.put("_deliveries", String.valueOf(deliveries));
+
+        String deadLetterQueue = queue + RedisConfig.RedisKeys.QUEUE_DEAD_LETTER_SUFFIX;
+        stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(deadLetterQueue).ofMap(message));
+        acknowledge(queue, Collections.singletonList(record));
+
+        log.error("Message moved to dead letter queue: queue={}, id={}, deliveries={}", queue, record.getId(), deliveries);
+    }
+
+    private void acknowledge(String queue, List<MapRecord<String, Object, Object>> records) {
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        stringRedisTemplate.opsForStream().acknowledge(queue, queueProperties.getGroup(), ids);
+    }
+
+    private void ensureGroup(String queue) {
+        byte[] key = queue.getBytes(StandardCharsets.UTF_8);
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(key, queueProperties.getGroup(), ReadOffset.from("0-0"), true));
+            log.info("Consumer group created: queue={}, group={}", queue, queueProperties.getGroup());
+        } catch (Exception e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message != null && message.contains("BUSYGROUP")) {
+                log.debug("Consumer group already exists: queue={}", queue);
+            } else {
+                log.error("Failed to create consumer group: queue={}", queue, e);
+            }
+        }
+    }
+
+    private Map<String, String> toMessage(MapRecord<String, Object, Object> record) {
+        Map<String, String> message = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : record.getValue().entrySet()) {
+            message.put(String.valueOf(entry.getKey()), entry.getValue() != null ? String.valueOf(entry.getValue()) : null);
+        }
+        return message;
+    }
+}
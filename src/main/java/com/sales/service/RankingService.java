@@ -1,12 +1,33 @@
 package com.sales.service;
 
 import com.sales.config.RedisConfig;
+import com.sales.utils.HeavyHitterSketch;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -15,150 +36,225 @@ public class RankingService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private ReactiveRedisService reactiveRedisService;
+
+    @Autowired
+    private RealtimeMetricsService realtimeMetricsService;
+
+    /**
+     * 每个逻辑排行榜拆分的分片数；商品按ID哈希固定落在一个分片，修改分片数后已有数据需重建
+     */
+    @Value("${sales.ranking.shards:8}")
+    private int shardCount;
+
     private static final long RANKING_EXPIRE_TIME = 86400; // 24小时
 
     /**
-     * 增加商品销售分数
+     * 热门商品本地统计：Count-Min 4×2048（ε≈0.13%，δ≈1.8%），候选集4096，每次刷新写入前500
+     */
+    private static final int HOT_FLUSH_TOP_K = 500;
+    private final HeavyHitterSketch hotProductSketch = new HeavyHitterSketch(4, 2048, 4096);
+
+    private static final int WEEKLY_DAYS = 7;
+    private static final int MONTHLY_DAYS = 30;
+
+    /**
+     * 可查询的最大窗口天数，日榜按此保留
+     */
+    private static final int MAX_WINDOW_DAYS = 90;
+    private static final long DAY_BUCKET_EXPIRE_TIME = (MAX_WINDOW_DAYS + 1) * RANKING_EXPIRE_TIME;
+
+    /**
+     * 窗口榜缓存时长；本节点计算后超过WINDOW_STALE_MILLIS再读取时重新合并
+     */
+    private static final long WINDOW_EXPIRE_TIME = 60;
+    private static final long WINDOW_STALE_MILLIS = 30_000;
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * KEYS[1]=窗口榜键  KEYS[2..n]=日榜键  ARGV[1]=窗口榜过期秒数
+     */
+    private static final RedisScript<Long> UNION_WINDOW_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZUNIONSTORE', KEYS[1], #KEYS - 1, unpack(KEYS, 2))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return redis.call('ZCARD', KEYS[1])
+            """, Long.class);
+
+    /**
+     * 窗口（如"7d:20240101"）-> 本节点最近一次合并时间
+     */
+    private final Map<String, Long> windowComputedAt = new ConcurrentHashMap<>();
+
+    /**
+     * 增加商品销售分数（计入当日日榜）
      */
     public void addSalesScore(String productId, double score) {
-        String rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
-        redisService.zadd(rankKey, score, productId);
-        
-        // 设置过期时间
-        redisService.expire(rankKey, RANKING_EXPIRE_TIME, java.util.concurrent.TimeUnit.SECONDS);
+        RealtimeMetricsService.Batch batch = realtimeMetricsService.newBatch();
+        addSalesScore(batch, productId, score);
+        realtimeMetricsService.apply(batch);
         
         log.info("Added sales score: productId={}, score={}", productId, score);
     }
 
+    /**
+     * 增加商品销售分数（收集到批量写入中）
+     */
+    public void addSalesScore(RealtimeMetricsService.Batch batch, String productId, double score) {
+        batch.zincrby(dayKey(LocalDate.now(), shardOf(productId)), productId, score, DAY_BUCKET_EXPIRE_TIME);
+    }
+
     /**
      * 增加周销售分数
+     *
+     * @deprecated 周榜由最近7天日榜合并得到，分数直接计入当日日榜
      */
+    @Deprecated
     public void addWeeklySalesScore(String productId, double score) {
-        String rankKey = RedisConfig.RedisKeys.RANK_WEEKLY_SALE;
-        redisService.zadd(rankKey, score, productId);
-        
-        // 设置过期时间（7天）
-        redisService.expire(rankKey, 7 * RANKING_EXPIRE_TIME, java.util.concurrent.TimeUnit.SECONDS);
-        
-        log.info("Added weekly sales score: productId={}, score={}", productId, score);
+        addSalesScore(productId, score);
     }
 
     /**
      * 增加月销售分数
+     *
+     * @deprecated 月榜由最近30天日榜合并得到，分数直接计入当日日榜
      */
+    @Deprecated
     public void addMonthlySalesScore(String productId, double score) {
-        String rankKey = RedisConfig.RedisKeys.RANK_MONTHLY_SALE;
-        redisService.zadd(rankKey, score, productId);
-        
-        // 设置过期时间（30天）
-        redisService.expire(rankKey, 30 * RANKING_EXPIRE_TIME, java.util.concurrent.TimeUnit.SECONDS);
-        
-        log.info("Added monthly sales score: productId={}, score={}", productId, score);
+        addSalesScore(productId, score);
     }
 
     /**
      * 获取日销售排行榜
      */
     public Set<Object> getDailySalesRanking(int limit) {
-        String rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
-        return redisService.zrevrange(rankKey, 0, limit - 1);
+        return toMembers(getTopK("daily", limit));
     }
 
     /**
      * 获取周销售排行榜
      */
     public Set<Object> getWeeklySalesRanking(int limit) {
-        String rankKey = RedisConfig.RedisKeys.RANK_WEEKLY_SALE;
-        return redisService.zrevrange(rankKey, 0, limit - 1);
+        return toMembers(getTopK("weekly", limit));
     }
 
     /**
      * 获取月销售排行榜
      */
     public Set<Object> getMonthlySalesRanking(int limit) {
-        String rankKey = RedisConfig.RedisKeys.RANK_MONTHLY_SALE;
-        return redisService.zrevrange(rankKey, 0, limit - 1);
+        return toMembers(getTopK("monthly", limit));
+    }
+
+    /**
+     * 获取最近N天销售排行榜（含今天）
+     */
+    public Set<Object> getSalesRanking(int days, int limit) {
+        return toMembers(getTopK(days + "d", limit));
     }
 
     /**
      * 获取商品在日排行榜中的排名
      */
     public Long getDailyRank(String productId) {
-        String rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
-        Long rank = redisService.zrevrank(rankKey, productId);
-        return rank != null ? rank + 1 : null; // 排名从1开始
+        return getRank("daily", productId); // 排名从1开始
     }
 
     /**
      * 获取商品在周排行榜中的排名
      */
     public Long getWeeklyRank(String productId) {
-        String rankKey = RedisConfig.RedisKeys.RANK_WEEKLY_SALE;
-        Long rank = redisService.zrevrank(rankKey, productId);
-        return rank != null ? rank + 1 : null;
+        return getRank("weekly", productId);
     }
 
     /**
      * 获取商品在月排行榜中的排名
      */
     public Long getMonthlyRank(String productId) {
-        String rankKey = RedisConfig.RedisKeys.RANK_MONTHLY_SALE;
-        Long rank = redisService.zrevrank(rankKey, productId);
-        return rank != null ? rank + 1 : null;
+        return getRank("monthly", productId);
     }
 
     /**
      * 获取商品日销售分数
      */
     public Double getDailyScore(String productId) {
-        String rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
-        return redisService.zscore(rankKey, productId);
+        return getScore("daily", productId);
     }
 
     /**
      * 获取商品周销售分数
      */
     public Double getWeeklyScore(String productId) {
-        String rankKey = RedisConfig.RedisKeys.RANK_WEEKLY_SALE;
-        return redisService.zscore(rankKey, productId);
+        return getScore("weekly", productId);
     }
 
     /**
      * 获取商品月销售分数
      */
     public Double getMonthlyScore(String productId) {
-        String rankKey = RedisConfig.RedisKeys.RANK_MONTHLY_SALE;
-        return redisService.zscore(rankKey, productId);
+        return getScore("monthly", productId);
     }
 
     /**
-     * 增加热门商品分数
+     * 增加热门商品分数（先在本地热点统计中累加，由定时任务合并写入Redis）
      */
     public void addHotProductScore(String productId, double score) {
-        String hotKey = RedisConfig.RedisKeys.HOT_PRODUCTS;
-        redisService.zincrby(hotKey, score, productId);
-        
-        // 设置过期时间
-        redisService.expire(hotKey, RANKING_EXPIRE_TIME, java.util.concurrent.TimeUnit.SECONDS);
+        hotProductSketch.add(productId, score);
         
-        log.info("Added hot product score: productId={}, score={}", productId, score);
+        log.debug("Added hot product score: productId={}, score={}", productId, score);
+    }
+
+    /**
+     * 将本地累计的热门商品分数Top-K增量写入Redis
+     */
+    @Scheduled(fixedDelayString = "${sales.ranking.hot-flush-millis:200}")
+    public void flushHotProductScores() {
+        flushHotProductScores(HOT_FLUSH_TOP_K);
+    }
+
+    @PreDestroy
+    public void flushAllHotProductScores() {
+        flushHotProductScores(Integer.MAX_VALUE);
+    }
+
+    private void flushHotProductScores(int topK) {
+        Map<String, Double> deltas = hotProductSketch.drainTopK(topK);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        RealtimeMetricsService.Batch batch = realtimeMetricsService.newBatch();
+        deltas.forEach((productId, delta) ->
+                batch.zincrby(hotKey(shardOf(productId)), productId, delta, RANKING_EXPIRE_TIME));
+        realtimeMetricsService.apply(batch);
+        log.debug("Hot product scores flushed: count={}", deltas.size());
+    }
+
+    /**
+     * 本地热点统计的误差参数与累计量
+     */
+    public Map<String, Object> getHotProductSketchStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("epsilon", hotProductSketch.getEpsilon());
+        stats.put("delta", hotProductSketch.getDelta());
+        stats.put("candidates", hotProductSketch.getCandidateCount());
+        stats.put("flushedScore", hotProductSketch.getDrainedScore());
+        stats.put("droppedScore", hotProductSketch.getDroppedScore());
+        return stats;
     }
 
     /**
      * 获取热门商品排行榜
      */
     public Set<Object> getHotProducts(int limit) {
-        String hotKey = RedisConfig.RedisKeys.HOT_PRODUCTS;
-        return redisService.zrevrange(hotKey, 0, limit - 1);
+        return toMembers(getTopK("hot", limit));
     }
 
     /**
      * 获取热门商品排名
      */
     public Long getHotProductRank(String productId) {
-        String hotKey = RedisConfig.RedisKeys.HOT_PRODUCTS;
-        Long rank = redisService.zrevrank(hotKey, productId);
-        return rank != null ? rank + 1 : null;
+        return getRank("hot", productId);
     }
 
     /**
@@ -182,30 +278,34 @@ public class RankingService {
         addHotProductScore(productId, amount / 100.0); // 每100元1分
     }
 
+    /**
+     * 增加商品购买分数（与其他热度分数一起经本地热点统计合并写入，batch中不再单独写入）
+     */
+    public void addPurchaseScore(RealtimeMetricsService.Batch batch, String productId, double amount) {
+        addPurchaseScore(productId, amount);
+    }
+
     /**
      * 清除日排行榜
      */
     public void clearDailyRanking() {
-        String rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
-        redisService.del(rankKey);
+        clearRecentDays(1);
         log.info("Cleared daily sales ranking");
     }
 
     /**
-     * 清除周排行榜
+     * 清除周排行榜（删除最近7天的日榜）
      */
     public void clearWeeklyRanking() {
-        String rankKey = RedisConfig.RedisKeys.RANK_WEEKLY_SALE;
-        redisService.del(rankKey);
+        clearRecentDays(WEEKLY_DAYS);
         log.info("Cleared weekly sales ranking");
     }
 
     /**
-     * 清除月排行榜
+     * 清除月排行榜（删除最近30天的日榜）
      */
     public void clearMonthlyRanking() {
-        String rankKey = RedisConfig.RedisKeys.RANK_MONTHLY_SALE;
-        redisService.del(rankKey);
+        clearRecentDays(MONTHLY_DAYS);
         log.info("Cleared monthly sales ranking");
     }
 
@@ -213,8 +313,8 @@ public class RankingService {
      * 清除热门商品排行榜
      */
     public void clearHotProducts() {
-        String hotKey = RedisConfig.RedisKeys.HOT_PRODUCTS;
-        redisService.del(hotKey);
+        hotProductSketch.clear();
+        redisService.del(resolveRankKeys("hot").toArray(new String[0]));
         log.info("Cleared hot products ranking");
     }
 
@@ -227,39 +327,386 @@ public class RankingService {
             return;
         }
 
-        String rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
+        RealtimeMetricsService.Batch batch = realtimeMetricsService.newBatch();
         for (int i = 0; i < productIds.size(); i++) {
-            redisService.zadd(rankKey, scores.get(i), productIds.get(i));
+            addSalesScore(batch, productIds.get(i), scores.get(i));
         }
-        
-        redisService.expire(rankKey, RANKING_EXPIRE_TIME, java.util.concurrent.TimeUnit.SECONDS);
+        realtimeMetricsService.apply(batch);
         
         log.info("Batch added sales scores: count={}", productIds.size());
     }
 
+    /**
+     * 预先合并周榜、月榜，读请求通常直接命中缓存
+     */
+    @Scheduled(fixedDelayString = "${sales.ranking.window-refresh-millis:30000}")
+    public void refreshStandardWindows() {
+        LocalDate today = LocalDate.now();
+        computeWindow(WEEKLY_DAYS, today);
+        computeWindow(MONTHLY_DAYS, today);
+    }
+
     /**
      * 获取排行榜统计信息
      */
     public long getRankingSize(String rankingType) {
-        String rankKey;
+        List<String> rankKeys = resolveRankKeys(rankingType);
+        if (rankKeys == null) {
+            return 0;
+        }
+        
+        List<Object> sizes = redisService.executePipelined(ops -> rankKeys.forEach(key -> ops.opsForZSet().zCard(key)));
+        long total = 0;
+        if (sizes != null) {
+            for (Object size : sizes) {
+                total += size instanceof Number ? ((Number) size).longValue() : 0;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 获取排行榜前limit名及分数：各分片各取前limit名后多路归并
+     */
+    public List<ZSetOperations.TypedTuple<Object>> getTopK(String rankingType, int limit) {
+        return getRankingsWithScores(List.of(rankingType), limit).getOrDefault(rankingType, List.of());
+    }
+
+    /**
+     * 一次pipeline读取多个排行榜（全部分片）的前limit名及分数，结果按入参顺序，非法类型不出现在结果中
+     */
+    public Map<String, List<ZSetOperations.TypedTuple<Object>>> getRankingsWithScores(List<String> rankingTypes, int limit) {
+        List<String> types = new ArrayList<>(rankingTypes.size());
+        List<String> rankKeys = new ArrayList<>(rankingTypes.size() * shardCount);
+        for (String rankingType : rankingTypes) {
+            List<String> keys = resolveRankKeys(rankingType);
+            if (keys != null) {
+                types.add(rankingType);
+                rankKeys.addAll(keys);
+            }
+        }
+
+        Map<String, List<ZSetOperations.TypedTuple<Object>>> rankings = new LinkedHashMap<>();
+        if (limit <= 0 || rankKeys.isEmpty()) {
+            return rankings;
+        }
+        List<Set<ZSetOperations.TypedTuple<Object>>> results = redisService.zrevrangeWithScores(rankKeys, 0, limit - 1);
+        if (results == null || results.size() < rankKeys.size()) {
+            return rankings;
+        }
+        for (int i = 0; i < types.size(); i++) {
+            List<Collection<ZSetOperations.TypedTuple<Object>>> shards = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                shards.add(results.get(i * shardCount + shard));
+            }
+            rankings.put(types.get(i), mergeTopK(shards, limit));
+        }
+        return rankings;
+    }
+
+    /**
+     * 获取商品分数：只访问商品所在分片
+     */
+    public Double getScore(String rankingType, String productId) {
+        List<String> rankKeys = resolveRankKeys(rankingType);
+        if (rankKeys == null) {
+            return null;
+        }
+        return redisService.zscore(rankKeys.get(shardOf(productId)), productId);
+    }
+
+    /**
+     * 获取商品精确排名（从1开始）。
+     * 排名 = 1 + 各分片中分数更高的成员数 + 同分且按成员倒序排在前面的成员数，
+     * 与单个有序集合ZREVRANK的排序规则（分数降序、同分成员倒序）一致。
+     */
+    public Long getRank(String rankingType, String productId) {
+        List<String> rankKeys = resolveRankKeys(rankingType);
+        if (rankKeys == null) {
+            return null;
+        }
+
+        int ownShard = shardOf(productId);
+        Double score = redisService.zscore(rankKeys.get(ownShard), productId);
+        if (score == null) {
+            return null;
+        }
+
+        double higher = Math.nextUp(score);
+        List<Object> results = redisService.executePipelined(ops -> {
+            for (int shard = 0; shard < rankKeys.size(); shard++) {
+                String key = rankKeys.get(shard);
+                ops.opsForZSet().count(key, higher, Double.POSITIVE_INFINITY);
+                if (shard == ownShard) {
+                    ops.opsForZSet().reverseRank(key, productId);
+                } else {
+                    ops.opsForZSet().rangeByScore(key, score, score);
+                }
+            }
+        });
+        if (results == null || results.size() < rankKeys.size() * 2) {
+            return null;
+        }
+
+        long rank = 1;
+        for (int shard = 0; shard < rankKeys.size(); shard++) {
+            long greater = results.get(shard * 2) instanceof Number ? ((Number) results.get(shard * 2)).longValue() : 0;
+            Object second = results.get(shard * 2 + 1);
+            if (shard == ownShard) {
+                // 本分片ZREVRANK已包含分数更高的成员
+                rank += second instanceof Number ? ((Number) second).longValue() : greater;
+            } else {
+                rank += greater;
+                if (second instanceof Collection) {
+                    for (Object member : (Collection<?>) second) {
+                        if (String.valueOf(member).compareTo(productId) > 0) {
+                            rank++;
+                        }
+                    }
+                }
+            }
+        }
+        return rank;
+    }
+
+    // =============================响应式读取=============================
+
+    /**
+     * 获取排行榜（响应式，各分片并发读取后归并）
+     */
+    public Flux<Object> getRankingReactive(String rankingType, int limit) {
+        if (limit <= 0) {
+            return Flux.empty();
+        }
+        return resolveRankKeysReactive(rankingType)
+                .flatMapMany(rankKeys -> Flux.fromIterable(rankKeys)
+                        .flatMapSequential(rankKey -> reactiveRedisService.zrevrangeWithScores(rankKey, 0, limit - 1).collectList())
+                        .collectList()
+                        .flatMapIterable(shards -> mergeTopK(new ArrayList<>(shards), limit)))
+                .map(ZSetOperations.TypedTuple::getValue);
+    }
+
+    /**
+     * 获取商品排名（响应式，排名从1开始）
+     */
+    public Mono<Long> getRankReactive(String rankingType, String productId) {
+        return Mono.fromCallable(() -> getRank(rankingType, productId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 获取商品分数（响应式）
+     */
+    public Mono<Double> getScoreReactive(String rankingType, String productId) {
+        return resolveRankKeysReactive(rankingType)
+                .flatMap(rankKeys -> reactiveRedisService.zscore(rankKeys.get(shardOf(productId)), productId));
+    }
+
+    /**
+     * 获取排行榜统计信息（响应式）
+     */
+    public Mono<Long> getRankingSizeReactive(String rankingType) {
+        return resolveRankKeysReactive(rankingType)
+                .flatMap(rankKeys -> Flux.fromIterable(rankKeys)
+                        .flatMap(rankKey -> reactiveRedisService.zcard(rankKey))
+                        .reduce(0L, Long::sum))
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * 窗口榜可能需要先合并（阻塞调用），放到弹性线程池执行
+     */
+    private Mono<List<String>> resolveRankKeysReactive(String rankingType) {
+        if (windowDays(rankingType) <= 1) {
+            return Mono.justOrEmpty(resolveRankKeys(rankingType));
+        }
+        return Mono.fromCallable(() -> resolveRankKeys(rankingType))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 多路归并各分片的有序结果（分数降序，同分按成员倒序）
+     */
+    private List<ZSetOperations.TypedTuple<Object>> mergeTopK(List<? extends Collection<ZSetOperations.TypedTuple<Object>>> shards, int limit) {
+        List<Iterator<ZSetOperations.TypedTuple<Object>>> cursors = new ArrayList<>(shards.size());
+        PriorityQueue<Map.Entry<ZSetOperations.TypedTuple<Object>, Integer>> heads =
+                new PriorityQueue<>(Math.max(1, shards.size()), (a, b) -> compareTuple(a.getKey(), b.getKey()));
+        for (int i = 0; i < shards.size(); i++) {
+            Iterator<ZSetOperations.TypedTuple<Object>> cursor = shards.get(i) != null
+                    ? shards.get(i).iterator() : Collections.emptyIterator();
+            cursors.add(cursor);
+            if (cursor.hasNext()) {
+                heads.offer(Map.entry(cursor.next(), i));
+            }
+        }
+
+        List<ZSetOperations.TypedTuple<Object>> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Map.Entry<ZSetOperations.TypedTuple<Object>, Integer> head = heads.poll();
+            merged.add(head.getKey());
+            Iterator<ZSetOperations.TypedTuple<Object>> cursor = cursors.get(head.getValue());
+            if (cursor.hasNext()) {
+                heads.offer(Map.entry(cursor.next(), head.getValue()));
+            }
+        }
+        return merged;
+    }
+
+    private int compareTuple(ZSetOperations.TypedTuple<Object> a, ZSetOperations.TypedTuple<Object> b) {
+        double scoreA = a.getScore() != null ? a.getScore() : 0;
+        double scoreB = b.getScore() != null ? b.getScore() : 0;
+        int byScore = Double.compare(scoreB, scoreA);
+        return byScore != 0 ? byScore : String.valueOf(b.getValue()).compareTo(String.valueOf(a.getValue()));
+    }
+
+    private Set<Object> toMembers(List<ZSetOperations.TypedTuple<Object>> tuples) {
+        Set<Object> members = new LinkedHashSet<>();
+        for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+            members.add(tuple.getValue());
+        }
+        return members;
+    }
+
+    /**
+     * 解析排行榜类型对应的全部分片键：daily、weekly、monthly、hot，或最近N天窗口（如"14d"）
+     */
+    private List<String> resolveRankKeys(String rankingType) {
+        List<String> rankKeys = new ArrayList<>(shardCount);
+        if ("hot".equalsIgnoreCase(rankingType)) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                rankKeys.add(hotKey(shard));
+            }
+            return rankKeys;
+        }
+
+        int days = windowDays(rankingType);
+        if (days <= 0) {
+            log.error("Invalid ranking type: {}", rankingType);
+            return null;
+        }
+
+        LocalDate today = LocalDate.now();
+        if (days == 1) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                rankKeys.add(dayKey(today, shard));
+            }
+            return rankKeys;
+        }
+
+        String windowId = windowId(days, today);
+        Long computedAt = windowComputedAt.get(windowId);
+        if (computedAt == null || System.currentTimeMillis() - computedAt > WINDOW_STALE_MILLIS) {
+            computeWindow(days, today);
+        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            rankKeys.add(windowKey(days, today, shard));
+        }
+        return rankKeys;
+    }
+
+    /**
+     * 排行榜类型对应的窗口天数，非销售榜或非法类型返回-1
+     */
+    private int windowDays(String rankingType) {
         switch (rankingType.toLowerCase()) {
             case "daily":
-                rankKey = RedisConfig.RedisKeys.RANK_DAILY_SALE;
-                break;
+                return 1;
             case "weekly":
-                rankKey = RedisConfig.RedisKeys.RANK_WEEKLY_SALE;
-                break;
+                return WEEKLY_DAYS;
             case "monthly":
-                rankKey = RedisConfig.RedisKeys.RANK_MONTHLY_SALE;
-                break;
-            case "hot":
-                rankKey = RedisConfig.RedisKeys.HOT_PRODUCTS;
-                break;
+                return MONTHLY_DAYS;
             default:
-                log.error("Invalid ranking type: {}", rankingType);
-                return 0;
+                break;
         }
-        
-        return redisService.zcard(rankKey);
+
+        if (rankingType.length() > 1 && (rankingType.endsWith("d") || rankingType.endsWith("D"))) {
+            try {
+                int days = Integer.parseInt(rankingType.substring(0, rankingType.length() - 1));
+                if (days >= 1 && days <= MAX_WINDOW_DAYS) {
+                    return days;
+                }
+            } catch (NumberFormatException ignored) {
+                // 落到下方返回-1
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按分片合并最近days天的日榜到窗口榜缓存键（同一分片的键在同一槽位）
+     */
+    private void computeWindow(int days, LocalDate endDate) {
+        boolean computed = true;
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<String> keys = new ArrayList<>(days + 1);
+            keys.add(windowKey(days, endDate, shard));
+            for (int i = 0; i < days; i++) {
+                keys.add(dayKey(endDate.minusDays(i), shard));
+            }
+            computed &= redisService.eval(UNION_WINDOW_SCRIPT, keys, WINDOW_EXPIRE_TIME) != null;
+        }
+
+        String windowId = windowId(days, endDate);
+        if (computed) {
+            windowComputedAt.put(windowId, System.currentTimeMillis());
+            log.debug("Ranking window computed: window={}, shards={}", windowId, shardCount);
+        }
+
+        // 清理前一天及更早的本地记录
+        windowComputedAt.keySet().removeIf(key -> !key.endsWith(endDate.format(DAY_FORMATTER)));
+    }
+
+    private void clearRecentDays(int days) {
+        LocalDate today = LocalDate.now();
+        List<String> keys = new ArrayList<>(days * shardCount);
+        for (int i = 0; i < days; i++) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                keys.add(dayKey(today.minusDays(i), shard));
+            }
+        }
+
+        // 已缓存的窗口榜包含被删除的日榜，一并失效
+        for (String windowId : windowComputedAt.keySet()) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                keys.add(shardPrefix(shard) + ":window:" + windowId);
+            }
+        }
+        redisService.del(keys.toArray(new String[0]));
+        windowComputedAt.clear();
+    }
+
+    /**
+     * 商品所在分片
+     */
+    private int shardOf(String productId) {
+        return shardOf(productId, shardCount);
+    }
+
+    /**
+     * 分片函数，分片写入压测与线上共用
+     */
+    static int shardOf(String productId, int shardCount) {
+        int h = productId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
+    private String shardPrefix(int shard) {
+        return RedisConfig.RedisKeys.RANK_SALE_PREFIX + "{s" + shard + "}";
+    }
+
+    private String dayKey(LocalDate date, int shard) {
+        return shardPrefix(shard) + ":day:" + date.format(DAY_FORMATTER);
+    }
+
+    private String windowId(int days, LocalDate endDate) {
+        return days + "d:" + endDate.format(DAY_FORMATTER);
+    }
+
+    private String windowKey(int days, LocalDate endDate, int shard) {
+        return shardPrefix(shard) + ":window:" + windowId(days, endDate);
+    }
+
+    private String hotKey(int shard) {
+        return RedisConfig.RedisKeys.HOT_PRODUCTS + ":{h" + shard + "}";
     }
 }
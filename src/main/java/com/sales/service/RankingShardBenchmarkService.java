@@ -0,0 +1,108 @@
+package com.sales.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 排行榜分片写入压测：对每个分片数，多线程以pipeline向临时排行榜键写入ZINCRBY，
+ * 商品按线上分片函数（RankingService.shardOf）落到分片键 bench:rank:{sN}，统计写入吞吐，结束后删除临时键。
+ * 单机Redis所有分片在同一进程内，吞吐基本不随分片数变化；Redis Cluster下分片分布到不同节点后才会线性扩展。
+ */
+@Slf4j
+@Service
+@Profile("bench")
+public class RankingShardBenchmarkService {
+
+    private static final String BENCH_KEY_PREFIX = "bench:rank:";
+
+    private static final int PIPELINE_SIZE = 100;
+
+    @Autowired
+    private RedisService redisService;
+
+    public List<BenchmarkResult> run(List<Integer> shardCounts, int writes, int products, int threads) throws Exception {
+        List<BenchmarkResult> results = new ArrayList<>(shardCounts.size());
+        for (int shardCount : shardCounts) {
+            results.add(runOnce(Math.max(1, shardCount), writes, products, threads));
+        }
+        return results;
+    }
+
+    private BenchmarkResult runOnce(int shardCount, int writes, int products, int threads) throws Exception {
+        List<String> keys = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            keys.add(BENCH_KEY_PREFIX + "{s" + shard + "}");
+        }
+        redisService.del(keys.toArray(new String[0]));
+
+        AtomicLong failed = new AtomicLong();
+        int perThread = (writes + threads - 1) / threads;
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                int count = Math.min(perThread, writes - t * perThread);
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int sent = 0; sent < count; sent += PIPELINE_SIZE) {
+                        int batch = Math.min(PIPELINE_SIZE, count - sent);
+                        List<Object> replies = redisService.executePipelined(ops -> {
+                            for (int i = 0; i < batch; i++) {
+                                String productId = "P" + random.nextInt(products);
+                                ops.opsForZSet().incrementScore(keys.get(RankingService.shardOf(productId, shardCount)), productId, 1.0);
+                            }
+                        });
+                        if (replies == null) {
+                            failed.addAndGet(batch);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        long members = 0;
+        for (String key : keys) {
+            Long size = redisService.zcard(key);
+            members += size != null ? size : 0;
+        }
+        redisService.del(keys.toArray(new String[0]));
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.shards = shardCount;
+        result.writes = writes;
+        result.threads = threads;
+        result.elapsedMillis = elapsedNanos / 1_000_000;
+        result.throughput = elapsedNanos > 0 ? (long) writes * 1_000_000_000L / elapsedNanos : 0;
+        result.failedWrites = failed.get();
+        result.members = members;
+        log.info("Ranking shard benchmark finished: {}", result);
+        return result;
+    }
+
+    @Data
+    public static class BenchmarkResult {
+        private int shards;
+        private int writes;
+        private int threads;
+        private long elapsedMillis;
+        private long throughput;    // 每秒ZINCRBY次数
+        private long failedWrites;
+        private long members;       // 各分片成员数之和，应等于写入涉及的商品数
+    }
+}
@@ -0,0 +1,159 @@
+package com.sales.service;
+
+import com.sales.entity.Product;
+import com.sales.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 排行榜快照。
+ * 定时对日/周/月/热门榜做一次pipeline的ZREVRANGE WITHSCORES，再用一次HBase multi-get和一次库存MGET
+ * 补全商品名称、价格和实时库存，生成不可变快照后整体替换。
+ * 读请求直接返回内存中的快照，不访问Redis和HBase。
+ */
+@Slf4j
+@Service
+public class RankingSnapshotService {
+
+    @Autowired
+    private RankingService rankingService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockService stockService;
+
+    /**
+     * 每个排行榜快照保留的名次数
+     */
+    public static final int SNAPSHOT_SIZE = 100;
+
+    private static final List<String> SNAPSHOT_TYPES = List.of("daily", "weekly", "monthly", "hot");
+
+    private final AtomicReference<Map<String, RankingSnapshot>> snapshots = new AtomicReference<>(Map.of());
+
+    /**
+     * 获取排行榜快照的前limit名；尚未生成时返回空快照
+     */
+    public RankingSnapshot getSnapshot(String rankingType, int limit) {
+        RankingSnapshot snapshot = snapshots.get().get(rankingType.toLowerCase());
+        if (snapshot == null) {
+            return RankingSnapshot.builder().rankingType(rankingType).entries(List.of()).build();
+        }
+        if (limit >= snapshot.getEntries().size()) {
+            return snapshot;
+        }
+        return RankingSnapshot.builder()
+                .rankingType(snapshot.getRankingType())
+                .generatedAt(snapshot.getGeneratedAt())
+                .entries(snapshot.getEntries().subList(0, Math.max(0, limit)))
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${sales.ranking.snapshot-refresh-millis:2000}")
+    public void refresh() {
+        try {
+            Map<String, List<ZSetOperations.TypedTuple<Object>>> rankings =
+                    rankingService.getRankingsWithScores(SNAPSHOT_TYPES, SNAPSHOT_SIZE);
+            if (rankings.isEmpty()) {
+                return;
+            }
+
+            Set<String> productIds = new LinkedHashSet<>();
+            for (List<ZSetOperations.TypedTuple<Object>> ranking : rankings.values()) {
+                for (ZSetOperations.TypedTuple<Object> tuple : ranking) {
+                    if (tuple.getValue() != null) {
+                        productIds.add(String.valueOf(tuple.getValue()));
+                    }
+                }
+            }
+
+            List<String> ids = new ArrayList<>(productIds);
+            Map<String, Product> products = productRepository.findByIds(ids);
+            List<Integer> stockList = stockService.batchGetStock(ids);
+            Map<String, Integer> stocks = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                stocks.put(ids.get(i), stockList.get(i));
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            Map<String, RankingSnapshot> next = new HashMap<>();
+            for (Map.Entry<String, List<ZSetOperations.TypedTuple<Object>>> ranking : rankings.entrySet()) {
+                List<RankingEntry> entries = new ArrayList<>(ranking.getValue().size());
+                int rank = 0;
+                for (ZSetOperations.TypedTuple<Object> tuple : ranking.getValue()) {
+                    if (tuple.getValue() == null) {
+                        continue;
+                    }
+                    String productId = String.valueOf(tuple.getValue());
+                    Product product = products.get(productId);
+                    entries.add(RankingEntry.builder()
+                            .rank(++rank)
+                            .productId(productId)
+                            .score(tuple.getScore() != null ? tuple.getScore() : 0)
+                            .name(product != null ? product.getName() : null)
+                            .category(product != null ? product.getCategory() : null)
+                            .price(product != null ? product.getPrice() : null)
+                            .saleCount(product != null ? product.getSaleCount() : null)
+                            .image(product != null && product.getImages() != null && !product.getImages().isEmpty()
+                                    ? product.getImages().get(0) : null)
+                            .stock(stocks.getOrDefault(productId, 0))
+                            .build());
+                }
+                next.put(ranking.getKey(), RankingSnapshot.builder()
+                        .rankingType(ranking.getKey())
+                        .generatedAt(now)
+                        .entries(List.copyOf(entries))
+                        .build());
+            }
+
+            snapshots.set(Map.copyOf(next));
+            log.debug("Ranking snapshots refreshed: types={}, products={}", next.keySet(), ids.size());
+        } catch (Exception e) {
+            // 保留上一版快照
+            log.error("Failed to refresh ranking snapshots", e);
+        }
+    }
+
+    /**
+     * 排行榜快照（不可变）
+     */
+    @lombok.Value
+    @lombok.Builder
+    public static class RankingSnapshot {
+        String rankingType;
+        LocalDateTime generatedAt;
+        List<RankingEntry> entries;
+    }
+
+    /**
+     * 快照中的一个名次
+     */
+    @lombok.Value
+    @lombok.Builder
+    public static class RankingEntry {
+        int rank;
+        String productId;
+        double score;
+        String name;
+        String category;
+        BigDecimal price;
+        Long saleCount;
+        String image;
+        int stock;
+    }
+}
@@ -0,0 +1,125 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.config.RedisConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分布式令牌桶限流。
+ * 桶状态（剩余令牌、上次补充时间）保存在Redis Hash中，由Lua脚本原子地补充和扣减；
+ * 本地只做两件事：
+ * 1. 余量充足时一次向Redis预领一批令牌，后续请求在本地消耗，省去往返；
+ * 2. 被Redis拒绝后，在预计补充出令牌之前直接本地拒绝。
+ * 本地预领的令牌都已在Redis中扣除，因此全局放行量不会超过配置。
+ */
+@Slf4j
+@Service
+public class RateLimitService {
+
+    @Autowired
+    private RedisService redisService;
+
+    private static final long LEASE_DURATION_MILLIS = 1000;
+
+    /**
+     * KEYS[1]=桶键  ARGV[1]=每秒令牌数  ARGV[2]=桶容量  ARGV[3]=申请令牌数
+     * 返回 {实际发放令牌数, 剩余令牌数}，余量不足申请数时按余量部分发放
+     */
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>("""
+            local rate = tonumber(ARGV[1])
+            local capacity = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1]) or capacity
+            local ts = tonumber(state[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+            local granted = math.min(requested, math.floor(tokens))
+            tokens = tokens - granted
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)
+            return {granted, math.floor(tokens)}
+            """, List.class);
+
+    private final Cache<String, LocalBucket> localBuckets = CacheBuilder.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @return 0表示放行，大于0表示被拒绝，值为建议的重试等待毫秒数
+     */
+    public long tryAcquire(String policyKey, double permitsPerSecond, int burst) {
+        LocalBucket bucket = getLocalBucket(policyKey);
+        long now = System.currentTimeMillis();
+
+        // 本地快速拒绝
+        long blockedUntil = bucket.blockedUntil;
+        if (now < blockedUntil) {
+            return blockedUntil - now;
+        }
+
+        // 本地预领令牌
+        if (now < bucket.leaseExpiresAt && bucket.leasedTokens.getAndDecrement() > 0) {
+            return 0;
+        }
+
+        // 上次余量超过一半时视为明显未达上限，按批预领，否则逐个申请
+        int requested = bucket.lastRemaining > burst / 2 ? Math.max(1, burst / 10) : 1;
+        String redisKey = RedisConfig.RedisKeys.LIMIT_PREFIX + policyKey;
+        List<?> result = redisService.eval(TOKEN_BUCKET_SCRIPT, Collections.singletonList(redisKey),
+                permitsPerSecond, burst, requested);
+        if (result == null || result.size() < 2) {
+            // Redis不可用时放行，与RedisService的容错策略一致
+            return 0;
+        }
+
+        long granted = ((Number) result.get(0)).longValue();
+        bucket.lastRemaining = ((Number) result.get(1)).longValue();
+        if (granted <= 0) {
+            long retryAfter = (long) Math.ceil(1000 / permitsPerSecond);
+            bucket.blockedUntil = now + retryAfter;
+            log.debug("Rate limited by Redis: key={}, retryAfter={}ms", policyKey, retryAfter);
+            return retryAfter;
+        }
+
+        if (granted > 1) {
+            // 首个令牌给当前请求，其余留在本地
+            bucket.leasedTokens.set((int) granted - 1);
+            bucket.leaseExpiresAt = now + LEASE_DURATION_MILLIS;
+        }
+        return 0;
+    }
+
+    private LocalBucket getLocalBucket(String policyKey) {
+        try {
+            return localBuckets.get(policyKey, LocalBucket::new);
+        } catch (ExecutionException e) {
+            return new LocalBucket();
+        }
+    }
+
+    /**
+     * 节点内的限流状态
+     */
+    private static class LocalBucket {
+        private final AtomicInteger leasedTokens = new AtomicInteger();
+        private volatile long leaseExpiresAt;
+        private volatile long blockedUntil;
+        private volatile long lastRemaining;
+    }
+}
@@ -0,0 +1,124 @@
+package com.sales.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 基于ReactiveRedisTemplate的非阻塞读操作，供热点查询接口使用。
+ * 错误处理与RedisService保持一致：记录日志后返回空结果，不向上抛出。
+ */
+@Slf4j
+@Service
+public class ReactiveRedisService {
+
+    @Autowired
+    private ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    // =============================String=============================
+
+    public Mono<Object> get(String key) {
+        return reactiveRedisTemplate.opsForValue().get(key)
+                .doOnNext(value -> log.debug("Reactive Redis get: {} = {}", key, value))
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis get error: key={}", key, e);
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Boolean> expire(String key, Duration timeout) {
+        return reactiveRedisTemplate.expire(key, timeout)
+                .doOnNext(result -> log.debug("Reactive Redis expire: {} = {}", key, timeout))
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis expire error: key={}, timeout={}", key, timeout, e);
+                    return Mono.just(false);
+                });
+    }
+
+    // =============================Hash=============================
+
+    public Mono<Object> hget(String key, String field) {
+        return reactiveRedisTemplate.<String, Object>opsForHash().get(key, field)
+                .doOnNext(value -> log.debug("Reactive Redis hget: {} {} = {}", key, field, value))
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis hget error: key={}, field={}", key, field, e);
+                    return Mono.empty();
+                });
+    }
+
+    public Flux<Map.Entry<String, Object>> hgetAll(String key) {
+        return reactiveRedisTemplate.<String, Object>opsForHash().entries(key)
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis hgetAll error: key={}", key, e);
+                    return Flux.empty();
+                });
+    }
+
+    // =============================Set=============================
+
+    public Mono<Boolean> sismember(String key, Object value) {
+        return reactiveRedisTemplate.opsForSet().isMember(key, value)
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis sismember error: key={}, value={}", key, value, e);
+                    return Mono.just(false);
+                });
+    }
+
+    public Mono<Long> scard(String key) {
+        return reactiveRedisTemplate.opsForSet().size(key)
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis scard error: key={}", key, e);
+                    return Mono.just(0L);
+                });
+    }
+
+    // =============================Sorted Set=============================
+
+    public Flux<Object> zrevrange(String key, long start, long end) {
+        return reactiveRedisTemplate.opsForZSet().reverseRange(key, Range.closed(start, end))
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis zrevrange error: key={}, start={}, end={}", key, start, end, e);
+                    return Flux.empty();
+                });
+    }
+
+    public Flux<ZSetOperations.TypedTuple<Object>> zrevrangeWithScores(String key, long start, long end) {
+        return reactiveRedisTemplate.opsForZSet().reverseRangeWithScores(key, Range.closed(start, end))
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis zrevrangeWithScores error: key={}, start={}, end={}", key, start, end, e);
+                    return Flux.empty();
+                });
+    }
+
+    public Mono<Long> zrevrank(String key, Object value) {
+        return reactiveRedisTemplate.opsForZSet().reverseRank(key, value)
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis zrevrank error: key={}, value={}", key, value, e);
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Double> zscore(String key, Object value) {
+        return reactiveRedisTemplate.opsForZSet().score(key, value)
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis zscore error: key={}, value={}", key, value, e);
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Long> zcard(String key) {
+        return reactiveRedisTemplate.opsForZSet().size(key)
+                .onErrorResume(e -> {
+                    log.error("Reactive Redis zcard error: key={}", key, e);
+                    return Mono.just(0L);
+                });
+    }
+}
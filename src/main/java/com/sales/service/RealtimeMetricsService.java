@@ -0,0 +1,186 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实时指标批量写入。
+ * 调用方把一次业务事件（如订单支付）涉及的计数器、看板Hash、排行榜、去重计数、位图更新收集到{@link Batch}中，
+ * 同键同成员的增量先在本地合并，再通过一次pipeline发送到Redis。
+ * 过期时间不随每次写入刷新：同一个键在刷新周期内只发送一次EXPIRE。
+ */
+@Slf4j
+@Service
+public class RealtimeMetricsService {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * EXPIRE最短刷新间隔，实际间隔取 min(TTL/10, 该值)
+     */
+    private static final long MAX_TTL_REFRESH_MILLIS = 60_000;
+
+    private static final long MAX_TRACKED_KEYS = 200_000;
+
+    /**
+     * 键 -> 下一次需要刷新过期时间的时刻。
+     * 刷新时刻最多在写入后MAX_TTL_REFRESH_MILLIS到期，之后的条目不再起作用，按写入时间淘汰；
+     * 按天、按商品的键不断新增，容量上限防止长期运行时无限增长（被提前淘汰的键只是多发一次EXPIRE）
+     */
+    private final Cache<String, Long> ttlRefreshAt = CacheBuilder.newBuilder()
+            .maximumSize(MAX_TRACKED_KEYS)
+            .expireAfterWrite(MAX_TTL_REFRESH_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * 一次pipeline写入整批更新
+     *
+     * @return 是否写入成功；Redis异常时记录日志并返回false
+     */
+    public boolean apply(Batch batch) {
+        if (batch == null || batch.isEmpty()) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, Long> expires = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : batch.ttls.entrySet()) {
+            if (entry.getValue() > 0 && claimTtlRefresh(entry.getKey(), entry.getValue(), now)) {
+                expires.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+
+                    batch.counters.forEach((key, delta) -> ops.opsForValue().increment(key, delta));
+                    batch.floatCounters.forEach((key, delta) -> ops.opsForValue().increment(key, delta));
+                    batch.hashCounters.forEach((key, fields) ->
+                            fields.forEach((field, delta) -> ops.opsForHash().increment(key, field, delta)));
+                    batch.hashFloatCounters.forEach((key, fields) ->
+                            fields.forEach((field, delta) -> ops.opsForHash().increment(key, field, delta)));
+                    batch.zsetScores.forEach((key, members) ->
+                            members.forEach((member, score) -> ops.opsForZSet().add(key, member, score)));
+                    batch.zsetIncrements.forEach((key, members) ->
+                            members.forEach((member, delta) -> ops.opsForZSet().incrementScore(key, member, delta)));
+                    batch.hllAdds.forEach((key, members) -> ops.opsForHyperLogLog().add(key, members.toArray()));
+                    batch.bits.forEach((key, offsets) -> offsets.forEach(offset -> ops.opsForValue().setBit(key, offset, true)));
+                    expires.forEach((key, ttl) -> ops.expire(key, ttl, TimeUnit.SECONDS));
+                    return null;
+                }
+            });
+            log.debug("Realtime metrics applied: keys={}, expires={}", batch.ttls.size(), expires.size());
+            return true;
+        } catch (Exception e) {
+            // 本次未生效的EXPIRE在下次写入时重发
+            ttlRefreshAt.invalidateAll(expires.keySet());
+            log.error("Failed to apply realtime metrics: keys={}", batch.ttls.keySet(), e);
+            return false;
+        }
+    }
+
+    private boolean claimTtlRefresh(String key, long ttlSeconds, long now) {
+        long interval = Math.min(MAX_TTL_REFRESH_MILLIS, TimeUnit.SECONDS.toMillis(ttlSeconds) / 10);
+        boolean[] claimed = new boolean[1];
+        ttlRefreshAt.asMap().compute(key, (k, refreshAt) -> {
+            if (refreshAt != null && refreshAt > now) {
+                return refreshAt;
+            }
+            claimed[0] = true;
+            return now + interval;
+        });
+        return claimed[0];
+    }
+
+    /**
+     * 一次业务事件的指标更新集合，非线程安全；ttlSeconds不大于0表示不设置过期时间
+     */
+    public static class Batch {
+        private final Map<String, Long> counters = new LinkedHashMap<>();
+        private final Map<String, Double> floatCounters = new LinkedHashMap<>();
+        private final Map<String, Map<String, Long>> hashCounters = new LinkedHashMap<>();
+        private final Map<String, Map<String, Double>> hashFloatCounters = new LinkedHashMap<>();
+        private final Map<String, Map<Object, Double>> zsetScores = new LinkedHashMap<>();
+        private final Map<String, Map<Object, Double>> zsetIncrements = new LinkedHashMap<>();
+        private final Map<String, Set<Object>> hllAdds = new LinkedHashMap<>();
+        private final Map<String, Set<Long>> bits = new LinkedHashMap<>();
+        private final Map<String, Long> ttls = new LinkedHashMap<>();
+
+        private Batch() {
+        }
+
+        public Batch incr(String key, long delta, long ttlSeconds) {
+            counters.merge(key, delta, Long::sum);
+            return ttl(key, ttlSeconds);
+        }
+
+        public Batch incrByFloat(String key, double delta, long ttlSeconds) {
+            floatCounters.merge(key, delta, Double::sum);
+            return ttl(key, ttlSeconds);
+        }
+
+        public Batch hincrBy(String key, String field, long delta, long ttlSeconds) {
+            hashCounters.computeIfAbsent(key, k -> new LinkedHashMap<>()).merge(field, delta, Long::sum);
+            return ttl(key, ttlSeconds);
+        }
+
+        public Batch hincrByFloat(String key, String field, double delta, long ttlSeconds) {
+            hashFloatCounters.computeIfAbsent(key, k -> new LinkedHashMap<>()).merge(field, delta, Double::sum);
+            return ttl(key, ttlSeconds);
+        }
+
+        /**
+         * 覆盖写入分数，同一成员多次写入以最后一次为准
+         */
+        public Batch zadd(String key, Object member, double score, long ttlSeconds) {
+            zsetScores.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(member, score);
+            return ttl(key, ttlSeconds);
+        }
+
+        public Batch zincrby(String key, Object member, double delta, long ttlSeconds) {
+            zsetIncrements.computeIfAbsent(key, k -> new LinkedHashMap<>()).merge(member, delta, Double::sum);
+            return ttl(key, ttlSeconds);
+        }
+
+        public Batch pfadd(String key, Object member, long ttlSeconds) {
+            hllAdds.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(member);
+            return ttl(key, ttlSeconds);
+        }
+
+        public Batch setbit(String key, long offset, long ttlSeconds) {
+            bits.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(offset);
+            return ttl(key, ttlSeconds);
+        }
+
+        public boolean isEmpty() {
+            return ttls.isEmpty();
+        }
+
+        private Batch ttl(String key, long ttlSeconds) {
+            ttls.merge(key, ttlSeconds, Math::max);
+            return this;
+        }
+    }
+}
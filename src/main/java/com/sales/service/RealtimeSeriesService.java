@@ -0,0 +1,151 @@
+package com.sales.service;
+
+import com.sales.config.RedisConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分钟级实时时间序列。
+ * 每个指标每天一个Redis Hash（ts:{metric}:{yyyyMMdd}），固定1440个分钟槽，字段为当天的分钟序号；
+ * 写入是HINCRBY（随实时指标pipeline一起发送），读取最近N分钟为一次HMGET（跨零点时两次）。
+ * 键按日期轮转，当天结束后不再写入，retentionDays天后过期。
+ */
+@Slf4j
+@Service
+public class RealtimeSeriesService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Value("${sales.series.retention-days:3}")
+    private int retentionDays;
+
+    public static final int MINUTES_PER_DAY = 1440;
+
+    public enum Metric {
+        ORDERS("orders"),       // 支付订单数
+        SALES("sales"),         // 支付金额（分）
+        ITEMS("items");         // 支付商品件数
+
+        private final String code;
+
+        Metric(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public static Metric fromCode(String code) {
+            for (Metric metric : values()) {
+                if (metric.code.equalsIgnoreCase(code)) {
+                    return metric;
+                }
+            }
+            throw new IllegalArgumentException("Unknown metric: " + code);
+        }
+    }
+
+    /**
+     * 在time所在分钟的槽上累加value
+     */
+    public void record(RealtimeMetricsService.Batch batch, Metric metric, LocalDateTime time, long value) {
+        if (value == 0) {
+            return;
+        }
+        batch.hincrBy(key(metric, time.toLocalDate()), String.valueOf(minuteOfDay(time)), value,
+                TimeUnit.DAYS.toSeconds(retentionDays));
+    }
+
+    /**
+     * 截至当前分钟（含）的最近minutes分钟
+     */
+    public Series getLastMinutes(Metric metric, int minutes) {
+        return getRange(metric, LocalDateTime.now(), minutes);
+    }
+
+    /**
+     * 截至end所在分钟（含）的minutes个分钟槽，最多一天；Redis不可用时对应槽为0
+     */
+    public Series getRange(Metric metric, LocalDateTime end, int minutes) {
+        minutes = Math.max(1, Math.min(MINUTES_PER_DAY, minutes));
+        LocalDateTime start = end.truncatedTo(ChronoUnit.MINUTES).minusMinutes(minutes - 1);
+
+        List<Long> values = new ArrayList<>(minutes);
+        long total = 0;
+        LocalDateTime cursor = start;
+        while (values.size() < minutes) {
+            // 同一天的槽合并为一次HMGET
+            LocalDate date = cursor.toLocalDate();
+            int from = minuteOfDay(cursor);
+            int count = Math.min(minutes - values.size(), MINUTES_PER_DAY - from);
+            List<Object> fields = new ArrayList<>(count);
+            for (int m = from; m < from + count; m++) {
+                fields.add(String.valueOf(m));
+            }
+
+            List<Object> slots = redisService.hmget(key(metric, date), fields);
+            for (int i = 0; i < count; i++) {
+                long value = slots != null ? toLong(slots.get(i)) : 0;
+                values.add(value);
+                total += value;
+            }
+            cursor = cursor.plusMinutes(count);
+        }
+
+        return Series.builder()
+                .metric(metric.getCode())
+                .start(start)
+                .intervalMinutes(1)
+                .values(values)
+                .total(total)
+                .build();
+    }
+
+    private static String key(Metric metric, LocalDate date) {
+        return RedisConfig.RedisKeys.SERIES_PREFIX + metric.getCode() + ":" + date.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private static int minuteOfDay(LocalDateTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static long toLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 等间隔时间序列，values[i]对应 start + i * intervalMinutes 分钟
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class Series {
+        private String metric;
+        private String productId;       // 为空表示全部商品
+        private LocalDateTime start;
+        private int intervalMinutes;
+        private List<Long> values;
+        private long total;
+    }
+}
@@ -3,15 +3,25 @@ package com.sales.service;
 import com.sales.config.RedisConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -62,6 +72,17 @@ public class RedisService {
         }
     }
 
+    public List<Object> mget(Collection<String> keys) {
+        try {
+            List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+            log.debug("Redis mget: {} = {}", keys, values);
+            return values;
+        } catch (Exception e) {
+            log.error("Redis mget error: keys={}", keys, e);
+            return null;
+        }
+    }
+
     public boolean del(String key) {
         try {
             Boolean result = redisTemplate.delete(key);
@@ -203,6 +224,17 @@ public class RedisService {
         }
     }
 
+    public List<Object> hmget(String key, Collection<Object> fields) {
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+            log.debug("Redis hmget: {} {} = {}", key, fields, values);
+            return values;
+        } catch (Exception e) {
+            log.error("Redis hmget error: key={}, fields={}", key, fields, e);
+            return null;
+        }
+    }
+
     public Map<Object, Object> hgetAll(String key) {
         try {
             Map<Object, Object> map = redisTemplate.opsForHash().entries(key);
@@ -372,6 +404,44 @@ public class RedisService {
         }
     }
 
+    public long scard(String key) {
+        try {
+            Long result = redisTemplate.opsForSet().size(key);
+            log.debug("Redis scard: {} = {}", key, result);
+            return result != null ? result : 0;
+        } catch (Exception e) {
+            log.error("Redis scard error: key={}", key, e);
+            return 0;
+        }
+    }
+
+    // =============================HyperLogLog=============================
+
+    public long pfadd(String key, Object... values) {
+        try {
+            Long result = redisTemplate.opsForHyperLogLog().add(key, values);
+            log.debug("Redis pfadd: {} = {}", key, result);
+            return result != null ? result : 0;
+        } catch (Exception e) {
+            log.error("Redis pfadd error: key={}", key, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 多个键时返回并集的基数估计
+     */
+    public long pfcount(String... keys) {
+        try {
+            Long result = redisTemplate.opsForHyperLogLog().size(keys);
+            log.debug("Redis pfcount: {} = {}", Arrays.toString(keys), result);
+            return result != null ? result : 0;
+        } catch (Exception e) {
+            log.error("Redis pfcount error: keys={}", Arrays.toString(keys), e);
+            return 0;
+        }
+    }
+
     // =============================Sorted Set=============================
 
     public boolean zadd(String key, double score, Object value) {
@@ -462,6 +532,55 @@ public class RedisService {
         }
     }
 
+    /**
+     * 一次pipeline读取多个有序集合的前若干名（带分数），结果与keys一一对应
+     */
+    @SuppressWarnings("unchecked")
+    public List<Set<ZSetOperations.TypedTuple<Object>>> zrevrangeWithScores(List<String> keys, long start, long end) {
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (String key : keys) {
+                        ops.opsForZSet().reverseRangeWithScores(key, start, end);
+                    }
+                    return null;
+                }
+            });
+            List<Set<ZSetOperations.TypedTuple<Object>>> sets = new ArrayList<>(results.size());
+            for (Object result : results) {
+                sets.add(result != null ? (Set<ZSetOperations.TypedTuple<Object>>) result : Collections.emptySet());
+            }
+            log.debug("Redis pipelined zrevrangeWithScores: keys={}", keys);
+            return sets;
+        } catch (Exception e) {
+            log.error("Redis pipelined zrevrangeWithScores error: keys={}", keys, e);
+            return null;
+        }
+    }
+
+    /**
+     * 一次pipeline执行多条命令，结果按命令发送顺序返回
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> executePipelined(Consumer<RedisOperations<String, Object>> commands) {
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    commands.accept((RedisOperations<String, Object>) operations);
+                    return null;
+                }
+            });
+            log.debug("Redis pipelined commands: count={}", results.size());
+            return results;
+        } catch (Exception e) {
+            log.error("Redis pipelined commands error", e);
+            return null;
+        }
+    }
+
     public Set<Object> zrevrangeByScore(String key, double max, double min) {
         try {
             Set<Object> set = redisTemplate.opsForZSet().reverseRangeByScore(key, max, min);
@@ -484,6 +603,28 @@ public class RedisService {
         }
     }
 
+    // =============================Lua脚本=============================
+
+    /**
+     * 执行Lua脚本，参数统一按字符串序列化，便于脚本内tonumber解析
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T eval(RedisScript<T> script, List<String> keys, Object... args) {
+        try {
+            Object[] stringArgs = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                stringArgs[i] = String.valueOf(args[i]);
+            }
+            T result = redisTemplate.execute(script, StringRedisSerializer.UTF_8,
+                    (RedisSerializer<T>) redisTemplate.getValueSerializer(), keys, stringArgs);
+            log.debug("Redis eval: keys={} = {}", keys, result);
+            return result;
+        } catch (Exception e) {
+            log.error("Redis eval error: keys={}", keys, e);
+            return null;
+        }
+    }
+
     // =============================通用方法=============================
 
     public Collection<String> keys(String pattern) {
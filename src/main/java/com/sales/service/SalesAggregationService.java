@@ -0,0 +1,400 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.entity.Order;
+import com.sales.entity.Product;
+import com.sales.entity.SalesData;
+import com.sales.repository.ProductRepository;
+import com.sales.repository.SalesDataRepository;
+import com.sales.repository.SalesSeriesRepository;
+import com.sales.utils.RegionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 订单生命周期事件驱动的销售聚合。
+ * <p>
+ * OrderService在支付、退款、取消时发布事件到进程内环形缓冲区（多生产者、单消费者，无锁）；
+ * 单个聚合线程按分钟滚动窗口把事件折叠为商品行、品类行、总计行的增量，
+ * 窗口结束时一次批量写入sales_data（每行一个多列Increment）；
+ * 支付事件同时按支付分钟折叠为sales_series的分钟增量，随窗口一起批量写入。
+ * 缓冲区满或聚合未启用时，发布方同步写入该事件的增量。
+ */
+@Slf4j
+@Service
+public class SalesAggregationService {
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SalesSeriesService salesSeriesService;
+
+    @Value("${sales.aggregation.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 环形缓冲区容量，取整为2的幂
+     */
+    @Value("${sales.aggregation.ring-size:65536}")
+    private int ringSize;
+
+    @Value("${sales.aggregation.window-millis:60000}")
+    private long windowMillis;
+
+    /**
+     * 缓冲区为空时聚合线程的休眠时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 每次检查窗口前最多折叠的事件数
+     */
+    private static final int DRAIN_BATCH = 4096;
+
+    public enum EventType {
+        PAID, REFUNDED, CANCELLED
+    }
+
+    /**
+     * 商品ID -> 品类，商品不存在或无品类时为空
+     */
+    private final Cache<String, Optional<String>> categories = CacheBuilder.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong appliedDirectly = new AtomicLong();
+    private final AtomicLong windowsFlushed = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private volatile long lastFlushAt;
+
+    private volatile EventRing ring;
+    private volatile boolean running;
+    private Thread worker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Sales aggregation not started: enabled=false");
+            return;
+        }
+        ring = new EventRing(Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1);
+        running = true;
+        worker = Thread.ofPlatform().name("Sales-Aggregator").daemon().start(this::run);
+        log.info("Sales aggregation started: ringSize={}, windowMillis={}", ring.capacity(), windowMillis);
+    }
+
+    /**
+     * 停止聚合线程，剩余事件和当前窗口写入后返回
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 订单已支付：按支付时间计入销量、销售额、小时和区域
+     */
+    public void publishPaid(Order order) {
+        publish(EventType.PAID, order, order.getPayTime());
+    }
+
+    /**
+     * 已支付订单退款：按退款时间计入退货数和退货金额
+     */
+    public void publishRefunded(Order order) {
+        publish(EventType.REFUNDED, order, order.getRefundTime());
+    }
+
+    /**
+     * 未支付订单取消：不影响销售数据，只计数
+     */
+    public void publishCancelled(Order order) {
+        publish(EventType.CANCELLED, order, LocalDateTime.now());
+    }
+
+    private void publish(EventType type, Order order, LocalDateTime time) {
+        if (order == null) {
+            return;
+        }
+        OrderEvent event = OrderEvent.builder()
+                .type(type)
+                .orderId(order.getOrderId())
+                .timestamp((time != null ? time : LocalDateTime.now()).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .region(RegionUtils.fromAddress(order.getAddress()))
+                .items(order.getItems() != null ? order.getItems() : List.of())
+                .build();
+
+        published.incrementAndGet();
+        EventRing current = ring;
+        if (running && current != null && current.offer(event)) {
+            return;
+        }
+
+        // 未启用或缓冲区已满：同步写入
+        appliedDirectly.incrementAndGet();
+        Map<String, SalesDataRepository.Delta> deltas = new HashMap<>();
+        Map<String, SalesSeriesRepository.Point> points = new HashMap<>();
+        fold(deltas, points, event);
+        write(deltas, points, 1);
+    }
+
+    private void run() {
+        Map<String, SalesDataRepository.Delta> window = new HashMap<>();
+        Map<String, SalesSeriesRepository.Point> points = new HashMap<>();
+        long windowEvents = 0;
+        long windowEnd = nextWindowEnd(System.currentTimeMillis());
+        while (running || !ring.isEmpty()) {
+            int drained = 0;
+            OrderEvent event;
+            while (drained < DRAIN_BATCH && (event = ring.poll()) != null) {
+                fold(window, points, event);
+                drained++;
+            }
+            windowEvents += drained;
+
+            long now = System.currentTimeMillis();
+            if (now >= windowEnd) {
+                write(window, points, windowEvents);
+                window = new HashMap<>();
+                points = new HashMap<>();
+                windowEvents = 0;
+                windowEnd = nextWindowEnd(now);
+            } else if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        write(window, points, windowEvents);
+        log.info("Sales aggregation stopped");
+    }
+
+    private long nextWindowEnd(long now) {
+        return (now / windowMillis + 1) * windowMillis;
+    }
+
+    /**
+     * 把事件的每个商品明细折叠到商品行、品类行、总计行的增量，支付事件同时折叠到商品和总计的分钟序列
+     */
+    private void fold(Map<String, SalesDataRepository.Delta> deltas, Map<String, SalesSeriesRepository.Point> points,
+                      OrderEvent event) {
+        if (event.getType() == EventType.CANCELLED) {
+            return;
+        }
+
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getTimestamp()), ZoneId.systemDefault());
+        boolean series = event.getType() == EventType.PAID && salesSeriesService.isEnabled();
+        long minute = TimeUnit.MILLISECONDS.toMinutes(event.getTimestamp());
+        boolean counted = false;
+        for (Order.OrderItem item : event.getItems()) {
+            if (item == null || item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                continue;
+            }
+            long quantity = item.getQuantity();
+            BigDecimal amount = item.getAmount();
+            if (amount == null && item.getPrice() != null) {
+                amount = item.getPrice().multiply(BigDecimal.valueOf(quantity));
+            }
+            long cents = amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0;
+            String categoryId = getCategory(item.getProductId());
+
+            add(deltas, event, time, item.getProductId(), categoryId, quantity, cents);
+            if (categoryId != null) {
+                add(deltas, event, time, null, categoryId, quantity, cents);
+            }
+            add(deltas, event, time, null, null, quantity, cents);
+
+            if (series) {
+                addPoint(points, RealtimeSeriesService.Metric.ORDERS, item.getProductId(), minute, 1);
+                addPoint(points, RealtimeSeriesService.Metric.ITEMS, item.getProductId(), minute, quantity);
+                addPoint(points, RealtimeSeriesService.Metric.SALES, item.getProductId(), minute, cents);
+                addPoint(points, RealtimeSeriesService.Metric.ITEMS, null, minute, quantity);
+                addPoint(points, RealtimeSeriesService.Metric.SALES, null, minute, cents);
+                counted = true;
+            }
+        }
+        if (counted) {
+            addPoint(points, RealtimeSeriesService.Metric.ORDERS, null, minute, 1);
+        }
+    }
+
+    private void addPoint(Map<String, SalesSeriesRepository.Point> points, RealtimeSeriesService.Metric metric,
+                          String productId, long minute, long value) {
+        SalesSeriesRepository.Point point = points.computeIfAbsent(
+                SalesSeriesRepository.rowKey(metric.getCode(), productId, minute),
+                key -> new SalesSeriesRepository.Point(metric.getCode(), productId, minute));
+        point.setValue(point.getValue() + value);
+    }
+
+    private void add(Map<String, SalesDataRepository.Delta> deltas, OrderEvent event, LocalDateTime time,
+                     String productId, String categoryId, long quantity, long cents) {
+        SalesDataRepository.Delta delta = deltas.computeIfAbsent(
+                SalesData.generateRowKey(time.toLocalDate(), productId, categoryId),
+                key -> new SalesDataRepository.Delta(time.toLocalDate(), productId, categoryId));
+        if (event.getType() == EventType.PAID) {
+            delta.setSaleCount(delta.getSaleCount() + quantity);
+            delta.setSaleAmountCents(delta.getSaleAmountCents() + cents);
+            delta.getHourly()[time.getHour()] += quantity;
+            delta.getRegions().add(event.getRegion(), quantity, cents);
+        } else {
+            delta.setRefundCount(delta.getRefundCount() + quantity);
+            delta.setRefundAmountCents(delta.getRefundAmountCents() + cents);
+        }
+    }
+
+    private void write(Map<String, SalesDataRepository.Delta> deltas, Map<String, SalesSeriesRepository.Point> points,
+                       long events) {
+        // 序列单独写入，失败不影响sales_data
+        salesSeriesService.write(points.values());
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            salesDataRepository.applyDeltas(deltas.values());
+            windowsFlushed.incrementAndGet();
+            rowsWritten.addAndGet(deltas.size());
+            lastFlushAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            // Increment非幂等，不重试；可通过 /api/admin/rebuild-sales-data 从订单重建当天数据
+            failedEvents.addAndGet(events);
+            log.error("Failed to write sales aggregation window: rows={}, events={}", deltas.size(), events, e);
+        }
+    }
+
+    private String getCategory(String productId) {
+        Optional<String> category = categories.getIfPresent(productId);
+        if (category != null) {
+            return category.orElse(null);
+        }
+        try {
+            Product product = productRepository.findById(productId);
+            String value = product != null && product.getCategory() != null && !product.getCategory().isEmpty()
+                    ? product.getCategory() : null;
+            categories.put(productId, Optional.ofNullable(value));
+            return value;
+        } catch (Exception e) {
+            // 查询失败不缓存，只写商品行和总计行
+            log.error("Failed to get product category: {}", productId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 发布、同步写入、窗口写入和失败计数
+     */
+    public Map<String, Object> getStats() {
+        EventRing current = ring;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running);
+        stats.put("ringSize", current != null ? current.capacity() : 0);
+        stats.put("pending", current != null ? current.size() : 0);
+        stats.put("published", published.get());
+        stats.put("appliedDirectly", appliedDirectly.get());
+        stats.put("windowsFlushed", windowsFlushed.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("failedEvents", failedEvents.get());
+        stats.put("lastFlushAt", lastFlushAt);
+        return stats;
+    }
+
+    /**
+     * 订单生命周期事件
+     */
+    @lombok.Value
+    @lombok.Builder
+    public static class OrderEvent {
+        EventType type;
+        String orderId;
+        long timestamp;
+        String region;
+        List<Order.OrderItem> items;
+    }
+
+    /**
+     * 有界环形缓冲区：生产者CAS抢占序号后写入槽位，唯一的消费者按序号读取并清空槽位
+     */
+    private static final class EventRing {
+        private final AtomicReferenceArray<OrderEvent> slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        private EventRing(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private boolean offer(OrderEvent event) {
+            long sequence;
+            do {
+                sequence = tail.get();
+                if (sequence - head > mask) {
+                    return false;
+                }
+            } while (!tail.compareAndSet(sequence, sequence + 1));
+            slots.setRelease((int) (sequence & mask), event);
+            return true;
+        }
+
+        /**
+         * 只由消费者线程调用；序号已被抢占但生产者尚未写入时返回null，下次再读
+         */
+        private OrderEvent poll() {
+            int index = (int) (head & mask);
+            OrderEvent event = slots.getAcquire(index);
+            if (event == null) {
+                return null;
+            }
+            slots.set(index, null);
+            head = head + 1;
+            return event;
+        }
+
+        private boolean isEmpty() {
+            return tail.get() == head;
+        }
+
+        private long size() {
+            return tail.get() - head;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.entity.SalesData;
+import com.sales.repository.SalesDataRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按天缓存的分析结果。
+ * 已结束的日期销售数据不再变化，其品类汇总、小时销量和报表合计计算一次后一直缓存；
+ * 尚未结束的日期（当天及零点后宽限期内的前一天）只缓存TODAY_TTL_SECONDS秒。
+ * 区间查询由各天的结果合并得到，通常只有当天需要重新计算；
+ * 未缓存的日期按天拆分为独立的子扫描，在虚拟线程上并发计算，任一天失败或超过截止时间时取消其余子扫描。
+ */
+@Slf4j
+@Service
+public class SalesAnalysisCacheService {
+
+    @Autowired
+    private SalesOlapCacheService salesOlapCacheService;
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    private static final long TODAY_TTL_SECONDS = 5;
+
+    /**
+     * 区间查询同时进行的单日子扫描数上限，避免大范围冷查询压垮RegionServer
+     */
+    @Value("${sales.report.parallelism:16}")
+    private int parallelism;
+
+    /**
+     * 区间查询的截止时间，超过后取消未完成的子扫描
+     */
+    @Value("${sales.report.timeout-millis:30000}")
+    private long timeoutMillis;
+
+    /**
+     * 日期结束后仍可能有延迟写入的时间，与列式缓存一致
+     */
+    private static final long CLOSE_GRACE_MILLIS = 5 * 60_000;
+
+    private final Cache<LocalDate, DayAnalysis> closedDays = CacheBuilder.newBuilder()
+            .maximumSize(3_660)
+            .build();
+
+    private final Cache<LocalDate, DayAnalysis> openDays = CacheBuilder.newBuilder()
+            .maximumSize(16)
+            .expireAfterWrite(TODAY_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * 获取一天的分析结果
+     */
+    public DayAnalysis getDay(LocalDate date) throws IOException {
+        DayAnalysis cached = closedDays.getIfPresent(date);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            DayAnalysis day = openDays.get(date, () -> compute(date));
+            if (day.isClosed()) {
+                closedDays.put(date, day);
+                openDays.invalidate(date);
+            }
+            return day;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to compute daily analysis: " + date, e.getCause());
+        }
+    }
+
+    /**
+     * 获取日期范围内每天的分析结果（endDate不含，与SalesDataRepository.findByDateRange一致）。
+     * 已结束且已缓存的日期直接返回，其余日期并发计算，耗时取决于最慢的一天而不是天数
+     */
+    public List<DayAnalysis> getDays(LocalDate startDate, LocalDate endDate) throws IOException {
+        int count = (int) Math.max(0, ChronoUnit.DAYS.between(startDate, endDate));
+        List<LocalDate> dates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dates.add(startDate.plusDays(i));
+        }
+        return getDays(dates);
+    }
+
+    /**
+     * 获取指定日期的分析结果，返回顺序与dates一致
+     */
+    public List<DayAnalysis> getDays(List<LocalDate> dates) throws IOException {
+        DayAnalysis[] days = new DayAnalysis[dates.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < days.length; i++) {
+            days[i] = closedDays.getIfPresent(dates.get(i));
+            if (days[i] == null) {
+                missing.add(i);
+            }
+        }
+
+        if (missing.size() == 1) {
+            days[missing.get(0)] = getDay(dates.get(missing.get(0)));
+        } else if (!missing.isEmpty()) {
+            computeConcurrently(dates, missing, days);
+        }
+        return Arrays.asList(days);
+    }
+
+    /**
+     * 已结束且已缓存的日期结果，未缓存时返回null，不触发计算
+     */
+    public DayAnalysis getCachedDay(LocalDate date) {
+        return closedDays.getIfPresent(date);
+    }
+
+    /**
+     * 每个缺失的日期一个虚拟线程，信号量限制同时扫描的天数。
+     * 按完成顺序等待结果：任一天失败立即抛出，到达截止时间抛出超时，两种情况都中断其余子扫描且不等待其结束
+     */
+    private void computeConcurrently(List<LocalDate> dates, List<Integer> missing, DayAnalysis[] days) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Sales-Report-", 0).factory());
+        boolean completed = false;
+        try {
+            CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+            for (int index : missing) {
+                completion.submit(() -> {
+                    permits.acquire();
+                    try {
+                        days[index] = getDay(dates.get(index));
+                        return index;
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+
+            for (int done = 0; done < missing.size(); done++) {
+                long remaining = deadline - System.nanoTime();
+                Future<Integer> future = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (future == null) {
+                    throw new IOException("Daily analysis timed out after " + timeoutMillis + "ms: "
+                            + (missing.size() - done) + " of " + missing.size() + " days pending");
+                }
+                future.get();
+            }
+            completed = true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to compute daily analysis", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Daily analysis interrupted", e);
+        } finally {
+            if (completed) {
+                executor.shutdown();
+            } else {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 丢弃指定日期的结果（HBase中该日数据被重写后调用）
+     */
+    public void invalidate(LocalDate date) {
+        closedDays.invalidate(date);
+        openDays.invalidate(date);
+    }
+
+    public void invalidateAll() {
+        closedDays.invalidateAll();
+        openDays.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("closedDays", closedDays.size());
+        stats.put("openDays", openDays.size());
+        return stats;
+    }
+
+    private DayAnalysis compute(LocalDate date) throws IOException {
+        DayAnalysis day = salesOlapCacheService.isEnabled() ? computeFromColumns(date) : computeFromHBase(date);
+        log.debug("Daily analysis computed: date={}, closed={}", date, day.isClosed());
+        return day;
+    }
+
+    private DayAnalysis computeFromColumns(LocalDate date) throws IOException {
+        // 先判断列段是否已结束，再读取数据，避免把结束前的数据当作最终结果
+        boolean closed = salesOlapCacheService.isClosed(date);
+        LocalDate next = date.plusDays(1);
+
+        Map<String, SalesOlapCacheService.Totals> categories = new LinkedHashMap<>();
+        for (SalesOlapCacheService.Totals totals : salesOlapCacheService.groupByCategory(date, next)) {
+            categories.put(totals.getKey(), totals);
+        }
+
+        return DayAnalysis.builder()
+                .date(date)
+                .closed(closed)
+                .totals(salesOlapCacheService.sumNonProductRows(date, next))
+                .categories(categories)
+                .hourlySales(salesOlapCacheService.getTotalHourlySales(date))
+                .build();
+    }
+
+    private DayAnalysis computeFromHBase(LocalDate date) throws IOException {
+        boolean closed = System.currentTimeMillis() >= date.plusDays(1)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() + CLOSE_GRACE_MILLIS;
+        List<SalesData> rows = salesDataRepository.findByDate(date);
+
+        long saleCount = 0;
+        long saleAmount = 0;
+        long refundCount = 0;
+        long refundAmount = 0;
+        Map<String, long[]> categorySums = new HashMap<>();
+        long[] hourlySales = new long[24];
+        for (SalesData row : rows) {
+            long rowSaleCount = row.getSaleCount() != null ? row.getSaleCount() : 0;
+            long rowSaleAmount = SalesOlapCacheService.toCents(row.getSaleAmount());
+            long rowRefundCount = row.getRefundCount() != null ? row.getRefundCount() : 0;
+            long rowRefundAmount = SalesOlapCacheService.toCents(row.getRefundAmount());
+
+            if (row.getDataType() != SalesData.DataType.PRODUCT) {
+                saleCount += rowSaleCount;
+                saleAmount += rowSaleAmount;
+                refundCount += rowRefundCount;
+                refundAmount += rowRefundAmount;
+            }
+            if (row.getCategoryId() != null && !row.getCategoryId().isEmpty()) {
+                long[] sums = categorySums.computeIfAbsent(row.getCategoryId(), k -> new long[4]);
+                sums[0] += rowSaleCount;
+                sums[1] += rowSaleAmount;
+                sums[2] += rowRefundCount;
+                sums[3] += rowRefundAmount;
+            }
+            long[] hourly = row.getHourly();
+            if (row.getDataType() == SalesData.DataType.TOTAL && hourly != null) {
+                for (int hour = 0; hour < hourlySales.length && hour < hourly.length; hour++) {
+                    hourlySales[hour] += hourly[hour];
+                }
+            }
+        }
+
+        Map<String, SalesOlapCacheService.Totals> categories = new LinkedHashMap<>();
+        categorySums.entrySet().stream()
+                .map(entry -> SalesOlapCacheService.Totals.builder()
+                        .key(entry.getKey())
+                        .saleCount(entry.getValue()[0])
+                        .saleAmountCents(entry.getValue()[1])
+                        .refundCount(entry.getValue()[2])
+                        .refundAmountCents(entry.getValue()[3])
+                        .build())
+                .sorted((a, b) -> Long.compare(b.getNetAmountCents(), a.getNetAmountCents()))
+                .forEach(totals -> categories.put(totals.getKey(), totals));
+
+        return DayAnalysis.builder()
+                .date(date)
+                .closed(closed)
+                .totals(SalesOlapCacheService.Totals.builder()
+                        .date(date)
+                        .saleCount(saleCount)
+                        .saleAmountCents(saleAmount)
+                        .refundCount(refundCount)
+                        .refundAmountCents(refundAmount)
+                        .build())
+                .categories(categories)
+                .hourlySales(hourlySales)
+                .build();
+    }
+
+    /**
+     * 一天的分析结果（不可变）
+     */
+    @lombok.Value
+    @lombok.Builder
+    public static class DayAnalysis {
+        LocalDate date;
+        boolean closed;                                          // 是否已结束，结束后结果不再变化
+        SalesOlapCacheService.Totals totals;                     // 品类行和总计行合计
+        Map<String, SalesOlapCacheService.Totals> categories;    // 品类汇总，按净销售额降序
+        long[] hourlySales;                                      // 总计行小时销量，只读
+    }
+}
@@ -1,10 +1,14 @@
 package com.sales.service;
 
+import com.sales.entity.Order;
 import com.sales.entity.SalesData;
+import com.sales.repository.OrderRepository;
 import com.sales.repository.SalesDataRepository;
 import com.sales.service.RankingService;
+import com.sales.utils.ColumnSegmentFile;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -12,9 +16,16 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
 
 @Slf4j
 @Service
@@ -26,6 +37,58 @@ public class SalesAnalysisService {
     @Autowired
     private RankingService rankingService;
 
+    @Autowired
+    private SalesOlapCacheService salesOlapCacheService;
+
+    @Autowired
+    private SalesAnalysisCacheService salesAnalysisCacheService;
+
+    @Autowired
+    private UniqueCountService uniqueCountService;
+
+    @Autowired
+    private FunnelService funnelService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private SalesSnapshotService salesSnapshotService;
+
+    @Autowired
+    private SalesAggregationService salesAggregationService;
+
+    @Autowired
+    private SalesSeriesService salesSeriesService;
+
+    @Autowired
+    private OrderAmountDigestService orderAmountDigestService;
+
+    public static final String REPORT_MODE_EXACT = "exact";
+    public static final String REPORT_MODE_APPROXIMATE = "approximate";
+
+    /**
+     * 近似报表每次最多新计算的历史日期数
+     */
+    @Value("${sales.report.approx.sample-days:30}")
+    private int approxSampleDays;
+
+    /**
+     * 近似报表的置信水平及对应的正态分位数
+     */
+    private static final double APPROX_CONFIDENCE = 0.95;
+    private static final double APPROX_Z = 1.96;
+
+    /**
+     * HyperLogLog的标准误差
+     */
+    private static final double HLL_STANDARD_ERROR = 0.0081;
+
+    private static final Set<Integer> PAID_STATUSES = Set.of(
+            Order.Status.PENDING_DELIVERY.getCode(),
+            Order.Status.SHIPPED.getCode(),
+            Order.Status.COMPLETED.getCode());
+
     /**
      * 记录销售数据
      */
@@ -71,6 +134,9 @@ public class SalesAnalysisService {
      * 获取日期范围内的销售数据
      */
     public List<SalesData> getSalesDataByDateRange(LocalDate startDate, LocalDate endDate) throws IOException {
+        if (salesOlapCacheService.isEnabled()) {
+            return salesOlapCacheService.getRows(startDate, endDate);
+        }
         return salesDataRepository.findByDateRange(startDate, endDate);
     }
 
@@ -92,6 +158,9 @@ public class SalesAnalysisService {
      * 获取热销商品排行
      */
     public List<SalesData> getTopSellingProducts(LocalDate date, int limit) throws IOException {
+        if (salesOlapCacheService.isEnabled()) {
+            return salesOlapCacheService.getTopProducts(date, limit);
+        }
         return salesDataRepository.findTopSellingProducts(date, limit);
     }
 
@@ -122,13 +191,34 @@ public class SalesAnalysisService {
                 .orderCount(dailySales.getNetCount())
                 .userCount(getTodayUserCount())
                 .avgPrice(avgPrice)
+                .medianOrderAmount(orderAmountDigestService.getTodayQuantile(0.5))
+                .p90OrderAmount(orderAmountDigestService.getTodayQuantile(0.9))
                 .build();
     }
 
+    /**
+     * 订单实付金额分布（endDate不含）
+     */
+    public OrderAmountDigestService.AmountDistribution getOrderAmountDistribution(LocalDate startDate, LocalDate endDate,
+                                                                                 List<Double> quantiles) throws IOException {
+        return orderAmountDigestService.getDistribution(startDate, endDate, quantiles);
+    }
+
     /**
      * 获取销售趋势数据
      */
     public List<TrendData> getSalesTrend(LocalDate startDate, LocalDate endDate) throws IOException {
+        if (salesOlapCacheService.isEnabled()) {
+            // 列段按日期顺序遍历，结果已按日期排序
+            return salesOlapCacheService.getNonProductRowTotals(startDate, endDate).stream()
+                    .map(totals -> TrendData.builder()
+                            .date(totals.getDate())
+                            .amount(totals.getNetAmount())
+                            .count(totals.getNetCount())
+                            .build())
+                    .toList();
+        }
+
         List<SalesData> salesDataList = getSalesDataByDateRange(startDate, endDate);
         
         return salesDataList.stream()
@@ -146,26 +236,12 @@ public class SalesAnalysisService {
      * 获取品类销售分析
      */
     public List<CategoryAnalysis> getCategoryAnalysis(LocalDate date) throws IOException {
-        List<SalesData> salesDataList = salesDataRepository.findByDate(date);
-        
-        Map<String, CategoryAnalysis> categoryMap = new HashMap<>();
-        
-        for (SalesData data : salesDataList) {
-            if (data.getCategoryId() != null && !data.getCategoryId().isEmpty()) {
-                CategoryAnalysis analysis = categoryMap.computeIfAbsent(data.getCategoryId(), 
-                        k -> CategoryAnalysis.builder()
-                                .categoryId(k)
-                                .totalAmount(BigDecimal.ZERO)
-                                .totalCount(0L)
-                                .build());
-                
-                analysis.setTotalAmount(analysis.getTotalAmount().add(data.getNetAmount()));
-                analysis.setTotalCount(analysis.getTotalCount() + data.getNetCount());
-            }
-        }
-        
-        return categoryMap.values().stream()
-                .sorted((a, b) -> b.getTotalAmount().compareTo(a.getTotalAmount()))
+        return salesAnalysisCacheService.getDay(date).getCategories().values().stream()
+                .map(totals -> CategoryAnalysis.builder()
+                        .categoryId(totals.getKey())
+                        .totalAmount(totals.getNetAmount())
+                        .totalCount(totals.getNetCount())
+                        .build())
                 .toList();
     }
 
@@ -186,34 +262,116 @@ public class SalesAnalysisService {
      * 获取小时销售分析
      */
     public Map<Integer, Long> getHourlyAnalysis(LocalDate date) throws IOException {
-        SalesData dailySales = getDailySalesData(date);
-        
-        if (dailySales != null && dailySales.getHourlySales() != null) {
-            return dailySales.getHourlySales();
+        long[] hours = salesAnalysisCacheService.getDay(date).getHourlySales();
+        Map<Integer, Long> hourlySales = new HashMap<>();
+        for (int hour = 0; hour < hours.length; hour++) {
+            if (hours[hour] > 0) {
+                hourlySales.put(hour, hours[hour]);
+            }
         }
-        
-        return new HashMap<>();
+        return hourlySales;
     }
 
     /**
      * 生成销售报表
      */
     public SalesReport generateSalesReport(LocalDate startDate, LocalDate endDate) throws IOException {
-        List<SalesData> salesDataList = getSalesDataByDateRange(startDate, endDate);
-        
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        Long totalCount = 0L;
-        BigDecimal totalRefundAmount = BigDecimal.ZERO;
-        Long totalRefundCount = 0L;
-        
-        for (SalesData data : salesDataList) {
-            if (data.getProductId() == null || data.getProductId().isEmpty()) { // 只统计总计数据
-                totalAmount = totalAmount.add(data.getNetAmount());
-                totalCount = totalCount + data.getNetCount();
-                totalRefundAmount = totalRefundAmount.add(data.getRefundAmount() != null ? data.getRefundAmount() : BigDecimal.ZERO);
-                totalRefundCount = totalRefundCount + (data.getRefundCount() != null ? data.getRefundCount() : 0L);
+        // 由每天的合计累加：已结束的日期直接命中缓存，其余日期按天并发计算
+        ReportAccumulator accumulator = new ReportAccumulator();
+        for (SalesAnalysisCacheService.DayAnalysis day : salesAnalysisCacheService.getDays(startDate, endDate)) {
+            accumulator.add(day.getTotals());
+        }
+        return reportBuilder(startDate, endDate, accumulator.saleAmountCents - accumulator.refundAmountCents,
+                accumulator.netCount, accumulator.refundAmountCents, accumulator.refundCount)
+                .mode(REPORT_MODE_EXACT)
+                .build();
+    }
+
+    /**
+     * 近似销售报表，用于长区间看板。
+     * 已缓存的历史日期和尚未结束的日期取精确值；其余历史日期按区间确定的种子无放回抽取approxSampleDays天计算，
+     * 用样本均值外推未抽中的日期（简单随机抽样的总量估计，含有限总体校正），给出95%置信区间的半宽。
+     * 抽中的日期计算后进入日缓存，同一区间再次查询时精确部分变多、误差变小。
+     * 区间在去重日键保留期内时附带下单用户数（HyperLogLog）
+     */
+    public SalesReport generateApproximateSalesReport(LocalDate startDate, LocalDate endDate) throws IOException {
+        int totalDays = (int) Math.max(0, ChronoUnit.DAYS.between(startDate, endDate));
+        LocalDate openFrom = LocalDate.now().minusDays(1);
+        ReportAccumulator exact = new ReportAccumulator();
+        List<LocalDate> required = new ArrayList<>();
+        List<LocalDate> unknown = new ArrayList<>();
+        int cachedDays = 0;
+        for (int i = 0; i < totalDays; i++) {
+            LocalDate date = startDate.plusDays(i);
+            SalesAnalysisCacheService.DayAnalysis cached = salesAnalysisCacheService.getCachedDay(date);
+            if (cached != null) {
+                exact.add(cached.getTotals());
+                cachedDays++;
+            } else if (!date.isBefore(openFrom)) {
+                required.add(date);
+            } else {
+                unknown.add(date);
+            }
+        }
+
+        // 种子由区间决定：重复查询抽到同样的日期（已缓存），估计值不会每次刷新都跳动
+        int sampleSize = Math.min(unknown.size(), Math.max(2, approxSampleDays));
+        SplittableRandom random = new SplittableRandom(startDate.toEpochDay() * 31 + endDate.toEpochDay());
+        for (int i = 0; i < sampleSize; i++) {
+            Collections.swap(unknown, i, i + random.nextInt(unknown.size() - i));
+        }
+
+        List<LocalDate> dates = new ArrayList<>(required);
+        dates.addAll(unknown.subList(0, sampleSize));
+        List<SalesAnalysisCacheService.DayAnalysis> days = salesAnalysisCacheService.getDays(dates);
+        SampleMean netAmount = new SampleMean();
+        SampleMean netCount = new SampleMean();
+        SampleMean refundAmount = new SampleMean();
+        SampleMean refundCount = new SampleMean();
+        for (int i = 0; i < days.size(); i++) {
+            SalesOlapCacheService.Totals totals = days.get(i).getTotals();
+            if (i < required.size()) {
+                exact.add(totals);
+            } else {
+                netAmount.add(totals.getSaleAmountCents() - totals.getRefundAmountCents());
+                netCount.add(totals.getNetCount());
+                refundAmount.add(totals.getRefundAmountCents());
+                refundCount.add(totals.getRefundCount());
             }
         }
+
+        int population = unknown.size();
+        Long buyers = uniqueCountService.countDays(UniqueCountService.Metric.BUYER, startDate, endDate);
+        Approximation approximation = Approximation.builder()
+                .totalDays(totalDays)
+                .exactDays(cachedDays + required.size())
+                .sampledDays(sampleSize)
+                .estimatedDays(population - sampleSize)
+                .confidence(APPROX_CONFIDENCE)
+                .totalAmountMargin(BigDecimal.valueOf(netAmount.margin(population), 2))
+                .totalCountMargin(netCount.margin(population))
+                .totalRefundAmountMargin(BigDecimal.valueOf(refundAmount.margin(population), 2))
+                .totalRefundCountMargin(refundCount.margin(population))
+                .distinctBuyers(buyers)
+                .distinctBuyersMargin(buyers != null ? Math.round(buyers * HLL_STANDARD_ERROR * APPROX_Z) : null)
+                .build();
+
+        return reportBuilder(startDate, endDate,
+                exact.saleAmountCents - exact.refundAmountCents + netAmount.total(population),
+                exact.netCount + netCount.total(population),
+                exact.refundAmountCents + refundAmount.total(population),
+                exact.refundCount + refundCount.total(population))
+                .mode(REPORT_MODE_APPROXIMATE)
+                .approximation(approximation)
+                .build();
+    }
+
+    private SalesReport.SalesReportBuilder reportBuilder(LocalDate startDate, LocalDate endDate, long netAmountCents,
+                                                         long netCount, long refundAmountCents, long refundCount) {
+        BigDecimal totalAmount = BigDecimal.valueOf(netAmountCents, 2);
+        Long totalCount = netCount;
+        BigDecimal totalRefundAmount = BigDecimal.valueOf(refundAmountCents, 2);
+        Long totalRefundCount = refundCount;
         
         BigDecimal avgOrderAmount = totalCount > 0 ? 
                 totalAmount.divide(new BigDecimal(totalCount), 2, BigDecimal.ROUND_HALF_UP) : 
@@ -231,21 +389,112 @@ public class SalesAnalysisService {
                 .totalRefundAmount(totalRefundAmount)
                 .totalRefundCount(totalRefundCount)
                 .avgOrderAmount(avgOrderAmount)
-                .refundRate(refundRate)
+                .refundRate(refundRate);
+    }
+
+    /**
+     * 列式缓存状态
+     */
+    public Map<String, Object> getOlapCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(salesOlapCacheService.getStats());
+        stats.put("analysisCache", salesAnalysisCacheService.getStats());
+        stats.put("aggregation", salesAggregationService.getStats());
+        stats.put("series", salesSeriesService.getStats());
+        return stats;
+    }
+
+    /**
+     * 按创建日期统计订单数、各状态订单数和已支付金额（endDate不含）。
+     * 已结束的日期读取订单快照：状态列区块内最小值等于最大值时整块按该状态计数，
+     * 未支付状态的区块不读取金额列；未结束的日期扫描HBase
+     */
+    public OrderStats getOrderStats(LocalDate startDate, LocalDate endDate) throws IOException {
+        long[] totals = new long[3]; // 订单数、已支付订单数、已支付金额（分）
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        int snapshotDays = 0;
+        int hbaseDays = 0;
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            ColumnSegmentFile file = salesSnapshotService.getOrders(date);
+            if (file != null) {
+                snapshotDays++;
+                addOrderStats(file, totals, statusCounts);
+                continue;
+            }
+
+            hbaseDays++;
+            orderRepository.scanOrders(date, date, null, null, order -> {
+                int status = order.getStatus() != null ? order.getStatus() : 0;
+                totals[0]++;
+                statusCounts.merge(status, 1L, Long::sum);
+                if (PAID_STATUSES.contains(status)) {
+                    totals[1]++;
+                    totals[2] += SalesOlapCacheService.toCents(order.getActualAmount());
+                }
+            });
+        }
+
+        return OrderStats.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .orderCount(totals[0])
+                .paidOrderCount(totals[1])
+                .paidAmount(BigDecimal.valueOf(totals[2], 2))
+                .statusCounts(statusCounts)
+                .snapshotDays(snapshotDays)
+                .hbaseDays(hbaseDays)
                 .build();
     }
 
+    private void addOrderStats(ColumnSegmentFile file, long[] totals, Map<Integer, Long> statusCounts) {
+        ColumnSegmentFile.LongColumn status = file.longColumn(SalesSnapshotService.COL_STATUS);
+        ColumnSegmentFile.LongColumn amount = file.longColumn(SalesSnapshotService.COL_ACTUAL_AMOUNT);
+        int zoneRows = file.zoneRows();
+        int size = status.length();
+        totals[0] += size;
+        for (int zone = 0; zone < status.zoneCount(); zone++) {
+            int from = zone * zoneRows;
+            int to = Math.min(size, from + zoneRows);
+            if (status.zoneMin(zone) == status.zoneMax(zone)) {
+                int code = (int) status.zoneMin(zone);
+                statusCounts.merge(code, (long) (to - from), Long::sum);
+                if (PAID_STATUSES.contains(code)) {
+                    totals[1] += to - from;
+                    for (int i = from; i < to; i++) {
+                        totals[2] += amount.get(i);
+                    }
+                }
+                continue;
+            }
+            for (int i = from; i < to; i++) {
+                int code = (int) status.get(i);
+                statusCounts.merge(code, 1L, Long::sum);
+                if (PAID_STATUSES.contains(code)) {
+                    totals[1]++;
+                    totals[2] += amount.get(i);
+                }
+            }
+        }
+    }
+
     /**
-     * 获取今日用户数量（简化实现）
+     * 获取今日活跃用户数（HyperLogLog估计，一次PFCOUNT）
      */
     private Long getTodayUserCount() {
-        // 这里应该从Redis或数据库获取今日活跃用户数
-        // 简化实现，返回在线用户数
-        try {
-            return rankingService.getRankingSize("hot");
-        } catch (Exception e) {
-            return 0L;
-        }
+        return uniqueCountService.countToday(UniqueCountService.Metric.ACTIVE);
+    }
+
+    /**
+     * 浏览→加购→购买转化漏斗（含endDate，productIds为空表示全部商品）
+     */
+    public FunnelService.FunnelResult getFunnel(LocalDate startDate, LocalDate endDate, List<String> productIds) {
+        return funnelService.getFunnel(startDate, endDate, productIds);
+    }
+
+    /**
+     * 日活、支付用户、访客的今日/近7天/近30天去重数
+     */
+    public Map<String, Map<String, Long>> getUniqueCounts() {
+        return uniqueCountService.getCounts();
     }
 
     /**
@@ -258,6 +507,8 @@ public class SalesAnalysisService {
         private Long orderCount;
         private Long userCount;
         private BigDecimal avgPrice;
+        private BigDecimal medianOrderAmount;   // 今日订单实付金额中位数，没有订单时为空
+        private BigDecimal p90OrderAmount;
     }
 
     /**
@@ -282,6 +533,93 @@ public class SalesAnalysisService {
         private Long totalCount;
     }
 
+    /**
+     * 订单统计
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class OrderStats {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Long orderCount;
+        private Long paidOrderCount;
+        private BigDecimal paidAmount;
+        private Map<Integer, Long> statusCounts;
+        private Integer snapshotDays;   // 读取快照的天数
+        private Integer hbaseDays;      // 扫描HBase的天数
+    }
+
+    /**
+     * 报表合计的定点累加器：金额以分为单位的long，溢出时抛出ArithmeticException而不是静默回绕
+     */
+    private static final class ReportAccumulator {
+        private long saleAmountCents;
+        private long refundAmountCents;
+        private long netCount;
+        private long refundCount;
+
+        private void add(SalesOlapCacheService.Totals totals) {
+            saleAmountCents = Math.addExact(saleAmountCents, totals.getSaleAmountCents());
+            refundAmountCents = Math.addExact(refundAmountCents, totals.getRefundAmountCents());
+            netCount = Math.addExact(netCount, totals.getNetCount());
+            refundCount = Math.addExact(refundCount, totals.getRefundCount());
+        }
+    }
+
+    /**
+     * 抽样日期的某项日合计：用样本均值估计总体总量及置信区间半宽
+     */
+    private static final class SampleMean {
+        private int n;
+        private double sum;
+        private double sumSquares;
+
+        private void add(long value) {
+            n++;
+            sum += value;
+            sumSquares += (double) value * value;
+        }
+
+        /**
+         * population天的总量估计
+         */
+        private long total(int population) {
+            return n > 0 ? Math.round(population * (sum / n)) : 0;
+        }
+
+        /**
+         * 置信区间半宽：z * N * sqrt((1 - n/N) * s² / n)，全部抽中时为0
+         */
+        private long margin(int population) {
+            if (n < 2 || n >= population) {
+                return 0;
+            }
+            double mean = sum / n;
+            double variance = Math.max(0, (sumSquares - n * mean * mean) / (n - 1));
+            double fpc = 1 - (double) n / population;
+            return Math.round(APPROX_Z * population * Math.sqrt(fpc * variance / n));
+        }
+    }
+
+    /**
+     * 近似报表的抽样情况和各合计的置信区间半宽（估计值 ± 半宽）
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class Approximation {
+        private int totalDays;
+        private int exactDays;          // 取精确值的天数（已缓存或尚未结束）
+        private int sampledDays;        // 本次抽样计算的天数
+        private int estimatedDays;      // 由样本外推的天数
+        private double confidence;
+        private BigDecimal totalAmountMargin;
+        private Long totalCountMargin;
+        private BigDecimal totalRefundAmountMargin;
+        private Long totalRefundCountMargin;
+        private Long distinctBuyers;        // 下单用户数，区间超出去重日键保留期时为空
+        private Long distinctBuyersMargin;
+    }
+
     /**
      * 销售报表
      */
@@ -296,5 +634,7 @@ public class SalesAnalysisService {
         private Long totalRefundCount;
         private BigDecimal avgOrderAmount;
         private BigDecimal refundRate;
+        private String mode;                    // exact / approximate
+        private Approximation approximation;    // 近似模式的误差范围，精确模式为空
     }
 }
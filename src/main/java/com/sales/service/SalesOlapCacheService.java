@@ -0,0 +1,817 @@
+package com.sales.service;
+
+import com.sales.entity.RegionCounters;
+import com.sales.entity.SalesData;
+import com.sales.repository.SalesDataRepository;
+import com.sales.utils.ColumnSegmentFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * sales_data的内存列式缓存。
+ * <p>
+ * 每天一个不可变的列段（DaySegment）：商品ID、品类ID字典编码为int，销量/金额/退货按列存放
+ * （金额以分为单位），另有24个小时销量。区间汇总、按品类分组和Top-K都是对列的顺序循环，
+ * 不创建SalesData对象。
+ * <p>
+ * 未结束的日期使用堆内数组（HeapSegment），按刷新间隔单独重新扫描当天前缀；
+ * 已结束的日期（次日零点后宽限期过后）写为本地快照文件并以内存映射读取（MappedSegment），
+ * 不占堆内存，重启后也不需要再从HBase加载。映射段带区块统计，查询可跳过整块无关的行。
+ */
+@Slf4j
+@Service
+public class SalesOlapCacheService {
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private SalesSnapshotService salesSnapshotService;
+
+    @Value("${sales.analysis.olap.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 启动后预加载并持续刷新的最近天数
+     */
+    @Value("${sales.analysis.olap.warmup-days:35}")
+    private int warmupDays;
+
+    /**
+     * 内存中保留的最大天数，更早的日期查询时直接加载且不缓存
+     */
+    @Value("${sales.analysis.olap.retention-days:400}")
+    private int retentionDays;
+
+    @Value("${sales.analysis.olap.refresh-millis:10000}")
+    private long refreshMillis;
+
+    /**
+     * 日期结束后仍可能有延迟写入的时间，超过后该日的列段不再刷新
+     */
+    private static final long CLOSE_GRACE_MILLIS = 5 * 60_000;
+
+    private static final int HOURS = 24;
+
+    static final byte KIND_PRODUCT = 0;
+    static final byte KIND_CATEGORY = 1;
+    static final byte KIND_TOTAL = 2;
+
+    private final Dictionary productDictionary = new Dictionary();
+    private final Dictionary categoryDictionary = new Dictionary();
+
+    private final Map<LocalDate, DaySegment> segments = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 预加载最近warmupDays天，重新加载未结束的日期，淘汰超出保留期的日期
+     */
+    @Scheduled(fixedDelayString = "${sales.analysis.olap.refresh-millis:10000}",
+            initialDelayString = "${sales.analysis.olap.initial-delay-millis:5000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        for (int i = Math.max(1, warmupDays) - 1; i >= 0; i--) {
+            LocalDate date = today.minusDays(i);
+            DaySegment segment = segments.get(date);
+            if (segment != null && (segment.closed || now - segment.loadedAt < refreshMillis)) {
+                continue;
+            }
+            try {
+                segments.put(date, load(date));
+                loaded++;
+            } catch (Exception e) {
+                // 保留旧列段，下次刷新重试
+                log.error("Failed to load sales column segment: date={}", date, e);
+            }
+        }
+
+        LocalDate oldest = today.minusDays(retentionDays);
+        segments.keySet().removeIf(date -> date.isBefore(oldest));
+        if (loaded > 0) {
+            log.debug("Sales column segments refreshed: loaded={}, cached={}", loaded, segments.size());
+        }
+    }
+
+    /**
+     * 丢弃指定日期的列段和快照（HBase中该日数据被重写后调用）
+     */
+    public void invalidate(LocalDate date) {
+        segments.remove(date);
+        salesSnapshotService.deleteSales(date);
+    }
+
+    public void invalidateAll() {
+        segments.clear();
+        salesSnapshotService.deleteAllSales();
+    }
+
+    /**
+     * 日期的列段是否已在日期结束后加载（之后不再变化）
+     */
+    public boolean isClosed(LocalDate date) throws IOException {
+        return segment(date).closed;
+    }
+
+    /**
+     * 日期结束的时刻（次日零点加宽限期，epoch毫秒）
+     */
+    static long closeAt(LocalDate date) {
+        return date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() + CLOSE_GRACE_MILLIS;
+    }
+
+    /**
+     * 日期范围内的全部行（endDate不含，与SalesDataRepository.findByDateRange一致）
+     */
+    public List<SalesData> getRows(LocalDate startDate, LocalDate endDate) throws IOException {
+        List<SalesData> rows = new ArrayList<>();
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            DaySegment segment = segment(date);
+            for (int i = 0; i < segment.size; i++) {
+                rows.add(segment.toSalesData(i, productDictionary, categoryDictionary));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 日期范围内非商品行（品类行、总计行）逐行的销售汇总（endDate不含）
+     */
+    public List<Totals> getNonProductRowTotals(LocalDate startDate, LocalDate endDate) throws IOException {
+        List<Totals> rows = new ArrayList<>();
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            DaySegment segment = segment(date);
+            int zoneRows = segment.zoneRows();
+            for (int from = 0; from < segment.size; from += zoneRows) {
+                if (!segment.zoneHasNonProduct(from / zoneRows)) {
+                    continue;
+                }
+                int to = Math.min(segment.size, from + zoneRows);
+                for (int i = from; i < to; i++) {
+                    byte kind = segment.kind(i);
+                    if (kind != KIND_PRODUCT) {
+                        int category = segment.category(i);
+                        rows.add(Totals.builder()
+                                .date(date)
+                                .key(kind == KIND_CATEGORY && category >= 0 ? categoryDictionary.decode(category) : null)
+                                .saleCount(segment.saleCount(i))
+                                .saleAmountCents(segment.saleAmount(i))
+                                .refundCount(segment.refundCount(i))
+                                .refundAmountCents(segment.refundAmount(i))
+                                .build());
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 日期范围内非商品行的销售合计（endDate不含）
+     */
+    public Totals sumNonProductRows(LocalDate startDate, LocalDate endDate) throws IOException {
+        long saleCount = 0;
+        long saleAmount = 0;
+        long refundCount = 0;
+        long refundAmount = 0;
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            DaySegment segment = segment(date);
+            int zoneRows = segment.zoneRows();
+            for (int from = 0; from < segment.size; from += zoneRows) {
+                if (!segment.zoneHasNonProduct(from / zoneRows)) {
+                    continue;
+                }
+                int to = Math.min(segment.size, from + zoneRows);
+                for (int i = from; i < to; i++) {
+                    // 以乘法代替分支
+                    long mask = segment.kind(i) != KIND_PRODUCT ? 1 : 0;
+                    saleCount += segment.saleCount(i) * mask;
+                    saleAmount += segment.saleAmount(i) * mask;
+                    refundCount += segment.refundCount(i) * mask;
+                    refundAmount += segment.refundAmount(i) * mask;
+                }
+            }
+        }
+        return Totals.builder()
+                .saleCount(saleCount)
+                .saleAmountCents(saleAmount)
+                .refundCount(refundCount)
+                .refundAmountCents(refundAmount)
+                .build();
+    }
+
+    /**
+     * 按品类分组汇总带品类ID的行（endDate不含），按净销售额降序
+     */
+    public List<Totals> groupByCategory(LocalDate startDate, LocalDate endDate) throws IOException {
+        long[] saleCount = new long[0];
+        long[] saleAmount = new long[0];
+        long[] refundCount = new long[0];
+        long[] refundAmount = new long[0];
+        boolean[] present = new boolean[0];
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            DaySegment segment = segment(date);
+            int groups = categoryDictionary.size();
+            if (groups > present.length) {
+                saleCount = Arrays.copyOf(saleCount, groups);
+                saleAmount = Arrays.copyOf(saleAmount, groups);
+                refundCount = Arrays.copyOf(refundCount, groups);
+                refundAmount = Arrays.copyOf(refundAmount, groups);
+                present = Arrays.copyOf(present, groups);
+            }
+            int zoneRows = segment.zoneRows();
+            for (int from = 0; from < segment.size; from += zoneRows) {
+                if (!segment.zoneHasCategory(from / zoneRows)) {
+                    continue;
+                }
+                int to = Math.min(segment.size, from + zoneRows);
+                for (int i = from; i < to; i++) {
+                    int group = segment.category(i);
+                    if (group >= 0) {
+                        saleCount[group] += segment.saleCount(i);
+                        saleAmount[group] += segment.saleAmount(i);
+                        refundCount[group] += segment.refundCount(i);
+                        refundAmount[group] += segment.refundAmount(i);
+                        present[group] = true;
+                    }
+                }
+            }
+        }
+
+        List<Totals> groups = new ArrayList<>();
+        for (int group = 0; group < present.length; group++) {
+            if (present[group]) {
+                groups.add(Totals.builder()
+                        .key(categoryDictionary.decode(group))
+                        .saleCount(saleCount[group])
+                        .saleAmountCents(saleAmount[group])
+                        .refundCount(refundCount[group])
+                        .refundAmountCents(refundAmount[group])
+                        .build());
+            }
+        }
+        groups.sort((a, b) -> Long.compare(b.getNetAmountCents(), a.getNetAmountCents()));
+        return groups;
+    }
+
+    /**
+     * 指定日期销量最高的limit个商品行
+     */
+    public List<SalesData> getTopProducts(LocalDate date, int limit) throws IOException {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        DaySegment segment = segment(date);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1,
+                (a, b) -> Long.compare(segment.saleCount(a), segment.saleCount(b)));
+        int zoneRows = segment.zoneRows();
+        for (int from = 0; from < segment.size; from += zoneRows) {
+            int zone = from / zoneRows;
+            // 堆已满且区块内最大销量不超过堆顶时整块跳过
+            if (top.size() == limit && segment.zoneMaxSaleCount(zone) <= segment.saleCount(top.peek())) {
+                continue;
+            }
+            int to = Math.min(segment.size, from + zoneRows);
+            for (int i = from; i < to; i++) {
+                if (segment.kind(i) != KIND_PRODUCT) {
+                    continue;
+                }
+                if (top.size() < limit) {
+                    top.offer(i);
+                } else if (segment.saleCount(i) > segment.saleCount(top.peek())) {
+                    top.poll();
+                    top.offer(i);
+                }
+            }
+        }
+
+        List<SalesData> rows = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            rows.add(segment.toSalesData(top.poll(), productDictionary, categoryDictionary));
+        }
+        // 小顶堆依次弹出为升序，反转为降序
+        Collections.reverse(rows);
+        return rows;
+    }
+
+    /**
+     * 指定日期总计行的小时销量（long[24]）
+     */
+    public long[] getTotalHourlySales(LocalDate date) throws IOException {
+        DaySegment segment = segment(date);
+        long[] hours = new long[HOURS];
+        int zoneRows = segment.zoneRows();
+        for (int from = 0; from < segment.size; from += zoneRows) {
+            if (!segment.zoneHasNonProduct(from / zoneRows)) {
+                continue;
+            }
+            int to = Math.min(segment.size, from + zoneRows);
+            for (int i = from; i < to; i++) {
+                if (segment.kind(i) == KIND_TOTAL) {
+                    for (int h = 0; h < HOURS; h++) {
+                        hours[h] += segment.hourly(i, h);
+                    }
+                }
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * 缓存状态：已缓存天数、行数、字典大小、堆内列数据估算字节数和映射字节数
+     */
+    public Map<String, Object> getStats() {
+        long rows = 0;
+        long heapBytes = 0;
+        long mappedBytes = 0;
+        int openSegments = 0;
+        int mappedSegments = 0;
+        for (DaySegment segment : segments.values()) {
+            rows += segment.size;
+            if (segment instanceof MappedSegment mapped) {
+                mappedSegments++;
+                mappedBytes += mapped.file.sizeBytes();
+            } else {
+                // kind 1字节 + 两个字典编码 8字节 + 四个指标列 32字节 + 小时块 192字节
+                heapBytes += (long) segment.size * (1 + 8 + 32 + HOURS * 8);
+            }
+            if (!segment.closed) {
+                openSegments++;
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("segments", segments.size());
+        stats.put("openSegments", openSegments);
+        stats.put("mappedSegments", mappedSegments);
+        stats.put("rows", rows);
+        stats.put("products", productDictionary.size());
+        stats.put("categories", categoryDictionary.size());
+        stats.put("columnBytes", heapBytes);
+        stats.put("mappedBytes", mappedBytes);
+        stats.put("snapshots", salesSnapshotService.getStats());
+        return stats;
+    }
+
+    /**
+     * 获取日期的列段，未缓存时加载；超出保留期的日期不缓存
+     */
+    private DaySegment segment(LocalDate date) throws IOException {
+        DaySegment segment = segments.get(date);
+        if (segment != null) {
+            return segment;
+        }
+
+        segment = load(date);
+        if (!date.isBefore(LocalDate.now().minusDays(retentionDays))) {
+            DaySegment existing = segments.putIfAbsent(date, segment);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * 已结束的日期优先使用快照文件，没有快照时从HBase加载后写出快照；
+     * 未结束的日期（或快照未启用）从HBase加载到堆内数组
+     */
+    private DaySegment load(LocalDate date) throws IOException {
+        long loadedAt = System.currentTimeMillis();
+        boolean closed = loadedAt >= closeAt(date);
+        if (closed) {
+            ColumnSegmentFile file = salesSnapshotService.openSales(date);
+            if (file != null) {
+                return new MappedSegment(date, file, loadedAt, productDictionary, categoryDictionary);
+            }
+        }
+
+        List<SalesData> rows = salesDataRepository.findByDate(date);
+        if (closed) {
+            try {
+                ColumnSegmentFile file = salesSnapshotService.writeSales(date, rows);
+                if (file != null) {
+                    log.debug("Sales column segment mapped: date={}, rows={}", date, rows.size());
+                    return new MappedSegment(date, file, loadedAt, productDictionary, categoryDictionary);
+                }
+            } catch (IOException e) {
+                // 快照写出失败时退回堆内列段
+                log.error("Failed to write sales snapshot: date={}", date, e);
+            }
+        }
+
+        int size = rows.size();
+        HeapSegment segment = new HeapSegment(date, size, loadedAt);
+        for (int i = 0; i < size; i++) {
+            SalesData row = rows.get(i);
+            SalesData.DataType type = row.getDataType();
+            segment.kind[i] = type == SalesData.DataType.PRODUCT ? KIND_PRODUCT
+                    : type == SalesData.DataType.CATEGORY ? KIND_CATEGORY : KIND_TOTAL;
+            segment.product[i] = type == SalesData.DataType.PRODUCT ? productDictionary.encode(row.getProductId()) : -1;
+            segment.category[i] = row.getCategoryId() != null && !row.getCategoryId().isEmpty()
+                    ? categoryDictionary.encode(row.getCategoryId()) : -1;
+            segment.saleCount[i] = row.getSaleCount() != null ? row.getSaleCount() : 0;
+            segment.saleAmount[i] = toCents(row.getSaleAmount());
+            segment.refundCount[i] = row.getRefundCount() != null ? row.getRefundCount() : 0;
+            segment.refundAmount[i] = toCents(row.getRefundAmount());
+            long[] hourly = row.getHourly();
+            if (hourly != null) {
+                System.arraycopy(hourly, 0, segment.hourly, i * HOURS, Math.min(HOURS, hourly.length));
+            }
+            segment.regions[i] = row.getRegions();
+        }
+
+        segment.closed = closed;
+        log.debug("Sales column segment loaded: date={}, rows={}, closed={}", date, size, segment.closed);
+        return segment;
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0;
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * 汇总结果，金额以分为单位
+     */
+    @lombok.Value
+    @lombok.Builder
+    public static class Totals {
+        LocalDate date;
+        String key;
+        long saleCount;
+        long saleAmountCents;
+        long refundCount;
+        long refundAmountCents;
+
+        public long getNetCount() {
+            return saleCount - refundCount;
+        }
+
+        public long getNetAmountCents() {
+            return saleAmountCents - refundAmountCents;
+        }
+
+        public BigDecimal getNetAmount() {
+            return fromCents(getNetAmountCents());
+        }
+
+        public BigDecimal getRefundAmount() {
+            return fromCents(refundAmountCents);
+        }
+    }
+
+    /**
+     * 一天的列数据，加载完成后不再修改。商品、品类编码为全局字典编码，无值为-1
+     */
+    private abstract static class DaySegment {
+        final LocalDate date;
+        final int size;
+        final long loadedAt;
+        boolean closed;
+
+        DaySegment(LocalDate date, int size, long loadedAt) {
+            this.date = date;
+            this.size = size;
+            this.loadedAt = loadedAt;
+        }
+
+        abstract byte kind(int i);
+
+        abstract int product(int i);
+
+        abstract int category(int i);
+
+        abstract long saleCount(int i);
+
+        abstract long saleAmount(int i);
+
+        abstract long refundCount(int i);
+
+        abstract long refundAmount(int i);
+
+        abstract long hourly(int i, int hour);
+
+        abstract RegionCounters regions(int i);
+
+        /**
+         * 区块行数；没有区块统计时整段为一个区块
+         */
+        int zoneRows() {
+            return Math.max(1, size);
+        }
+
+        boolean zoneHasNonProduct(int zone) {
+            return true;
+        }
+
+        boolean zoneHasCategory(int zone) {
+            return true;
+        }
+
+        long zoneMaxSaleCount(int zone) {
+            return Long.MAX_VALUE;
+        }
+
+        SalesData toSalesData(int i, Dictionary products, Dictionary categories) {
+            byte kind = kind(i);
+            int productCode = product(i);
+            int categoryCode = category(i);
+            String productId = kind == KIND_PRODUCT && productCode >= 0 ? products.decode(productCode) : null;
+            String categoryId = categoryCode >= 0 ? categories.decode(categoryCode) : null;
+
+            long[] hourly = new long[HOURS];
+            for (int h = 0; h < HOURS; h++) {
+                hourly[h] = hourly(i, h);
+            }
+
+            RegionCounters regions = regions(i);
+            return SalesData.builder()
+                    .rowKey(SalesData.generateRowKey(date, productId, kind == KIND_CATEGORY ? categoryId : null))
+                    .date(date)
+                    .productId(productId)
+                    .categoryId(categoryId)
+                    .saleCount(saleCount(i))
+                    .saleAmount(fromCents(saleAmount(i)))
+                    .refundCount(refundCount(i))
+                    .refundAmount(fromCents(refundAmount(i)))
+                    .hourly(hourly)
+                    .regions(regions != null ? regions : new RegionCounters())
+                    .build();
+        }
+    }
+
+    /**
+     * 堆内数组列段，用于未结束的日期
+     */
+    private static final class HeapSegment extends DaySegment {
+        private final byte[] kind;
+        private final int[] product;
+        private final int[] category;
+        private final long[] saleCount;
+        private final long[] saleAmount;
+        private final long[] refundCount;
+        private final long[] refundAmount;
+        private final long[] hourly;
+
+        // 区域数据稀疏且只在还原整行时使用，保留每行的区域数组
+        private final RegionCounters[] regions;
+
+        private HeapSegment(LocalDate date, int size, long loadedAt) {
+            super(date, size, loadedAt);
+            this.kind = new byte[size];
+            this.product = new int[size];
+            this.category = new int[size];
+            this.saleCount = new long[size];
+            this.saleAmount = new long[size];
+            this.refundCount = new long[size];
+            this.refundAmount = new long[size];
+            this.hourly = new long[size * HOURS];
+            this.regions = new RegionCounters[size];
+        }
+
+        @Override
+        byte kind(int i) {
+            return kind[i];
+        }
+
+        @Override
+        int product(int i) {
+            return product[i];
+        }
+
+        @Override
+        int category(int i) {
+            return category[i];
+        }
+
+        @Override
+        long saleCount(int i) {
+            return saleCount[i];
+        }
+
+        @Override
+        long saleAmount(int i) {
+            return saleAmount[i];
+        }
+
+        @Override
+        long refundCount(int i) {
+            return refundCount[i];
+        }
+
+        @Override
+        long refundAmount(int i) {
+            return refundAmount[i];
+        }
+
+        @Override
+        long hourly(int i, int hour) {
+            return hourly[i * HOURS + hour];
+        }
+
+        @Override
+        RegionCounters regions(int i) {
+            return regions[i];
+        }
+    }
+
+    /**
+     * 内存映射的快照列段，用于已结束的日期。文件内的字典编码在打开时映射为全局编码
+     */
+    private static final class MappedSegment extends DaySegment {
+        private final ColumnSegmentFile file;
+        private final ColumnSegmentFile.LongColumn kind;
+        private final ColumnSegmentFile.StringColumn product;
+        private final ColumnSegmentFile.StringColumn category;
+        private final ColumnSegmentFile.LongColumn saleCount;
+        private final ColumnSegmentFile.LongColumn saleAmount;
+        private final ColumnSegmentFile.LongColumn refundCount;
+        private final ColumnSegmentFile.LongColumn refundAmount;
+        private final ColumnSegmentFile.LongColumn[] hours = new ColumnSegmentFile.LongColumn[HOURS];
+        private final ColumnSegmentFile.LongColumn regionOffset;
+        private final ColumnSegmentFile.StringColumn regionName;
+        private final ColumnSegmentFile.LongColumn regionCount;
+        private final ColumnSegmentFile.LongColumn regionAmount;
+        private final int[] productCodes;
+        private final int[] categoryCodes;
+        private final int[] regionCodes;
+
+        private MappedSegment(LocalDate date, ColumnSegmentFile file, long loadedAt,
+                              Dictionary products, Dictionary categories) {
+            super(date, file.longColumn(SalesSnapshotService.COL_KIND).length(), loadedAt);
+            this.file = file;
+            this.closed = true;
+            this.kind = file.longColumn(SalesSnapshotService.COL_KIND);
+            this.product = file.stringColumn(SalesSnapshotService.COL_PRODUCT);
+            this.category = file.stringColumn(SalesSnapshotService.COL_CATEGORY);
+            this.saleCount = file.longColumn(SalesSnapshotService.COL_SALE_COUNT);
+            this.saleAmount = file.longColumn(SalesSnapshotService.COL_SALE_AMOUNT);
+            this.refundCount = file.longColumn(SalesSnapshotService.COL_REFUND_COUNT);
+            this.refundAmount = file.longColumn(SalesSnapshotService.COL_REFUND_AMOUNT);
+            for (int h = 0; h < HOURS; h++) {
+                hours[h] = file.longColumn(SalesSnapshotService.hourColumn(h));
+            }
+            this.regionOffset = file.longColumn(SalesSnapshotService.COL_REGION_OFFSET);
+            this.regionName = file.stringColumn(SalesSnapshotService.COL_REGION_NAME);
+            this.regionCount = file.longColumn(SalesSnapshotService.COL_REGION_COUNT);
+            this.regionAmount = file.longColumn(SalesSnapshotService.COL_REGION_AMOUNT);
+            this.productCodes = encodeAll(product.dictionary(), products);
+            this.categoryCodes = encodeAll(category.dictionary(), categories);
+            String[] regionNames = regionName.dictionary();
+            this.regionCodes = new int[regionNames.length];
+            for (int r = 0; r < regionNames.length; r++) {
+                regionCodes[r] = RegionCounters.intern(regionNames[r]);
+            }
+        }
+
+        private static int[] encodeAll(String[] values, Dictionary dictionary) {
+            int[] codes = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                codes[i] = dictionary.encode(values[i]);
+            }
+            return codes;
+        }
+
+        @Override
+        byte kind(int i) {
+            return (byte) kind.get(i);
+        }
+
+        @Override
+        int product(int i) {
+            int code = product.code(i);
+            return code >= 0 ? productCodes[code] : -1;
+        }
+
+        @Override
+        int category(int i) {
+            int code = category.code(i);
+            return code >= 0 ? categoryCodes[code] : -1;
+        }
+
+        @Override
+        long saleCount(int i) {
+            return saleCount.get(i);
+        }
+
+        @Override
+        long saleAmount(int i) {
+            return saleAmount.get(i);
+        }
+
+        @Override
+        long refundCount(int i) {
+            return refundCount.get(i);
+        }
+
+        @Override
+        long refundAmount(int i) {
+            return refundAmount.get(i);
+        }
+
+        @Override
+        long hourly(int i, int hour) {
+            return hours[hour].get(i);
+        }
+
+        @Override
+        RegionCounters regions(int i) {
+            int from = (int) regionOffset.get(i);
+            int to = (int) regionOffset.get(i + 1);
+            RegionCounters regions = new RegionCounters(to - from);
+            for (int r = from; r < to; r++) {
+                regions.addCode(regionCodes[regionName.code(r)], regionCount.get(r), regionAmount.get(r));
+            }
+            return regions;
+        }
+
+        @Override
+        int zoneRows() {
+            return file.zoneRows();
+        }
+
+        @Override
+        boolean zoneHasNonProduct(int zone) {
+            return kind.zoneMax(zone) != KIND_PRODUCT;
+        }
+
+        @Override
+        boolean zoneHasCategory(int zone) {
+            return category.codes().zoneMax(zone) >= 0;
+        }
+
+        @Override
+        long zoneMaxSaleCount(int zone) {
+            return saleCount.zoneMax(zone);
+        }
+    }
+
+    /**
+     * 字符串字典：编码只增不减，编码后的int可直接作为分组数组下标
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[256];
+        private int size;
+
+        private int encode(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            synchronized (this) {
+                code = codes.get(value);
+                if (code != null) {
+                    return code;
+                }
+                String[] current = values;
+                if (size == current.length) {
+                    current = Arrays.copyOf(current, size * 2);
+                }
+                current[size] = value;
+                values = current;
+                codes.put(value, size);
+                return size++;
+            }
+        }
+
+        private String decode(int code) {
+            return values[code];
+        }
+
+        private int size() {
+            return codes.size();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.sales.service;
+
+import com.sales.config.HBaseConfig;
+import com.sales.job.SalesAggregateWritable;
+import com.sales.job.SalesRebuildCombiner;
+import com.sales.job.SalesRebuildMapper;
+import com.sales.job.SalesRebuildReducer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从order_history重建sales_data（商品行、品类行、汇总行，含小时和区域明细及退货数、退货金额）。
+ * 以Hadoop本地模式运行MapReduce：map任务数等于两张表在范围内的region数，
+ * 并发由本地map/reduce线程数控制；不需要YARN集群。
+ */
+@Slf4j
+@Service
+public class SalesRebuildService {
+
+    @Autowired(required = false)
+    private Configuration hBaseConfiguration;
+
+    @Autowired
+    private SalesOlapCacheService salesOlapCacheService;
+
+    @Autowired
+    private SalesAnalysisCacheService salesAnalysisCacheService;
+
+    @Value("${sales.rebuild.map-threads:4}")
+    private int mapThreads;
+
+    @Value("${sales.rebuild.reducers:4}")
+    private int reducers;
+
+    /**
+     * 按日期范围重建时向前多扫描的订单天数，覆盖范围内退款对应的早期订单；更早下单的退款不会计入
+     */
+    @Value("${sales.rebuild.refund-lookback-days:90}")
+    private int refundLookbackDays;
+
+    /**
+     * 订单行键按创建时间排序，按支付日期重建时向前多扫描的天数（跨天支付）
+     */
+    private static final int PAY_LOOKBACK_DAYS = 1;
+
+    private static final int SCAN_CACHING = 500;
+
+    private static final String ORDER_ID_PREFIX = "ORD";
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * 重建[startDate, endDate)内的销售数据（不含endDate，与金额分布重建、销售数据导出一致）；startDate和endDate都为空时重建全部
+     */
+    public RebuildResult rebuild(LocalDate startDate, LocalDate endDate) throws IOException, InterruptedException {
+        if (hBaseConfiguration == null) {
+            throw new IllegalStateException("HBase is not configured");
+        }
+        if ((startDate == null) != (endDate == null) || (startDate != null && !endDate.isAfter(startDate))) {
+            throw new IllegalArgumentException("startDate and endDate must be given together, startDate < endDate");
+        }
+        LocalDate lastDate = endDate == null ? null : endDate.minusDays(1);
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rebuild is already running");
+        }
+
+        long begin = System.currentTimeMillis();
+        try {
+            Job job = createJob(startDate, lastDate);
+            boolean successful;
+            try {
+                successful = job.waitForCompletion(false);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Failed to run sales rebuild job", e);
+            }
+
+            Counters counters = job.getCounters();
+            RebuildResult result = RebuildResult.builder()
+                    .startDate(startDate)
+                    .endDate(endDate)
+                    .successful(successful)
+                    .ordersScanned(counters.findCounter(SalesRebuildMapper.Counter.ORDERS).getValue())
+                    .paidOrders(counters.findCounter(SalesRebuildMapper.Counter.PAID_ORDERS).getValue())
+                    .refundedOrders(counters.findCounter(SalesRebuildMapper.Counter.REFUNDED_ORDERS).getValue())
+                    .items(counters.findCounter(SalesRebuildMapper.Counter.ITEMS).getValue())
+                    .unknownCategoryItems(counters.findCounter(SalesRebuildMapper.Counter.UNKNOWN_CATEGORY).getValue())
+                    .existingRows(counters.findCounter(SalesRebuildMapper.Counter.EXISTING_ROWS).getValue())
+                    .rowsWritten(counters.findCounter(SalesRebuildReducer.Counter.ROWS_WRITTEN).getValue())
+                    .elapsedMillis(System.currentTimeMillis() - begin)
+                    .build();
+
+            if (startDate != null) {
+                for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+                    salesOlapCacheService.invalidate(date);
+                }
+            } else {
+                salesOlapCacheService.invalidateAll();
+            }
+            salesAnalysisCacheService.invalidateAll();
+            log.info("Sales data rebuilt: {}", result);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * lastDate为范围内最后一天（含）
+     */
+    private Job createJob(LocalDate startDate, LocalDate lastDate) throws IOException {
+        Configuration conf = new Configuration(hBaseConfiguration);
+        conf.set(MRConfig.FRAMEWORK_NAME, MRConfig.LOCAL_FRAMEWORK_NAME);
+        conf.set("fs.defaultFS", "file:///");
+        conf.set("hadoop.tmp.dir", Paths.get(System.getProperty("java.io.tmpdir"), "sales-rebuild").toString());
+        conf.setInt("mapreduce.local.map.tasks.maximum", mapThreads);
+        conf.setInt("mapreduce.local.reduce.tasks.maximum", reducers);
+        if (startDate != null) {
+            conf.set(SalesRebuildMapper.CONF_START_DATE, startDate.toString());
+            conf.set(SalesRebuildMapper.CONF_END_DATE, lastDate.toString());
+        }
+
+        Job job = Job.getInstance(conf, "rebuild-sales-data");
+        job.setJarByClass(SalesRebuildMapper.class);
+
+        Scan orderScan = createScan(HBaseConfig.TableNames.ORDER_HISTORY);
+        Scan salesScan = createScan(HBaseConfig.TableNames.SALES_DATA);
+        if (startDate != null) {
+            orderScan.withStartRow(Bytes.toBytes(ORDER_ID_PREFIX
+                    + startDate.minusDays(Math.max(PAY_LOOKBACK_DAYS, refundLookbackDays)).format(DateTimeFormatter.BASIC_ISO_DATE)));
+            orderScan.withStopRow(Bytes.toBytes(ORDER_ID_PREFIX
+                    + lastDate.plusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE)));
+            salesScan.withStartRow(Bytes.toBytes(startDate.format(DateTimeFormatter.ISO_LOCAL_DATE)));
+            salesScan.withStopRow(Bytes.toBytes(lastDate.plusDays(1).format(DateTimeFormatter.ISO_LOCAL_DATE)));
+        }
+
+        TableMapReduceUtil.initTableMapperJob(List.of(orderScan, salesScan), SalesRebuildMapper.class,
+                Text.class, SalesAggregateWritable.class, job, false);
+        job.setCombinerClass(SalesRebuildCombiner.class);
+        TableMapReduceUtil.initTableReducerJob(HBaseConfig.TableNames.SALES_DATA.getNameAsString(),
+                SalesRebuildReducer.class, job, null, null, null, null, false);
+        job.setNumReduceTasks(reducers);
+        return job;
+    }
+
+    private Scan createScan(TableName tableName) {
+        Scan scan = new Scan();
+        scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, tableName.getName());
+        scan.setCaching(SCAN_CACHING);
+        scan.setCacheBlocks(false); // 全表扫描不占用BlockCache
+        return scan;
+    }
+
+    /**
+     * 重建结果
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class RebuildResult {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private boolean successful;
+        private long ordersScanned;
+        private long paidOrders;
+        private long refundedOrders;
+        private long items;
+        private long unknownCategoryItems;
+        private long existingRows;     // sales_data中范围内的已有行
+        private long rowsWritten;
+        private long elapsedMillis;
+    }
+}
@@ -0,0 +1,162 @@
+package com.sales.service;
+
+import com.sales.repository.SalesSeriesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.hbase.client.Admin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HBase中持久化的分钟级销售序列（sales_series），保留ttlDays天。
+ * 由SalesAggregationService在每个聚合窗口结束时批量写入，查询时按step分钟降采样（求和）。
+ * Redis的 ts:* 序列只保留几天，用于看板；本序列用于小时以下粒度的历史分析。
+ */
+@Slf4j
+@Service
+public class SalesSeriesService {
+
+    @Autowired
+    private SalesSeriesRepository salesSeriesRepository;
+
+    @Autowired(required = false)
+    private Admin hBaseAdmin;
+
+    @Value("${sales.series.hbase.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sales.series.hbase.ttl-days:90}")
+    private int ttlDays;
+
+    /**
+     * 单次查询的最大跨度（分钟），默认31天
+     */
+    @Value("${sales.series.hbase.max-range-minutes:44640}")
+    private int maxRangeMinutes;
+
+    /**
+     * 降采样后的最大点数，step过小时自动放大
+     */
+    @Value("${sales.series.hbase.max-points:1440}")
+    private int maxPoints;
+
+    private final AtomicLong pointsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong failedPoints = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureTable() {
+        if (!enabled || hBaseAdmin == null) {
+            return;
+        }
+        try {
+            List<String> metrics = Arrays.stream(RealtimeSeriesService.Metric.values())
+                    .map(RealtimeSeriesService.Metric::getCode)
+                    .toList();
+            salesSeriesRepository.ensureTable(hBaseAdmin, ttlDays, metrics);
+        } catch (Exception e) {
+            log.error("Failed to ensure sales series table", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * time所在分钟的纪元分钟
+     */
+    public static long epochMinute(LocalDateTime time) {
+        return TimeUnit.SECONDS.toMinutes(time.atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    /**
+     * 写入一个窗口的分钟增量。Increment非幂等，失败不重试，只计数
+     */
+    public void write(Collection<SalesSeriesRepository.Point> points) {
+        if (!enabled || points == null || points.isEmpty()) {
+            return;
+        }
+        try {
+            salesSeriesRepository.increment(points);
+            batchesWritten.incrementAndGet();
+            pointsWritten.addAndGet(points.size());
+        } catch (Exception e) {
+            failedPoints.addAndGet(points.size());
+            log.error("Failed to write sales series: points={}", points.size(), e);
+        }
+    }
+
+    /**
+     * [start, end)内的序列，按step分钟求和降采样，桶从start所在分钟开始对齐。
+     * productId为空表示全部商品；跨度超过maxRangeMinutes时抛出IllegalArgumentException
+     */
+    public RealtimeSeriesService.Series getSeries(RealtimeSeriesService.Metric metric, String productId,
+                                                  LocalDateTime start, LocalDateTime end, int step) {
+        LocalDateTime from = start.truncatedTo(ChronoUnit.MINUTES);
+        long fromMinute = epochMinute(from);
+        long toMinute = epochMinute(end.truncatedTo(ChronoUnit.MINUTES));
+        long range = toMinute - fromMinute;
+        if (range <= 0) {
+            throw new IllegalArgumentException("end must be after start");
+        }
+        if (range > maxRangeMinutes) {
+            throw new IllegalArgumentException("Range exceeds " + maxRangeMinutes + " minutes");
+        }
+        step = (int) Math.max(Math.max(1, step), (range + maxPoints - 1) / maxPoints);
+        String product = productId != null && !productId.isEmpty() ? productId : null;
+
+        long[] minutes;
+        try {
+            minutes = salesSeriesRepository.getMinutes(metric.getCode(), product, fromMinute, toMinute);
+        } catch (Exception e) {
+            log.error("Failed to read sales series: metric={}, productId={}, start={}, end={}",
+                    metric.getCode(), product, start, end, e);
+            minutes = new long[(int) range];
+        }
+
+        List<Long> values = new ArrayList<>((int) ((range + step - 1) / step));
+        long total = 0;
+        for (int i = 0; i < minutes.length; i += step) {
+            long sum = 0;
+            for (int j = i; j < Math.min(minutes.length, i + step); j++) {
+                sum += minutes[j];
+            }
+            values.add(sum);
+            total += sum;
+        }
+
+        return RealtimeSeriesService.Series.builder()
+                .metric(metric.getCode())
+                .productId(product)
+                .start(from)
+                .intervalMinutes(step)
+                .values(values)
+                .total(total)
+                .build();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ttlDays", ttlDays);
+        stats.put("batchesWritten", batchesWritten.get());
+        stats.put("pointsWritten", pointsWritten.get());
+        stats.put("failedPoints", failedPoints.get());
+        return stats;
+    }
+}
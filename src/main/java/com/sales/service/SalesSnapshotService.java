@@ -0,0 +1,525 @@
+package com.sales.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sales.config.RedisConfig;
+import com.sales.entity.Order;
+import com.sales.entity.RegionCounters;
+import com.sales.entity.SalesData;
+import com.sales.repository.OrderRepository;
+import com.sales.repository.SalesDataRepository;
+import com.sales.utils.ColumnSegmentFile;
+import com.sales.utils.RegionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 已结束日期的本地列式快照。
+ * 每个已结束的日期把sales_data和order_history分别导出为一个列段文件（ColumnSegmentFile），
+ * 之后对该日的分析直接读取内存映射的文件，不再访问HBase。
+ * <p>
+ * 销售段的行顺序：品类行、总计行在前，商品行按销量降序在后，
+ * 使kind和sale_count列的区块统计可以跳过整块商品行或销量不够的区块。
+ * <p>
+ * 订单在日期结束后仍会变化（次日支付、之后发货、完成、退款），订单段不能视为不可变：
+ * 每次状态变化时递增Redis中该订单日期的版本号（snapshot:orders:version:{yyyyMMdd}），
+ * 段文件中记录导出前读取的版本号，读取时版本不一致就重新导出；Redis不可用时无法确认快照是否最新，改为扫描HBase。
+ */
+@Slf4j
+@Service
+public class SalesSnapshotService {
+
+    @Autowired
+    private SalesDataRepository salesDataRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${sales.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sales.snapshot.dir:data/snapshots}")
+    private String directory;
+
+    /**
+     * 后台导出覆盖的最近天数
+     */
+    @Value("${sales.snapshot.export-days:400}")
+    private int exportDays;
+
+    /**
+     * 区块行数（zone map粒度）
+     */
+    private static final int ZONE_ROWS = 1024;
+
+    private static final String SALES_DIR = "sales";
+    private static final String ORDERS_DIR = "orders";
+    private static final String FILE_SUFFIX = ".seg";
+
+    // 销售段的列
+    public static final String COL_KIND = "kind";
+    public static final String COL_PRODUCT = "product";
+    public static final String COL_CATEGORY = "category";
+    public static final String COL_SALE_COUNT = "sale_count";
+    public static final String COL_SALE_AMOUNT = "sale_amount";         // 分
+    public static final String COL_REFUND_COUNT = "refund_count";
+    public static final String COL_REFUND_AMOUNT = "refund_amount";     // 分
+    public static final String COL_HOUR_PREFIX = "hour_";               // hour_00..hour_23
+    public static final String COL_REGION_OFFSET = "region_offset";     // 长度为行数+1，第i行的区域为[offset[i], offset[i+1])
+    public static final String COL_REGION_NAME = "region_name";
+    public static final String COL_REGION_COUNT = "region_count";
+    public static final String COL_REGION_AMOUNT = "region_amount";     // 分
+
+    // 订单段的列
+    public static final String COL_ORDER_ID = "order_id";
+    public static final String COL_USER_ID = "user_id";
+    public static final String COL_STATUS = "status";
+    public static final String COL_CREATE_TIME = "create_time";         // epoch秒
+    public static final String COL_PAY_TIME = "pay_time";               // epoch秒，未支付为0
+    public static final String COL_TOTAL_AMOUNT = "total_amount";       // 分
+    public static final String COL_DISCOUNT_AMOUNT = "discount_amount"; // 分
+    public static final String COL_ACTUAL_AMOUNT = "actual_amount";     // 分
+    public static final String COL_ITEM_COUNT = "item_count";
+    public static final String COL_REGION = "region";
+    public static final String COL_ORDER_VERSION = "order_version";     // 单值列：导出时该日订单的版本号
+
+    private static final String ORDER_ID_PREFIX = "ORD";
+
+    private static final long ORDER_VERSION_EXPIRE_DAYS = 800;
+
+    private static final int HOURS = 24;
+
+    /**
+     * 已映射的段文件，映射本身不占堆内存
+     */
+    private final Cache<Path, ColumnSegmentFile> openFiles = CacheBuilder.newBuilder()
+            .maximumSize(2000)
+            .build();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 导出最近exportDays天中已结束、尚无快照的日期
+     */
+    @Scheduled(fixedDelayString = "${sales.snapshot.export-millis:600000}",
+            initialDelayString = "${sales.snapshot.initial-delay-millis:60000}")
+    public void exportClosedDays() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        int exported = 0;
+        for (int i = exportDays; i >= 1; i--) {
+            LocalDate date = today.minusDays(i);
+            if (!isClosed(date)) {
+                continue;
+            }
+            try {
+                if (!Files.exists(salesPath(date))) {
+                    writeSales(date, salesDataRepository.findByDate(date));
+                    exported++;
+                }
+                if (!Files.exists(ordersPath(date))) {
+                    writeOrders(date);
+                    exported++;
+                }
+            } catch (Exception e) {
+                // 下次导出重试
+                log.error("Failed to export snapshot: date={}", date, e);
+            }
+        }
+        if (exported > 0) {
+            log.info("Snapshots exported: files={}", exported);
+        }
+    }
+
+    /**
+     * 日期是否已结束（次日零点加宽限期之后），之后HBase中该日数据视为不可变
+     */
+    public boolean isClosed(LocalDate date) {
+        return System.currentTimeMillis() >= SalesOlapCacheService.closeAt(date);
+    }
+
+    /**
+     * 已存在的销售快照，没有时返回null
+     */
+    public ColumnSegmentFile openSales(LocalDate date) throws IOException {
+        return enabled ? open(salesPath(date)) : null;
+    }
+
+    /**
+     * 订单快照；日期已结束但尚未导出或快照版本落后时当场导出。
+     * 未结束的日期、未启用或Redis不可用（无法校验版本）时返回null
+     */
+    public ColumnSegmentFile getOrders(LocalDate date) throws IOException {
+        if (!enabled || !isClosed(date)) {
+            return null;
+        }
+        Long version = orderVersion(date);
+        if (version == null) {
+            return null;
+        }
+        ColumnSegmentFile file = open(ordersPath(date));
+        return file != null && versionOf(file) == version ? file : writeOrders(date);
+    }
+
+    /**
+     * 订单状态变化后调用：订单所属日期已结束时递增该日版本号，并删除本节点的订单快照
+     */
+    public void markOrderChanged(String orderId) {
+        LocalDate date = orderDate(orderId);
+        if (date == null || !date.isBefore(LocalDate.now())) {
+            // 当天的订单在日期结束（含宽限期）之后才会导出，导出时已包含这次变化
+            return;
+        }
+        delete(ordersPath(date));
+        String key = versionKey(date);
+        try {
+            stringRedisTemplate.opsForValue().increment(key);
+            stringRedisTemplate.expire(key, ORDER_VERSION_EXPIRE_DAYS, TimeUnit.DAYS);
+        } catch (Exception e) {
+            log.error("Failed to bump order snapshot version: date={}, orderId={}", date, orderId, e);
+        }
+    }
+
+    /**
+     * 把已结束日期的销售行写为快照并返回映射后的文件；未启用或日期未结束时返回null
+     */
+    public ColumnSegmentFile writeSales(LocalDate date, List<SalesData> rows) throws IOException {
+        if (!enabled || !isClosed(date)) {
+            return null;
+        }
+
+        List<SalesData> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingInt((SalesData row) -> kindOf(row) == SalesOlapCacheService.KIND_PRODUCT ? 1 : 0)
+                .thenComparing(row -> row.getSaleCount() != null ? row.getSaleCount() : 0L, Comparator.reverseOrder()));
+
+        int size = sorted.size();
+        long[] kind = new long[size];
+        String[] product = new String[size];
+        String[] category = new String[size];
+        long[] saleCount = new long[size];
+        long[] saleAmount = new long[size];
+        long[] refundCount = new long[size];
+        long[] refundAmount = new long[size];
+        long[][] hours = new long[HOURS][size];
+        long[] regionOffset = new long[size + 1];
+        List<String> regionName = new ArrayList<>();
+        List<Long> regionCount = new ArrayList<>();
+        List<Long> regionAmount = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            SalesData row = sorted.get(i);
+            kind[i] = kindOf(row);
+            product[i] = kind[i] == SalesOlapCacheService.KIND_PRODUCT ? row.getProductId() : null;
+            category[i] = row.getCategoryId() != null && !row.getCategoryId().isEmpty() ? row.getCategoryId() : null;
+            saleCount[i] = row.getSaleCount() != null ? row.getSaleCount() : 0;
+            saleAmount[i] = SalesOlapCacheService.toCents(row.getSaleAmount());
+            refundCount[i] = row.getRefundCount() != null ? row.getRefundCount() : 0;
+            refundAmount[i] = SalesOlapCacheService.toCents(row.getRefundAmount());
+            long[] hourly = row.getHourly();
+            if (hourly != null) {
+                for (int hour = 0; hour < HOURS && hour < hourly.length; hour++) {
+                    hours[hour][i] = hourly[hour];
+                }
+            }
+
+            regionOffset[i] = regionName.size();
+            RegionCounters regions = row.getRegions();
+            for (int r = 0; regions != null && r < regions.size(); r++) {
+                regionName.add(regions.name(r));
+                regionCount.add(regions.count(r));
+                regionAmount.add(regions.amountCents(r));
+            }
+        }
+        regionOffset[size] = regionName.size();
+
+        ColumnSegmentFile.Writer writer = ColumnSegmentFile.writer(ZONE_ROWS)
+                .addLong(COL_KIND, kind)
+                .addStrings(COL_PRODUCT, product)
+                .addStrings(COL_CATEGORY, category)
+                .addLong(COL_SALE_COUNT, saleCount)
+                .addLong(COL_SALE_AMOUNT, saleAmount)
+                .addLong(COL_REFUND_COUNT, refundCount)
+                .addLong(COL_REFUND_AMOUNT, refundAmount)
+                .addLong(COL_REGION_OFFSET, regionOffset)
+                .addStrings(COL_REGION_NAME, regionName.toArray(new String[0]))
+                .addLong(COL_REGION_COUNT, regionCount.stream().mapToLong(Long::longValue).toArray())
+                .addLong(COL_REGION_AMOUNT, regionAmount.stream().mapToLong(Long::longValue).toArray());
+        for (int hour = 0; hour < HOURS; hour++) {
+            writer.addLong(hourColumn(hour), hours[hour]);
+        }
+
+        Path path = salesPath(date);
+        openFiles.invalidate(path);
+        writer.write(path);
+        log.debug("Sales snapshot written: date={}, rows={}", date, size);
+        return open(path);
+    }
+
+    /**
+     * 把已结束日期创建的订单写为快照并返回映射后的文件；未启用、日期未结束或Redis不可用时返回null
+     */
+    public ColumnSegmentFile writeOrders(LocalDate date) throws IOException {
+        if (!enabled || !isClosed(date)) {
+            return null;
+        }
+
+        // 先读版本再扫描：扫描期间发生的变化会使版本号前进，下次读取时重新导出
+        Long version = orderVersion(date);
+        if (version == null) {
+            return null;
+        }
+        OrderColumns columns = new OrderColumns();
+        orderRepository.scanOrders(date, date, null, null, columns::add);
+
+        Path path = ordersPath(date);
+        openFiles.invalidate(path);
+        columns.writer()
+                .addLong(COL_ORDER_VERSION, new long[]{version})
+                .write(path);
+        log.debug("Order snapshot written: date={}, rows={}", date, columns.size);
+        return open(path);
+    }
+
+    /**
+     * 删除日期的销售快照（HBase中该日数据被重写后调用）
+     */
+    public void deleteSales(LocalDate date) {
+        delete(salesPath(date));
+    }
+
+    public void deleteAllSales() {
+        Path dir = Paths.get(directory, SALES_DIR);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(this::delete);
+        } catch (IOException e) {
+            log.error("Failed to delete sales snapshots", e);
+        }
+    }
+
+    /**
+     * 快照文件数量和字节数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("directory", Paths.get(directory).toAbsolutePath().toString());
+        for (String kind : List.of(SALES_DIR, ORDERS_DIR)) {
+            long files = 0;
+            long bytes = 0;
+            Path dir = Paths.get(directory, kind);
+            if (Files.isDirectory(dir)) {
+                try (Stream<Path> paths = Files.list(dir)) {
+                    for (Path path : (Iterable<Path>) paths::iterator) {
+                        if (path.toString().endsWith(FILE_SUFFIX)) {
+                            files++;
+                            bytes += Files.size(path);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to list snapshots: {}", dir, e);
+                }
+            }
+            stats.put(kind + "Files", files);
+            stats.put(kind + "Bytes", bytes);
+        }
+        stats.put("mapped", openFiles.size());
+        return stats;
+    }
+
+    public static String hourColumn(int hour) {
+        return COL_HOUR_PREFIX + String.format("%02d", hour);
+    }
+
+    private ColumnSegmentFile open(Path path) throws IOException {
+        ColumnSegmentFile file = openFiles.getIfPresent(path);
+        if (file != null) {
+            return file;
+        }
+        if (!Files.exists(path)) {
+            return null;
+        }
+        file = ColumnSegmentFile.open(path);
+        openFiles.put(path, file);
+        return file;
+    }
+
+    private void delete(Path path) {
+        openFiles.invalidate(path);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Failed to delete snapshot: {}", path, e);
+        }
+    }
+
+    /**
+     * 日期的订单版本号，尚无变化时为0；Redis不可用时返回null
+     */
+    private Long orderVersion(LocalDate date) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(versionKey(date));
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (Exception e) {
+            log.error("Failed to read order snapshot version: date={}", date, e);
+            return null;
+        }
+    }
+
+    private static long versionOf(ColumnSegmentFile file) {
+        ColumnSegmentFile.LongColumn column = file.longColumn(COL_ORDER_VERSION);
+        return column != null && column.length() > 0 ? column.get(0) : -1;
+    }
+
+    /**
+     * 订单ID中的日期（ORD + yyyyMMdd + ...），与order_history按日期扫描的行键范围一致
+     */
+    private static LocalDate orderDate(String orderId) {
+        int end = ORDER_ID_PREFIX.length() + 8;
+        if (orderId == null || orderId.length() < end || !orderId.startsWith(ORDER_ID_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(orderId.substring(ORDER_ID_PREFIX.length(), end), DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String versionKey(LocalDate date) {
+        return RedisConfig.RedisKeys.SNAPSHOT_ORDER_VERSION_PREFIX + date.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private Path salesPath(LocalDate date) {
+        return Paths.get(directory, SALES_DIR, date + FILE_SUFFIX);
+    }
+
+    private Path ordersPath(LocalDate date) {
+        return Paths.get(directory, ORDERS_DIR, date + FILE_SUFFIX);
+    }
+
+    private static byte kindOf(SalesData row) {
+        SalesData.DataType type = row.getDataType();
+        return type == SalesData.DataType.PRODUCT ? SalesOlapCacheService.KIND_PRODUCT
+                : type == SalesData.DataType.CATEGORY ? SalesOlapCacheService.KIND_CATEGORY : SalesOlapCacheService.KIND_TOTAL;
+    }
+
+    /**
+     * 逐行收集订单列，一天的订单在内存中只保留原始值数组
+     */
+    private static final class OrderColumns {
+        private int size;
+        private String[] orderId = new String[256];
+        private String[] userId = new String[256];
+        private String[] region = new String[256];
+        private long[] status = new long[256];
+        private long[] createTime = new long[256];
+        private long[] payTime = new long[256];
+        private long[] totalAmount = new long[256];
+        private long[] discountAmount = new long[256];
+        private long[] actualAmount = new long[256];
+        private long[] itemCount = new long[256];
+
+        private void add(Order order) {
+            if (size == orderId.length) {
+                int capacity = size * 2;
+                orderId = Arrays.copyOf(orderId, capacity);
+                userId = Arrays.copyOf(userId, capacity);
+                region = Arrays.copyOf(region, capacity);
+                status = Arrays.copyOf(status, capacity);
+                createTime = Arrays.copyOf(createTime, capacity);
+                payTime = Arrays.copyOf(payTime, capacity);
+                totalAmount = Arrays.copyOf(totalAmount, capacity);
+                discountAmount = Arrays.copyOf(discountAmount, capacity);
+                actualAmount = Arrays.copyOf(actualAmount, capacity);
+                itemCount = Arrays.copyOf(itemCount, capacity);
+            }
+            orderId[size] = order.getOrderId();
+            userId[size] = order.getUserId();
+            region[size] = RegionUtils.fromAddress(order.getAddress());
+            status[size] = order.getStatus() != null ? order.getStatus() : 0;
+            createTime[size] = epochSeconds(order.getCreateTime());
+            payTime[size] = epochSeconds(order.getPayTime());
+            totalAmount[size] = SalesOlapCacheService.toCents(order.getTotalAmount());
+            discountAmount[size] = SalesOlapCacheService.toCents(order.getDiscountAmount());
+            actualAmount[size] = SalesOlapCacheService.toCents(order.getActualAmount());
+            itemCount[size] = order.getItems() != null ? order.getItems().size() : 0;
+            size++;
+        }
+
+        /**
+         * 按状态排序写出（同状态内保持订单ID顺序），状态列的区块大多只含一种状态
+         */
+        private ColumnSegmentFile.Writer writer() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(status[a], status[b]));
+
+            return ColumnSegmentFile.writer(ZONE_ROWS)
+                    .addStrings(COL_ORDER_ID, permute(orderId, order))
+                    .addStrings(COL_USER_ID, permute(userId, order))
+                    .addStrings(COL_REGION, permute(region, order))
+                    .addLong(COL_STATUS, permute(status, order))
+                    .addLong(COL_CREATE_TIME, permute(createTime, order))
+                    .addLong(COL_PAY_TIME, permute(payTime, order))
+                    .addLong(COL_TOTAL_AMOUNT, permute(totalAmount, order))
+                    .addLong(COL_DISCOUNT_AMOUNT, permute(discountAmount, order))
+                    .addLong(COL_ACTUAL_AMOUNT, permute(actualAmount, order))
+                    .addLong(COL_ITEM_COUNT, permute(itemCount, order));
+        }
+
+        private static String[] permute(String[] values, Integer[] order) {
+            String[] result = new String[order.length];
+            for (int i = 0; i < order.length; i++) {
+                result[i] = values[order[i]];
+            }
+            return result;
+        }
+
+        private static long[] permute(long[] values, Integer[] order) {
+            long[] result = new long[order.length];
+            for (int i = 0; i < order.length; i++) {
+                result[i] = values[order[i]];
+            }
+            return result;
+        }
+
+        private static long epochSeconds(LocalDateTime time) {
+            return time != null ? time.atZone(ZoneId.systemDefault()).toEpochSecond() : 0;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.sales.service;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 秒杀压测：对单个SKU预热后，用虚拟线程在进程内并发发起抢购，
+ * 统计吞吐、延迟分位和各结果数量，并校验成功数与扣减后库存一致（无超卖）。
+ */
+@Slf4j
+@Service
+@Profile("bench")
+public class SeckillLoadTestService {
+
+    @Autowired
+    private SeckillService seckillService;
+
+    @Autowired
+    private StockService stockService;
+
+    public LoadTestResult run(String productId, int stock, int requests, int users, int concurrency) throws InterruptedException {
+        String seckillId = "LOADTEST" + System.currentTimeMillis();
+        seckillService.warmUp(seckillId, productId, stock, BigDecimal.ONE, 600);
+
+        Map<SeckillService.PurchaseStatus, AtomicLong> counters = new EnumMap<>(SeckillService.PurchaseStatus.class);
+        for (SeckillService.PurchaseStatus status : SeckillService.PurchaseStatus.values()) {
+            counters.put(status, new AtomicLong());
+        }
+        long[] latencies = new long[requests];
+        Semaphore inFlight = new Semaphore(Math.max(1, concurrency));
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                String userId = "LT" + (i % Math.max(1, users));
+                inFlight.acquire();
+                executor.submit(() -> {
+                    try {
+                        long begin = System.nanoTime();
+                        SeckillService.PurchaseResult result = seckillService.purchase(seckillId, productId, userId, 1);
+                        latencies[index] = System.nanoTime() - begin;
+                        counters.get(result.getStatus()).incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        LoadTestResult result = new LoadTestResult();
+        result.seckillId = seckillId;
+        result.requests = requests;
+        result.elapsedMillis = elapsedNanos / 1_000_000;
+        result.throughput = elapsedNanos > 0 ? requests * 1_000_000_000L / elapsedNanos : 0;
+        result.p50Micros = percentile(latencies, 0.50) / 1000;
+        result.p99Micros = percentile(latencies, 0.99) / 1000;
+        result.won = counters.get(SeckillService.PurchaseStatus.QUEUED).get();
+        result.soldOut = counters.get(SeckillService.PurchaseStatus.SOLD_OUT).get();
+        result.repeated = counters.get(SeckillService.PurchaseStatus.REPEATED).get();
+        result.errors = counters.get(SeckillService.PurchaseStatus.ERROR).get();
+        result.remainingStock = stockService.getSeckillStock(seckillId, productId);
+        result.consistent = result.won + result.remainingStock == stock;
+
+        log.info("Seckill load test finished: {}", result);
+        return result;
+    }
+
+    private long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    @Data
+    public static class LoadTestResult {
+        private String seckillId;
+        private int requests;
+        private long elapsedMillis;
+        private long throughput;       // 每秒请求数
+        private long p50Micros;
+        private long p99Micros;
+        private long won;
+        private long soldOut;
+        private long repeated;
+        private long errors;
+        private int remainingStock;
+        private boolean consistent;    // 成功数 + 剩余库存 == 初始库存
+    }
+}
@@ -0,0 +1,412 @@
+package com.sales.service;
+
+import com.google.common.hash.Hashing;
+import com.sales.config.RedisConfig;
+import com.sales.entity.Order;
+import com.sales.entity.Product;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀引擎。
+ * 1. 活动开始前预热：库存写入Redis，清空购买记录和售罄标记；
+ * 2. 抢购时先查本地售罄标记，售罄后的请求不再访问Redis；
+ * 3. Lua脚本内原子完成“每人限购一次”校验和库存扣减；
+ * 4. 库存扣完的节点通过Redis发布订阅通知其他节点设置本地售罄标记；
+ * 5. 抢购成功只投递队列，由消费线程批量创建订单，用户轮询抢购结果获取订单号。
+ */
+@Slf4j
+@Service
+public class SeckillService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private QueueService queueService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 每人每场次最多购买件数
+     */
+    @Value("${sales.seckill.max-quantity-per-user:5}")
+    private int maxQuantityPerUser;
+
+    private static final long DEFAULT_EXPIRE_SECONDS = 3600; // 1小时
+
+    private static final String BROADCAST_SOLD_OUT = "SOLD_OUT";
+    private static final String BROADCAST_RESET = "RESET";
+
+    /**
+     * KEYS[1]=库存键  KEYS[2]=已购用户集合  ARGV[1]=用户ID  ARGV[2]=购买数量
+     * 返回扣减后的库存；-1售罄，-2重复购买，-3活动未预热，-4库存不足，-5购买数量不合法
+     */
+    private static final RedisScript<Long> PURCHASE_SCRIPT = new DefaultRedisScript<>("""
+            local quantity = tonumber(ARGV[2])
+            if quantity == nil or quantity < 1 or quantity ~= math.floor(quantity) then
+                return -5
+            end
+            if redis.call('SISMEMBER', KEYS[2], ARGV[1]) == 1 then
+                return -2
+            end
+            local stock = tonumber(redis.call('GET', KEYS[1]))
+            if stock == nil then
+                return -3
+            end
+            if stock <= 0 then
+                return -1
+            end
+            if stock < quantity then
+                return -4
+            end
+            redis.call('SADD', KEYS[2], ARGV[1])
+            local ttl = redis.call('PTTL', KEYS[1])
+            if ttl > 0 then
+                redis.call('PEXPIRE', KEYS[2], ttl)
+            end
+            return redis.call('DECRBY', KEYS[1], quantity)
+            """, Long.class);
+
+    /**
+     * KEYS[1]=库存键  KEYS[2]=已购用户集合  ARGV[1]=用户ID  ARGV[2]=购买数量
+     * 撤销一次抢购，只有购买记录存在时才归还库存，重复调用不会多加
+     */
+    private static final RedisScript<Long> ROLLBACK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('SREM', KEYS[2], ARGV[1]) == 1 then
+                return redis.call('INCRBY', KEYS[1], ARGV[2])
+            end
+            return -1
+            """, Long.class);
+
+    /**
+     * 本节点的售罄标记，键为秒杀库存键
+     */
+    private final Set<String> soldOutKeys = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this::onBroadcast,
+                new ChannelTopic(RedisConfig.RedisKeys.SECKILL_SOLD_OUT_CHANNEL));
+        queueService.registerHandler(RedisConfig.RedisKeys.QUEUE_SECKILL_ORDER, this::processSeckillOrders);
+    }
+
+    /**
+     * 预热秒杀活动
+     */
+    public void warmUp(String seckillId, String productId, int stock, BigDecimal seckillPrice, long expireSeconds) {
+        long expire = expireSeconds > 0 ? expireSeconds : DEFAULT_EXPIRE_SECONDS;
+        String stockKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId);
+        String infoKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_INFO_PREFIX, seckillId, productId);
+
+        redisService.del(StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_BUYERS_PREFIX, seckillId, productId),
+                StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_RESULT_PREFIX, seckillId, productId));
+
+        if (seckillPrice != null) {
+            redisService.hset(infoKey, "price", seckillPrice.toPlainString());
+            redisService.expire(infoKey, expire, TimeUnit.SECONDS);
+        }
+        stockService.setSeckillStock(seckillId, productId, stock, expire);
+
+        soldOutKeys.remove(stockKey);
+        broadcast(BROADCAST_RESET, stockKey);
+
+        log.info("Seckill warmed up: seckillId={}, productId={}, stock={}, price={}",
+                seckillId, productId, stock, seckillPrice);
+    }
+
+    /**
+     * 抢购
+     */
+    public PurchaseResult purchase(String seckillId, String productId, String userId, int quantity) {
+        if (quantity < 1 || quantity > maxQuantityPerUser) {
+            return PurchaseResult.builder().status(PurchaseStatus.INVALID_QUANTITY).remaining(-1).build();
+        }
+
+        String stockKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId);
+
+        // 本地售罄标记：无需访问Redis
+        if (soldOutKeys.contains(stockKey)) {
+            return PurchaseResult.builder().status(PurchaseStatus.SOLD_OUT).remaining(0).build();
+        }
+
+        String buyersKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_BUYERS_PREFIX, seckillId, productId);
+        Long remaining = redisService.eval(PURCHASE_SCRIPT, Arrays.asList(stockKey, buyersKey), userId, quantity);
+        if (remaining == null) {
+            // Redis不可用时拒绝抢购，避免超卖
+            return PurchaseResult.builder().status(PurchaseStatus.ERROR).remaining(-1).build();
+        }
+
+        if (remaining == -1) {
+            markSoldOut(stockKey);
+            return PurchaseResult.builder().status(PurchaseStatus.SOLD_OUT).remaining(0).build();
+        } else if (remaining == -2) {
+            return PurchaseResult.builder().status(PurchaseStatus.REPEATED).remaining(-1).build();
+        } else if (remaining == -3) {
+            return PurchaseResult.builder().status(PurchaseStatus.NOT_STARTED).remaining(-1).build();
+        } else if (remaining == -4) {
+            return PurchaseResult.builder().status(PurchaseStatus.INSUFFICIENT).remaining(-1).build();
+        } else if (remaining == -5) {
+            return PurchaseResult.builder().status(PurchaseStatus.INVALID_QUANTITY).remaining(-1).build();
+        }
+
+        if (remaining == 0) {
+            markSoldOut(stockKey);
+        }
+
+        if (!enqueueSeckillOrder(seckillId, productId, userId, quantity)) {
+            return PurchaseResult.builder().status(PurchaseStatus.ERROR).remaining(-1).build();
+        }
+
+        log.debug("Seckill won: seckillId={}, productId={}, userId={}, remaining={}",
+                seckillId, productId, userId, remaining);
+        return PurchaseResult.builder().status(PurchaseStatus.QUEUED).remaining(remaining).build();
+    }
+
+    /**
+     * 查询抢购结果
+     */
+    public PurchaseResult getResult(String seckillId, String productId, String userId) {
+        String resultKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_RESULT_PREFIX, seckillId, productId);
+        String buyersKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_BUYERS_PREFIX, seckillId, productId);
+        try {
+            Object orderId = stringRedisTemplate.opsForHash().get(resultKey, userId);
+            if (orderId != null) {
+                return PurchaseResult.builder().status(PurchaseStatus.SUCCESS).orderId(String.valueOf(orderId)).build();
+            }
+            Boolean queued = stringRedisTemplate.opsForSet().isMember(buyersKey, userId);
+            return PurchaseResult.builder()
+                    .status(Boolean.TRUE.equals(queued) ? PurchaseStatus.QUEUED : PurchaseStatus.NONE)
+                    .build();
+        } catch (Exception e) {
+            log.error("Failed to get seckill result: seckillId={}, productId={}, userId={}", seckillId, productId, userId, e);
+            return PurchaseResult.builder().status(PurchaseStatus.ERROR).build();
+        }
+    }
+
+    public int getMaxQuantityPerUser() {
+        return maxQuantityPerUser;
+    }
+
+    /**
+     * 本节点是否已标记售罄
+     */
+    public boolean isSoldOutLocally(String seckillId, String productId) {
+        return soldOutKeys.contains(StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId));
+    }
+
+    private boolean enqueueSeckillOrder(String seckillId, String productId, String userId, int quantity) {
+        Map<String, String> message = new HashMap<>();
+        message.put("seckillId", seckillId);
+        message.put("productId", productId);
+        message.put("userId", userId);
+        message.put("quantity", String.valueOf(quantity));
+        message.put("winTime", String.valueOf(System.currentTimeMillis()));
+        if (queueService.enqueue(RedisConfig.RedisKeys.QUEUE_SECKILL_ORDER, message)) {
+            return true;
+        }
+
+        // 队列不可用时同步建单，建单失败则归还库存
+        try {
+            processSeckillOrders(List.of(message));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to create seckill order inline, rolling back: seckillId={}, productId={}, userId={}",
+                    seckillId, productId, userId, e);
+            rollback(seckillId, productId, userId, quantity);
+            return false;
+        }
+    }
+
+    private void rollback(String seckillId, String productId, String userId, int quantity) {
+        String stockKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId);
+        String buyersKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_BUYERS_PREFIX, seckillId, productId);
+        Long stock = redisService.eval(ROLLBACK_SCRIPT, Arrays.asList(stockKey, buyersKey), userId, quantity);
+        if (stock != null && stock > 0 && soldOutKeys.remove(stockKey)) {
+            broadcast(BROADCAST_RESET, stockKey);
+        }
+    }
+
+    /**
+     * 消费抢购成功消息，批量创建订单。
+     * 订单号由场次、商品、用户和抢购日期确定，消息重复投递时覆盖同一行，不会重复建单。
+     */
+    private void processSeckillOrders(List<Map<String, String>> messages) throws IOException {
+        Map<String, Product> products = new HashMap<>();
+        Map<String, BigDecimal> prices = new HashMap<>();
+        List<Order> orders = new ArrayList<>(messages.size());
+        List<Map<String, String>> created = new ArrayList<>(messages.size());
+
+        for (Map<String, String> message : messages) {
+            String seckillId = message.get("seckillId");
+            String productId = message.get("productId");
+            String userId = message.get("userId");
+            int quantity = Integer.parseInt(message.getOrDefault("quantity", "1"));
+            long winTime = Long.parseLong(message.getOrDefault("winTime", String.valueOf(System.currentTimeMillis())));
+
+            Product product = products.get(productId);
+            if (product == null && !products.containsKey(productId)) {
+                product = productService.getProductById(productId);
+                products.put(productId, product);
+            }
+            String infoKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_INFO_PREFIX, seckillId, productId);
+            BigDecimal price = prices.computeIfAbsent(infoKey, key -> resolveSeckillPrice(key));
+            if (price == null) {
+                price = product != null && product.getPrice() != null ? product.getPrice() : BigDecimal.ZERO;
+            }
+
+            LocalDateTime createTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(winTime), ZoneId.systemDefault());
+            Order.OrderItem item = Order.OrderItem.builder()
+                    .productId(productId)
+                    .productName(product != null ? product.getName() : null)
+                    .price(price)
+                    .quantity(quantity)
+                    .image(product != null && product.getImages() != null && !product.getImages().isEmpty()
+                            ? product.getImages().get(0) : null)
+                    .build();
+
+            orders.add(Order.builder()
+                    .orderId(seckillOrderId(seckillId, productId, userId, createTime))
+                    .userId(userId)
+                    .createTime(createTime)
+                    .items(List.of(item))
+                    .build());
+            created.add(message);
+        }
+
+        orderService.createSeckillOrders(orders);
+
+        for (int i = 0; i < orders.size(); i++) {
+            Map<String, String> message = created.get(i);
+            String resultKey = StockService.seckillKey(RedisConfig.RedisKeys.SECKILL_RESULT_PREFIX,
+                    message.get("seckillId"), message.get("productId"));
+            stringRedisTemplate.opsForHash().put(resultKey, message.get("userId"), orders.get(i).getOrderId());
+            stringRedisTemplate.expire(resultKey, DEFAULT_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        }
+
+        log.info("Seckill orders created: count={}", orders.size());
+    }
+
+    private BigDecimal resolveSeckillPrice(String infoKey) {
+        Object price = redisService.hget(infoKey, "price");
+        if (price == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(String.valueOf(price));
+        } catch (NumberFormatException e) {
+            log.error("Invalid seckill price: key={}, value={}", infoKey, price, e);
+            return null;
+        }
+    }
+
+    /**
+     * ORD + 抢购日期(yyyyMMdd) + S + (场次, 商品, 用户)的128位摘要（32位十六进制）。
+     * 每个用户每场次每个商品只能抢购一次，摘要覆盖完整的三元组，不同买家的订单号不会冲突；
+     * 同一消息重复投递时生成相同的订单号
+     */
+    private String seckillOrderId(String seckillId, String productId, String userId, LocalDateTime createTime) {
+        String digest = Hashing.murmur3_128().newHasher()
+                .putString(seckillId, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(productId, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(userId, StandardCharsets.UTF_8)
+                .hash()
+                .toString()
+                .toUpperCase();
+        return "ORD" + createTime.format(DateTimeFormatter.BASIC_ISO_DATE) + "S" + digest;
+    }
+
+    private void markSoldOut(String stockKey) {
+        if (soldOutKeys.add(stockKey)) {
+            broadcast(BROADCAST_SOLD_OUT, stockKey);
+            log.info("Seckill sold out: key={}", stockKey);
+        }
+    }
+
+    private void broadcast(String type, String stockKey) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisConfig.RedisKeys.SECKILL_SOLD_OUT_CHANNEL, type + "|" + stockKey);
+        } catch (Exception e) {
+            // 广播失败时其他节点在下一次访问Redis时自行发现售罄
+            log.error("Failed to broadcast seckill state: type={}, key={}", type, stockKey, e);
+        }
+    }
+
+    private void onBroadcast(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0) {
+            return;
+        }
+
+        String type = body.substring(0, separator);
+        String stockKey = body.substring(separator + 1);
+        if (BROADCAST_SOLD_OUT.equals(type)) {
+            soldOutKeys.add(stockKey);
+        } else if (BROADCAST_RESET.equals(type)) {
+            soldOutKeys.remove(stockKey);
+        }
+        log.debug("Seckill broadcast received: type={}, key={}", type, stockKey);
+    }
+
+    public enum PurchaseStatus {
+        QUEUED,         // 抢购成功，订单创建中
+        SUCCESS,        // 订单已创建
+        SOLD_OUT,       // 已售罄
+        INSUFFICIENT,   // 剩余库存不足购买数量
+        INVALID_QUANTITY, // 购买数量小于1或超过每人限购数量
+        REPEATED,       // 重复购买
+        NOT_STARTED,    // 活动未预热或已结束
+        NONE,           // 未参与
+        ERROR
+    }
+
+    /**
+     * 抢购结果
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class PurchaseResult {
+        private PurchaseStatus status;
+        private long remaining;
+        private String orderId;
+    }
+}
@@ -4,7 +4,9 @@ import com.sales.config.RedisConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +18,12 @@ public class SessionService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private ReactiveRedisService reactiveRedisService;
+
+    @Autowired
+    private UniqueCountService uniqueCountService;
+
     private static final long SESSION_EXPIRE_TIME = 1800; // 30分钟
 
     /**
@@ -40,6 +48,9 @@ public class SessionService {
         redisService.sadd(RedisConfig.RedisKeys.ONLINE_USERS, userId);
         redisService.expire(RedisConfig.RedisKeys.ONLINE_USERS, SESSION_EXPIRE_TIME, TimeUnit.SECONDS);
         
+        // 今日活跃用户去重
+        uniqueCountService.recordActiveUser(userId);
+        
         log.info("Session created: sessionId={}, userId={}, username={}", sessionId, userId, username);
     }
 
@@ -51,6 +62,14 @@ public class SessionService {
         return (String) redisService.get(sessionKey);
     }
 
+    /**
+     * 会话对应的用户ID，会话不存在或已过期时返回null
+     */
+    public String getSessionUserId(String sessionId) {
+        String sessionData = getSession(sessionId);
+        return sessionData != null ? extractUserId(sessionData) : null;
+    }
+
     /**
      * 验证会话是否有效
      */
@@ -67,6 +86,18 @@ public class SessionService {
         return true;
     }
 
+    /**
+     * 验证会话是否有效（响应式）
+     */
+    public Mono<Boolean> validateSessionReactive(String sessionId) {
+        String sessionKey = RedisConfig.RedisKeys.SESSION_PREFIX + sessionId;
+        return reactiveRedisService.get(sessionKey)
+                .flatMap(sessionData -> reactiveRedisService
+                        .expire(sessionKey, Duration.ofSeconds(SESSION_EXPIRE_TIME))
+                        .thenReturn(true))
+                .defaultIfEmpty(false);
+    }
+
     /**
      * 销毁会话
      */
@@ -125,8 +156,7 @@ public class SessionService {
      * 获取在线用户数量
      */
     public long getOnlineUserCount() {
-        Set<Object> onlineUsers = redisService.smembers(RedisConfig.RedisKeys.ONLINE_USERS);
-        return onlineUsers != null ? onlineUsers.size() : 0;
+        return redisService.scard(RedisConfig.RedisKeys.ONLINE_USERS);
     }
 
     /**
@@ -0,0 +1,140 @@
+package com.sales.service;
+
+import com.sales.utils.HeavyHitterSketch;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 热点统计压测：按Zipf分布生成商品访问序列，多线程写入独立的HeavyHitterSketch，
+ * 统计写入吞吐，并与精确计数对比Top-K召回率和分数误差。不访问Redis。
+ */
+@Slf4j
+@Service
+@Profile("bench")
+public class SketchBenchmarkService {
+
+    public BenchmarkResult run(int updates, int products, double skew, int threads, int windows, int topK) throws Exception {
+        int[] sequence = zipfSequence(updates, products, skew);
+        long[] exact = new long[products];
+        for (int item : sequence) {
+            exact[item]++;
+        }
+        String[] names = new String[products];
+        for (int i = 0; i < products; i++) {
+            names[i] = "P" + i;
+        }
+
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 2048, 4096);
+        double[] reported = new double[products];
+        int windowSize = Math.max(1, updates / Math.max(1, windows));
+
+        long elapsedNanos = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int from = 0; from < updates; from += windowSize) {
+                int to = Math.min(updates, from + windowSize);
+                long start = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>(threads);
+                int slice = (to - from + threads - 1) / threads;
+                for (int t = 0; t < threads; t++) {
+                    int sliceFrom = from + t * slice;
+                    int sliceTo = Math.min(to, sliceFrom + slice);
+                    futures.add(executor.submit(() -> {
+                        for (int i = sliceFrom; i < sliceTo; i++) {
+                            sketch.add(names[sequence[i]], 1.0);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                elapsedNanos += System.nanoTime() - start;
+
+                // 模拟定时刷新
+                for (Map.Entry<String, Double> entry : sketch.drainTopK(topK).entrySet()) {
+                    reported[Integer.parseInt(entry.getKey().substring(1))] += entry.getValue();
+                }
+            }
+        }
+        for (Map.Entry<String, Double> entry : sketch.drainTopK(Integer.MAX_VALUE).entrySet()) {
+            reported[Integer.parseInt(entry.getKey().substring(1))] += entry.getValue();
+        }
+
+        Integer[] exactOrder = sortedIndexes(i -> (double) exact[i], products);
+        Integer[] reportedOrder = sortedIndexes(i -> reported[i], products);
+        int k = Math.min(topK, products);
+        Set<Integer> exactTop = new HashSet<>(Arrays.asList(exactOrder).subList(0, k));
+        int hits = 0;
+        double maxError = 0;
+        for (int i = 0; i < k; i++) {
+            if (exactTop.contains(reportedOrder[i])) {
+                hits++;
+            }
+            int item = exactOrder[i];
+            maxError = Math.max(maxError, Math.abs(reported[item] - exact[item]));
+        }
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.updates = updates;
+        result.threads = threads;
+        result.elapsedMillis = elapsedNanos / 1_000_000;
+        result.throughput = elapsedNanos > 0 ? (long) updates * 1_000_000_000L / elapsedNanos : 0;
+        result.topKRecall = (double) hits / k;
+        result.maxTopKAbsError = maxError;
+        result.errorBound = sketch.getEpsilon() * windowSize;
+        result.droppedScore = sketch.getDroppedScore();
+        log.info("Sketch benchmark finished: {}", result);
+        return result;
+    }
+
+    private int[] zipfSequence(int updates, int products, double skew) {
+        double[] cdf = new double[products];
+        double sum = 0;
+        for (int i = 0; i < products; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+
+        Random random = new Random(42);
+        int[] sequence = new int[updates];
+        for (int i = 0; i < updates; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            sequence[i] = Math.min(products - 1, index >= 0 ? index : -index - 1);
+        }
+        return sequence;
+    }
+
+    private Integer[] sortedIndexes(java.util.function.IntToDoubleFunction score, int size) {
+        Integer[] indexes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, Comparator.comparingDouble((Integer i) -> score.applyAsDouble(i)).reversed());
+        return indexes;
+    }
+
+    @Data
+    public static class BenchmarkResult {
+        private int updates;
+        private int threads;
+        private long elapsedMillis;
+        private long throughput;         // 每秒写入次数
+        private double topKRecall;       // 上报Top-K与精确Top-K的重合比例
+        private double maxTopKAbsError;  // 精确Top-K元素的最大分数误差
+        private double errorBound;       // 单窗口误差上界 ε·N（概率1-δ）
+        private double droppedScore;
+    }
+}
@@ -3,9 +3,13 @@ package com.sales.service;
 import com.sales.config.RedisConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -16,8 +20,24 @@ public class StockService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private ReactiveRedisService reactiveRedisService;
+
     private static final long STOCK_EXPIRE_TIME = 3600; // 1小时
 
+    /**
+     * KEYS[1]=库存键  ARGV[1]=扣减数量
+     * 返回扣减后的库存，库存不存在或不足时返回-1
+     */
+    private static final RedisScript<Long> DEDUCT_SCRIPT = new DefaultRedisScript<>("""
+            local stock = tonumber(redis.call('GET', KEYS[1]))
+            local quantity = tonumber(ARGV[1])
+            if stock == nil or stock < quantity then
+                return -1
+            end
+            return redis.call('DECRBY', KEYS[1], quantity)
+            """, Long.class);
+
     /**
      * 设置商品库存
      */
@@ -40,6 +60,23 @@ public class StockService {
             return 0;
         }
         
+        return parseStock(productId, stockObj);
+    }
+
+    /**
+     * 获取商品库存（响应式）
+     */
+    public Mono<Integer> getStockReactive(String productId) {
+        String stockKey = RedisConfig.RedisKeys.STOCK_PREFIX + productId;
+        return reactiveRedisService.get(stockKey)
+                .map(stockObj -> parseStock(productId, stockObj))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.warn("Stock not found in Redis: productId={}", productId);
+                    return 0;
+                }));
+    }
+
+    private int parseStock(String productId, Object stockObj) {
         try {
             if (stockObj instanceof Integer) {
                 return (Integer) stockObj;
@@ -119,8 +156,15 @@ public class StockService {
      * 设置秒杀库存
      */
     public void setSeckillStock(String seckillId, String productId, int stock) {
-        String seckillStockKey = RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX + seckillId + "_" + productId;
-        redisService.set(seckillStockKey, stock, STOCK_EXPIRE_TIME, java.util.concurrent.TimeUnit.SECONDS);
+        setSeckillStock(seckillId, productId, stock, STOCK_EXPIRE_TIME);
+    }
+
+    /**
+     * 设置秒杀库存（指定过期秒数，秒杀预热时按活动时长设置）
+     */
+    public void setSeckillStock(String seckillId, String productId, int stock, long expireSeconds) {
+        String seckillStockKey = seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId);
+        redisService.set(seckillStockKey, stock, expireSeconds, java.util.concurrent.TimeUnit.SECONDS);
         
         log.info("Set seckill stock: seckillId={}, productId={}, stock={}", seckillId, productId, stock);
     }
@@ -129,7 +173,7 @@ public class StockService {
      * 获取秒杀库存
      */
     public int getSeckillStock(String seckillId, String productId) {
-        String seckillStockKey = RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX + seckillId + "_" + productId;
+        String seckillStockKey = seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId);
         Object stockObj = redisService.get(seckillStockKey);
         
         if (stockObj == null) {
@@ -151,30 +195,28 @@ public class StockService {
     }
 
     /**
-     * 扣减秒杀库存
+     * 扣减秒杀库存（Lua脚本内判断并扣减，一次往返且不会超卖）
      */
     public boolean deductSeckillStock(String seckillId, String productId, int quantity) {
-        String seckillStockKey = RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX + seckillId + "_" + productId;
-        long currentStock = getSeckillStock(seckillId, productId);
+        String seckillStockKey = seckillKey(RedisConfig.RedisKeys.SECKILL_STOCK_PREFIX, seckillId, productId);
+        Long remaining = redisService.eval(DEDUCT_SCRIPT, Collections.singletonList(seckillStockKey), quantity);
         
-        if (currentStock < quantity) {
-            log.warn("Insufficient seckill stock: seckillId={}, productId={}, required={}, available={}", 
-                    seckillId, productId, quantity, currentStock);
-            return false;
-        }
-        
-        long newStock = redisService.decr(seckillStockKey, quantity);
-        if (newStock >= 0) {
-            log.info("Seckill stock deducted: seckillId={}, productId={}, quantity={}, remaining={}", 
-                    seckillId, productId, quantity, newStock);
-            return true;
-        } else {
-            // 回滚
-            redisService.incr(seckillStockKey, quantity);
-            log.error("Seckill stock deduction failed: seckillId={}, productId={}, quantity={}", 
+        if (remaining == null || remaining < 0) {
+            log.warn("Insufficient seckill stock: seckillId={}, productId={}, required={}", 
                     seckillId, productId, quantity);
             return false;
         }
+        
+        log.info("Seckill stock deducted: seckillId={}, productId={}, quantity={}, remaining={}", 
+                seckillId, productId, quantity, remaining);
+        return true;
+    }
+
+    /**
+     * 秒杀相关键：同一场次同一商品的键使用相同的hash tag，保证Lua脚本涉及的多个键落在同一槽位
+     */
+    public static String seckillKey(String prefix, String seckillId, String productId) {
+        return prefix + "{" + seckillId + "_" + productId + "}";
     }
 
     /**
@@ -196,13 +238,23 @@ public class StockService {
     }
 
     /**
-     * 批量获取库存
+     * 批量获取库存（一次MGET）
      */
     public List<Integer> batchGetStock(List<String> productIds) {
-        List<Integer> stocks = new ArrayList<>();
+        List<Integer> stocks = new ArrayList<>(productIds.size());
+        if (productIds.isEmpty()) {
+            return stocks;
+        }
         
+        List<String> stockKeys = new ArrayList<>(productIds.size());
         for (String productId : productIds) {
-            stocks.add(getStock(productId));
+            stockKeys.add(RedisConfig.RedisKeys.STOCK_PREFIX + productId);
+        }
+        
+        List<Object> values = redisService.mget(stockKeys);
+        for (int i = 0; i < productIds.size(); i++) {
+            Object stockObj = values != null && i < values.size() ? values.get(i) : null;
+            stocks.add(stockObj != null ? parseStock(productIds.get(i), stockObj) : 0);
         }
         
         return stocks;
@@ -0,0 +1,212 @@
+package com.sales.service;
+
+import com.sales.config.RedisConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于HyperLogLog的去重计数：日活用户、下单用户、访客。
+ * 每个指标每天一个HLL键（约12KB，标准误差0.81%），周/月数值由最近7/30天的日键PFMERGE到窗口键后PFCOUNT得到，
+ * 窗口键短期缓存。读取当天数值是一次PFCOUNT。
+ */
+@Slf4j
+@Service
+public class UniqueCountService {
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private RealtimeMetricsService realtimeMetricsService;
+
+    private static final int WEEKLY_DAYS = 7;
+    private static final int MONTHLY_DAYS = 30;
+
+    /**
+     * 日键保留天数，覆盖最长的月窗口
+     */
+    private static final long DAY_EXPIRE_TIME = (MONTHLY_DAYS + 1) * 86400L;
+
+    /**
+     * 窗口键缓存时长；本节点合并后超过WINDOW_STALE_MILLIS再读取时重新合并
+     */
+    private static final long WINDOW_EXPIRE_TIME = 60;
+    private static final long WINDOW_STALE_MILLIS = 30_000;
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * KEYS[1]=窗口键  KEYS[2..n]=日键  ARGV[1]=窗口键过期秒数
+     */
+    private static final RedisScript<Long> MERGE_WINDOW_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('PFMERGE', KEYS[1], unpack(KEYS, 2))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return redis.call('PFCOUNT', KEYS[1])
+            """, Long.class);
+
+    /**
+     * 窗口键 -> 本节点最近一次合并时间
+     */
+    private final Map<String, Long> windowComputedAt = new ConcurrentHashMap<>();
+
+    public enum Metric {
+        ACTIVE("active"),    // 登录用户
+        BUYER("buyer"),      // 支付用户
+        VISITOR("visitor");  // 商品详情访客（用户ID或IP）
+
+        private final String code;
+
+        Metric(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public static Metric fromCode(String code) {
+            for (Metric metric : values()) {
+                if (metric.code.equalsIgnoreCase(code)) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 记录活跃用户（登录）
+     */
+    public void recordActiveUser(String userId) {
+        record(Metric.ACTIVE, userId);
+    }
+
+    /**
+     * 记录访客
+     */
+    public void recordVisitor(String visitorId) {
+        record(Metric.VISITOR, visitorId);
+    }
+
+    /**
+     * 记录支付用户（收集到批量写入中）
+     */
+    public void recordBuyer(RealtimeMetricsService.Batch batch, String userId) {
+        add(batch, Metric.BUYER, userId);
+    }
+
+    public void record(Metric metric, String member) {
+        if (member == null || member.isEmpty()) {
+            return;
+        }
+        RealtimeMetricsService.Batch batch = realtimeMetricsService.newBatch();
+        add(batch, metric, member);
+        realtimeMetricsService.apply(batch);
+    }
+
+    /**
+     * 今日去重数
+     */
+    public long countToday(Metric metric) {
+        return countDay(metric, LocalDate.now());
+    }
+
+    public long countDay(Metric metric, LocalDate date) {
+        return redisService.pfcount(dayKey(metric, date));
+    }
+
+    /**
+     * 最近days天（含今天）的去重数
+     */
+    public long countRecentDays(Metric metric, int days) {
+        LocalDate today = LocalDate.now();
+        if (days <= 1) {
+            return countDay(metric, today);
+        }
+
+        String windowKey = windowKey(metric, days, today);
+        Long computedAt = windowComputedAt.get(windowKey);
+        if (computedAt != null && System.currentTimeMillis() - computedAt <= WINDOW_STALE_MILLIS) {
+            return redisService.pfcount(windowKey);
+        }
+
+        List<String> keys = new ArrayList<>(days + 1);
+        keys.add(windowKey);
+        for (int i = 0; i < days; i++) {
+            keys.add(dayKey(metric, today.minusDays(i)));
+        }
+        Long count = redisService.eval(MERGE_WINDOW_SCRIPT, keys, WINDOW_EXPIRE_TIME);
+        if (count == null) {
+            return 0;
+        }
+
+        windowComputedAt.put(windowKey, System.currentTimeMillis());
+        // 清理前一天及更早的本地记录
+        String suffix = today.format(DAY_FORMATTER);
+        windowComputedAt.keySet().removeIf(key -> !key.endsWith(suffix));
+        return count;
+    }
+
+    /**
+     * [startDate, endDate)的去重数，区间超出日键保留期（或含未来日期）时返回null
+     */
+    public Long countDays(Metric metric, LocalDate startDate, LocalDate endDate) {
+        LocalDate today = LocalDate.now();
+        if (!startDate.isBefore(endDate) || endDate.isAfter(today.plusDays(1))
+                || startDate.isBefore(today.minusDays(MONTHLY_DAYS))) {
+            return null;
+        }
+
+        List<String> keys = new ArrayList<>();
+        keys.add(RedisConfig.RedisKeys.UV_PREFIX + "{" + metric.getCode() + "}:range:"
+                + startDate.format(DAY_FORMATTER) + "-" + endDate.format(DAY_FORMATTER));
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            keys.add(dayKey(metric, date));
+        }
+        return redisService.eval(MERGE_WINDOW_SCRIPT, keys, WINDOW_EXPIRE_TIME);
+    }
+
+    /**
+     * 各指标今日、近7天、近30天的去重数
+     */
+    public Map<String, Map<String, Long>> getCounts() {
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (Metric metric : Metric.values()) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("today", countToday(metric));
+            values.put("week", countRecentDays(metric, WEEKLY_DAYS));
+            values.put("month", countRecentDays(metric, MONTHLY_DAYS));
+            counts.put(metric.getCode(), values);
+        }
+        return counts;
+    }
+
+    private void add(RealtimeMetricsService.Batch batch, Metric metric, String member) {
+        if (member == null || member.isEmpty()) {
+            return;
+        }
+        batch.pfadd(dayKey(metric, LocalDate.now()), member, DAY_EXPIRE_TIME);
+    }
+
+    /**
+     * 同一指标的键使用相同的hash tag，保证PFMERGE涉及的键在同一槽位
+     */
+    private String dayKey(Metric metric, LocalDate date) {
+        return RedisConfig.RedisKeys.UV_PREFIX + "{" + metric.getCode() + "}:day:" + date.format(DAY_FORMATTER);
+    }
+
+    private String windowKey(Metric metric, int days, LocalDate endDate) {
+        return RedisConfig.RedisKeys.UV_PREFIX + "{" + metric.getCode() + "}:window:" + days + "d:" + endDate.format(DAY_FORMATTER);
+    }
+}
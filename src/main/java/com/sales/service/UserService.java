@@ -23,6 +23,9 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private IdGeneratorService idGeneratorService;
+
     @Autowired
     private SessionService sessionService;
 
@@ -364,7 +367,7 @@ public class UserService {
      * 生成用户ID
      */
     private String generateUserId() {
-        return "U" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+        return idGeneratorService.nextUserId();
     }
 
     /**
@@ -0,0 +1,408 @@
+package com.sales.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 只读列式段文件，按列存储，整体内存映射后按行随机读取。
+ * <p>
+ * 整数列用参考帧编码：每列记录最小值，数据只存(值-最小值)，按取值范围选择1/2/4/8字节宽度；
+ * 字符串列用字典编码（字典 + 整数编码列，null编码为-1）。每列另存整列和每个区块（zoneRows行）的
+ * 最小/最大值（zone map），查询可据此跳过整个区块。各列长度可以不同。
+ * <p>
+ * 文件布局：头部（魔数、版本、列数、区块行数）→ 列目录 → 各列数据/区块统计/字典。
+ * 写入时先写同目录下的独立临时文件再原子替换，同一目标的并发写入互不干扰，以最后一次替换为准。
+ */
+public final class ColumnSegmentFile {
+
+    private static final int MAGIC = 0x4353_4547; // "CSEG"
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_STRING = 1;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int zoneRows;
+    private final Map<String, LongColumn> longColumns = new HashMap<>();
+    private final Map<String, StringColumn> stringColumns = new HashMap<>();
+
+    private ColumnSegmentFile(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+
+        ByteBuffer header = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IllegalArgumentException("Not a column segment file: " + path);
+        }
+        int columnCount = header.getInt();
+        this.zoneRows = header.getInt();
+        for (int c = 0; c < columnCount; c++) {
+            byte[] nameBytes = new byte[header.getShort()];
+            header.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            byte type = header.get();
+            LongColumn column = new LongColumn(buffer, zoneRows, header.getInt(), header.get(), header.getLong(),
+                    header.getLong(), header.getLong(), header.getLong(), header.getLong());
+            long dictionaryOffset = header.getLong();
+            int dictionarySize = header.getInt();
+            if (type == TYPE_STRING) {
+                stringColumns.put(name, new StringColumn(column, readDictionary(dictionaryOffset, dictionarySize)));
+            } else {
+                longColumns.put(name, column);
+            }
+        }
+    }
+
+    /**
+     * 以只读方式映射段文件
+     */
+    public static ColumnSegmentFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ColumnSegmentFile(path, buffer);
+        }
+    }
+
+    public static Writer writer(int zoneRows) {
+        return new Writer(zoneRows);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long sizeBytes() {
+        return buffer.capacity();
+    }
+
+    public int zoneRows() {
+        return zoneRows;
+    }
+
+    /**
+     * 整数列，不存在时返回null
+     */
+    public LongColumn longColumn(String name) {
+        return longColumns.get(name);
+    }
+
+    /**
+     * 字符串列，不存在时返回null
+     */
+    public StringColumn stringColumn(String name) {
+        return stringColumns.get(name);
+    }
+
+    private String[] readDictionary(long offset, int size) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.position((int) offset);
+        String[] dictionary = new String[size];
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    /**
+     * 参考帧编码的整数列，读取为绝对位置读，可并发
+     */
+    public static final class LongColumn {
+        private final ByteBuffer buffer;
+        private final int zoneRows;
+        private final int length;
+        private final int width;
+        private final long base;
+        private final long min;
+        private final long max;
+        private final int dataOffset;
+        private final int zoneOffset;
+
+        private LongColumn(ByteBuffer buffer, int zoneRows, int length, byte width, long base, long min, long max,
+                           long dataOffset, long zoneOffset) {
+            this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            this.zoneRows = zoneRows;
+            this.length = length;
+            this.width = width;
+            this.base = base;
+            this.min = min;
+            this.max = max;
+            this.dataOffset = (int) dataOffset;
+            this.zoneOffset = (int) zoneOffset;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public long get(int row) {
+            int position = dataOffset + row * width;
+            return switch (width) {
+                case 1 -> base + (buffer.get(position) & 0xFFL);
+                case 2 -> base + (buffer.getShort(position) & 0xFFFFL);
+                case 4 -> base + (buffer.getInt(position) & 0xFFFF_FFFFL);
+                default -> buffer.getLong(position);
+            };
+        }
+
+        public long min() {
+            return min;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public int zoneCount() {
+            return (length + zoneRows - 1) / zoneRows;
+        }
+
+        public long zoneMin(int zone) {
+            return buffer.getLong(zoneOffset + zone * 16);
+        }
+
+        public long zoneMax(int zone) {
+            return buffer.getLong(zoneOffset + zone * 16 + 8);
+        }
+    }
+
+    /**
+     * 字典编码的字符串列
+     */
+    public static final class StringColumn {
+        private final LongColumn codes;
+        private final String[] dictionary;
+
+        private StringColumn(LongColumn codes, String[] dictionary) {
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        public int length() {
+            return codes.length();
+        }
+
+        /**
+         * 行的字典编码，null为-1
+         */
+        public int code(int row) {
+            return (int) codes.get(row);
+        }
+
+        public String get(int row) {
+            int code = code(row);
+            return code >= 0 ? dictionary[code] : null;
+        }
+
+        public String[] dictionary() {
+            return dictionary;
+        }
+
+        /**
+         * 编码列本身，可用其区块统计判断区块内是否有非null值
+         */
+        public LongColumn codes() {
+            return codes;
+        }
+    }
+
+    /**
+     * 段文件写入器：按列加入数据后一次写出
+     */
+    public static final class Writer {
+        private final int zoneRows;
+        private final Map<String, long[]> longValues = new LinkedHashMap<>();
+        private final Map<String, String[]> stringValues = new LinkedHashMap<>();
+
+        private Writer(int zoneRows) {
+            if (zoneRows <= 0) {
+                throw new IllegalArgumentException("zoneRows must be positive");
+            }
+            this.zoneRows = zoneRows;
+        }
+
+        public Writer addLong(String name, long[] values) {
+            longValues.put(name, values);
+            return this;
+        }
+
+        public Writer addStrings(String name, String[] values) {
+            stringValues.put(name, values);
+            return this;
+        }
+
+        public void write(Path target) throws IOException {
+            List<EncodedColumn> columns = new ArrayList<>();
+            for (Map.Entry<String, long[]> entry : longValues.entrySet()) {
+                columns.add(encode(entry.getKey(), TYPE_LONG, entry.getValue(), null));
+            }
+            for (Map.Entry<String, String[]> entry : stringValues.entrySet()) {
+                Map<String, Integer> codes = new LinkedHashMap<>();
+                String[] values = entry.getValue();
+                long[] encoded = new long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    encoded[i] = values[i] != null ? codes.computeIfAbsent(values[i], v -> codes.size()) : -1;
+                }
+                columns.add(encode(entry.getKey(), TYPE_STRING, encoded, codes.keySet().toArray(new String[0])));
+            }
+
+            long headerSize = 16;
+            for (EncodedColumn column : columns) {
+                // 名称 + 类型 + 长度 + 宽度 + base/min/max + 数据/区块偏移 + 字典偏移/大小
+                headerSize += 2 + column.name.length + 1 + 4 + 1 + 24 + 16 + 12;
+            }
+            long offset = headerSize;
+            for (EncodedColumn column : columns) {
+                column.dataOffset = offset;
+                offset += column.data.length;
+                column.zoneOffset = offset;
+                offset += column.zones.length;
+                column.dictionaryOffset = offset;
+                offset += column.dictionary.length;
+            }
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Column segment too large: " + offset + " bytes");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate((int) headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(columns.size()).putInt(zoneRows);
+            for (EncodedColumn column : columns) {
+                header.putShort((short) column.name.length).put(column.name).put(column.type)
+                        .putInt(column.length).put(column.width)
+                        .putLong(column.base).putLong(column.min).putLong(column.max)
+                        .putLong(column.dataOffset).putLong(column.zoneOffset)
+                        .putLong(column.dictionaryOffset).putInt(column.dictionarySize);
+            }
+            header.flip();
+
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+                    writeFully(channel, header);
+                    for (EncodedColumn column : columns) {
+                        writeFully(channel, ByteBuffer.wrap(column.data));
+                        writeFully(channel, ByteBuffer.wrap(column.zones));
+                        writeFully(channel, ByteBuffer.wrap(column.dictionary));
+                    }
+                    channel.force(true);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // 写入或替换失败时清理临时文件，替换成功后临时文件已不存在
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private EncodedColumn encode(String name, byte type, long[] values, String[] dictionary) {
+            EncodedColumn column = new EncodedColumn();
+            column.name = name.getBytes(StandardCharsets.UTF_8);
+            column.type = type;
+            column.length = values.length;
+
+            long min = values.length > 0 ? Long.MAX_VALUE : 0;
+            long max = values.length > 0 ? Long.MIN_VALUE : 0;
+            for (long value : values) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            column.min = min;
+            column.max = max;
+
+            long range = max - min;
+            if (range < 0 || range > 0xFFFF_FFFFL) {
+                // 取值范围溢出或超过4字节，原样存储
+                column.width = 8;
+                column.base = 0;
+            } else {
+                column.width = range <= 0xFF ? (byte) 1 : range <= 0xFFFF ? (byte) 2 : (byte) 4;
+                column.base = min;
+            }
+
+            ByteBuffer data = ByteBuffer.allocate(values.length * column.width).order(ByteOrder.LITTLE_ENDIAN);
+            for (long value : values) {
+                long delta = value - column.base;
+                switch (column.width) {
+                    case 1 -> data.put((byte) delta);
+                    case 2 -> data.putShort((short) delta);
+                    case 4 -> data.putInt((int) delta);
+                    default -> data.putLong(value);
+                }
+            }
+            column.data = data.array();
+
+            int zones = (values.length + zoneRows - 1) / zoneRows;
+            ByteBuffer zoneStats = ByteBuffer.allocate(zones * 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int zone = 0; zone < zones; zone++) {
+                long zoneMin = Long.MAX_VALUE;
+                long zoneMax = Long.MIN_VALUE;
+                int end = Math.min(values.length, (zone + 1) * zoneRows);
+                for (int i = zone * zoneRows; i < end; i++) {
+                    zoneMin = Math.min(zoneMin, values[i]);
+                    zoneMax = Math.max(zoneMax, values[i]);
+                }
+                zoneStats.putLong(zoneMin).putLong(zoneMax);
+            }
+            column.zones = zoneStats.array();
+
+            if (dictionary != null) {
+                int size = 0;
+                List<byte[]> entries = new ArrayList<>(dictionary.length);
+                for (String value : dictionary) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    entries.add(bytes);
+                    size += 4 + bytes.length;
+                }
+                ByteBuffer dict = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+                for (byte[] bytes : entries) {
+                    dict.putInt(bytes.length).put(bytes);
+                }
+                column.dictionary = dict.array();
+                column.dictionarySize = dictionary.length;
+            } else {
+                column.dictionary = new byte[0];
+            }
+            return column;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static final class EncodedColumn {
+        private byte[] name;
+        private byte type;
+        private int length;
+        private byte width;
+        private long base;
+        private long min;
+        private long max;
+        private long dataOffset;
+        private long zoneOffset;
+        private long dictionaryOffset;
+        private int dictionarySize;
+        private byte[] data;
+        private byte[] zones;
+        private byte[] dictionary;
+    }
+}
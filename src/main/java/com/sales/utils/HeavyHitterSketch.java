@@ -0,0 +1,269 @@
+package com.sales.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间窗口累加分数的Top-K热点统计（Count-Min Sketch + 候选集）。
+ * <p>
+ * 每个窗口内：已进入候选集的元素用LongAdder精确累加，写路径只有原子加；其余元素先写入Count-Min Sketch，
+ * 候选集未满时直接以估计值进入，已满时按Space-Saving的方式与当前最小的候选比较，估计值更大则淘汰该候选并取而代之，
+ * 候选集始终不超过capacity个且保留估计值最大的元素。准入和淘汰在窗口锁内进行，
+ * 估计值不超过已知最小候选分数的元素不加锁直接拒绝，长尾写入不会竞争锁。
+ * drainTopK切换窗口，返回分数最高的K个元素，其余候选精确结转到下一窗口（最多capacity/2个）。
+ * <p>
+ * 误差：Count-Min宽度w、深度d时，单个元素的估计值以 1-e^(-d) 的概率不超过
+ * 真实值 + (e/w)·N（N为窗口内写入Sketch的总分数）。元素只在进入候选集时引入一次该误差，
+ * 之后精确计数；被淘汰的候选和从未进入候选集的长尾元素分数会被丢弃，丢弃总量见{@link #getDroppedScore()}。
+ */
+public class HeavyHitterSketch {
+
+    /**
+     * 分数按千分之一定点存储
+     */
+    private static final long SCALE = 1000;
+
+    private final int depth;
+    private final int width;
+    private final int capacity;
+
+    private final AtomicReference<Window> current;
+
+    private final LongAdder drainedScore = new LongAdder();
+    private final LongAdder droppedScore = new LongAdder();
+
+    public HeavyHitterSketch(int depth, int width, int capacity) {
+        this.depth = depth;
+        this.width = width;
+        this.capacity = capacity;
+        this.current = new AtomicReference<>(new Window(depth * width));
+    }
+
+    /**
+     * 累加分数
+     */
+    public void add(String item, double score) {
+        long value = Math.round(score * SCALE);
+        if (item == null || value <= 0) {
+            return;
+        }
+
+        Window window = enter();
+        try {
+            window.total.add(value);
+            LongAdder counter = window.candidates.get(item);
+            if (counter != null) {
+                counter.add(value);
+                return;
+            }
+
+            long estimate = window.sketchAdd(item, value, depth, width);
+            if (window.candidates.size() >= capacity && estimate <= window.minCandidate) {
+                return;
+            }
+            admit(window, item, value, estimate);
+        } finally {
+            window.writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 候选集未满时直接准入；已满时扫描出最小的候选，估计值更大则淘汰它，否则只刷新已知最小值
+     */
+    private void admit(Window window, String item, long value, long estimate) {
+        synchronized (window) {
+            LongAdder existing = window.candidates.get(item);
+            if (existing != null) {
+                // 并发准入时计入已有计数器
+                existing.add(value);
+                return;
+            }
+            if (window.candidates.size() < capacity) {
+                window.candidates.put(item, adder(estimate));
+                window.minCandidate = Math.min(window.minCandidate, estimate);
+                return;
+            }
+
+            String minItem = null;
+            long min = Long.MAX_VALUE;
+            long second = Long.MAX_VALUE;
+            for (Map.Entry<String, LongAdder> entry : window.candidates.entrySet()) {
+                long sum = entry.getValue().sum();
+                if (sum < min) {
+                    second = min;
+                    min = sum;
+                    minItem = entry.getKey();
+                } else if (sum < second) {
+                    second = sum;
+                }
+            }
+            if (estimate <= min) {
+                window.minCandidate = min;
+                return;
+            }
+            // 被淘汰候选上正在进行的写入随之丢失，在drainTopK中计入丢弃
+            window.candidates.remove(minItem);
+            window.candidates.put(item, adder(estimate));
+            window.minCandidate = Math.min(second, estimate);
+        }
+    }
+
+    private static LongAdder adder(long initial) {
+        LongAdder adder = new LongAdder();
+        adder.add(initial);
+        return adder;
+    }
+
+    /**
+     * 切换窗口并取出分数最高的k个元素（按分数降序）
+     */
+    public Map<String, Double> drainTopK(int k) {
+        Window previous = current.get();
+        Window next = new Window(depth * width);
+        while (!current.compareAndSet(previous, next)) {
+            previous = current.get();
+        }
+        // 等待仍在旧窗口上写入的线程结束
+        while (previous.writers.get() > 0) {
+            Thread.onSpinWait();
+        }
+
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        List<Map.Entry<String, Long>> rest = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : previous.candidates.entrySet()) {
+            long value = entry.getValue().sum();
+            top.offer(Map.entry(entry.getKey(), value));
+            if (top.size() > k) {
+                rest.add(top.poll());
+            }
+        }
+
+        List<Map.Entry<String, Long>> drained = new ArrayList<>(top);
+        drained.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Double> result = new LinkedHashMap<>();
+        long drainedTotal = 0;
+        for (Map.Entry<String, Long> entry : drained) {
+            result.put(entry.getKey(), (double) entry.getValue() / SCALE);
+            drainedTotal += entry.getValue();
+        }
+        drainedScore.add(drainedTotal);
+
+        // 结转其余候选中较大的一半容量；新窗口已开始写入，结转同样在窗口锁内进行，不超出容量
+        rest.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        int carry = Math.min(rest.size(), capacity / 2);
+        long carriedTotal = 0;
+        synchronized (next) {
+            for (int i = 0; i < carry; i++) {
+                Map.Entry<String, Long> entry = rest.get(i);
+                LongAdder existing = next.candidates.get(entry.getKey());
+                if (existing != null) {
+                    existing.add(entry.getValue());
+                } else if (next.candidates.size() < capacity) {
+                    next.candidates.put(entry.getKey(), adder(entry.getValue()));
+                    next.minCandidate = Math.min(next.minCandidate, entry.getValue());
+                } else {
+                    break;
+                }
+                carriedTotal += entry.getValue();
+            }
+        }
+
+        // 进入窗口的分数 = 上一窗口结转 + 本窗口写入，未被取出或结转的部分计为丢弃
+        // 候选的初始值是估计值（偏高），差值可能为负，按0计
+        next.carriedIn = carriedTotal;
+        droppedScore.add(Math.max(0, previous.carriedIn + previous.total.sum() - drainedTotal - carriedTotal));
+        return result;
+    }
+
+    /**
+     * 丢弃全部未取出的分数
+     */
+    public void clear() {
+        current.set(new Window(depth * width));
+    }
+
+    /**
+     * 估计值的加性误差系数 e/w
+     */
+    public double getEpsilon() {
+        return Math.E / width;
+    }
+
+    /**
+     * 误差超出上界的概率 e^(-d)
+     */
+    public double getDelta() {
+        return Math.exp(-depth);
+    }
+
+    public double getDrainedScore() {
+        return (double) drainedScore.sum() / SCALE;
+    }
+
+    public double getDroppedScore() {
+        return (double) droppedScore.sum() / SCALE;
+    }
+
+    public int getCandidateCount() {
+        return current.get().candidates.size();
+    }
+
+    private Window enter() {
+        while (true) {
+            Window window = current.get();
+            window.writers.incrementAndGet();
+            if (current.get() == window) {
+                return window;
+            }
+            // 窗口已切换，改写新窗口
+            window.writers.decrementAndGet();
+        }
+    }
+
+    private static class Window {
+        private final AtomicLongArray counts;
+        private final ConcurrentHashMap<String, LongAdder> candidates = new ConcurrentHashMap<>();
+        private final LongAdder total = new LongAdder();
+        private final AtomicInteger writers = new AtomicInteger();
+        /**
+         * 候选分数最小值的下界：候选计数只增不减，新准入的估计值总大于被淘汰者，已知最小值只会偏低
+         */
+        private volatile long minCandidate = Long.MAX_VALUE;
+        private volatile long carriedIn;
+
+        private Window(int size) {
+            this.counts = new AtomicLongArray(size);
+        }
+
+        /**
+         * 写入Sketch并返回写入后的估计值（各行计数的最小值）
+         */
+        private long sketchAdd(String item, long value, int depth, int width) {
+            int h1 = mix(item.hashCode());
+            int h2 = mix(h1 ^ 0x5bd1e995);
+            long estimate = Long.MAX_VALUE;
+            for (int i = 0; i < depth; i++) {
+                int index = i * width + Math.floorMod(h1 + i * h2, width);
+                estimate = Math.min(estimate, counts.addAndGet(index, value));
+            }
+            return estimate;
+        }
+
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+}
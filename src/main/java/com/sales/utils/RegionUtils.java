@@ -0,0 +1,32 @@
+package com.sales.utils;
+
+import java.util.List;
+
+/**
+ * 从收货地址解析省级区域
+ */
+public class RegionUtils {
+
+    public static final String UNKNOWN = "未知";
+
+    private static final List<String> PROVINCES = List.of(
+            "北京", "天津", "上海", "重庆", "河北", "山西", "辽宁", "吉林", "黑龙江", "江苏", "浙江", "安徽",
+            "福建", "江西", "山东", "河南", "湖北", "湖南", "广东", "海南", "四川", "贵州", "云南", "陕西",
+            "甘肃", "青海", "台湾", "内蒙古", "广西", "西藏", "宁夏", "新疆", "香港", "澳门");
+
+    /**
+     * 地址以省级简称开头时返回简称（如"广西桂林市七星区"返回"广西"），否则返回"未知"
+     */
+    public static String fromAddress(String address) {
+        if (address == null || address.isBlank()) {
+            return UNKNOWN;
+        }
+        String trimmed = address.trim();
+        for (String province : PROVINCES) {
+            if (trimmed.startsWith(province)) {
+                return province;
+            }
+        }
+        return UNKNOWN;
+    }
+}
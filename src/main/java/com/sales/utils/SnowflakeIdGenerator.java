@@ -0,0 +1,128 @@
+package com.sales.utils;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 64位按时间有序的ID生成器（Snowflake布局），无锁。
+ * <pre>
+ * 0 | 时间戳毫秒(41位，自EPOCH起约69年) | 节点号(10位) | 毫秒内序号(12位)
+ * </pre>
+ * 时间戳和序号合并为一个AtomicLong状态，CAS更新：时钟前进时序号归零，同一毫秒或时钟回拨时序号加一，
+ * 序号溢出自然进位到时间戳（借用下一毫秒），因此同一节点生成的ID严格递增，不会因时钟回拨重复或阻塞。
+ * 字符串形式为13位Crockford Base32，定长，字典序与数值顺序一致。
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 2024-01-01T00:00:00Z
+     */
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    public static final int WORKER_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int BASE32_LENGTH = 13;
+    private static final char[] BASE32_DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    /**
+     * (时间戳 << SEQUENCE_BITS) | 序号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    private volatile int workerId;
+
+    public SnowflakeIdGenerator(int workerId) {
+        setWorkerId(workerId);
+    }
+
+    /**
+     * 切换节点号（租约丢失后重新分配），已生成的ID不受影响
+     */
+    public void setWorkerId(int workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("Worker id must be in [0, " + MAX_WORKER_ID + "]: " + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    public long nextId() {
+        int worker = workerId;
+        long next;
+        while (true) {
+            long current = state.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            next = now > (current >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : current + 1;
+            if (state.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        return (next >>> SEQUENCE_BITS) << (WORKER_BITS + SEQUENCE_BITS)
+                | (long) worker << SEQUENCE_BITS
+                | (next & SEQUENCE_MASK);
+    }
+
+    public String nextBase32() {
+        return toBase32(nextId());
+    }
+
+    /**
+     * ID中的生成时间
+     */
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (WORKER_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS);
+    }
+
+    public static int workerIdOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_WORKER_ID);
+    }
+
+    public static String toBase32(long id) {
+        char[] chars = new char[BASE32_LENGTH];
+        for (int i = BASE32_LENGTH - 1; i >= 0; i--) {
+            chars[i] = BASE32_DIGITS[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    public static long fromBase32(String value) {
+        if (value == null || value.length() != BASE32_LENGTH) {
+            throw new IllegalArgumentException("Invalid base32 id: " + value);
+        }
+        long id = 0;
+        for (int i = 0; i < BASE32_LENGTH; i++) {
+            int digit = decodeDigit(value.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid base32 id: " + value);
+            }
+            id = id << 5 | digit;
+        }
+        return id;
+    }
+
+    private static int decodeDigit(char c) {
+        char upper = Character.toUpperCase(c);
+        switch (upper) {
+            case 'O':
+                return 0;
+            case 'I':
+            case 'L':
+                return 1;
+            default:
+                for (int i = 0; i < BASE32_DIGITS.length; i++) {
+                    if (BASE32_DIGITS[i] == upper) {
+                        return i;
+                    }
+                }
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.sales.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 可合并的分位数草图（合并式t-digest，k1刻度函数）。
+ * <p>
+ * 新值先进入缓冲区，缓冲区满或查询、合并、序列化前与已有质心一起排序并按刻度函数合并：
+ * 相邻质心只有在合并后跨越的k值不超过1时才合并，两端（q接近0或1）的质心很小，中间的质心较大，
+ * 因此尾部分位数（p99）的相对误差远小于中位数附近。质心数约为compression/2（默认约100个、700字节），与写入的值数量无关。
+ * <p>
+ * 序列化格式（均值以float存放，相对误差约1e-7）：
+ * <pre>
+ * 版本(1字节) | compression(varint) | 最小值(double) | 最大值(double) | 质心数(varint) | [均值(float) 权重(varlong)]...
+ * </pre>
+ * 非线程安全，调用方负责同步。
+ */
+public class TDigest {
+
+    public static final int DEFAULT_COMPRESSION = 200;
+
+    private static final byte VERSION = 1;
+
+    private final int compression;
+
+    private double[] means;
+    private long[] weights;
+    private int size;
+
+    private final double[] bufferMeans;
+    private final long[] bufferWeights;
+    private int bufferSize;
+
+    private long totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(int compression) {
+        this.compression = Math.max(20, compression);
+        this.means = new double[this.compression];
+        this.weights = new long[this.compression];
+        this.bufferMeans = new double[this.compression * 5];
+        this.bufferWeights = new long[this.compression * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (bufferSize == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferSize] = value;
+        bufferWeights[bufferSize] = weight;
+        bufferSize++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * 把other的质心并入本草图，other不变
+     */
+    public void merge(TDigest other) {
+        if (other == null || other.totalWeight == 0) {
+            return;
+        }
+        other.compress();
+        for (int i = 0; i < other.size; i++) {
+            if (bufferSize == bufferMeans.length) {
+                compress();
+            }
+            bufferMeans[bufferSize] = other.means[i];
+            bufferWeights[bufferSize] = other.weights[i];
+            bufferSize++;
+            totalWeight += other.weights[i];
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return totalWeight;
+    }
+
+    public double min() {
+        return totalWeight > 0 ? min : Double.NaN;
+    }
+
+    public double max() {
+        return totalWeight > 0 ? max : Double.NaN;
+    }
+
+    public int centroidCount() {
+        compress();
+        return size;
+    }
+
+    /**
+     * q分位数（0≤q≤1），在相邻质心中心之间线性插值，两端在最小/最大值与首尾质心之间插值；为空时返回NaN
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be in [0, 1]: " + q);
+        }
+        compress();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (size == 1) {
+            return means[0];
+        }
+
+        double total = totalWeight;
+        double index = q * total;
+        if (index < 1) {
+            return min;
+        }
+        if (index > total - 1) {
+            return max;
+        }
+        if (weights[0] > 2 && index < weights[0] / 2.0) {
+            return min + (index - 1) / (weights[0] / 2.0 - 1) * (means[0] - min);
+        }
+        int last = size - 1;
+        if (weights[last] > 2 && total - index <= weights[last] / 2.0) {
+            return max - (total - index - 1) / (weights[last] / 2.0 - 1) * (max - means[last]);
+        }
+
+        double weightSoFar = weights[0] / 2.0;
+        for (int i = 0; i < last; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2.0;
+            if (weightSoFar + step > index) {
+                double left = index - weightSoFar;
+                double right = weightSoFar + step - index;
+                return (means[i] * right + means[i + 1] * left) / step;
+            }
+            weightSoFar += step;
+        }
+        return means[last];
+    }
+
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 5 + 16 + 5 + size * 14);
+        buffer.put(VERSION);
+        writeVarLong(buffer, compression);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        writeVarLong(buffer, size);
+        for (int i = 0; i < size; i++) {
+            buffer.putFloat((float) means[i]);
+            writeVarLong(buffer, weights[i]);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * 反序列化；为空、版本不识别或数据截断时返回null
+     */
+    public static TDigest fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || bytes[0] != VERSION) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            TDigest digest = new TDigest((int) readVarLong(buffer));
+            double min = buffer.getDouble();
+            double max = buffer.getDouble();
+            int size = (int) readVarLong(buffer);
+            for (int i = 0; i < size; i++) {
+                digest.add(buffer.getFloat(), readVarLong(buffer));
+            }
+            // 均值存为float，最小/最大值保留原始精度
+            if (digest.totalWeight > 0) {
+                digest.min = min;
+                digest.max = max;
+            }
+            // 解码结果不留缓冲区，之后只读访问（如作为merge的参数）不会修改它
+            digest.compress();
+            return digest;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 缓冲区与已有质心一起按均值排序后，按k1刻度函数从左到右贪心合并
+     */
+    private void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+
+        int count = size + bufferSize;
+        double[] allMeans = Arrays.copyOf(means, count);
+        long[] allWeights = Arrays.copyOf(weights, count);
+        System.arraycopy(bufferMeans, 0, allMeans, size, bufferSize);
+        System.arraycopy(bufferWeights, 0, allWeights, size, bufferSize);
+        bufferSize = 0;
+        sortByMean(allMeans, allWeights, count);
+
+        double total = totalWeight;
+        double[] merged = new double[Math.max(means.length, Math.min(count, compression * 2))];
+        long[] mergedWeights = new long[merged.length];
+        int out = 0;
+        long weightSoFar = 0;
+        double limit = total * qLimit(0);
+        double mean = allMeans[0];
+        long weight = allWeights[0];
+        for (int i = 1; i < count; i++) {
+            long proposed = weight + allWeights[i];
+            if (weightSoFar + proposed <= limit) {
+                mean += (allMeans[i] - mean) * allWeights[i] / proposed;
+                weight = proposed;
+            } else {
+                if (out == merged.length) {
+                    merged = Arrays.copyOf(merged, out * 2);
+                    mergedWeights = Arrays.copyOf(mergedWeights, out * 2);
+                }
+                merged[out] = mean;
+                mergedWeights[out] = weight;
+                out++;
+                weightSoFar += weight;
+                limit = total * qLimit(weightSoFar / total);
+                mean = allMeans[i];
+                weight = allWeights[i];
+            }
+        }
+        if (out == merged.length) {
+            merged = Arrays.copyOf(merged, out + 1);
+            mergedWeights = Arrays.copyOf(mergedWeights, out + 1);
+        }
+        merged[out] = mean;
+        mergedWeights[out] = weight;
+        size = out + 1;
+        means = merged;
+        weights = mergedWeights;
+    }
+
+    /**
+     * 从分位点q出发，k值增加1时到达的分位点：k(q) = δ/(2π)·asin(2q-1)
+     */
+    private double qLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1) + 1;
+        double angle = Math.min(Math.PI / 2, k * 2 * Math.PI / compression);
+        return (Math.sin(angle) + 1) / 2;
+    }
+
+    private static void sortByMean(double[] values, long[] weights, int count) {
+        // 先按均值排序下标，再按下标重排两个数组
+        Integer[] indexes = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[count];
+        long[] sortedWeights = new long[count];
+        for (int i = 0; i < count; i++) {
+            sortedValues[i] = values[indexes[i]];
+            sortedWeights[i] = weights[indexes[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, count);
+        System.arraycopy(sortedWeights, 0, weights, 0, count);
+    }
+
+    private static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -162,10 +162,7 @@ async function loadDashboardData() {
     try {
         // 加载看板数据
         const dashboardData = await fetchJson(`${API_BASE}/analysis/dashboard`);
-        
-        document.getElementById('todaySalesAmount').textContent = `¥ ${formatMoney(dashboardData.totalAmount)}`;
-        document.getElementById('todayOrderCount').textContent = dashboardData.orderCount;
-        document.getElementById('todayUserCount').textContent = dashboardData.userCount;
+        renderDashboardSummary(dashboardData);
         
         // 加载热销商品
         loadHotProducts();
@@ -182,25 +179,68 @@ async function loadDashboardData() {
     }
 }
 
+function renderDashboardSummary(dashboardData) {
+    document.getElementById('todaySalesAmount').textContent = `¥ ${formatMoney(dashboardData.totalAmount)}`;
+    document.getElementById('todayOrderCount').textContent = dashboardData.orderCount;
+    document.getElementById('todayUserCount').textContent = dashboardData.userCount;
+}
+
+// 订阅看板推送：服务端每个周期计算一次，只推送变化的部分
+let dashboardStream = null;
+let dashboardStreamConnected = false;
+
+function subscribeDashboardStream() {
+    if (!window.EventSource || dashboardStream) {
+        return;
+    }
+
+    dashboardStream = new EventSource(`${API_BASE}/analysis/dashboard/stream`);
+    dashboardStream.onopen = () => {
+        dashboardStreamConnected = true;
+    };
+    dashboardStream.onerror = () => {
+        // EventSource会自动重连，断开期间由定时刷新兜底
+        dashboardStreamConnected = false;
+    };
+
+    const handle = (eventName, render) => {
+        dashboardStream.addEventListener(eventName, event => {
+            try {
+                render(JSON.parse(event.data));
+            } catch (e) {
+                console.error(`处理看板推送失败: ${eventName}`, e);
+            }
+        });
+    };
+    handle('summary', renderDashboardSummary);
+    handle('hotProducts', renderHotProducts);
+    handle('recentOrders', renderRecentOrders);
+    handle('lowStockCount', count => {
+        document.getElementById('lowStockCount').textContent = count;
+    });
+}
+
 // 加载热销商品
 async function loadHotProducts() {
     try {
         const products = await fetchJson(`${API_BASE}/products/hot?limit=3`);
-        
-        const container = document.getElementById('hotProducts');
-        container.innerHTML = '';
-        
-        products.forEach(product => {
-            const productCard = createProductCard(product);
-            container.appendChild(productCard);
-        });
-        
+        renderHotProducts(products);
     } catch (error) {
         console.error('加载热销商品失败:', error);
         document.getElementById('hotProducts').innerHTML = '<p>加载失败</p>';
     }
 }
 
+function renderHotProducts(products) {
+    const container = document.getElementById('hotProducts');
+    container.innerHTML = '';
+    
+    products.forEach(product => {
+        const productCard = createProductCard(product);
+        container.appendChild(productCard);
+    });
+}
+
 // 创建商品卡片
 function createProductCard(product) {
     const card = document.createElement('div');
@@ -233,21 +273,23 @@ function createProductCard(product) {
 async function loadRecentOrders() {
     try {
         const orders = await fetchJson(`${API_BASE}/orders/recent?limit=5`);
-        
-        const tbody = document.getElementById('recentOrders');
-        tbody.innerHTML = '';
-        
-        orders.forEach(order => {
-            const row = createOrderRow(order);
-            tbody.appendChild(row);
-        });
-        
+        renderRecentOrders(orders);
     } catch (error) {
         console.error('加载最近订单失败:', error);
         document.getElementById('recentOrders').innerHTML = '<tr><td colspan="6">加载失败</td></tr>';
     }
 }
 
+function renderRecentOrders(orders) {
+    const tbody = document.getElementById('recentOrders');
+    tbody.innerHTML = '';
+    
+    orders.forEach(order => {
+        const row = createOrderRow(order);
+        tbody.appendChild(row);
+    });
+}
+
 // 创建订单行
 function createOrderRow(order) {
     const row = document.createElement('tr');
@@ -629,13 +671,14 @@ function showToast(message, type = 'success') {
 document.addEventListener('DOMContentLoaded', function() {
     setText('navUserName', '管理员');
 
-    // 加载首页数据
+    // 加载首页数据，之后首页由服务端推送更新
     loadDashboardData();
+    subscribeDashboardStream();
     
-    // 设置定时刷新（每30秒）
+    // 设置定时刷新（每30秒）；推送连接正常时首页不再轮询
     setInterval(() => {
         const activePage = document.querySelector('.page-container.active');
-        if (activePage) {
+        if (activePage && !(activePage.id === 'home' && dashboardStreamConnected)) {
             loadPageData(activePage.id);
         }
     }, 30000);
@@ -0,0 +1,127 @@
+package com.sales.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnSegmentFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void longColumnsRoundTripAtEveryWidth() throws IOException {
+        long[] oneByte = {100, 355, 200, 101};
+        long[] twoBytes = {-1_000, 60_000, 0, 5};
+        long[] fourBytes = {1_700_000_000L, 1_700_000_000L + 4_000_000_000L, 1_700_000_001L};
+        long[] eightBytes = {Long.MIN_VALUE, 0, Long.MAX_VALUE};
+        Path path = directory.resolve("longs.seg");
+        ColumnSegmentFile.writer(2)
+                .addLong("one", oneByte)
+                .addLong("two", twoBytes)
+                .addLong("four", fourBytes)
+                .addLong("eight", eightBytes)
+                .addLong("empty", new long[0])
+                .write(path);
+
+        ColumnSegmentFile file = ColumnSegmentFile.open(path);
+        assertEquals(2, file.zoneRows());
+        assertEquals(Files.size(path), file.sizeBytes());
+        assertColumn(oneByte, file.longColumn("one"));
+        assertColumn(twoBytes, file.longColumn("two"));
+        assertColumn(fourBytes, file.longColumn("four"));
+        assertColumn(eightBytes, file.longColumn("eight"));
+        assertEquals(0, file.longColumn("empty").length());
+        assertEquals(0, file.longColumn("empty").zoneCount());
+        assertNull(file.longColumn("missing"));
+        assertNull(file.stringColumn("one"));
+    }
+
+    private static void assertColumn(long[] expected, ColumnSegmentFile.LongColumn column) {
+        assertEquals(expected.length, column.length());
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], column.get(i));
+            min = Math.min(min, expected[i]);
+            max = Math.max(max, expected[i]);
+        }
+        assertEquals(min, column.min());
+        assertEquals(max, column.max());
+    }
+
+    @Test
+    void zoneMapsCoverEachBlock() throws IOException {
+        long[] values = {5, 1, 9, 3, 20, 21, 22, 23, -4, 0};
+        Path path = directory.resolve("zones.seg");
+        ColumnSegmentFile.writer(4).addLong("v", values).write(path);
+
+        ColumnSegmentFile.LongColumn column = ColumnSegmentFile.open(path).longColumn("v");
+        assertEquals(3, column.zoneCount());
+        assertEquals(1, column.zoneMin(0));
+        assertEquals(9, column.zoneMax(0));
+        assertEquals(20, column.zoneMin(1));
+        assertEquals(23, column.zoneMax(1));
+        // 最后一个区块不满
+        assertEquals(-4, column.zoneMin(2));
+        assertEquals(0, column.zoneMax(2));
+    }
+
+    @Test
+    void stringDictionaryWithNulls() throws IOException {
+        String[] values = {"华东", null, "华北", "华东", null, "华南"};
+        Path path = directory.resolve("strings.seg");
+        ColumnSegmentFile.writer(3).addStrings("region", values).addStrings("none", new String[]{null, null}).write(path);
+
+        ColumnSegmentFile file = ColumnSegmentFile.open(path);
+        ColumnSegmentFile.StringColumn column = file.stringColumn("region");
+        assertEquals(values.length, column.length());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], column.get(i));
+        }
+        // 字典按首次出现顺序编码
+        assertArrayEquals(new String[]{"华东", "华北", "华南"}, column.dictionary());
+        assertEquals(0, column.code(0));
+        assertEquals(-1, column.code(1));
+        assertEquals(0, column.code(3));
+        assertEquals(-1, column.codes().zoneMin(1));
+        assertEquals(2, column.codes().zoneMax(1));
+
+        ColumnSegmentFile.StringColumn none = file.stringColumn("none");
+        assertEquals(0, none.dictionary().length);
+        assertNull(none.get(0));
+        assertEquals(-1, none.codes().max());
+        assertNull(file.longColumn("region"));
+    }
+
+    @Test
+    void rewriteReplacesFileWithoutLeavingTempFiles() throws IOException {
+        Path path = directory.resolve("day.seg");
+        ColumnSegmentFile.writer(16).addLong("v", new long[]{1, 2, 3}).write(path);
+        ColumnSegmentFile.writer(16).addLong("v", new long[]{7}).write(path);
+
+        ColumnSegmentFile.LongColumn column = ColumnSegmentFile.open(path).longColumn("v");
+        assertEquals(1, column.length());
+        assertEquals(7, column.get(0));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void rejectsInvalidInput() throws IOException {
+        Path path = directory.resolve("garbage.seg");
+        Files.write(path, new byte[64]);
+        assertThrows(IllegalArgumentException.class, () -> ColumnSegmentFile.open(path));
+        assertThrows(IllegalArgumentException.class, () -> ColumnSegmentFile.writer(0));
+    }
+}
@@ -0,0 +1,158 @@
+package com.sales.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHitterSketchTest {
+
+    @Test
+    void exactScoresWhileCandidatesFit() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 1024, 16);
+        for (int i = 0; i < 10; i++) {
+            sketch.add("a", 1.5);
+            sketch.add("b", 3);
+        }
+        sketch.add("c", 0.25);
+        sketch.add(null, 5);
+        sketch.add("d", 0);
+        sketch.add("e", -1);
+
+        Map<String, Double> top = sketch.drainTopK(2);
+        assertEquals(List.of("b", "a"), new ArrayList<>(top.keySet()));
+        assertEquals(30.0, top.get("b"), 1e-9);
+        assertEquals(15.0, top.get("a"), 1e-9);
+        assertEquals(45.0, sketch.getDrainedScore(), 1e-9);
+    }
+
+    @Test
+    void heavyHittersSurviveLongTail() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 2048, 32);
+        Set<String> heavy = Set.of("h0", "h1", "h2", "h3", "h4");
+        double total = 0;
+        for (int round = 0; round < 1000; round++) {
+            for (String item : heavy) {
+                sketch.add(item, 1);
+                total += 1;
+            }
+            for (int t = 0; t < 10; t++) {
+                sketch.add("tail-" + (round * 10 + t), 1);
+                total += 1;
+            }
+        }
+
+        Map<String, Double> top = sketch.drainTopK(heavy.size());
+        assertEquals(heavy, top.keySet());
+        for (double score : top.values()) {
+            // 只在进入候选集时引入一次Count-Min误差
+            assertTrue(score >= 1000 && score <= 1000 + sketch.getEpsilon() * total, "score " + score);
+        }
+    }
+
+    @Test
+    void drainedAndDroppedAccountForEveryScore() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 1024, 4);
+        double total = 0;
+        for (int i = 1; i <= 10; i++) {
+            sketch.add("item-" + i, i);
+            total += i;
+        }
+
+        // 候选集满后较小的候选被依次淘汰，留下分数最大的4个
+        assertEquals(List.of("item-10", "item-9"), new ArrayList<>(sketch.drainTopK(2).keySet()));
+        // 其余候选结转到下一窗口，容量的一半
+        assertEquals(2, sketch.getCandidateCount());
+        assertEquals(2, sketch.drainTopK(10).size());
+        assertEquals(0, sketch.getCandidateCount());
+        assertEquals(total, sketch.getDrainedScore() + sketch.getDroppedScore(), 1e-9);
+    }
+
+    @Test
+    void lateHeavyHitterDisplacesSmallestCandidate() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 1024, 4);
+        for (String item : List.of("a", "b", "c", "d")) {
+            sketch.add(item, 1);
+        }
+        for (int i = 0; i < 10; i++) {
+            sketch.add("late", 1);
+        }
+        assertEquals(4, sketch.getCandidateCount());
+
+        Map<String, Double> top = sketch.drainTopK(1);
+        assertEquals(10.0, top.get("late"), 1e-9);
+    }
+
+    @Test
+    void candidatesStayWithinCapacityAfterCarry() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 1 << 16, 8);
+        for (int i = 0; i < 20; i++) {
+            sketch.add("first-" + i, i + 1);
+        }
+        sketch.drainTopK(2);
+        assertEquals(4, sketch.getCandidateCount());
+
+        // 结转后的窗口里新元素按最小候选准入，不因结转阈值无限增长
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("second-" + i, 100 + i);
+        }
+        assertEquals(8, sketch.getCandidateCount());
+        Map<String, Double> top = sketch.drainTopK(8);
+        for (int i = 992; i < 1000; i++) {
+            assertEquals(100.0 + i, top.get("second-" + i), 1e-9);
+        }
+    }
+
+    @Test
+    void clearDiscardsCurrentWindow() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 1024, 8);
+        sketch.add("a", 1);
+        sketch.clear();
+        assertEquals(0, sketch.getCandidateCount());
+        assertTrue(sketch.drainTopK(5).isEmpty());
+    }
+
+    @Test
+    void concurrentAddsAreCounted() throws Exception {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4, 1024, 16);
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        sketch.add(i % 2 == 0 ? "x" : "y", 1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Double> top = sketch.drainTopK(2);
+        double expected = threads * perThread / 2.0;
+        for (String item : List.of("x", "y")) {
+            // 并发准入时可能多计正在准入的几次写入，不会少计
+            double score = top.get(item);
+            assertTrue(score >= expected && score <= expected + threads, item + "=" + score);
+        }
+    }
+}
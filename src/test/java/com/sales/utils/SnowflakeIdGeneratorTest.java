@@ -0,0 +1,130 @@
+package com.sales.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void idsStrictlyIncreaseWithinThread() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        // 超过单毫秒4096个序号，覆盖序号进位到时间戳的情况
+        long previous = generator.nextId();
+        for (int i = 0; i < 200_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous, "id went backwards at " + i);
+            previous = id;
+        }
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAndMonotonicPerThread() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(513);
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<long[]> task = () -> {
+                    start.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+
+            Set<Long> all = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) {
+                        assertTrue(ids[i] > ids[i - 1]);
+                    }
+                    assertEquals(513, SnowflakeIdGenerator.workerIdOf(ids[i]));
+                    all.add(ids[i]);
+                }
+            }
+            assertEquals(threads * perThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void timestampAndWorkerIdExtraction() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_WORKER_ID);
+        Instant before = Instant.ofEpochMilli(System.currentTimeMillis());
+        long id = generator.nextId();
+        Instant after = Instant.ofEpochMilli(System.currentTimeMillis());
+
+        Instant timestamp = SnowflakeIdGenerator.timestampOf(id);
+        assertFalse(timestamp.isBefore(before));
+        assertFalse(timestamp.isAfter(after));
+        assertEquals(SnowflakeIdGenerator.MAX_WORKER_ID, SnowflakeIdGenerator.workerIdOf(id));
+
+        generator.setWorkerId(3);
+        assertEquals(3, SnowflakeIdGenerator.workerIdOf(generator.nextId()));
+    }
+
+    @Test
+    void invalidWorkerIdRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_WORKER_ID + 1));
+    }
+
+    @Test
+    void base32RoundTripAndOrdering() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long a = random.nextLong() >>> 1;
+            long b = random.nextLong() >>> 1;
+            String encodedA = SnowflakeIdGenerator.toBase32(a);
+            String encodedB = SnowflakeIdGenerator.toBase32(b);
+            assertEquals(13, encodedA.length());
+            assertEquals(a, SnowflakeIdGenerator.fromBase32(encodedA));
+            assertEquals(Long.signum(Long.compare(a, b)), Integer.signum(encodedA.compareTo(encodedB)));
+        }
+        assertEquals("0000000000000", SnowflakeIdGenerator.toBase32(0));
+        assertEquals(Long.MAX_VALUE, SnowflakeIdGenerator.fromBase32(SnowflakeIdGenerator.toBase32(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void base32DecodingIsLenient() {
+        long id = new SnowflakeIdGenerator(1).nextId();
+        String encoded = SnowflakeIdGenerator.toBase32(id);
+        assertEquals(id, SnowflakeIdGenerator.fromBase32(encoded.toLowerCase()));
+        // Crockford：O读作0，I/L读作1
+        assertEquals(SnowflakeIdGenerator.fromBase32("0000000000001"), SnowflakeIdGenerator.fromBase32("OOOOOOOOOOOOI"));
+        assertEquals(1, SnowflakeIdGenerator.fromBase32("000000000000l"));
+    }
+
+    @Test
+    void invalidBase32Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> SnowflakeIdGenerator.fromBase32(null));
+        assertThrows(IllegalArgumentException.class, () -> SnowflakeIdGenerator.fromBase32("123"));
+        assertThrows(IllegalArgumentException.class, () -> SnowflakeIdGenerator.fromBase32("000000000000U"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.sales.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TDigestTest {
+
+    private static final int N = 200_000;
+
+    /**
+     * 对数正态分布，模拟订单金额的长尾
+     */
+    private static double[] sample(long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[N];
+        for (int i = 0; i < N; i++) {
+            values[i] = Math.exp(random.nextGaussian() + 4);
+        }
+        return values;
+    }
+
+    /**
+     * 估计值在精确排序结果中的分位（秩误差），与值的量纲无关
+     */
+    private static double rankOf(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        int rank = index >= 0 ? index : -index - 1;
+        return (double) rank / sorted.length;
+    }
+
+    @Test
+    void quantilesCloseToExactSort() {
+        double[] values = sample(1);
+        TDigest digest = new TDigest();
+        for (double value : values) {
+            digest.add(value);
+        }
+        Arrays.sort(values);
+
+        assertEquals(N, digest.count());
+        assertEquals(values[0], digest.min());
+        assertEquals(values[N - 1], digest.max());
+        assertEquals(0.5, rankOf(values, digest.quantile(0.5)), 0.005);
+        assertEquals(0.9, rankOf(values, digest.quantile(0.9)), 0.003);
+        assertEquals(0.99, rankOf(values, digest.quantile(0.99)), 0.001);
+        assertEquals(0.999, rankOf(values, digest.quantile(0.999)), 0.0003);
+        assertTrue(digest.centroidCount() <= TDigest.DEFAULT_COMPRESSION);
+    }
+
+    @Test
+    void mergedPartsMatchExactSort() {
+        double[] values = sample(2);
+        TDigest[] parts = new TDigest[8];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new TDigest();
+        }
+        for (int i = 0; i < N; i++) {
+            parts[i % parts.length].add(values[i]);
+        }
+        TDigest merged = new TDigest();
+        for (TDigest part : parts) {
+            merged.merge(part);
+        }
+        Arrays.sort(values);
+
+        assertEquals(N, merged.count());
+        assertEquals(values[0], merged.min());
+        assertEquals(values[N - 1], merged.max());
+        assertEquals(0.5, rankOf(values, merged.quantile(0.5)), 0.005);
+        assertEquals(0.99, rankOf(values, merged.quantile(0.99)), 0.001);
+        // 参数不被修改
+        assertEquals(N / parts.length, parts[0].count());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        double[] values = sample(3);
+        TDigest digest = new TDigest(100);
+        for (double value : values) {
+            digest.add(value);
+        }
+
+        TDigest decoded = TDigest.fromBytes(digest.toBytes());
+        assertNotNull(decoded);
+        assertEquals(digest.count(), decoded.count());
+        assertEquals(digest.min(), decoded.min());
+        assertEquals(digest.max(), decoded.max());
+        assertEquals(digest.centroidCount(), decoded.centroidCount());
+        for (double q : new double[]{0.01, 0.5, 0.9, 0.99}) {
+            // 均值以float存放
+            double expected = digest.quantile(q);
+            assertEquals(expected, decoded.quantile(q), Math.abs(expected) * 1e-6);
+        }
+    }
+
+    @Test
+    void invalidBytesDecodeToNull() {
+        TDigest digest = new TDigest();
+        digest.add(1);
+        digest.add(2);
+        byte[] bytes = digest.toBytes();
+
+        assertNull(TDigest.fromBytes(null));
+        assertNull(TDigest.fromBytes(new byte[0]));
+        assertNull(TDigest.fromBytes(Arrays.copyOf(bytes, bytes.length - 3)));
+        bytes[0] = 99;
+        assertNull(TDigest.fromBytes(bytes));
+    }
+
+    @Test
+    void emptyAndSingleValue() {
+        TDigest digest = new TDigest();
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        assertTrue(Double.isNaN(digest.min()));
+
+        digest.add(42.0);
+        digest.add(Double.NaN);
+        assertEquals(1, digest.count());
+        assertEquals(42.0, digest.quantile(0.0));
+        assertEquals(42.0, digest.quantile(0.5));
+        assertEquals(42.0, digest.quantile(1.0));
+    }
+}